@@ -8,6 +8,7 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -19,7 +20,9 @@ import java.util.List;
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
  */
-public abstract class CloudletScheduler {
+public abstract class CloudletScheduler implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The previous time. */
 	private double previousTime;
@@ -129,6 +132,20 @@ public abstract class CloudletScheduler {
 	 */
 	public abstract boolean isFinishedCloudlets();
 
+	/**
+	 * Checks whether updating the processing of this scheduler would only move its previous time
+	 * forward, i.e. it has no cloudlets whose progress depends on time and no finished cloudlets
+	 * left to return. Datacenters skip the updates of hosts whose schedulers are all idle. The
+	 * default is <tt>false</tt>, so that schedulers which do not override it are always updated.
+	 * 
+	 * @return $true if an update would not change the cloudlets; $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	public boolean isProcessingIdle() {
+		return false;
+	}
+
 	/**
 	 * Returns the next cloudlet in the finished list, $null if this list is empty.
 	 * 
@@ -23,6 +23,8 @@ import org.fog.entities.Tuple;
  * @since CloudSim Toolkit 2.0
  */
 public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShared {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The mips. */
 	private double mips;
@@ -25,6 +25,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * @since CloudSim Toolkit 1.0
  */
 public class CloudletSchedulerSpaceShared extends CloudletScheduler {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The cloudlet waiting list. */
 	private List<? extends ResCloudlet> cloudletWaitingList;
@@ -466,6 +468,16 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		return getCloudletFinishedList().size() > 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.CloudletScheduler#isProcessingIdle()
+	 */
+	@Override
+	public boolean isProcessingIdle() {
+		return getCloudletExecList().isEmpty() && getCloudletWaitingList().isEmpty()
+				&& !isFinishedCloudlets();
+	}
+
 	/**
 	 * Returns the next cloudlet in the finished list, $null if this list is empty.
 	 * 
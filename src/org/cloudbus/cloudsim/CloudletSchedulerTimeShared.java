@@ -22,6 +22,8 @@ import org.fog.entities.Tuple;
  * @since CloudSim Toolkit 1.0
  */
 public class CloudletSchedulerTimeShared extends CloudletScheduler {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The cloudlet exec list. */
 	private List<? extends ResCloudlet> cloudletExecList;
@@ -379,6 +381,15 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		return getCloudletFinishedList().size() > 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.CloudletScheduler#isProcessingIdle()
+	 */
+	@Override
+	public boolean isProcessingIdle() {
+		return getCloudletExecList().isEmpty() && !isFinishedCloudlets();
+	}
+
 	/**
 	 * Returns the next cloudlet in the finished list, $null if this list is empty.
 	 * 
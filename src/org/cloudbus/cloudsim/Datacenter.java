@@ -8,6 +8,7 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -17,6 +18,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.util.LongHashMap;
 
 
 /**
@@ -31,6 +33,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @since CloudSim Toolkit 1.0
  */
 public class Datacenter extends SimEntity {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The characteristics. */
 	private DatacenterCharacteristics characteristics;
@@ -53,6 +57,18 @@ public class Datacenter extends SimEntity {
 	/** The scheduling interval. */
 	private double schedulingInterval;
 
+	/** The positions in the host list of the hosts updated on every processing. */
+	private BitSet activeHosts;
+
+	/** The position of each host in the host list. */
+	private Map<Host, Integer> hostIndex;
+
+	/** The times of the updates the idle hosts have skipped, shared with the hosts that record them. */
+	private List<Double> skippedUpdateTimes;
+
+	/** The VMs created in this datacenter, by {@link Vm#getUidKey()}. */
+	private final LongHashMap<Vm> vmIndex = new LongHashMap<Vm>();
+
 	/**
 	 * Allocates a new PowerDatacenter object.
 	 * 
@@ -157,6 +173,11 @@ public class Datacenter extends SimEntity {
 				processCloudletSubmit(ev, true);
 				break;
 
+			// New Cloudlets arrive in one event
+			case CloudSimTags.CLOUDLET_SUBMIT_BATCH:
+				processCloudletSubmitBatch(ev, false);
+				break;
+
 			// Cancels a previously submitted Cloudlet
 			case CloudSimTags.CLOUDLET_CANCEL:
 				processCloudlet(ev, CloudSimTags.CLOUDLET_CANCEL);
@@ -368,8 +389,7 @@ public class Datacenter extends SimEntity {
 			userId = data[1];
 			vmId = data[2];
 
-			status = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId).getCloudletScheduler()
-					.getCloudletStatus(cloudletId);
+			status = getVm(vmId, userId).getCloudletScheduler().getCloudletStatus(cloudletId);
 		}
 
 		// if a sender using normal send() methods
@@ -379,8 +399,7 @@ public class Datacenter extends SimEntity {
 				cloudletId = cl.getCloudletId();
 				userId = cl.getUserId();
 
-				status = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-						.getCloudletScheduler().getCloudletStatus(cloudletId);
+				status = getVm(vmId, userId).getCloudletScheduler().getCloudletStatus(cloudletId);
 			} catch (Exception e) {
 				Log.printLine(getName() + ": Error in processing CloudSimTags.CLOUDLET_STATUS");
 				Log.printLine(e.getMessage());
@@ -444,10 +463,12 @@ public class Datacenter extends SimEntity {
 
 		if (result) {
 			getVmList().add(vm);
+			vmIndex.put(vm.getUidKey(), vm);
 
 			if (vm.isBeingInstantiated()) {
 				vm.setBeingInstantiated(false);
 			}
+			settleHost(getVmAllocationPolicy().getHost(vm));
 			vm.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(vm).getVmScheduler()
 					.getAllocatedMipsForVm(vm));
 		}
@@ -466,7 +487,11 @@ public class Datacenter extends SimEntity {
 	 */
 	protected void processVmDestroy(SimEvent ev, boolean ack) {
 		Vm vm = (Vm) ev.getData();
+		settleHost(getVmAllocationPolicy().getHost(vm));
 		getVmAllocationPolicy().deallocateHostForVm(vm);
+		if (vmIndex.get(vm.getUidKey()) == vm) {
+			vmIndex.remove(vm.getUidKey());
+		}
 
 		if (ack) {
 			int[] data = new int[3];
@@ -500,6 +525,8 @@ public class Datacenter extends SimEntity {
 		Vm vm = (Vm) migrate.get("vm");
 		Host host = (Host) migrate.get("host");
 
+		settleHost(getVmAllocationPolicy().getHost(vm));
+		settleHost(host);
 		getVmAllocationPolicy().deallocateHostForVm(vm);
 		host.removeMigratingInVm(vm);
 		boolean result = getVmAllocationPolicy().allocateHostForVm(vm, host);
@@ -527,6 +554,7 @@ public class Datacenter extends SimEntity {
 				vm.getId(),
 				host.getId());
 		vm.setInMigration(false);
+		vmIndex.put(vm.getUidKey(), vm);
 	}
 
 	/**
@@ -615,8 +643,9 @@ public class Datacenter extends SimEntity {
 		int destId = array[4];
 
 		// get the cloudlet
-		Cloudlet cl = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletCancel(cloudletId);
+		Vm sourceVm = getVm(vmId, userId);
+		settleHost(sourceVm.getHost());
+		Cloudlet cl = sourceVm.getCloudletScheduler().cloudletCancel(cloudletId);
 
 		boolean failed = false;
 		if (cl == null) {// cloudlet doesn't exist
@@ -637,12 +666,13 @@ public class Datacenter extends SimEntity {
 
 			// the cloudlet will migrate from one vm to another does the destination VM exist?
 			if (destId == getId()) {
-				Vm vm = getVmAllocationPolicy().getHost(vmDestId, userId).getVm(vmDestId,userId);
+				Vm vm = getVm(vmDestId, userId);
 				if (vm == null) {
 					failed = true;
 				} else {
 					// time to transfer the files
 					double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
+					settleHost(vm.getHost());
 					vm.getCloudletScheduler().cloudletSubmit(cl, fileTransferTime);
 				}
 			} else {// the cloudlet will migrate from one resource to another
@@ -677,7 +707,54 @@ public class Datacenter extends SimEntity {
 		updateCloudletProcessing();
 		try {
 			// gets the Cloudlet object
-			Cloudlet cl = (Cloudlet) ev.getData();
+			if (!submitCloudlet((Cloudlet) ev.getData(), ack)) {
+				return;
+			}
+		} catch (ClassCastException c) {
+			Log.printLine(getName() + ".processCloudletSubmit(): " + "ClassCastException error.");
+			c.printStackTrace();
+		}
+
+		checkCloudletCompletion();
+	}
+
+	/**
+	 * Processes the submission of a list of Cloudlets in one event. The Cloudlets are submitted in
+	 * the order of the list, as {@link #processCloudletSubmit(SimEvent, boolean)} does for a single
+	 * Cloudlet, but the processing is updated and the completed Cloudlets are checked only once.
+	 * 
+	 * @param ev a SimEvent object, whose data is a list of Cloudlets
+	 * @param ack an acknowledgement
+	 * @pre ev != null
+	 * @post $none
+	 */
+	protected void processCloudletSubmitBatch(SimEvent ev, boolean ack) {
+		updateCloudletProcessing();
+		try {
+			@SuppressWarnings("unchecked")
+			List<? extends Cloudlet> cloudlets = (List<? extends Cloudlet>) ev.getData();
+			for (Cloudlet cl : cloudlets) {
+				submitCloudlet(cl, ack);
+			}
+		} catch (ClassCastException c) {
+			Log.printLine(getName() + ".processCloudletSubmitBatch(): " + "ClassCastException error.");
+			c.printStackTrace();
+		}
+
+		checkCloudletCompletion();
+	}
+
+	/**
+	 * Submits a Cloudlet to its VM, without updating the processing of the datacenter first.
+	 * 
+	 * @param cl the Cloudlet
+	 * @param ack an acknowledgement
+	 * @return $false if the Cloudlet had already finished and was sent back; $true otherwise
+	 * @pre cl != null
+	 * @post $none
+	 */
+	protected boolean submitCloudlet(Cloudlet cl, boolean ack) {
+		try {
 			// checks whether this Cloudlet has finished or not
 			if (cl.isFinished()) {
 				String name = CloudSim.getEntityName(cl.getUserId());
@@ -704,7 +781,7 @@ public class Datacenter extends SimEntity {
 
 				sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
 
-				return;
+				return false;
 			}
 
 			// process this Cloudlet to this CloudResource
@@ -715,8 +792,8 @@ public class Datacenter extends SimEntity {
 			int vmId = cl.getVmId();
 						// time to transfer the files
 			double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
-			Host host = getVmAllocationPolicy().getHost(vmId, userId);
-			Vm vm = host.getVm(vmId, userId);
+			Vm vm = getVm(vmId, userId);
+			settleHost(vm.getHost());
 			CloudletScheduler scheduler = vm.getCloudletScheduler();
 			double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime);
 			
@@ -748,8 +825,7 @@ public class Datacenter extends SimEntity {
 			Log.printLine(getName() + ".processCloudletSubmit(): " + "Exception error.");
 			e.printStackTrace();
 		}
-
-		checkCloudletCompletion();
+		return true;
 	}
 
 	/**
@@ -787,8 +863,9 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletResume(int cloudletId, int userId, int vmId, boolean ack) {
-		double eventTime = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletResume(cloudletId);
+		Vm vm = getVm(vmId, userId);
+		settleHost(vm.getHost());
+		double eventTime = vm.getCloudletScheduler().cloudletResume(cloudletId);
 
 		boolean status = false;
 		if (eventTime > 0.0) { // if this cloudlet is in the exec queue
@@ -822,8 +899,9 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletPause(int cloudletId, int userId, int vmId, boolean ack) {
-		boolean status = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletPause(cloudletId);
+		Vm vm = getVm(vmId, userId);
+		settleHost(vm.getHost());
+		boolean status = vm.getCloudletScheduler().cloudletPause(cloudletId);
 
 		if (ack) {
 			int[] data = new int[3];
@@ -848,8 +926,9 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletCancel(int cloudletId, int userId, int vmId) {
-		Cloudlet cl = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletCancel(cloudletId);
+		Vm vm = getVm(vmId, userId);
+		settleHost(vm.getHost());
+		Cloudlet cl = vm.getCloudletScheduler().cloudletCancel(cloudletId);
 		sendNow(userId, CloudSimTags.CLOUDLET_CANCEL, cl);
 	}
 
@@ -857,6 +936,10 @@ public class Datacenter extends SimEntity {
 	 * Updates processing of each cloudlet running in this PowerDatacenter. It is necessary because
 	 * Hosts and VirtualMachines are simple objects, not entities. So, they don't receive events and
 	 * updating cloudlets inside them must be called from the outside.
+	 * <p>
+	 * Only the active hosts are updated. A host whose processing is idle (see
+	 * {@link Host#isProcessingIdle()}) after an update is not updated again until
+	 * {@link #settleHost(Host)} is called for it, when one of its VMs or cloudlets changes.
 	 * 
 	 * @pre $none
 	 * @post $none
@@ -868,9 +951,11 @@ public class Datacenter extends SimEntity {
 		// simulation step is skipped and schedulers are not properly initialized
 		if (CloudSim.clock() < 0.111 || CloudSim.clock() > getLastProcessTime() + CloudSim.getMinTimeBetweenEvents()) {
 			List<? extends Host> list = getVmAllocationPolicy().getHostList();
+			BitSet active = getActiveHosts(list);
+			startHostUpdates();
 			double smallerTime = Double.MAX_VALUE;
-			// for each host...
-			for (int i = 0; i < list.size(); i++) {
+			// for each active host...
+			for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
 				Host host = list.get(i);
 				// inform VMs to update processing
 				double time = host.updateVmsProcessing(CloudSim.clock());
@@ -878,6 +963,8 @@ public class Datacenter extends SimEntity {
 				if (time < smallerTime) {
 					smallerTime = time;
 				}
+				// idle hosts are left alone until they change
+				hostUpdated(host);
 			}
 			// gurantees a minimal interval before scheduling the event
 			if (smallerTime < CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01) {
@@ -899,7 +986,9 @@ public class Datacenter extends SimEntity {
 	 */
 	protected void checkCloudletCompletion() {
 		List<? extends Host> list = getVmAllocationPolicy().getHostList();
-		for (int i = 0; i < list.size(); i++) {
+		BitSet active = getActiveHosts(list);
+		// idle hosts have no finished cloudlets
+		for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
 			Host host = list.get(i);
 			for (Vm vm : host.getVmList()) {
 				while (vm.getCloudletScheduler().isFinishedCloudlets()) {
@@ -912,6 +1001,147 @@ public class Datacenter extends SimEntity {
 		}
 	}
 
+	/**
+	 * Gets a VM created in this datacenter. VMs are looked up by {@link Vm#getUidKey()}, without
+	 * building strings or scanning lists; a VM not created through {@link #processVmCreate(SimEvent,
+	 * boolean)} is looked up through the vm allocation policy once and then remembered.
+	 * 
+	 * @param vmId the vm id
+	 * @param userId ID of the VM's owner
+	 * @return the VM, or <tt>null</tt> if it is not running in this datacenter
+	 * @pre $none
+	 * @post $none
+	 */
+	protected Vm getVm(int vmId, int userId) {
+		long key = Vm.getUidKey(userId, vmId);
+		Vm vm = vmIndex.get(key);
+		if (vm == null || vm.getHost() == null) {
+			Host host = getVmAllocationPolicy().getHost(vmId, userId);
+			vm = host == null ? null : host.getVm(vmId, userId);
+			if (vm != null) {
+				vmIndex.put(key, vm);
+			} else {
+				vmIndex.remove(key);
+			}
+		}
+		return vm;
+	}
+
+	/**
+	 * Makes a host active again before one of its VMs or cloudlets changes. A host skipped by
+	 * {@link #updateCloudletProcessing()} while idle is first brought to the time of the last
+	 * processing, as if it had been updated then, so that the change does not alter the results.
+	 * 
+	 * @param host the host, which may be <tt>null</tt>
+	 * @pre $none
+	 * @post $none
+	 */
+	protected void settleHost(Host host) {
+		if (host == null) {
+			return;
+		}
+		BitSet active = getActiveHosts(getVmAllocationPolicy().getHostList());
+		Integer index = hostIndex.get(host);
+		if (index == null || active.get(index)) {
+			return;
+		}
+		active.set(index);
+		host.resumeVmsProcessing();
+
+		double time = getLastProcessTime();
+		for (Vm vm : host.getVmList()) {
+			if (vm.getCloudletScheduler().getPreviousTime() < time) {
+				vm.updateVmProcessing(time, host.getVmScheduler().getAllocatedMipsForVm(vm));
+			}
+		}
+	}
+
+	/**
+	 * Starts an update of the hosts at the current time, which the idle hosts skip. Datacenters
+	 * that update their hosts themselves call it once before the updates, then
+	 * {@link #isHostSkipped(Host)} and {@link #hostUpdated(Host)} for each host.
+	 * 
+	 * @pre $none
+	 * @post $none
+	 */
+	protected void startHostUpdates() {
+		List<? extends Host> list = getVmAllocationPolicy().getHostList();
+		if (getActiveHosts(list).cardinality() == list.size()) {
+			skippedUpdateTimes.clear();
+		} else {
+			skippedUpdateTimes.add(CloudSim.clock());
+		}
+	}
+
+	/**
+	 * Checks whether the update of a host is skipped. A host is skipped while it is idle since
+	 * {@link #hostUpdated(Host)} found it idle; a host that is no longer idle, e.g. because a VM is
+	 * migrating into it, is settled and updated again.
+	 * 
+	 * @param host the host
+	 * @return $true if the host is not to be updated; $false otherwise
+	 * @pre host != null
+	 * @post $none
+	 */
+	protected boolean isHostSkipped(Host host) {
+		BitSet active = getActiveHosts(getVmAllocationPolicy().getHostList());
+		Integer index = hostIndex.get(host);
+		if (index == null || active.get(index)) {
+			return false;
+		}
+		if (host.isProcessingIdle()) {
+			return true;
+		}
+		settleHost(host);
+		return false;
+	}
+
+	/**
+	 * Skips the next updates of a host if it is idle after its update, until it is settled.
+	 * 
+	 * @param host the host just updated
+	 * @pre host != null
+	 * @post $none
+	 */
+	protected void hostUpdated(Host host) {
+		if (!host.isProcessingIdle()) {
+			return;
+		}
+		BitSet active = getActiveHosts(getVmAllocationPolicy().getHostList());
+		Integer index = hostIndex.get(host);
+		if (index != null && active.get(index)) {
+			active.clear(index);
+			host.suspendVmsProcessing(skippedUpdateTimes);
+		}
+	}
+
+	/**
+	 * Gets the positions of the active hosts in the host list, making all the hosts active if the
+	 * host list has changed.
+	 * 
+	 * @param list the host list
+	 * @return the positions of the active hosts
+	 */
+	private BitSet getActiveHosts(List<? extends Host> list) {
+		if (activeHosts == null || hostIndex.size() != list.size()) {
+			if (activeHosts != null) {
+				for (Map.Entry<Host, Integer> entry : hostIndex.entrySet()) {
+					if (!activeHosts.get(entry.getValue())) {
+						entry.getKey().resumeVmsProcessing();
+					}
+				}
+			}
+			skippedUpdateTimes = new ArrayList<Double>();
+			hostIndex = new HashMap<Host, Integer>();
+			for (int i = 0; i < list.size(); i++) {
+				hostIndex.put(list.get(i), i);
+			}
+			activeHosts = new BitSet(list.size());
+			activeHosts.set(0, list.size());
+		}
+		return activeHosts;
+	}
+
 	/**
 	 * Adds a file into the resource's storage before the experiment starts. If the file is a master
 	 * file, then it will be registered to the RC when the experiment begins.
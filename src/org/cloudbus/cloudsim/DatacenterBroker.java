@@ -10,6 +10,7 @@ package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@ import org.cloudbus.cloudsim.lists.VmList;
  * @since CloudSim Toolkit 1.0
  */
 public class DatacenterBroker extends SimEntity {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The vm list. */
 	protected List<? extends Vm> vmList;
@@ -70,6 +73,12 @@ public class DatacenterBroker extends SimEntity {
 	/** The datacenter characteristics list. */
 	protected Map<Integer, DatacenterCharacteristics> datacenterCharacteristicsList;
 
+	/** The cloudlets submitted through {@link #submitCloudletList(List)} and not yet sent, by id. */
+	private final Map<Integer, Cloudlet> waitingCloudlets = new HashMap<Integer, Cloudlet>();
+
+	/** Whether cloudlets are sent to each VM in one event. */
+	private boolean batchSubmission;
+
 	/**
 	 * Created a new DatacenterBroker object.
 	 * 
@@ -120,6 +129,11 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	public void submitCloudletList(List<? extends Cloudlet> list) {
 		getCloudletList().addAll(list);
+		for (Cloudlet cloudlet : list) {
+			if (!waitingCloudlets.containsKey(cloudlet.getCloudletId())) {
+				waitingCloudlets.put(cloudlet.getCloudletId(), cloudlet);
+			}
+		}
 	}
 
 	/**
@@ -132,7 +146,11 @@ public class DatacenterBroker extends SimEntity {
 	 * @post $none
 	 */
 	public void bindCloudletToVm(int cloudletId, int vmId) {
-		CloudletList.getById(getCloudletList(), cloudletId).setVmId(vmId);
+		Cloudlet cloudlet = waitingCloudlets.get(cloudletId);
+		if (cloudlet == null) { // added to the cloudlet list directly
+			cloudlet = CloudletList.getById(getCloudletList(), cloudletId);
+		}
+		cloudlet.setVmId(vmId);
 	}
 
 	/**
@@ -223,10 +241,11 @@ public class DatacenterBroker extends SimEntity {
 
 		if (result == CloudSimTags.TRUE) {
 			getVmsToDatacentersMap().put(vmId, datacenterId);
-			getVmsCreatedList().add(VmList.getById(getVmList(), vmId));
+			Vm vm = VmList.getById(getVmList(), vmId);
+			getVmsCreatedList().add(vm);
 			Log.printLine(CloudSim.clock() + ": " + getName() + ": VM #" + vmId
 					+ " has been created in Datacenter #" + datacenterId + ", Host #"
-					+ VmList.getById(getVmsCreatedList(), vmId).getHost().getId());
+					+ vm.getHost().getId());
 		} else {
 			Log.printLine(CloudSim.clock() + ": " + getName() + ": Creation of VM #" + vmId
 					+ " failed in Datacenter #" + datacenterId);
@@ -333,12 +352,24 @@ public class DatacenterBroker extends SimEntity {
 	}
 
 	/**
-	 * Submit cloudlets to the created VMs.
+	 * Submit cloudlets to the created VMs. Cloudlets are sent one event per cloudlet or, if
+	 * {@link #isBatchSubmission()} is set, one {@link CloudSimTags#CLOUDLET_SUBMIT_BATCH} event per
+	 * VM. Cloudlets whose VM is not created stay in the cloudlet list.
 	 * 
 	 * @pre $none
 	 * @post $none
 	 */
 	protected void submitCloudlets() {
+		// the created VMs by id, the first one of each id as VmList.getById finds
+		Map<Integer, Vm> createdVms = new HashMap<Integer, Vm>();
+		for (Vm vm : getVmsCreatedList()) {
+			if (!createdVms.containsKey(vm.getId())) {
+				createdVms.put(vm.getId(), vm);
+			}
+		}
+		Map<Vm, List<Cloudlet>> batches = isBatchSubmission() ? new LinkedHashMap<Vm, List<Cloudlet>>() : null;
+		List<Cloudlet> postponed = new ArrayList<Cloudlet>();
+
 		int vmIndex = 0;
 		for (Cloudlet cloudlet : getCloudletList()) {
 			Vm vm;
@@ -346,29 +377,75 @@ public class DatacenterBroker extends SimEntity {
 			if (cloudlet.getVmId() == -1) {
 				vm = getVmsCreatedList().get(vmIndex);
 			} else { // submit to the specific vm
-				vm = VmList.getById(getVmsCreatedList(), cloudlet.getVmId());
+				vm = createdVms.get(cloudlet.getVmId());
 				if (vm == null) { // vm was not created
 					Log.printLine(CloudSim.clock() + ": " + getName() + ": Postponing execution of cloudlet "
 							+ cloudlet.getCloudletId() + ": bount VM not available");
+					postponed.add(cloudlet);
 					continue;
 				}
 			}
 
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": Sending cloudlet "
-					+ cloudlet.getCloudletId() + " to VM #" + vm.getId());
+			if (!Log.isDisabled()) {
+				Log.printLine(CloudSim.clock() + ": " + getName() + ": Sending cloudlet "
+						+ cloudlet.getCloudletId() + " to VM #" + vm.getId());
+			}
 			cloudlet.setVmId(vm.getId());
-			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+			if (batches == null) {
+				sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+			} else {
+				List<Cloudlet> batch = batches.get(vm);
+				if (batch == null) {
+					batch = new ArrayList<Cloudlet>();
+					batches.put(vm, batch);
+				}
+				batch.add(cloudlet);
+			}
 			cloudletsSubmitted++;
 			vmIndex = (vmIndex + 1) % getVmsCreatedList().size();
 			getCloudletSubmittedList().add(cloudlet);
 		}
 
-		// remove submitted cloudlets from waiting list
-		for (Cloudlet cloudlet : getCloudletSubmittedList()) {
-			getCloudletList().remove(cloudlet);
+		if (batches != null) {
+			for (Map.Entry<Vm, List<Cloudlet>> batch : batches.entrySet()) {
+				sendNow(
+						getVmsToDatacentersMap().get(batch.getKey().getId()),
+						CloudSimTags.CLOUDLET_SUBMIT_BATCH,
+						batch.getValue());
+			}
+		}
+
+		// keep only the postponed cloudlets in the waiting list
+		getCloudletList().clear();
+		getCloudletList().addAll(postponed);
+		waitingCloudlets.clear();
+		for (Cloudlet cloudlet : postponed) {
+			if (!waitingCloudlets.containsKey(cloudlet.getCloudletId())) {
+				waitingCloudlets.put(cloudlet.getCloudletId(), cloudlet);
+			}
 		}
 	}
 
+	/**
+	 * Checks whether cloudlets are sent to each VM in one event.
+	 * 
+	 * @return true, if cloudlets are submitted in batches
+	 */
+	public boolean isBatchSubmission() {
+		return batchSubmission;
+	}
+
+	/**
+	 * Sets whether cloudlets are sent to each VM in one {@link CloudSimTags#CLOUDLET_SUBMIT_BATCH}
+	 * event, instead of one {@link CloudSimTags#CLOUDLET_SUBMIT} event per cloudlet. The datacenter
+	 * then updates its processing once per VM rather than once per cloudlet.
+	 * 
+	 * @param batchSubmission whether cloudlets are submitted in batches
+	 */
+	public void setBatchSubmission(boolean batchSubmission) {
+		this.batchSubmission = batchSubmission;
+	}
+
 	/**
 	 * Destroy the virtual machines running in datacenters.
 	 * 
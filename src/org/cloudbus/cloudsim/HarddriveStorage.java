@@ -9,8 +9,11 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
 
@@ -23,18 +26,32 @@ import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
  * <li>avg seek time = 9 ms
  * <li>max transfer rate = 133 MB/sec
  * </ul>
+ * <p>
+ * Files are laid out on the disk in the order they were added. The catalog indexes them by name and
+ * keeps the sizes of the files in disk order in a binary indexed tree, so that finding a file and
+ * the seek distance to it take logarithmic time rather than a scan of all the stored files. Groups
+ * of files can be read or written with a single seek, see {@link #getFiles(List, List)} and
+ * {@link #addFiles(List)}.
  * 
  * @author Uros Cibej
  * @author Anthony Sulistio
  * @since CloudSim Toolkit 1.0
  */
 public class HarddriveStorage implements Storage {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
-	/** a list storing the names of all the files on the harddrive. */
-	private List<String> nameList;
+	/** the disk slot of each stored file, by file name, in the order the names were added. */
+	private Map<String, Integer> nameIndex;
 
-	/** a list storing all the files stored on the harddrive. */
-	private List<File> fileList;
+	/** the files in disk order; the slots of deleted files are null. */
+	private File[] slots;
+
+	/** a binary indexed tree over the sizes of the files in {@link #slots}. */
+	private long[] slotSizes;
+
+	/** the number of slots used, including the slots of deleted files. */
+	private int slotCount;
 
 	/** the name of the harddrive. */
 	private final String name;
@@ -101,8 +118,10 @@ public class HarddriveStorage implements Storage {
 	 * created.
 	 */
 	private void init() {
-		fileList = new ArrayList<File>();
-		nameList = new ArrayList<String>();
+		nameIndex = new LinkedHashMap<String, Integer>();
+		slots = new File[16];
+		slotSizes = new long[slots.length + 1];
+		slotCount = 0;
 		gen = null;
 		currentSize = 0;
 
@@ -141,7 +160,7 @@ public class HarddriveStorage implements Storage {
 	 */
 	@Override
 	public int getNumStoredFile() {
-		return fileList.size();
+		return nameIndex.size();
 	}
 
 	/**
@@ -205,15 +224,17 @@ public class HarddriveStorage implements Storage {
 			return true;
 		}
 
-		Iterator<File> it = fileList.iterator();
 		File file = null;
 		int deletedFileSize = 0;
 
 		// if not enough space, then if want to clear/delete some files
 		// then check whether it still have space or not
 		boolean result = false;
-		while (it.hasNext()) {
-			file = it.next();
+		for (int slot = 0; slot < slotCount; slot++) {
+			file = slots[slot];
+			if (file == null) {
+				continue;
+			}
 			if (!file.isReadOnly()) {
 				deletedFileSize += file.getSize();
 			}
@@ -360,28 +381,14 @@ public class HarddriveStorage implements Storage {
 			return obj;
 		}
 
-		Iterator<File> it = fileList.iterator();
-		int size = 0;
-		int index = 0;
-		boolean found = false;
-		File tempFile = null;
-
 		// find the file in the disk
-		while (it.hasNext()) {
-			tempFile = it.next();
-			size += tempFile.getSize();
-			if (tempFile.getName().equals(fileName)) {
-				found = true;
-				obj = tempFile;
-				break;
-			}
-
-			index++;
-		}
+		Integer slot = nameIndex.get(fileName);
 
 		// if the file is found, then determine the time taken to get it
-		if (found) {
-			obj = fileList.get(index);
+		if (slot != null) {
+			obj = slots[slot];
+			// the seek distance covers all the files up to and including this one
+			int size = (int) getSizeUpTo(slot);
 			double seekTime = getSeekTime(size);
 			double transferTime = getTransferTime(obj.getSize());
 
@@ -399,7 +406,247 @@ public class HarddriveStorage implements Storage {
 	 */
 	@Override
 	public List<String> getFileNameList() {
-		return nameList;
+		return new ArrayList<String>(nameIndex.keySet());
+	}
+
+	/**
+	 * Gets a group of files with a single seek. The disk head sweeps once, in disk order, up to the
+	 * farthest of the requested files, and then transfers all of them. The combined time is set as
+	 * the transaction time of every file found.
+	 * 
+	 * @param fileNames the names of the needed files
+	 * @param files the files found are added to this list, in disk order
+	 * @return the time (in seconds) taken to get all the files found
+	 */
+	public double getFiles(List<String> fileNames, List<File> files) {
+		if (fileNames == null || fileNames.isEmpty()) {
+			Log.printLine(name + ".getFiles(): Warning - list is empty.");
+			return 0.0;
+		}
+
+		int[] found = new int[fileNames.size()];
+		int count = 0;
+		for (String fileName : fileNames) {
+			Integer slot = fileName == null ? null : nameIndex.get(fileName);
+			if (slot != null) {
+				found[count++] = slot;
+			}
+		}
+		if (count == 0) {
+			return 0.0;
+		}
+		Arrays.sort(found, 0, count);
+
+		int totalSize = 0;
+		int lastSlot = -1;
+		List<File> batch = new ArrayList<File>(count);
+		for (int i = 0; i < count; i++) {
+			if (found[i] == lastSlot) {
+				continue; // requested more than once
+			}
+			lastSlot = found[i];
+			File file = slots[lastSlot];
+			totalSize += file.getSize();
+			batch.add(file);
+		}
+
+		double result = getSeekTime((int) getSizeUpTo(lastSlot)) + getTransferTime(totalSize);
+		for (File file : batch) {
+			file.setTransactionTime(result);
+		}
+		files.addAll(batch);
+		return result;
+	}
+
+	/**
+	 * Adds a group of files to the storage with a single seek. The files are written one after the
+	 * other at the end of the disk, so the seek and transfer times are those of one file of the
+	 * combined size. Files that are invalid, already stored or do not fit are skipped, as in
+	 * {@link #addFile(File)}. The combined time is set as the transaction time of every file added.
+	 * 
+	 * @param list the files to be added
+	 * @return the time (in seconds) taken to add all the files added
+	 */
+	public double addFiles(List<File> list) {
+		List<File> batch = storeFiles(list);
+		if (batch.isEmpty()) {
+			return 0.0;
+		}
+
+		double result = getBatchWriteTime(getTotalSize(batch));
+		for (File file : batch) {
+			file.setTransactionTime(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Stores a group of files at the end of the disk, skipping the files that are invalid, already
+	 * stored or do not fit. The transaction time of the files skipped for lack of space or because
+	 * they are already stored is set to 0; the transaction time of the files stored is left to the
+	 * caller.
+	 * 
+	 * @param list the files to be stored
+	 * @return the files stored, in the order of the list
+	 */
+	protected List<File> storeFiles(List<File> list) {
+		if (list == null || list.isEmpty()) {
+			Log.printLine(name + ".addFiles(): Warning - list is empty.");
+			return new ArrayList<File>(0);
+		}
+
+		List<File> batch = new ArrayList<File>(list.size());
+		for (File file : list) {
+			if (!isFileValid(file, "addFiles()")) {
+				continue;
+			}
+			if (file.getSize() + currentSize > capacity) {
+				Log.printLine(name + ".addFiles(): Warning - not enough space" + " to store " + file.getName());
+				file.setTransactionTime(0.0);
+				continue;
+			}
+			if (contains(file.getName())) {
+				file.setTransactionTime(0.0);
+				continue;
+			}
+			store(file);
+			batch.add(file);
+		}
+		return batch;
+	}
+
+	/**
+	 * Gets the time to write a group of files one after the other at the end of the disk, which is
+	 * that of one file of their combined size.
+	 * 
+	 * @param totalSize the combined size of the files
+	 * @return the seek time plus the transfer time (in seconds)
+	 */
+	protected double getBatchWriteTime(int totalSize) {
+		return getSeekTime(totalSize) + getTransferTime(totalSize);
+	}
+
+	/**
+	 * Gets the combined size of a group of files.
+	 * 
+	 * @param files the files
+	 * @return the sum of the sizes of the files
+	 */
+	protected static int getTotalSize(List<File> files) {
+		int totalSize = 0;
+		for (File file : files) {
+			totalSize += file.getSize();
+		}
+		return totalSize;
+	}
+
+	/**
+	 * Stores a file in the next free slot at the end of the disk.
+	 * 
+	 * @param file the file to be stored
+	 */
+	private void store(File file) {
+		if (slotCount == slots.length) {
+			if (nameIndex.size() < slotCount / 2) {
+				compactSlots();
+			} else {
+				growSlots();
+			}
+		}
+		int slot = slotCount++;
+		slots[slot] = file;
+		updateSlotSize(slot, file.getSize());
+		nameIndex.put(file.getName(), slot);
+		currentSize += file.getSize();    // increment the current HD size
+	}
+
+	/**
+	 * Removes a stored file from its slot.
+	 * 
+	 * @param fileName the name of the stored file
+	 * @return the removed file, or null if there is no such file
+	 */
+	private File unstore(String fileName) {
+		Integer slot = nameIndex.remove(fileName);
+		if (slot == null) {
+			return null;
+		}
+		File file = slots[slot];
+		slots[slot] = null;
+		updateSlotSize(slot, -file.getSize());
+		currentSize -= file.getSize();    // decrement the current HD space
+		return file;
+	}
+
+	/**
+	 * Gets the total size of the files stored in the slots up to and including the given one.
+	 * 
+	 * @param slot the slot
+	 * @return the total size in MB
+	 */
+	private long getSizeUpTo(int slot) {
+		long size = 0;
+		for (int i = slot + 1; i > 0; i -= i & -i) {
+			size += slotSizes[i];
+		}
+		return size;
+	}
+
+	/**
+	 * Adds a size difference to the size of a slot.
+	 * 
+	 * @param slot the slot
+	 * @param delta the size difference in MB
+	 */
+	private void updateSlotSize(int slot, long delta) {
+		for (int i = slot + 1; i < slotSizes.length; i += i & -i) {
+			slotSizes[i] += delta;
+		}
+	}
+
+	/**
+	 * Doubles the number of slots.
+	 */
+	private void growSlots() {
+		slots = Arrays.copyOf(slots, slots.length * 2);
+		rebuildSlotSizes();
+	}
+
+	/**
+	 * Moves the stored files to the front of the slots, keeping their order, to reuse the slots of
+	 * deleted files.
+	 */
+	private void compactSlots() {
+		int count = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			File file = slots[slot];
+			if (file != null) {
+				slots[count] = file;
+				nameIndex.put(file.getName(), count);
+				count++;
+			}
+		}
+		Arrays.fill(slots, count, slotCount, null);
+		slotCount = count;
+		rebuildSlotSizes();
+	}
+
+	/**
+	 * Rebuilds the binary indexed tree over the sizes of the slots.
+	 */
+	private void rebuildSlotSizes() {
+		slotSizes = new long[slots.length + 1];
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (slots[slot] != null) {
+				slotSizes[slot + 1] = slots[slot].getSize();
+			}
+		}
+		for (int i = 1; i < slotSizes.length; i++) {
+			int parent = i + (i & -i);
+			if (parent < slotSizes.length) {
+				slotSizes[parent] += slotSizes[i];
+			}
+		}
 	}
 
 	/**
@@ -491,9 +738,7 @@ public class HarddriveStorage implements Storage {
 			double seekTime = getSeekTime(file.getSize());
 			double transferTime = getTransferTime(file.getSize());
 
-			fileList.add(file);               // add the file into the HD
-			nameList.add(file.getName());     // add the name to the name list
-			currentSize += file.getSize();    // increment the current HD size
+			store(file);                      // add the file into the HD
 			result = seekTime + transferTime;  // add total time
 		}
 		file.setTransactionTime(result);
@@ -538,20 +783,14 @@ public class HarddriveStorage implements Storage {
 			return null;
 		}
 
-		Iterator<File> it = fileList.iterator();
+		Integer slot = nameIndex.get(fileName);
 		File file = null;
-		while (it.hasNext()) {
-			file = it.next();
-			String name = file.getName();
 
-			// if a file is found then delete
-			if (fileName.equals(name)) {
-				double result = deleteFile(file);
-				file.setTransactionTime(result);
-				break;
-			} else {
-				file = null;
-			}
+		// if a file is found then delete
+		if (slot != null) {
+			file = slots[slot];
+			double result = deleteFile(file);
+			file.setTransactionTime(result);
 		}
 		return file;
 	}
@@ -588,9 +827,7 @@ public class HarddriveStorage implements Storage {
 
 		// check if the file is in the storage
 		if (contains(file)) {
-			fileList.remove(file);            // remove the file HD
-			nameList.remove(file.getName());  // remove the name from name list
-			currentSize -= file.getSize();    // decrement the current HD space
+			unstore(file.getName());          // remove the file HD
 			result = seekTime + transferTime;  // total time
 			file.setTransactionTime(result);
 		}
@@ -610,16 +847,7 @@ public class HarddriveStorage implements Storage {
 			Log.printLine(name + ".contains(): Warning - invalid file name");
 			return result;
 		}
-		// check each file in the list
-		Iterator<String> it = nameList.iterator();
-		while (it.hasNext()) {
-			String name = it.next();
-			if (name.equals(fileName)) {
-				result = true;
-				break;
-			}
-		}
-		return result;
+		return nameIndex.containsKey(fileName);
 	}
 
 	/**
@@ -657,25 +885,19 @@ public class HarddriveStorage implements Storage {
 		}
 
 		// replace the file name in the file (physical) list
-		File obj = getFile(file.getName());
+		String oldName = file.getName();
+		File obj = getFile(oldName);
 		if (obj == null) {
 			return result;
 		} else {
 			obj.setName(newName);
 		}
 
-		// replace the file name in the name list
-		Iterator<String> it = nameList.iterator();
-		while (it.hasNext()) {
-			String name = it.next();
-			if (name.equals(file.getName())) {
-				file.setTransactionTime(0);
-				nameList.remove(name);
-				nameList.add(newName);
-				result = true;
-				break;
-			}
-		}
+		// replace the file name in the name list, the file keeps its place on the disk
+		Integer slot = nameIndex.remove(oldName);
+		nameIndex.put(newName, slot);
+		file.setTransactionTime(0);
+		result = true;
 
 		return result;
 	}
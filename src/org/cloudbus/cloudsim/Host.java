@@ -7,6 +7,7 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,6 +15,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.lists.PeList;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
 import org.cloudbus.cloudsim.provisioners.RamProvisioner;
+import org.cloudbus.cloudsim.util.LongHashMap;
 
 /**
  * Host executes actions related to management of virtual machines (e.g., creation and destruction).
@@ -24,7 +26,9 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
  */
-public class Host {
+public class Host implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The id. */
 	private int id;
@@ -44,6 +48,9 @@ public class Host {
 	/** The vm list. */
 	private final List<? extends Vm> vmList = new ArrayList<Vm>();
 
+	/** The VMs in the vm list, by {@link Vm#getUidKey()}. */
+	private final LongHashMap<Vm> vmIndex = new LongHashMap<Vm>();
+
 	/** The pe list. */
 	private List<? extends Pe> peList;
 
@@ -104,6 +111,48 @@ public class Host {
 		return smallerTime;
 	}
 
+	/**
+	 * Checks whether {@link #updateVmsProcessing(double)} would only move the previous time of the
+	 * cloudlet schedulers forward, i.e. no VM in this host has cloudlets to process or finished
+	 * cloudlets to return. A datacenter does not update such a host until a VM or cloudlet of the
+	 * host changes. Hosts that keep state on every update must return <tt>false</tt>, or record it
+	 * for the skipped updates through {@link #suspendVmsProcessing(List)}.
+	 * 
+	 * @return $true if an update of this host would not change its cloudlets; $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	public boolean isProcessingIdle() {
+		for (Vm vm : getVmList()) {
+			if (!vm.getCloudletScheduler().isProcessingIdle()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Called when a datacenter stops updating this host because its processing is idle. Until
+	 * {@link #resumeVmsProcessing()} is called, the datacenter adds the time of every update the
+	 * host skips to the given list. The default does nothing, as the skipped updates would not
+	 * have changed the host.
+	 * 
+	 * @param skippedUpdateTimes the times of the skipped updates, from its current size on
+	 * @pre skippedUpdateTimes != null
+	 * @post $none
+	 */
+	public void suspendVmsProcessing(List<Double> skippedUpdateTimes) {
+	}
+
+	/**
+	 * Called when a datacenter updates this host again, before the host changes.
+	 * 
+	 * @pre $none
+	 * @post $none
+	 */
+	public void resumeVmsProcessing() {
+	}
+
 	/**
 	 * Adds the migrating in vm.
 	 * 
@@ -141,7 +190,7 @@ public class Host {
 			setStorage(getStorage() - vm.getSize());
 
 			getVmsMigratingIn().add(vm);
-			getVmList().add(vm);
+			addToVmList(vm);
 			updateVmsProcessing(CloudSim.clock());
 			vm.getHost().updateVmsProcessing(CloudSim.clock());
 		}
@@ -155,7 +204,7 @@ public class Host {
 	public void removeMigratingInVm(Vm vm) {
 		vmDeallocate(vm);
 		getVmsMigratingIn().remove(vm);
-		getVmList().remove(vm);
+		removeFromVmList(vm);
 		getVmScheduler().getVmsMigratingIn().remove(vm.getUid());
 		vm.setInMigration(false);
 	}
@@ -165,8 +214,8 @@ public class Host {
 	 */
 	public void reallocateMigratingInVms() {
 		for (Vm vm : getVmsMigratingIn()) {
-			if (!getVmList().contains(vm)) {
-				getVmList().add(vm);
+			if (getVm(vm.getId(), vm.getUserId()) != vm) {
+				addToVmList(vm);
 			}
 			if (!getVmScheduler().getVmsMigratingIn().contains(vm.getUid())) {
 				getVmScheduler().getVmsMigratingIn().add(vm.getUid());
@@ -228,7 +277,7 @@ public class Host {
 		}
 
 		setStorage(getStorage() - vm.getSize());
-		getVmList().add(vm);
+		addToVmList(vm);
 		vm.setHost(this);
 		return true;
 	}
@@ -243,7 +292,7 @@ public class Host {
 	public void vmDestroy(Vm vm) {
 		if (vm != null) {
 			vmDeallocate(vm);
-			getVmList().remove(vm);
+			removeFromVmList(vm);
 			vm.setHost(null);
 		}
 	}
@@ -261,6 +310,38 @@ public class Host {
 			setStorage(getStorage() + vm.getSize());
 		}
 		getVmList().clear();
+		vmIndex.clear();
+	}
+
+	/**
+	 * Adds a VM to the vm list and to the index used by {@link #getVm(int, int)}. All the changes
+	 * of the vm list go through this method and {@link #removeFromVmList(Vm)}.
+	 * 
+	 * @param vm the VM
+	 */
+	protected void addToVmList(Vm vm) {
+		getVmList().add(vm);
+		if (!vmIndex.containsKey(vm.getUidKey())) {
+			vmIndex.put(vm.getUidKey(), vm);
+		}
+	}
+
+	/**
+	 * Removes a VM from the vm list and from the index used by {@link #getVm(int, int)}.
+	 * 
+	 * @param vm the VM
+	 */
+	protected void removeFromVmList(Vm vm) {
+		if (getVmList().remove(vm) && vmIndex.get(vm.getUidKey()) == vm) {
+			vmIndex.remove(vm.getUidKey());
+			// another VM with the same ids may still be in the list
+			for (Vm other : getVmList()) {
+				if (other.getUidKey() == vm.getUidKey()) {
+					vmIndex.put(other.getUidKey(), other);
+					break;
+				}
+			}
+		}
 	}
 
 	/**
@@ -294,12 +375,7 @@ public class Host {
 	 * @post $none
 	 */
 	public Vm getVm(int vmId, int userId) {
-		for (Vm vm : getVmList()) {
-			if (vm.getId() == vmId && vm.getUserId() == userId) {
-				return vm;
-			}
-		}
-		return null;
+		return vmIndex.get(Vm.getUidKey(userId, vmId));
 	}
 
 	/**
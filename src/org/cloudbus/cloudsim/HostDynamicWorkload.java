@@ -8,8 +8,8 @@
 
 package org.cloudbus.cloudsim;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.cloudbus.cloudsim.core.CloudSim;
@@ -24,6 +24,8 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  * @since CloudSim Toolkit 2.0
  */
 public class HostDynamicWorkload extends Host {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The utilization mips. */
 	private double utilizationMips;
@@ -32,7 +34,16 @@ public class HostDynamicWorkload extends Host {
 	private double previousUtilizationMips;
 
 	/** The state history. */
-	private final List<HostStateHistoryEntry> stateHistory = new LinkedList<HostStateHistoryEntry>();
+	private final StateHistory stateHistory = new StateHistory();
+
+	/** The state history, as a list of entries, created when first used. */
+	private transient List<HostStateHistoryEntry> stateHistoryEntries;
+
+	/** The times of the updates skipped while idle, or <tt>null</tt> if the host is updated. */
+	private List<Double> skippedUpdateTimes;
+
+	/** The position in {@link #skippedUpdateTimes} of the first update not yet in the history. */
+	private int firstUnrecordedUpdate;
 
 	/**
 	 * Instantiates a new host.
@@ -62,6 +73,7 @@ public class HostDynamicWorkload extends Host {
 	 */
 	@Override
 	public double updateVmsProcessing(double currentTime) {
+		recordSkippedUpdates();
 		double smallerTime = super.updateVmsProcessing(currentTime);
 		setPreviousUtilizationMips(getUtilizationMips());
 		setUtilizationMips(0);
@@ -139,6 +151,54 @@ public class HostDynamicWorkload extends Host {
 		return smallerTime;
 	}
 
+	/**
+	 * Checks whether the host has no VMs and has not been used since the previous update. An update
+	 * would then only add an idle entry to the state history, so the entries of the skipped updates
+	 * are added when the history is read or the host is updated again. The utilization history of
+	 * hosts with VMs is kept by the VMs on every update, so they are never idle.
+	 * 
+	 * @return $true if the host has no VMs and no utilization; $false otherwise
+	 */
+	@Override
+	public boolean isProcessingIdle() {
+		return getVmList().isEmpty() && getVmsMigratingIn().isEmpty() && getUtilizationMips() == 0
+				&& getPreviousUtilizationMips() == 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Host#suspendVmsProcessing(java.util.List)
+	 */
+	@Override
+	public void suspendVmsProcessing(List<Double> skippedUpdateTimes) {
+		recordSkippedUpdates();
+		this.skippedUpdateTimes = skippedUpdateTimes;
+		firstUnrecordedUpdate = skippedUpdateTimes.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Host#resumeVmsProcessing()
+	 */
+	@Override
+	public void resumeVmsProcessing() {
+		recordSkippedUpdates();
+		skippedUpdateTimes = null;
+	}
+
+	/**
+	 * Adds to the state history the idle entries of the updates skipped so far, as the updates
+	 * would have added them.
+	 */
+	private void recordSkippedUpdates() {
+		if (skippedUpdateTimes == null) {
+			return;
+		}
+		for (; firstUnrecordedUpdate < skippedUpdateTimes.size(); firstUnrecordedUpdate++) {
+			stateHistory.add(skippedUpdateTimes.get(firstUnrecordedUpdate), 0, 0, false);
+		}
+	}
+
 	/**
 	 * Gets the completed vms.
 	 * 
@@ -266,11 +326,43 @@ public class HostDynamicWorkload extends Host {
 	}
 
 	/**
-	 * Gets the state history.
+	 * Gets the state history. The list is a read-only view of {@link #getStateHistoryStore()}: every
+	 * call to <tt>get</tt> creates a new entry, so the entries are not kept in memory.
 	 * 
 	 * @return the state history
 	 */
 	public List<HostStateHistoryEntry> getStateHistory() {
+		if (stateHistoryEntries == null) { // not serialized
+			stateHistoryEntries = new AbstractList<HostStateHistoryEntry>() {
+
+				@Override
+				public HostStateHistoryEntry get(int index) {
+					recordSkippedUpdates();
+					return new HostStateHistoryEntry(
+							stateHistory.getTime(index),
+							stateHistory.getAllocatedMips(index),
+							stateHistory.getRequestedMips(index),
+							stateHistory.getFlag(index));
+				}
+
+				@Override
+				public int size() {
+					recordSkippedUpdates();
+					return stateHistory.size();
+				}
+
+			};
+		}
+		return stateHistoryEntries;
+	}
+
+	/**
+	 * Gets the store of the state history.
+	 * 
+	 * @return the state history store
+	 */
+	public StateHistory getStateHistoryStore() {
+		recordSkippedUpdates();
 		return stateHistory;
 	}
 
@@ -285,20 +377,8 @@ public class HostDynamicWorkload extends Host {
 	public
 			void
 			addStateHistoryEntry(double time, double allocatedMips, double requestedMips, boolean isActive) {
-
-		HostStateHistoryEntry newState = new HostStateHistoryEntry(
-				time,
-				allocatedMips,
-				requestedMips,
-				isActive);
-		if (!getStateHistory().isEmpty()) {
-			HostStateHistoryEntry previousState = getStateHistory().get(getStateHistory().size() - 1);
-			if (previousState.getTime() == time) {
-				getStateHistory().set(getStateHistory().size() - 1, newState);
-				return;
-			}
-		}
-		getStateHistory().add(newState);
+		recordSkippedUpdates();
+		stateHistory.add(time, allocatedMips, requestedMips, isActive);
 	}
 
 }
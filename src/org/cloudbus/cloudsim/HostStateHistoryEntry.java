@@ -8,13 +8,17 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
+
 /**
  * The Class HostStateHistoryEntry.
  * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.1.2
  */
-public class HostStateHistoryEntry {
+public class HostStateHistoryEntry implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The time. */
 	private double time;
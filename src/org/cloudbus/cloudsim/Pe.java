@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
+
 import org.cloudbus.cloudsim.provisioners.PeProvisioner;
 
 /**
@@ -19,7 +21,9 @@ import org.cloudbus.cloudsim.provisioners.PeProvisioner;
  * @author Rajkumar Buyya
  * @since CloudSim Toolkit 1.0
  */
-public class Pe {
+public class Pe implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** Denotes Pe is FREE for allocation. */
 	public static final int FREE = 1;
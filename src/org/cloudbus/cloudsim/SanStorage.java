@@ -22,6 +22,8 @@ import java.util.List;
  * @since CloudSim Toolkit 1.0
  */
 public class SanStorage extends HarddriveStorage {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The bandwidth. */
 	double bandwidth;
@@ -133,6 +135,32 @@ public class SanStorage extends HarddriveStorage {
 		return result;
 	}
 
+	/**
+	 * Adds a group of files to the storage with a single seek, sending them over the network
+	 * connection as one transfer. Only the files actually stored are sent, and the combined time is
+	 * set as the transaction time of each of them.
+	 * 
+	 * @param list the files to be added
+	 * @return the time taken (in seconds) for adding the specified files, 0 if none was added
+	 */
+	@Override
+	public double addFiles(List<File> list) {
+		List<File> batch = storeFiles(list);
+		if (batch.isEmpty()) {
+			return 0.0;
+		}
+
+		int totalSize = getTotalSize(batch);
+		double time = getBatchWriteTime(totalSize);
+		time += networkLatency;
+		time += totalSize * bandwidth;
+		for (File file : batch) {
+			file.setTransactionTime(time);
+		}
+
+		return time;
+	}
+
 	/**
 	 * Removes a file from the storage. The time taken (in seconds) for deleting the file can also
 	 * be found using {@link gridsim.datagrid.File#getTransactionTime()}.
@@ -0,0 +1,446 @@
+package org.cloudbus.cloudsim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * The state history of a host or a VM, stored column by column in primitive arrays instead of as
+ * one {@link HostStateHistoryEntry} or {@link VmStateHistoryEntry} object per entry. Each entry
+ * holds a time, the allocated and requested MIPS and a flag: whether the host is active, or
+ * whether the VM is in migration.
+ * <p>
+ * How much of the history is kept is set by the retention of the store:
+ * <ul>
+ * <li><b>capacity</b>: the number of entries held in memory; 0 keeps every entry in memory, which
+ * is the default;
+ * <li><b>interval</b>: if positive, the history is downsampled so that only the last entry of every
+ * interval of that length is kept, as an entry added at the same time as the last one replaces it;
+ * <li><b>spill directory</b>: if set, the oldest entries are written to a file in that directory
+ * when the memory is full, and are still read back through {@link #getTime(int)} and the other
+ * getters. Otherwise the oldest entry is dropped, so that the store keeps the last
+ * <tt>capacity</tt> entries.
+ * </ul>
+ * Hosts and VMs take the retention set with
+ * {@link #setDefaultRetention(int, double, java.io.File)} when they are created.
+ *
+ * @see HostDynamicWorkload#getStateHistory()
+ * @see Vm#getStateHistory()
+ */
+public class StateHistory implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The size in bytes of an entry in the spill file. */
+	private static final int ENTRY_SIZE = 3 * 8 + 1;
+
+	/** The number of entries read at once from the spill file. */
+	private static final int READ_BLOCK = 1024;
+
+	/** The initial size of the arrays of an unbounded store. */
+	private static final int INITIAL_SIZE = 16;
+
+	/** The capacity of the stores created from now on. */
+	private static int defaultCapacity;
+
+	/** The downsampling interval of the stores created from now on. */
+	private static double defaultInterval;
+
+	/** The spill directory of the stores created from now on. */
+	private static java.io.File defaultSpillDirectory;
+
+	/** The number of entries held in memory, or 0 if unbounded. */
+	private final int capacity;
+
+	/** The downsampling interval, or 0 if every time is kept. */
+	private final double interval;
+
+	/** The directory of the spill file, or <tt>null</tt> if old entries are dropped. */
+	private final java.io.File spillDirectory;
+
+	/** The times of the entries in memory, as a circular buffer. */
+	private double[] times;
+
+	/** The allocated MIPS of the entries in memory. */
+	private double[] allocatedMips;
+
+	/** The requested MIPS of the entries in memory. */
+	private double[] requestedMips;
+
+	/** The flags of the entries in memory. */
+	private boolean[] flags;
+
+	/** The position in the arrays of the oldest entry in memory. */
+	private int first;
+
+	/** The number of entries in memory. */
+	private int count;
+
+	/**
+	 * The spill file, created when the memory is first full. A deserialized store writes the
+	 * spilled entries to a spill file of its own.
+	 */
+	private transient java.io.File spillFile;
+
+	/** The number of entries in the spill file. */
+	private int spilled;
+
+	/** The entries of the spill file read last, or <tt>null</tt>. */
+	private transient ByteBuffer readBlock;
+
+	/** The index of the first entry in {@link #readBlock}. */
+	private transient int readBlockFirst;
+
+	/**
+	 * Sets the retention of the stores created from now on.
+	 *
+	 * @param capacity the number of entries held in memory, or 0 to keep every entry in memory
+	 * @param interval the downsampling interval, or 0 to keep every time
+	 * @param spillDirectory the directory to write old entries to, or <tt>null</tt> to drop them
+	 */
+	public static void setDefaultRetention(int capacity, double interval, java.io.File spillDirectory) {
+		if (capacity < 0 || interval < 0) {
+			throw new IllegalArgumentException("Capacity and interval cannot be negative");
+		}
+		defaultCapacity = capacity;
+		defaultInterval = interval;
+		defaultSpillDirectory = spillDirectory;
+	}
+
+	/**
+	 * Instantiates a new store with the default retention.
+	 */
+	public StateHistory() {
+		this(defaultCapacity, defaultInterval, defaultSpillDirectory);
+	}
+
+	/**
+	 * Instantiates a new store.
+	 *
+	 * @param capacity the number of entries held in memory, or 0 to keep every entry in memory
+	 * @param interval the downsampling interval, or 0 to keep every time
+	 * @param spillDirectory the directory to write old entries to, or <tt>null</tt> to drop them
+	 */
+	public StateHistory(int capacity, double interval, java.io.File spillDirectory) {
+		if (capacity < 0 || interval < 0) {
+			throw new IllegalArgumentException("Capacity and interval cannot be negative");
+		}
+		if (capacity == 1 && spillDirectory != null) {
+			throw new IllegalArgumentException("A spilling store must hold at least two entries");
+		}
+		this.capacity = capacity;
+		this.interval = interval;
+		this.spillDirectory = spillDirectory;
+		allocate(capacity > 0 ? capacity : INITIAL_SIZE);
+	}
+
+	/**
+	 * Adds an entry. An entry at the same time as the last one, or in the same downsampling
+	 * interval, replaces it.
+	 *
+	 * @param time the time
+	 * @param allocated the allocated mips
+	 * @param requested the requested mips
+	 * @param flag whether the host is active, or whether the VM is in migration
+	 */
+	public void add(double time, double allocated, double requested, boolean flag) {
+		if (count > 0) {
+			int last = position(count - 1);
+			if (times[last] == time
+					|| interval > 0 && Math.floor(times[last] / interval) == Math.floor(time / interval)) {
+				set(last, time, allocated, requested, flag);
+				return;
+			}
+		}
+		if (count == times.length) {
+			if (capacity == 0) {
+				grow();
+			} else if (spillDirectory != null) {
+				spill(count - 1);
+			} else {
+				first = position(1);
+				count--;
+			}
+		}
+		set(position(count), time, allocated, requested, flag);
+		count++;
+	}
+
+	/**
+	 * Gets the number of entries, including the spilled ones.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return spilled + count;
+	}
+
+	/**
+	 * Gets the time of an entry.
+	 *
+	 * @param index the index of the entry, the oldest first
+	 * @return the time
+	 */
+	public double getTime(int index) {
+		if (index < spilled) {
+			int offset = spilledOffset(index);
+			return readBlock.getDouble(offset);
+		}
+		return times[memoryPosition(index)];
+	}
+
+	/**
+	 * Gets the allocated MIPS of an entry.
+	 *
+	 * @param index the index of the entry, the oldest first
+	 * @return the allocated mips
+	 */
+	public double getAllocatedMips(int index) {
+		if (index < spilled) {
+			int offset = spilledOffset(index);
+			return readBlock.getDouble(offset + 8);
+		}
+		return allocatedMips[memoryPosition(index)];
+	}
+
+	/**
+	 * Gets the requested MIPS of an entry.
+	 *
+	 * @param index the index of the entry, the oldest first
+	 * @return the requested mips
+	 */
+	public double getRequestedMips(int index) {
+		if (index < spilled) {
+			int offset = spilledOffset(index);
+			return readBlock.getDouble(offset + 16);
+		}
+		return requestedMips[memoryPosition(index)];
+	}
+
+	/**
+	 * Gets the flag of an entry: whether the host is active, or whether the VM is in migration.
+	 *
+	 * @param index the index of the entry, the oldest first
+	 * @return the flag
+	 */
+	public boolean getFlag(int index) {
+		if (index < spilled) {
+			int offset = spilledOffset(index);
+			return readBlock.get(offset + 24) != 0;
+		}
+		return flags[memoryPosition(index)];
+	}
+
+	/**
+	 * Gets the spill file, if any entry has been spilled.
+	 *
+	 * @return the spill file, or <tt>null</tt>
+	 */
+	public java.io.File getSpillFile() {
+		return spillFile;
+	}
+
+	/**
+	 * Sets the columns of an entry in memory.
+	 *
+	 * @param position the position in the arrays
+	 * @param time the time
+	 * @param allocated the allocated mips
+	 * @param requested the requested mips
+	 * @param flag the flag
+	 */
+	private void set(int position, double time, double allocated, double requested, boolean flag) {
+		times[position] = time;
+		allocatedMips[position] = allocated;
+		requestedMips[position] = requested;
+		flags[position] = flag;
+	}
+
+	/**
+	 * Gets the position in the arrays of an entry in memory.
+	 *
+	 * @param offset the offset of the entry from the oldest entry in memory
+	 * @return the position
+	 */
+	private int position(int offset) {
+		int position = first + offset;
+		return position < times.length ? position : position - times.length;
+	}
+
+	/**
+	 * Gets the position in the arrays of an entry, checking that it is in memory.
+	 *
+	 * @param index the index of the entry
+	 * @return the position
+	 */
+	private int memoryPosition(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		return position(index - spilled);
+	}
+
+	/**
+	 * Doubles the arrays of an unbounded store.
+	 */
+	private void grow() {
+		double[] oldTimes = times;
+		double[] oldAllocated = allocatedMips;
+		double[] oldRequested = requestedMips;
+		boolean[] oldFlags = flags;
+		int oldFirst = first;
+		allocate(oldTimes.length * 2);
+		for (int i = 0; i < count; i++) {
+			int position = (oldFirst + i) % oldTimes.length;
+			set(i, oldTimes[position], oldAllocated[position], oldRequested[position], oldFlags[position]);
+		}
+		first = 0;
+	}
+
+	/**
+	 * Allocates empty arrays.
+	 *
+	 * @param size the size of the arrays
+	 */
+	private void allocate(int size) {
+		times = new double[size];
+		allocatedMips = new double[size];
+		requestedMips = new double[size];
+		flags = new boolean[size];
+		first = 0;
+	}
+
+	/**
+	 * Appends the oldest entries in memory to the spill file and removes them from memory.
+	 *
+	 * @param entries the number of entries to spill
+	 */
+	private void spill(int entries) {
+		try {
+			if (spillFile == null) {
+				spillFile = java.io.File.createTempFile("history", ".bin", spillDirectory);
+				spillFile.deleteOnExit();
+			}
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+					spillFile,
+					true)));
+			try {
+				for (int i = 0; i < entries; i++) {
+					int position = position(i);
+					output.writeDouble(times[position]);
+					output.writeDouble(allocatedMips[position]);
+					output.writeDouble(requestedMips[position]);
+					output.writeBoolean(flags[position]);
+				}
+			} finally {
+				output.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write state history to " + spillDirectory, e);
+		}
+		first = position(entries);
+		count -= entries;
+		spilled += entries;
+	}
+
+	/**
+	 * Serializes the store, with the spilled entries.
+	 *
+	 * @param output the output stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		if (spilled > 0) {
+			InputStream input = new FileInputStream(spillFile);
+			try {
+				copy(input, output, (long) spilled * ENTRY_SIZE);
+			} finally {
+				input.close();
+			}
+		}
+	}
+
+	/**
+	 * Deserializes the store, writing the spilled entries to a new spill file.
+	 *
+	 * @param input the input stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException if a class cannot be found
+	 */
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		if (spilled > 0) {
+			spillFile = java.io.File.createTempFile("history", ".bin", spillDirectory);
+			spillFile.deleteOnExit();
+			OutputStream output = new FileOutputStream(spillFile);
+			try {
+				copy(input, output, (long) spilled * ENTRY_SIZE);
+			} finally {
+				output.close();
+			}
+		}
+	}
+
+	/**
+	 * Copies bytes from a stream to another.
+	 *
+	 * @param input the input stream
+	 * @param output the output stream
+	 * @param length the number of bytes to copy
+	 * @throws IOException if the input stream ends before
+	 */
+	private static void copy(InputStream input, OutputStream output, long length) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (length > 0) {
+			int read = input.read(buffer, 0, (int) Math.min(buffer.length, length));
+			if (read < 0) {
+				throw new IOException("Truncated state history");
+			}
+			output.write(buffer, 0, read);
+			length -= read;
+		}
+	}
+
+	/**
+	 * Gets a spilled entry, reading the block of entries around it from the spill file if needed.
+	 *
+	 * @param index the index of the entry
+	 * @return the offset of the entry in {@link #readBlock}
+	 */
+	private int spilledOffset(int index) {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (readBlock == null || index < readBlockFirst
+				|| index >= readBlockFirst + readBlock.capacity() / ENTRY_SIZE) {
+			int blockFirst = index - index % READ_BLOCK;
+			int entries = Math.min(READ_BLOCK, spilled - blockFirst);
+			byte[] bytes = new byte[entries * ENTRY_SIZE];
+			try {
+				RandomAccessFile file = new RandomAccessFile(spillFile, "r");
+				try {
+					file.seek((long) blockFirst * ENTRY_SIZE);
+					file.readFully(bytes);
+				} finally {
+					file.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read state history from " + spillFile, e);
+			}
+			readBlock = ByteBuffer.wrap(bytes);
+			readBlockFirst = blockFirst;
+		}
+		return (index - readBlockFirst) * ENTRY_SIZE;
+	}
+
+}
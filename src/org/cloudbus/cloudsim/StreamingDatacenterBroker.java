@@ -0,0 +1,178 @@
+package org.cloudbus.cloudsim;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.util.WorkloadFileStreamReader;
+
+/**
+ * A broker that feeds the jobs of a workload trace to the created VMs lazily, as the simulation
+ * clock reaches their submit times, instead of submitting the whole trace at once. Jobs are pulled
+ * from a {@link WorkloadFileStreamReader} and only the jobs due at the current time are held in
+ * memory.
+ * <p>
+ * Submit times are taken relative to the first job of the trace; the first job is submitted as soon
+ * as the VMs have been created. Jobs are distributed to the created VMs in a round-robin fashion.
+ * Returned cloudlets are counted but, unless {@link #setKeepReceivedCloudlets(boolean)} is set, not
+ * kept in {@link #getCloudletReceivedList()}, so that the heap used by the broker does not depend on
+ * the length of the trace. Cloudlets submitted through {@link #submitCloudletList(java.util.List)}
+ * are handled as in {@link DatacenterBroker}.
+ *
+ * @see WorkloadFileStreamReader
+ */
+public class StreamingDatacenterBroker extends DatacenterBroker {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The trace the jobs are pulled from. */
+	private final WorkloadFileStreamReader workload;
+
+	/** The trace submit time of the first job, or -1 if no job has been read yet. */
+	private long traceStartTime = -1;
+
+	/** The simulation time at which the first job was submitted. */
+	private double simulationStartTime;
+
+	/** The index of the VM the next job is sent to. */
+	private int workloadVmIndex;
+
+	/** Whether an event to release the next job is already scheduled. */
+	private boolean releaseScheduled;
+
+	/** Whether returned cloudlets are kept in the received list. */
+	private boolean keepReceivedCloudlets;
+
+	/** The number of cloudlets returned to the broker. */
+	private long cloudletsReceived;
+
+	/**
+	 * Instantiates a new streaming datacenter broker.
+	 *
+	 * @param name the name
+	 * @param workload the trace to pull jobs from
+	 * @throws Exception the exception
+	 */
+	public StreamingDatacenterBroker(String name, WorkloadFileStreamReader workload) throws Exception {
+		super(name);
+		this.workload = workload;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.DatacenterBroker#submitCloudlets()
+	 */
+	@Override
+	protected void submitCloudlets() {
+		super.submitCloudlets();
+		if (traceStartTime < 0) {
+			simulationStartTime = CloudSim.clock();
+		}
+		releaseDueJobs();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.cloudbus.cloudsim.DatacenterBroker#processOtherEvent(org.cloudbus.cloudsim.core.SimEvent)
+	 */
+	@Override
+	protected void processOtherEvent(SimEvent ev) {
+		if (ev != null && ev.getTag() == CloudSimTags.VM_BROKER_EVENT) {
+			releaseScheduled = false;
+			releaseDueJobs();
+			return;
+		}
+		super.processOtherEvent(ev);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.cloudbus.cloudsim.DatacenterBroker#processCloudletReturn(org.cloudbus.cloudsim.core.SimEvent)
+	 */
+	@Override
+	protected void processCloudletReturn(SimEvent ev) {
+		Cloudlet cloudlet = (Cloudlet) ev.getData();
+		cloudletsReceived++;
+		if (isKeepReceivedCloudlets()) {
+			getCloudletReceivedList().add(cloudlet);
+		}
+		Log.printLine(CloudSim.clock() + ": " + getName() + ": Cloudlet " + cloudlet.getCloudletId()
+				+ " received");
+		cloudletsSubmitted--;
+		if (workload.hasNext()) { // the trace has jobs not yet due
+			return;
+		}
+		if (getCloudletList().size() == 0 && cloudletsSubmitted == 0) { // all cloudlets executed
+			Log.printLine(CloudSim.clock() + ": " + getName() + ": All Cloudlets executed. Finishing...");
+			clearDatacenters();
+			finishExecution();
+		} else if (getCloudletList().size() > 0 && cloudletsSubmitted == 0) {
+			// all the cloudlets sent finished. It means that some bount
+			// cloudlet is waiting its VM be created
+			clearDatacenters();
+			createVmsInDatacenter(0);
+		}
+	}
+
+	/**
+	 * Submits all the jobs of the trace whose submit time has been reached, and schedules an event
+	 * for the submit time of the next one.
+	 */
+	protected void releaseDueJobs() {
+		if (getVmsCreatedList().isEmpty()) {
+			return;
+		}
+		while (workload.hasNext()) {
+			long submitTime = workload.peekSubmitTime();
+			if (traceStartTime < 0) {
+				traceStartTime = submitTime;
+			}
+			double delay = simulationStartTime + (submitTime - traceStartTime) - CloudSim.clock();
+			if (delay > 0) {
+				if (!releaseScheduled) {
+					schedule(getId(), delay, CloudSimTags.VM_BROKER_EVENT);
+					releaseScheduled = true;
+				}
+				return;
+			}
+
+			Cloudlet cloudlet = workload.next();
+			Vm vm = getVmsCreatedList().get(workloadVmIndex);
+			workloadVmIndex = (workloadVmIndex + 1) % getVmsCreatedList().size();
+			cloudlet.setUserId(getId());
+			cloudlet.setVmId(vm.getId());
+			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+			cloudletsSubmitted++;
+		}
+	}
+
+	/**
+	 * Gets the number of cloudlets returned to the broker.
+	 *
+	 * @return the number of cloudlets received
+	 */
+	public long getCloudletsReceived() {
+		return cloudletsReceived;
+	}
+
+	/**
+	 * Checks whether returned cloudlets are kept in the received list.
+	 *
+	 * @return true, if returned cloudlets are kept
+	 */
+	public boolean isKeepReceivedCloudlets() {
+		return keepReceivedCloudlets;
+	}
+
+	/**
+	 * Sets whether returned cloudlets are kept in the received list. Keeping them makes the heap
+	 * used by the broker grow with the length of the trace.
+	 *
+	 * @param keepReceivedCloudlets whether returned cloudlets are kept
+	 */
+	public void setKeepReceivedCloudlets(boolean keepReceivedCloudlets) {
+		this.keepReceivedCloudlets = keepReceivedCloudlets;
+	}
+
+}
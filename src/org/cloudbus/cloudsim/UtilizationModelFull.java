@@ -16,6 +16,8 @@ package org.cloudbus.cloudsim;
  * @since CloudSim Toolkit 2.0
  */
 public class UtilizationModelFull implements UtilizationModel {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/*
 	 * (non-Javadoc)
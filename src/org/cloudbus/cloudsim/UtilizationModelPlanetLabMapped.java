@@ -0,0 +1,112 @@
+package org.cloudbus.cloudsim;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ShortBuffer;
+
+/**
+ * A PlanetLab utilization model that reads its samples straight from a memory-mapped
+ * {@link UtilizationTraceStore}, instead of holding a private copy as
+ * {@link UtilizationModelPlanetLabInMemory} does. It returns the same utilization as
+ * {@link UtilizationModelPlanetLabInMemory} for the same trace file. When serialized, the model
+ * holds a private copy of its samples.
+ */
+public class UtilizationModelPlanetLabMapped implements UtilizationModel {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The scheduling interval. */
+	private double schedulingInterval;
+
+	/** The view of the trace in the store, in percent. */
+	private transient ShortBuffer data;
+
+	/**
+	 * Instantiates a new utilization model over a trace of a PlanetLab directory.
+	 *
+	 * @param inputFolder the PlanetLab directory
+	 * @param traceName the name of the trace file in the directory
+	 * @param schedulingInterval the scheduling interval
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public UtilizationModelPlanetLabMapped(String inputFolder, String traceName, double schedulingInterval)
+			throws IOException {
+		this(UtilizationTraceStore.getInstance(inputFolder).getTrace(traceName), schedulingInterval);
+	}
+
+	/**
+	 * Instantiates a new utilization model over a trace view.
+	 *
+	 * @param data the view of the trace, in percent
+	 * @param schedulingInterval the scheduling interval
+	 */
+	public UtilizationModelPlanetLabMapped(ShortBuffer data, double schedulingInterval) {
+		this.data = data;
+		setSchedulingInterval(schedulingInterval);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see cloudsim.power.UtilizationModel#getUtilization(double)
+	 */
+	@Override
+	public double getUtilization(double time) {
+		if (time % getSchedulingInterval() == 0) {
+			return data.get((int) time / (int) getSchedulingInterval()) / 100.0;
+		}
+		int time1 = (int) Math.floor(time / getSchedulingInterval());
+		int time2 = (int) Math.ceil(time / getSchedulingInterval());
+		double utilization1 = data.get(time1) / 100.0;
+		double utilization2 = data.get(time2) / 100.0;
+		double delta = (utilization2 - utilization1) / ((time2 - time1) * getSchedulingInterval());
+		double utilization = utilization1 + delta * (time - time1 * getSchedulingInterval());
+		return utilization;
+	}
+
+	/**
+	 * Sets the scheduling interval.
+	 *
+	 * @param schedulingInterval the new scheduling interval
+	 */
+	public void setSchedulingInterval(double schedulingInterval) {
+		this.schedulingInterval = schedulingInterval;
+	}
+
+	/**
+	 * Gets the scheduling interval.
+	 *
+	 * @return the scheduling interval
+	 */
+	public double getSchedulingInterval() {
+		return schedulingInterval;
+	}
+
+	/**
+	 * Serializes the model, with a copy of its samples.
+	 * 
+	 * @param output the output stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		ShortBuffer copy = data.duplicate();
+		copy.rewind();
+		short[] samples = new short[copy.remaining()];
+		copy.get(samples);
+		output.writeObject(samples);
+	}
+
+	/**
+	 * Deserializes the model over its copy of the samples.
+	 * 
+	 * @param input the input stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException if a class cannot be found
+	 */
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		data = ShortBuffer.wrap((short[]) input.readObject()).asReadOnlyBuffer();
+	}
+
+}
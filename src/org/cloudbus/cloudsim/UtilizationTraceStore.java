@@ -0,0 +1,278 @@
+package org.cloudbus.cloudsim;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only store of PlanetLab utilization traces, shared by all the
+ * {@link UtilizationModelPlanetLabMapped} instances created from the same directory.
+ * <p>
+ * The text files of a PlanetLab directory are converted once into a binary file, which holds a
+ * header, a table with the names of the traces and then the samples of every trace, one trace after
+ * the other, as 16-bit integers in percent. The binary file is memory-mapped read-only and every
+ * model reads its samples directly from a view of the mapping, so the traces are read from disk
+ * and held in memory only once, however many VMs use them.
+ * <p>
+ * The binary file is written next to the directory, with the {@link #FILE_EXTENSION} extension,
+ * and is rebuilt whenever any of the trace files is newer than it.
+ *
+ * @see UtilizationModelPlanetLabMapped
+ */
+public class UtilizationTraceStore {
+
+	/** The extension of the binary trace file. */
+	public static final String FILE_EXTENSION = ".traces";
+
+	/** The magic number at the start of a binary trace file. */
+	private static final int MAGIC = 0x504C5453;
+
+	/** The version of the binary trace file format. */
+	private static final int VERSION = 1;
+
+	/** The stores opened so far, by canonical path of the binary file. */
+	private static final Map<String, UtilizationTraceStore> stores = new HashMap<String, UtilizationTraceStore>();
+
+	/** The mapped samples of all the traces. */
+	private final ShortBuffer samples;
+
+	/** The number of samples of each trace. */
+	private final int samplesPerTrace;
+
+	/** The names of the traces, in the order they are stored. */
+	private final List<String> traceNames;
+
+	/** The index of each trace, by name. */
+	private final Map<String, Integer> traceIndex;
+
+	/**
+	 * Gets the store of the traces of a PlanetLab directory, converting the directory into a binary
+	 * file first if needed. Each trace holds 289 samples, as in
+	 * {@link UtilizationModelPlanetLabInMemory#UtilizationModelPlanetLabInMemory(String, double)}.
+	 *
+	 * @param inputFolder the PlanetLab directory
+	 * @return the store
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static UtilizationTraceStore getInstance(String inputFolder) throws IOException {
+		return getInstance(inputFolder, 289);
+	}
+
+	/**
+	 * Gets the store of the traces of a PlanetLab directory, converting the directory into a binary
+	 * file first if needed.
+	 *
+	 * @param inputFolder the PlanetLab directory
+	 * @param dataSamples number of samples of each trace
+	 * @return the store
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static synchronized UtilizationTraceStore getInstance(String inputFolder, int dataSamples)
+			throws IOException {
+		java.io.File folder = new java.io.File(inputFolder);
+		java.io.File binary = new java.io.File(folder.getCanonicalPath() + "-" + dataSamples
+				+ FILE_EXTENSION);
+		String key = binary.getCanonicalPath();
+
+		UtilizationTraceStore store = stores.get(key);
+		if (store == null) {
+			if (!binary.exists() || binary.lastModified() < lastModified(folder)) {
+				convert(folder, binary, dataSamples);
+			}
+			store = open(binary);
+			stores.put(key, store);
+		}
+		return store;
+	}
+
+	/**
+	 * Converts the text files of a PlanetLab directory into a binary trace file. The files are
+	 * read as by {@link UtilizationModelPlanetLabInMemory}: the first <tt>dataSamples - 1</tt> lines
+	 * of each file are used and the last sample repeats the one before it.
+	 *
+	 * @param inputFolder the PlanetLab directory
+	 * @param outputFile the binary file to write
+	 * @param dataSamples number of samples of each trace
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void convert(java.io.File inputFolder, java.io.File outputFile, int dataSamples)
+			throws IOException {
+		java.io.File[] files = inputFolder.listFiles();
+		if (files == null) {
+			throw new IOException("Trace directory " + inputFolder + " cannot be read");
+		}
+		Arrays.sort(files);
+
+		List<java.io.File> traces = new ArrayList<java.io.File>();
+		for (java.io.File file : files) {
+			if (file.isFile()) {
+				traces.add(file);
+			}
+		}
+
+		java.io.File tmp = new java.io.File(outputFile.getPath() + ".tmp");
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(traces.size());
+			output.writeInt(dataSamples);
+			for (java.io.File trace : traces) {
+				output.writeUTF(trace.getName());
+			}
+			for (java.io.File trace : traces) {
+				BufferedReader input = new BufferedReader(new FileReader(trace));
+				try {
+					int value = 0;
+					for (int i = 0; i < dataSamples - 1; i++) {
+						value = Integer.valueOf(input.readLine());
+						if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+							throw new IOException("Utilization " + value + " in " + trace + " is out of range");
+						}
+						output.writeShort(value);
+					}
+					output.writeShort(value);
+				} finally {
+					input.close();
+				}
+			}
+		} finally {
+			output.close();
+		}
+
+		if (outputFile.exists() && !outputFile.delete() || !tmp.renameTo(outputFile)) {
+			throw new IOException("Cannot write trace file " + outputFile);
+		}
+	}
+
+	/**
+	 * Opens and maps a binary trace file.
+	 *
+	 * @param binary the binary trace file
+	 * @return the store
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static UtilizationTraceStore open(java.io.File binary) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(binary, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new UtilizationTraceStore(buffer, binary);
+		} finally {
+			// the mapping stays valid after the channel is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * Instantiates a new store over a mapped binary trace file.
+	 *
+	 * @param buffer the mapped file
+	 * @param binary the binary trace file, for error messages
+	 * @throws IOException if the file is not a valid binary trace file
+	 */
+	private UtilizationTraceStore(ByteBuffer buffer, java.io.File binary) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException(binary + " is not a trace file of version " + VERSION);
+		}
+		int traceCount = buffer.getInt();
+		samplesPerTrace = buffer.getInt();
+
+		List<String> names = new ArrayList<String>(traceCount);
+		traceIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < traceCount; i++) {
+			int length = buffer.getShort() & 0xFFFF;
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			String name = new String(bytes, "UTF-8");
+			names.add(name);
+			traceIndex.put(name, i);
+		}
+		traceNames = Collections.unmodifiableList(names);
+
+		if (buffer.remaining() < (long) traceCount * samplesPerTrace * 2) {
+			throw new IOException(binary + " is truncated");
+		}
+		samples = buffer.slice().asShortBuffer();
+	}
+
+	/**
+	 * Gets the last modification time of the files of a directory.
+	 *
+	 * @param folder the directory
+	 * @return the latest modification time
+	 */
+	private static long lastModified(java.io.File folder) {
+		long lastModified = folder.lastModified();
+		java.io.File[] files = folder.listFiles();
+		if (files != null) {
+			for (java.io.File file : files) {
+				lastModified = Math.max(lastModified, file.lastModified());
+			}
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Gets a read-only view of the samples of a trace. The view shares the mapped memory of the
+	 * store; no samples are copied.
+	 *
+	 * @param traceName the name of the trace file
+	 * @return the samples of the trace, in percent
+	 * @throws IllegalArgumentException if there is no such trace
+	 */
+	public ShortBuffer getTrace(String traceName) {
+		Integer index = traceIndex.get(traceName);
+		if (index == null) {
+			throw new IllegalArgumentException("Unknown trace " + traceName);
+		}
+		return getTrace(index);
+	}
+
+	/**
+	 * Gets a read-only view of the samples of a trace. The view shares the mapped memory of the
+	 * store; no samples are copied.
+	 *
+	 * @param index the index of the trace
+	 * @return the samples of the trace, in percent
+	 */
+	public ShortBuffer getTrace(int index) {
+		ShortBuffer view = samples.duplicate();
+		view.position(index * samplesPerTrace);
+		view.limit((index + 1) * samplesPerTrace);
+		return view.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the names of the traces, in the order they are stored.
+	 *
+	 * @return the trace names
+	 */
+	public List<String> getTraceNames() {
+		return traceNames;
+	}
+
+	/**
+	 * Gets the number of samples of each trace.
+	 *
+	 * @return the number of samples
+	 */
+	public int getSamplesPerTrace() {
+		return samplesPerTrace;
+	}
+
+}
@@ -7,8 +7,9 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -20,7 +21,9 @@ import java.util.List;
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
  */
-public class Vm {
+public class Vm implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The id. */
 	private int id;
@@ -74,7 +77,10 @@ public class Vm {
 	private boolean beingInstantiated;
 
 	/** The mips allocation history. */
-	private final List<VmStateHistoryEntry> stateHistory = new LinkedList<VmStateHistoryEntry>();
+	private final StateHistory stateHistory = new StateHistory();
+
+	/** The state history, as a list of entries, created when first used. */
+	private transient List<VmStateHistoryEntry> stateHistoryEntries;
 
 	/**
 	 * Creates a new VMCharacteristics object.
@@ -262,6 +268,29 @@ public class Vm {
 		return userId + "-" + vmId;
 	}
 
+	/**
+	 * Gets the unique numeric key of the VM, made of the user id and the VM id as
+	 * {@link #getUidKey(int, int)} does.
+	 * 
+	 * @return the uid key
+	 */
+	public long getUidKey() {
+		return getUidKey(getUserId(), getId());
+	}
+
+	/**
+	 * Generate the unique numeric key of a VM, with the user id in the upper 32 bits and the VM id
+	 * in the lower 32 bits. Unlike {@link #getUid(int, int)}, it does not allocate a string, so it
+	 * can be used for lookups on every cloudlet event.
+	 * 
+	 * @param userId the user id
+	 * @param vmId the vm id
+	 * @return the uid key
+	 */
+	public static long getUidKey(int userId, int vmId) {
+		return ((long) userId << 32) | (vmId & 0xFFFFFFFFL);
+	}
+
 	/**
 	 * Gets the id.
 	 * 
@@ -570,11 +599,40 @@ public class Vm {
 	}
 
 	/**
-	 * Gets the state history.
+	 * Gets the state history. The list is a read-only view of {@link #getStateHistoryStore()}: every
+	 * call to <tt>get</tt> creates a new entry, so the entries are not kept in memory.
 	 * 
 	 * @return the state history
 	 */
 	public List<VmStateHistoryEntry> getStateHistory() {
+		if (stateHistoryEntries == null) { // not serialized
+			stateHistoryEntries = new AbstractList<VmStateHistoryEntry>() {
+
+				@Override
+				public VmStateHistoryEntry get(int index) {
+					return new VmStateHistoryEntry(
+							stateHistory.getTime(index),
+							stateHistory.getAllocatedMips(index),
+							stateHistory.getRequestedMips(index),
+							stateHistory.getFlag(index));
+				}
+
+				@Override
+				public int size() {
+					return stateHistory.size();
+				}
+
+			};
+		}
+		return stateHistoryEntries;
+	}
+
+	/**
+	 * Gets the store of the state history.
+	 * 
+	 * @return the state history store
+	 */
+	public StateHistory getStateHistoryStore() {
 		return stateHistory;
 	}
 
@@ -591,19 +649,7 @@ public class Vm {
 			double allocatedMips,
 			double requestedMips,
 			boolean isInMigration) {
-		VmStateHistoryEntry newState = new VmStateHistoryEntry(
-				time,
-				allocatedMips,
-				requestedMips,
-				isInMigration);
-		if (!getStateHistory().isEmpty()) {
-			VmStateHistoryEntry previousState = getStateHistory().get(getStateHistory().size() - 1);
-			if (previousState.getTime() == time) {
-				getStateHistory().set(getStateHistory().size() - 1, newState);
-				return;
-			}
-		}
-		getStateHistory().add(newState);
+		stateHistory.add(time, allocatedMips, requestedMips, isInMigration);
 	}
 
 }
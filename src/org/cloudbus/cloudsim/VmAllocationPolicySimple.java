@@ -14,26 +14,44 @@ import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.util.IndexedMaxHeap;
+import org.cloudbus.cloudsim.util.LongHashMap;
 
 /**
  * VmAllocationPolicySimple is an VmAllocationPolicy that chooses, as the host for a VM, the host
  * with less PEs in use.
+ * <p>
+ * The hosts are kept in a max-heap keyed by their free PEs, so the host for a VM is found in
+ * O(log n) rather than by scanning every host. Among hosts with as many free PEs, the first one in
+ * the host list is chosen. The free PEs of a host must therefore be changed through
+ * {@link #setFreePes(int, int)}, or the whole list replaced with {@link #setFreePes(List)}.
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
  */
 public class VmAllocationPolicySimple extends VmAllocationPolicy {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The vm table. */
 	private Map<String, Host> vmTable;
 
+	/** The hosts of the VMs by {@link Vm#getUidKey()}, kept in step with the vm table. */
+	private final LongHashMap<Host> hostTable = new LongHashMap<Host>();
+
 	/** The used pes. */
 	private Map<String, Integer> usedPes;
 
 	/** The free pes. */
 	private List<Integer> freePes;
 
+	/** The hosts by free pes, kept in step with the free pes. */
+	private IndexedMaxHeap freePesHeap;
+
+	/** The index of each host in the host list. */
+	private Map<Host, Integer> hostIndex;
+
 	/**
 	 * Creates the new VmAllocationPolicySimple object.
 	 * 
@@ -44,11 +62,15 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	public VmAllocationPolicySimple(List<? extends Host> list) {
 		super(list);
 
-		setFreePes(new ArrayList<Integer>());
+		List<Integer> freePes = new ArrayList<Integer>();
+		hostIndex = new HashMap<Host, Integer>();
 		for (Host host : getHostList()) {
-			getFreePes().add(host.getNumberOfPes());
-
+			freePes.add(host.getNumberOfPes());
+			if (!hostIndex.containsKey(host)) {
+				hostIndex.put(host, freePes.size() - 1);
+			}
 		}
+		setFreePes(freePes);
 
 		setVmTable(new HashMap<String, Host>());
 		setUsedPes(new HashMap<String, Integer>());
@@ -66,40 +88,36 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	public boolean allocateHostForVm(Vm vm) {
 		int requiredPes = vm.getNumberOfPes();
 		boolean result = false;
-		int tries = 0;
-		List<Integer> freePesTmp = new ArrayList<Integer>();
-		for (Integer freePes : getFreePes()) {
-			freePesTmp.add(freePes);
-		}
 
 		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not created
-			do {// we still trying until we find a host or until we try all of them
-				int moreFree = Integer.MIN_VALUE;
-				int idx = -1;
-
+			List<Integer> tried = null;
+			// we still trying until we find a host or until we try all of them
+			while (!freePesHeap.isEmpty()) {
 				// we want the host with less pes in use
-				for (int i = 0; i < freePesTmp.size(); i++) {
-					if (freePesTmp.get(i) > moreFree) {
-						moreFree = freePesTmp.get(i);
-						idx = i;
-					}
-				}
+				int idx = freePesHeap.peek();
 
 				Host host = getHostList().get(idx);
 				result = host.vmCreate(vm);
 
 				if (result) { // if vm were succesfully created in the host
 					getVmTable().put(vm.getUid(), host);
+					hostTable.put(vm.getUidKey(), host);
 					getUsedPes().put(vm.getUid(), requiredPes);
-					getFreePes().set(idx, getFreePes().get(idx) - requiredPes);
-					result = true;
+					setFreePes(idx, getFreePes().get(idx) - requiredPes);
 					break;
-				} else {
-					freePesTmp.set(idx, Integer.MIN_VALUE);
 				}
-				tries++;
-			} while (!result && tries < getFreePes().size());
-
+				// leave the host out until the vm is placed
+				freePesHeap.remove(idx);
+				if (tried == null) {
+					tried = new ArrayList<Integer>();
+				}
+				tried.add(idx);
+			}
+			if (tried != null) {
+				for (int idx : tried) {
+					freePesHeap.add(idx);
+				}
+			}
 		}
 
 		return result;
@@ -115,11 +133,12 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	@Override
 	public void deallocateHostForVm(Vm vm) {
 		Host host = getVmTable().remove(vm.getUid());
-		int idx = getHostList().indexOf(host);
+		hostTable.remove(vm.getUidKey());
 		int pes = getUsedPes().remove(vm.getUid());
 		if (host != null) {
+			int idx = getHostIndex(host);
 			host.vmDestroy(vm);
-			getFreePes().set(idx, getFreePes().get(idx) + pes);
+			setFreePes(idx, getFreePes().get(idx) + pes);
 		}
 	}
 
@@ -133,7 +152,7 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	 */
 	@Override
 	public Host getHost(Vm vm) {
-		return getVmTable().get(vm.getUid());
+		return getHost(vm.getId(), vm.getUserId());
 	}
 
 	/**
@@ -147,7 +166,11 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	 */
 	@Override
 	public Host getHost(int vmId, int userId) {
-		return getVmTable().get(Vm.getUid(userId, vmId));
+		Host host = hostTable.get(Vm.getUidKey(userId, vmId));
+		if (host == null) { // the vm table may have been changed directly
+			host = getVmTable().get(Vm.getUid(userId, vmId));
+		}
+		return host;
 	}
 
 	/**
@@ -202,6 +225,33 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	 */
 	protected void setFreePes(List<Integer> freePes) {
 		this.freePes = freePes;
+		int[] keys = new int[freePes.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = freePes.get(i);
+		}
+		freePesHeap = new IndexedMaxHeap(keys);
+	}
+
+	/**
+	 * Sets the free pes of a host.
+	 * 
+	 * @param idx the index of the host in the host list
+	 * @param pes the new free pes
+	 */
+	protected void setFreePes(int idx, int pes) {
+		getFreePes().set(idx, pes);
+		freePesHeap.setKey(idx, pes);
+	}
+
+	/**
+	 * Gets the index of a host in the host list.
+	 * 
+	 * @param host the host
+	 * @return the index, or -1 if the host is not in the list
+	 */
+	protected int getHostIndex(Host host) {
+		Integer idx = hostIndex.get(host);
+		return idx != null ? idx : getHostList().indexOf(host);
 	}
 
 	/*
@@ -223,11 +273,12 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	public boolean allocateHostForVm(Vm vm, Host host) {
 		if (host.vmCreate(vm)) { // if vm has been succesfully created in the host
 			getVmTable().put(vm.getUid(), host);
+			hostTable.put(vm.getUidKey(), host);
 
 			int requiredPes = vm.getNumberOfPes();
-			int idx = getHostList().indexOf(host);
+			int idx = getHostIndex(host);
 			getUsedPes().put(vm.getUid(), requiredPes);
-			getFreePes().set(idx, getFreePes().get(idx) - requiredPes);
+			setFreePes(idx, getFreePes().get(idx) - requiredPes);
 
 			Log.formatLine(
 					"%.2f: VM #" + vm.getId() + " has been allocated to the host #" + host.getId(),
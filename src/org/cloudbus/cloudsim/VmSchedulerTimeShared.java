@@ -27,6 +27,8 @@ import org.cloudbus.cloudsim.provisioners.PeProvisioner;
  * @since CloudSim Toolkit 1.0
  */
 public class VmSchedulerTimeShared extends VmScheduler {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The mips map requested. */
 	private Map<String, List<Double>> mipsMapRequested;
@@ -25,6 +25,8 @@ import org.cloudbus.cloudsim.lists.PeList;
  * @since CloudSim Toolkit 3.0
  */
 public class VmSchedulerTimeSharedOverSubscription extends VmSchedulerTimeShared {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Instantiates a new vm scheduler time shared over subscription.
@@ -8,13 +8,17 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
+
 /**
  * The Class VmMipsAllocationHistoryEntry.
  * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.1.2
  */
-public class VmStateHistoryEntry {
+public class VmStateHistoryEntry implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The time. */
 	private double time;
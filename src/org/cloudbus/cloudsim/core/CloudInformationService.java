@@ -29,6 +29,8 @@ import org.cloudbus.cloudsim.Log;
  * @since CloudSim Toolkit 1.0
  */
 public class CloudInformationService extends SimEntity {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** For all types of hostList. */
 	private final List<Integer> resList;
@@ -119,6 +119,9 @@ public class CloudSim {
 	public static void init(int numUser, Calendar cal, boolean traceFlag) {
 		try {
 			initCommonVariable(cal, traceFlag, numUser);
+			RandomStreams.resetSequences();
+			SimulationMonitor.clearSources();
+			SimulationMonitor.startFromProperties();
 
 			// create a GIS object
 			cis = new CloudInformationService("CloudInformationService");
@@ -319,6 +322,9 @@ public class CloudSim {
 	/** The simulation clock. */
 	private static double clock;
 
+	/** The number of events processed since the simulation was initialised. */
+	private static long processedEvents;
+
 	/** Flag for checking if the simulation is running. */
 	private static boolean running;
 
@@ -335,8 +341,8 @@ public class CloudSim {
 	/** The pause at. */
 	private static long pauseAt = -1;
 
-	/** The abrupt terminate. */
-	private static boolean abruptTerminate = false;
+	/** The abrupt terminate, which may be requested by another thread, such as a GUI. */
+	private static volatile boolean abruptTerminate = false;
 
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
@@ -350,7 +356,9 @@ public class CloudSim {
 		deferred = new DeferredQueue();
 		waitPredicates = new HashMap<Integer, Predicate>();
 		clock = 0;
+		processedEvents = 0;
 		running = false;
+		abruptTerminate = false;
 	}
 
 	// The two standard predicates
@@ -372,6 +380,24 @@ public class CloudSim {
 		return clock;
 	}
 
+	/**
+	 * Gets the number of events processed since the simulation was initialised.
+	 * 
+	 * @return the number of events
+	 */
+	static long getProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * Gets the number of events in the future queue.
+	 * 
+	 * @return the size of the future queue
+	 */
+	static int getFutureQueueSize() {
+		return future == null ? 0 : future.size();
+	}
+
 	/**
 	 * Get the current number of entities in the simulation.
 	 * 
@@ -512,6 +538,13 @@ public class CloudSim {
 		
 		int entities_size = entities.size();
 
+		if (EventProfiler.isEnabled()) {
+			EventProfiler.recordTick(clock, future.size(), deferred.size());
+		}
+		if (SimulationMonitor.isEnabled()) {
+			SimulationMonitor.tick();
+		}
+
 		for (int i = 0; i < entities_size; i++) {
 			ent = entities.get(i);
 			if (ent.getState() == SimEntity.RUNNABLE) {
@@ -755,6 +788,11 @@ public class CloudSim {
 			throw new IllegalArgumentException("Past event detected.");
 		}
 		clock = e.eventTime();
+		processedEvents++;
+
+		if (EventProfiler.isEnabled()) {
+			EventProfiler.recordKernelEvent(e.getType());
+		}
 
 		// Ok now process it
 		switch (e.getType()) {
@@ -879,6 +917,13 @@ public class CloudSim {
 			runStart();
 		}
 		while (true) {
+			// a simulation resumed with runUntil may already be past its termination time
+			if (terminateAt > 0.0 && clock >= terminateAt) {
+				terminateSimulation();
+				clock = terminateAt;
+				break;
+			}
+
 			if (runClockTick() || abruptTerminate) {
 				break;
 			}
@@ -908,12 +953,89 @@ public class CloudSim {
 
 		double clock = clock();
 
+		// the last sample is taken before finishSimulation resets the clock
+		if (SimulationMonitor.isEnabled()) {
+			SimulationMonitor.publish();
+		}
 		finishSimulation();
 		runStop();
+		EventProfiler.runFinished();
 
 		return clock;
 	}
 
+	/**
+	 * Runs the simulation until the next event is later than a given time, and returns without
+	 * finishing it. The simulation can then be saved with {@link SimulationSnapshot#capture}, run
+	 * further with another call, or run to the end with {@link #startSimulation()}.
+	 * 
+	 * @param time the time to run the simulation to
+	 * @return true, if there are events left after that time; false if the simulation has nothing
+	 *         left to run before it ends
+	 */
+	public static boolean runUntil(double time) {
+		if (!running) {
+			runStart();
+		}
+		while (!abruptTerminate && future.size() > 0 && future.iterator().next().eventTime() <= time) {
+			runClockTick();
+			if (terminateAt > 0.0 && clock >= terminateAt) {
+				return false;
+			}
+		}
+		return !abruptTerminate && future.size() > 0;
+	}
+
+	/**
+	 * Copies the state of the simulation into a snapshot image.
+	 * 
+	 * @param image the image
+	 */
+	static void saveState(SimulationSnapshot.Image image) {
+		if (entities == null) {
+			throw new IllegalStateException("CloudSim has not been initialised");
+		}
+		image.cisId = cisId;
+		image.shutdownId = shutdownId;
+		image.cis = cis;
+		image.traceFlag = traceFlag;
+		image.calendar = calendar;
+		image.terminateAt = terminateAt;
+		image.minTimeBetweenEvents = minTimeBetweenEvents;
+		image.entities = entities;
+		image.entitiesByName = entitiesByName;
+		image.future = future;
+		image.deferred = deferred;
+		image.waitPredicates = waitPredicates;
+		image.clock = clock;
+		image.running = running;
+	}
+
+	/**
+	 * Replaces the state of the simulation with the one of a snapshot image.
+	 * 
+	 * @param image the image
+	 */
+	static void loadState(SimulationSnapshot.Image image) {
+		cisId = image.cisId;
+		shutdownId = image.shutdownId;
+		cis = image.cis;
+		traceFlag = image.traceFlag;
+		calendar = image.calendar;
+		terminateAt = image.terminateAt;
+		minTimeBetweenEvents = image.minTimeBetweenEvents;
+		entities = image.entities;
+		entitiesByName = image.entitiesByName;
+		future = image.future;
+		deferred = image.deferred;
+		waitPredicates = image.waitPredicates;
+		clock = image.clock;
+		running = image.running;
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
 	/**
 	 * Internal method that allows the entities to terminate. This method should <b>not</b> be used
 	 * in user simulations.
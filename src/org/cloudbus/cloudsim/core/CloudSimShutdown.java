@@ -21,6 +21,8 @@ import java.util.Calendar;
  * @since CloudSim Toolkit 1.0
  */
 public class CloudSimShutdown extends SimEntity {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The num user. */
 	private int numUser;
@@ -265,6 +265,13 @@ public class CloudSimTags {
 
 	public static final int NextCycle = BASE + 48;
 
+	/**
+	 * Denotes the submission of several Cloudlets to a datacenter in one event. The data of the
+	 * event is a list of Cloudlets, which are processed as if they had been submitted one by one
+	 * with {@link #CLOUDLET_SUBMIT}.
+	 */
+	public static final int CLOUDLET_SUBMIT_BATCH = BASE + 49;
+
 	/** Private Constructor */
 	private CloudSimTags() {
 		throw new UnsupportedOperationException("CloudSim Tags cannot be instantiated");
@@ -0,0 +1,566 @@
+package org.cloudbus.cloudsim.core;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A profiler of the simulation kernel. For each entity class and event tag it counts the events
+ * processed and keeps the total, the maximum and a log2 histogram of the wall time of the
+ * handlers; it also counts the events processed by the kernel by type and samples the sizes of the
+ * future and deferred queues over time.
+ * <p>
+ * The profiler is off by default and costs a single static flag check per event then. It is turned
+ * on with {@link #setEnabled(boolean)} or the <tt>cloudsim.profile</tt> system property. Its
+ * counters are primitive arrays updated by the simulation thread without synchronisation, one
+ * stripe of arrays per entity class. When a run finishes, the report is written to the files
+ * named after the <tt>cloudsim.profile.out</tt> system property, if it is set: a sortable report
+ * (<tt>.txt</tt>), a collapsed-stack file for flame graph tools (<tt>.collapsed</tt>) and the
+ * queue sizes over time (<tt>.queues.csv</tt>).
+ * <p>
+ * Tags are named after the <tt>public static final int</tt> fields of the classes given to
+ * {@link #registerTagNames(Class)}; {@link CloudSimTags} is registered by default.
+ */
+public final class EventProfiler {
+
+	/** The sort orders of the report. */
+	public enum SortKey {
+		/** Total handler time, largest first. */
+		TIME,
+		/** Number of events, largest first. */
+		COUNT,
+		/** Mean handler time, largest first. */
+		MEAN,
+		/** Maximum handler time, largest first. */
+		MAX,
+		/** Entity class and tag name. */
+		NAME
+	}
+
+	/** The number of buckets of the handler time histograms, one per power of two nanoseconds. */
+	private static final int BUCKETS = 64;
+
+	/** The maximum number of queue samples kept; the samples are thinned out when it is reached. */
+	private static final int MAX_SAMPLES = 4096;
+
+	/** Whether the profiler is on. */
+	private static boolean enabled = Boolean.getBoolean("cloudsim.profile");
+
+	/** The statistics of each entity class. */
+	private static Map<Class<?>, ClassStats> classStats = new HashMap<Class<?>, ClassStats>();
+
+	/** The entity class of the last event, to skip the map lookup for runs of events. */
+	private static Class<?> lastClass;
+
+	/** The statistics of {@link #lastClass}. */
+	private static ClassStats lastStats;
+
+	/** The number of events processed by the kernel, by {@link SimEvent} type. */
+	private static long[] kernelEvents = new long[4];
+
+	/** The names of the tags. */
+	private static final Map<Integer, String> tagNames = new HashMap<Integer, String>();
+
+	/** The wall time of the first profiled tick, in nanoseconds. */
+	private static long startNanos = -1;
+
+	/** The wall time at which the run finished, in nanoseconds. */
+	private static long endNanos = -1;
+
+	/** The number of ticks. */
+	private static long ticks;
+
+	/** The number of ticks between queue samples, always a power of two. */
+	private static long sampleEvery = 1;
+
+	/** The queue samples: simulation clock, wall time, events handled, future and deferred sizes. */
+	private static double[] sampleClock = new double[MAX_SAMPLES];
+
+	private static long[] sampleNanos = new long[MAX_SAMPLES];
+
+	private static long[] sampleEvents = new long[MAX_SAMPLES];
+
+	private static int[] sampleFuture = new int[MAX_SAMPLES];
+
+	private static int[] sampleDeferred = new int[MAX_SAMPLES];
+
+	/** The number of queue samples. */
+	private static int samples;
+
+	/** The total number of events handled by entities. */
+	private static long handledEvents;
+
+	static {
+		registerTagNames(CloudSimTags.class);
+	}
+
+	/**
+	 * The handler statistics of an entity class, indexed by a slot per tag.
+	 */
+	private static class ClassStats {
+
+		/** The entity class. */
+		final Class<?> type;
+
+		/** The open-addressing table from tag to slot plus one; 0 is an empty entry. */
+		int[] table = new int[16];
+
+		/** The tag of each slot. */
+		int[] tags = new int[8];
+
+		long[] counts = new long[8];
+
+		long[] nanos = new long[8];
+
+		long[] max = new long[8];
+
+		long[][] histograms = new long[8][];
+
+		/** The number of slots used. */
+		int slots;
+
+		ClassStats(Class<?> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Gets the slot of a tag, adding one if needed.
+		 */
+		int slot(int tag) {
+			int mask = table.length - 1;
+			int i = mix(tag) & mask;
+			while (true) {
+				int entry = table[i];
+				if (entry == 0) {
+					break;
+				}
+				if (tags[entry - 1] == tag) {
+					return entry - 1;
+				}
+				i = (i + 1) & mask;
+			}
+			if (slots == tags.length) {
+				int length = slots * 2;
+				tags = copyOf(tags, length);
+				counts = copyOf(counts, length);
+				nanos = copyOf(nanos, length);
+				max = copyOf(max, length);
+				long[][] grownHistograms = new long[length][];
+				System.arraycopy(histograms, 0, grownHistograms, 0, slots);
+				histograms = grownHistograms;
+			}
+			int slot = slots++;
+			tags[slot] = tag;
+			histograms[slot] = new long[BUCKETS];
+			table[i] = slot + 1;
+			if (slots * 2 > table.length) {
+				table = new int[table.length * 2];
+				mask = table.length - 1;
+				for (int s = 0; s < slots; s++) {
+					int j = mix(tags[s]) & mask;
+					while (table[j] != 0) {
+						j = (j + 1) & mask;
+					}
+					table[j] = s + 1;
+				}
+			}
+			return slot;
+		}
+
+		private static int mix(int tag) {
+			int h = tag * 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
+
+		private static int[] copyOf(int[] array, int length) {
+			int[] copy = new int[length];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			return copy;
+		}
+
+		private static long[] copyOf(long[] array, int length) {
+			long[] copy = new long[length];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			return copy;
+		}
+
+	}
+
+	/**
+	 * A row of the report.
+	 */
+	private static class Row {
+
+		String entity;
+
+		String tag;
+
+		long count;
+
+		long nanos;
+
+		long max;
+
+		long[] histogram;
+
+		double mean() {
+			return count == 0 ? 0 : (double) nanos / count;
+		}
+
+	}
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private EventProfiler() {
+	}
+
+	/**
+	 * Turns the profiler on or off. The statistics gathered so far are kept.
+	 *
+	 * @param enabled whether to profile
+	 */
+	public static void setEnabled(boolean enabled) {
+		EventProfiler.enabled = enabled;
+	}
+
+	/**
+	 * Checks whether the profiler is on.
+	 *
+	 * @return true, if the profiler is on
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Forgets the statistics gathered so far.
+	 */
+	public static void reset() {
+		classStats = new HashMap<Class<?>, ClassStats>();
+		lastClass = null;
+		lastStats = null;
+		kernelEvents = new long[4];
+		startNanos = -1;
+		endNanos = -1;
+		ticks = 0;
+		sampleEvery = 1;
+		samples = 0;
+		handledEvents = 0;
+	}
+
+	/**
+	 * Names the tags after the <tt>public static final int</tt> fields of a class, such as a class
+	 * of tag constants. A tag with several names gets all of them.
+	 *
+	 * @param constants the class
+	 */
+	public static synchronized void registerTagNames(Class<?> constants) {
+		for (Field field : constants.getDeclaredFields()) {
+			int modifiers = field.getModifiers();
+			if (!Modifier.isPublic(modifiers) || !Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)
+					|| field.getType() != int.class) {
+				continue;
+			}
+			try {
+				int tag = field.getInt(null);
+				String name = tagNames.get(tag);
+				if (name == null) {
+					tagNames.put(tag, field.getName());
+				} else if (!("|" + name + "|").contains("|" + field.getName() + "|")) {
+					tagNames.put(tag, name + "|" + field.getName());
+				}
+			} catch (IllegalAccessException e) {
+				// public fields are accessible
+			}
+		}
+	}
+
+	/**
+	 * Records the processing of an event by an entity.
+	 *
+	 * @param entity the entity
+	 * @param tag the tag of the event
+	 * @param nanos the wall time of the handler, in nanoseconds
+	 */
+	static void recordHandler(SimEntity entity, int tag, long nanos) {
+		Class<?> type = entity.getClass();
+		ClassStats stats = lastStats;
+		if (type != lastClass) {
+			stats = classStats.get(type);
+			if (stats == null) {
+				stats = new ClassStats(type);
+				classStats.put(type, stats);
+			}
+			lastClass = type;
+			lastStats = stats;
+		}
+		int slot = stats.slot(tag);
+		stats.counts[slot]++;
+		stats.nanos[slot] += nanos;
+		if (nanos > stats.max[slot]) {
+			stats.max[slot] = nanos;
+		}
+		stats.histograms[slot][nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos) - 1]++;
+		handledEvents++;
+	}
+
+	/**
+	 * Records an event processed by the kernel.
+	 *
+	 * @param type the {@link SimEvent} type of the event
+	 */
+	static void recordKernelEvent(int type) {
+		if (type >= 0 && type < kernelEvents.length) {
+			kernelEvents[type]++;
+		}
+	}
+
+	/**
+	 * Records a tick of the simulation, sampling the queue sizes every so many ticks.
+	 *
+	 * @param clock the simulation clock
+	 * @param futureSize the size of the future queue
+	 * @param deferredSize the size of the deferred queue
+	 */
+	static void recordTick(double clock, int futureSize, int deferredSize) {
+		long now = System.nanoTime();
+		if (startNanos < 0) {
+			startNanos = now;
+		}
+		if ((ticks++ & (sampleEvery - 1)) != 0) {
+			return;
+		}
+		if (samples == MAX_SAMPLES) {
+			// keep every other sample and sample half as often
+			for (int i = 0; i < MAX_SAMPLES / 2; i++) {
+				sampleClock[i] = sampleClock[2 * i];
+				sampleNanos[i] = sampleNanos[2 * i];
+				sampleEvents[i] = sampleEvents[2 * i];
+				sampleFuture[i] = sampleFuture[2 * i];
+				sampleDeferred[i] = sampleDeferred[2 * i];
+			}
+			samples = MAX_SAMPLES / 2;
+			sampleEvery *= 2;
+			if (((ticks - 1) & (sampleEvery - 1)) != 0) {
+				return;
+			}
+		}
+		sampleClock[samples] = clock;
+		sampleNanos[samples] = now - startNanos;
+		sampleEvents[samples] = handledEvents;
+		sampleFuture[samples] = futureSize;
+		sampleDeferred[samples] = deferredSize;
+		samples++;
+	}
+
+	/**
+	 * Marks the end of a run and writes the report to the files named after the
+	 * <tt>cloudsim.profile.out</tt> system property, if it is set. Only the first call after the
+	 * profiler was started or reset has an effect.
+	 */
+	public static void runFinished() {
+		if (!enabled || endNanos >= 0 || startNanos < 0) {
+			return;
+		}
+		endNanos = System.nanoTime();
+		String out = System.getProperty("cloudsim.profile.out");
+		if (out == null) {
+			return;
+		}
+		try {
+			writeReport(new FileWriter(out + ".txt"), SortKey.TIME);
+			writeCollapsedStacks(new FileWriter(out + ".collapsed"));
+			writeQueueSizes(new FileWriter(out + ".queues.csv"));
+		} catch (IOException e) {
+			System.err.println("Could not write the event profile: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Gets the wall time profiled, up to the end of the run or up to now.
+	 *
+	 * @return the wall time, in seconds
+	 */
+	public static double getWallTime() {
+		if (startNanos < 0) {
+			return 0;
+		}
+		return ((endNanos >= 0 ? endNanos : System.nanoTime()) - startNanos) / 1e9;
+	}
+
+	/**
+	 * Gets the number of events handled by entities.
+	 *
+	 * @return the number of events
+	 */
+	public static long getHandledEvents() {
+		return handledEvents;
+	}
+
+	/**
+	 * Writes the report: the totals, the events processed by the kernel and a table with a row per
+	 * entity class and tag. The writer is closed.
+	 *
+	 * @param writer the writer
+	 * @param sortKey the order of the rows
+	 */
+	public static void writeReport(Writer writer, SortKey sortKey) {
+		PrintWriter out = new PrintWriter(writer);
+		double wallTime = getWallTime();
+		long handlerNanos = 0;
+		List<Row> rows = getRows(sortKey);
+		for (Row row : rows) {
+			handlerNanos += row.nanos;
+		}
+		out.println("Events handled:   " + handledEvents);
+		out.println("Wall time:        " + format(wallTime) + " s");
+		out.println("Handler time:     " + format(handlerNanos / 1e9) + " s");
+		out.println("Events/s:         " + format(wallTime > 0 ? handledEvents / wallTime : 0));
+		out.println("Ticks:            " + ticks);
+		out.println("Kernel events:    SEND=" + kernelEvents[SimEvent.SEND] + " HOLD_DONE="
+				+ kernelEvents[SimEvent.HOLD_DONE] + " CREATE=" + kernelEvents[SimEvent.CREATE]);
+		out.println();
+		out.println(String.format(Locale.ROOT, "%-32s %-32s %12s %12s %10s %10s %10s %10s", "ENTITY", "TAG",
+				"COUNT", "TOTAL_MS", "MEAN_US", "P50_US", "P99_US", "MAX_US"));
+		for (Row row : rows) {
+			out.println(String.format(Locale.ROOT, "%-32s %-32s %12d %12.3f %10.3f %10.3f %10.3f %10.3f",
+					row.entity, row.tag, row.count, row.nanos / 1e6, row.mean() / 1e3,
+					percentile(row.histogram, row.count, 0.5) / 1e3, percentile(row.histogram, row.count, 0.99) / 1e3,
+					row.max / 1e3));
+		}
+		out.close();
+	}
+
+	/**
+	 * Writes the handler time as collapsed stacks, one line per entity class and tag with the total
+	 * time in microseconds, which flame graph tools read directly. The writer is closed.
+	 *
+	 * @param writer the writer
+	 */
+	public static void writeCollapsedStacks(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		for (Row row : getRows(SortKey.NAME)) {
+			out.println("CloudSim;" + row.entity + ";" + row.tag.replace(' ', '_') + " " + row.nanos / 1000);
+		}
+		out.close();
+	}
+
+	/**
+	 * Writes the queue samples as CSV, with the events handled per second of wall time since the
+	 * previous sample. The writer is closed.
+	 *
+	 * @param writer the writer
+	 */
+	public static void writeQueueSizes(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		out.println("clock,wall_s,events,future,deferred,events_per_s");
+		for (int i = 0; i < samples; i++) {
+			double rate = 0;
+			if (i > 0 && sampleNanos[i] > sampleNanos[i - 1]) {
+				rate = (sampleEvents[i] - sampleEvents[i - 1]) / ((sampleNanos[i] - sampleNanos[i - 1]) / 1e9);
+			}
+			out.println(format(sampleClock[i]) + "," + format(sampleNanos[i] / 1e9) + "," + sampleEvents[i] + ","
+					+ sampleFuture[i] + "," + sampleDeferred[i] + "," + format(rate));
+		}
+		out.close();
+	}
+
+	/**
+	 * Gets the rows of the report.
+	 *
+	 * @param sortKey the order of the rows
+	 * @return the rows
+	 */
+	private static List<Row> getRows(final SortKey sortKey) {
+		List<Row> rows = new ArrayList<Row>();
+		for (ClassStats stats : classStats.values()) {
+			for (int slot = 0; slot < stats.slots; slot++) {
+				Row row = new Row();
+				row.entity = stats.type.getSimpleName().length() > 0 ? stats.type.getSimpleName() : stats.type
+						.getName();
+				row.tag = getTagName(stats.tags[slot]);
+				row.count = stats.counts[slot];
+				row.nanos = stats.nanos[slot];
+				row.max = stats.max[slot];
+				row.histogram = stats.histograms[slot];
+				rows.add(row);
+			}
+		}
+		Collections.sort(rows, new Comparator<Row>() {
+
+			@Override
+			public int compare(Row a, Row b) {
+				switch (sortKey) {
+					case COUNT:
+						return compareDescending(a.count, b.count, a, b);
+					case MEAN:
+						return compareDescending(a.mean(), b.mean(), a, b);
+					case MAX:
+						return compareDescending(a.max, b.max, a, b);
+					case NAME:
+						return compareNames(a, b);
+					default:
+						return compareDescending(a.nanos, b.nanos, a, b);
+				}
+			}
+
+			private int compareDescending(double x, double y, Row a, Row b) {
+				int result = Double.compare(y, x);
+				return result != 0 ? result : compareNames(a, b);
+			}
+
+			private int compareNames(Row a, Row b) {
+				int result = a.entity.compareTo(b.entity);
+				return result != 0 ? result : a.tag.compareTo(b.tag);
+			}
+		});
+		return rows;
+	}
+
+	/**
+	 * Gets the name of a tag.
+	 *
+	 * @param tag the tag
+	 * @return the registered name and value, or the value alone
+	 */
+	private static synchronized String getTagName(int tag) {
+		String name = tagNames.get(tag);
+		return name == null ? String.valueOf(tag) : name + "(" + tag + ")";
+	}
+
+	/**
+	 * Estimates a percentile from a log2 histogram, as the upper bound of its bucket.
+	 *
+	 * @param histogram the histogram
+	 * @param count the number of values
+	 * @param quantile the quantile, between 0 and 1
+	 * @return the estimate, in nanoseconds
+	 */
+	private static double percentile(long[] histogram, long count, double quantile) {
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			seen += histogram[i];
+			if (seen >= rank && histogram[i] > 0) {
+				return Math.pow(2, i + 1);
+			}
+		}
+		return 0;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+}
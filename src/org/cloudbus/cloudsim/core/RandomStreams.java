@@ -0,0 +1,123 @@
+package org.cloudbus.cloudsim.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.util.SplitMixRandom;
+
+/**
+ * The factory of the random number streams of a simulation. Every stream is derived from a master
+ * seed and a name only, so an entity, an edge or a distribution that asks for its stream by name
+ * gets the same numbers whatever the order in which the streams are created and whatever the
+ * thread that draws from them. Runs with the same master seed are therefore identical, sequential
+ * or parallel, and no generator is shared between entities.
+ * <p>
+ * The master seed is 0 by default, or the value of the <tt>cloudsim.seed</tt> system property. It
+ * should be set before the scenario is built, as streams already created keep their seed. The
+ * unnamed streams are numbered from 0 again by every {@link CloudSim#init(int, java.util.Calendar,
+ * boolean)}, so that the simulations run one after the other in a JVM draw the same numbers.
+ */
+public final class RandomStreams {
+
+	/** The master seed. */
+	private static long masterSeed = Long.getLong("cloudsim.seed", 0L);
+
+	/** The number of unnamed streams created so far for each prefix. */
+	private static Map<String, Integer> sequences = new HashMap<String, Integer>();
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private RandomStreams() {
+	}
+
+	/**
+	 * Sets the master seed and forgets the unnamed streams created so far, so that the next ones
+	 * are numbered from 0 again.
+	 *
+	 * @param seed the master seed
+	 */
+	public static synchronized void setMasterSeed(long seed) {
+		masterSeed = seed;
+		sequences = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Forgets the unnamed streams created so far, so that the next ones are numbered from 0 again.
+	 */
+	static synchronized void resetSequences() {
+		sequences = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Gets the master seed.
+	 *
+	 * @return the master seed
+	 */
+	public static synchronized long getMasterSeed() {
+		return masterSeed;
+	}
+
+	/**
+	 * Creates the stream of a name. Two calls with the same name and master seed return generators
+	 * with the same sequence.
+	 *
+	 * @param name the name, such as the name of an entity
+	 * @return a new generator, to be used by a single thread
+	 */
+	public static synchronized SplitMixRandom stream(String name) {
+		return new SplitMixRandom(SplitMixRandom.mix64(masterSeed ^ SplitMixRandom.mix64(hash(name))));
+	}
+
+	/**
+	 * Creates the next unnamed stream of a prefix, which is the stream named after the prefix and
+	 * the number of unnamed streams of the prefix created before. It is meant for objects with no
+	 * name of their own, such as distributions, and is reproducible as long as they are created in
+	 * the same order.
+	 *
+	 * @param prefix the prefix, such as the name of the class of the object
+	 * @return a new generator, to be used by a single thread
+	 */
+	public static synchronized SplitMixRandom next(String prefix) {
+		Integer sequence = sequences.get(prefix);
+		int n = sequence == null ? 0 : sequence;
+		sequences.put(prefix, n + 1);
+		return stream(prefix + "#" + n);
+	}
+
+	/**
+	 * Gets a 64-bit FNV-1a hash of a string.
+	 *
+	 * @param s the string
+	 * @return the hash
+	 */
+	private static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Saves the state of the factory in a snapshot image.
+	 *
+	 * @param image the image
+	 */
+	static synchronized void saveState(SimulationSnapshot.Image image) {
+		image.randomMasterSeed = masterSeed;
+		image.randomSequences = new HashMap<String, Integer>(sequences);
+	}
+
+	/**
+	 * Replaces the state of the factory with the one of a snapshot image.
+	 *
+	 * @param image the image
+	 */
+	static synchronized void loadState(SimulationSnapshot.Image image) {
+		masterSeed = image.randomMasterSeed;
+		sequences = new HashMap<String, Integer>(image.randomSequences);
+	}
+
+}
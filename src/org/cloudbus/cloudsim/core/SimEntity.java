@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
@@ -28,7 +30,9 @@ import org.cloudbus.cloudsim.core.predicates.Predicate;
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  */
-public abstract class SimEntity implements Cloneable {
+public abstract class SimEntity implements Cloneable, Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The name. */
 	private String name;
@@ -403,7 +407,13 @@ public abstract class SimEntity implements Cloneable {
 		SimEvent ev = evbuf != null ? evbuf : getNextEvent();
 
 		while (ev != null) {
-			processEvent(ev);
+			if (EventProfiler.isEnabled()) {
+				long start = System.nanoTime();
+				processEvent(ev);
+				EventProfiler.recordHandler(this, ev.getTag(), System.nanoTime() - start);
+			} else {
+				processEvent(ev);
+			}
 			if (state != RUNNABLE) {
 				break;
 			}
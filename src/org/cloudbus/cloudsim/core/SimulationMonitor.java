@@ -0,0 +1,472 @@
+package org.cloudbus.cloudsim.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes live gauges of a running simulation over JMX and, optionally, a local HTTP endpoint,
+ * so that stalls and memory blow-ups can be seen while a long simulation runs.
+ * <p>
+ * The gauges are sampled by the simulation thread itself, between two events, every so many
+ * milliseconds of wall time, and published as an immutable sample through a volatile reference;
+ * the JMX and HTTP threads only read the last sample, so the simulation never waits for them and
+ * they never see a half-updated entity. The kernel gauges are the simulation clock, the simulated
+ * seconds per wall second, the events processed per second, the size of the future queue and the
+ * heap in use. Other modules add their own gauges with {@link #addSource(Source)}. The age of the
+ * last sample is computed when it is read, so a stalled simulation shows as a growing age.
+ * <p>
+ * The monitor is off by default. It is turned on with {@link #start(long)}, or when CloudSim is
+ * initialised if the <tt>cloudsim.monitor</tt> system property is set; the HTTP endpoint is
+ * started with {@link #startHttpServer(int)}, or with the <tt>cloudsim.monitor.port</tt> property.
+ * The endpoint listens on the loopback interface only and serves every gauge as a
+ * <tt>name{object="..."} value</tt> line.
+ */
+public final class SimulationMonitor {
+
+	/**
+	 * A set of gauges, published as an MBean.
+	 */
+	public interface Source {
+
+		/**
+		 * Gets the JMX object name of the gauges, such as <tt>org.fog:type=FogDevice,name=d-0</tt>.
+		 *
+		 * @return the object name
+		 */
+		String getObjectName();
+
+		/**
+		 * Samples the gauges. It is called by the simulation thread between two events.
+		 *
+		 * @param gauges the map to put the values of the gauges in, by name
+		 */
+		void sample(Map<String, Double> gauges);
+
+	}
+
+	/** The object name of the kernel gauges. */
+	public static final String KERNEL_OBJECT_NAME = "org.cloudbus.cloudsim:type=Simulation";
+
+	/** The number of ticks between two checks of the wall clock. */
+	private static final int TICKS_PER_CHECK = 256;
+
+	/** Whether the monitor is on. */
+	private static volatile boolean enabled;
+
+	/** The wall time between two samples, in nanoseconds. */
+	private static long intervalNanos;
+
+	/** The sources of gauges, by object name. */
+	private static final Map<String, Source> sources = new LinkedHashMap<String, Source>();
+
+	/** The MBeans registered, by object name. */
+	private static final Map<String, ObjectName> registered = new LinkedHashMap<String, ObjectName>();
+
+	/** The last sample: the gauges of each source, by object name. */
+	private static volatile Map<String, Map<String, Double>> sample = Collections.emptyMap();
+
+	/** The wall time of the last sample, in nanoseconds. */
+	private static volatile long sampleNanos;
+
+	/** The number of ticks since the wall clock was last checked. */
+	private static int ticks;
+
+	/** The wall time, simulation clock and number of events of the previous sample. */
+	private static long previousNanos = -1;
+
+	private static double previousClock;
+
+	private static long previousEvents;
+
+	/** The HTTP server socket, if the endpoint is started. */
+	private static ServerSocket serverSocket;
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private SimulationMonitor() {
+	}
+
+	/**
+	 * Turns the monitor on and registers the MBeans of the kernel and of the sources.
+	 *
+	 * @param intervalMillis the wall time between two samples, in milliseconds
+	 */
+	public static synchronized void start(long intervalMillis) {
+		intervalNanos = Math.max(1, intervalMillis) * 1000000L;
+		enabled = true;
+		register(KERNEL_OBJECT_NAME);
+		for (String name : sources.keySet()) {
+			register(name);
+		}
+	}
+
+	/**
+	 * Turns the monitor off, unregisters the MBeans and stops the HTTP endpoint.
+	 */
+	public static synchronized void stop() {
+		enabled = false;
+		for (String name : new ArrayList<String>(registered.keySet())) {
+			unregister(name);
+		}
+		stopHttpServer();
+	}
+
+	/**
+	 * Checks whether the monitor is on.
+	 *
+	 * @return true, if the monitor is on
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Adds a source of gauges, replacing the one with the same object name.
+	 *
+	 * @param source the source
+	 */
+	public static synchronized void addSource(Source source) {
+		if (sources.put(source.getObjectName(), source) == null && enabled) {
+			register(source.getObjectName());
+		}
+	}
+
+	/**
+	 * Removes the sources of gauges, for instance when a new simulation is initialised.
+	 */
+	public static synchronized void clearSources() {
+		for (String name : sources.keySet()) {
+			unregister(name);
+		}
+		sources.clear();
+		Map<String, Map<String, Double>> kernel = new LinkedHashMap<String, Map<String, Double>>();
+		if (sample.containsKey(KERNEL_OBJECT_NAME)) {
+			kernel.put(KERNEL_OBJECT_NAME, sample.get(KERNEL_OBJECT_NAME));
+		}
+		sample = kernel;
+	}
+
+	/**
+	 * Turns the monitor on as set by the <tt>cloudsim.monitor</tt> (sample interval in
+	 * milliseconds, or <tt>true</tt> for one second) and <tt>cloudsim.monitor.port</tt> system
+	 * properties, if it is not on yet.
+	 */
+	static synchronized void startFromProperties() {
+		String interval = System.getProperty("cloudsim.monitor");
+		if (interval != null && !enabled && !interval.equalsIgnoreCase("false")) {
+			start(interval.equalsIgnoreCase("true") ? 1000 : Long.parseLong(interval));
+		}
+		Integer port = Integer.getInteger("cloudsim.monitor.port");
+		if (port != null && serverSocket == null) {
+			if (!enabled) {
+				start(1000);
+			}
+			try {
+				startHttpServer(port);
+			} catch (IOException e) {
+				System.err.println("Could not start the metrics endpoint: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Records a tick of the simulation, sampling the gauges if the interval has elapsed. It is
+	 * called by the simulation thread.
+	 */
+	static void tick() {
+		if (++ticks < TICKS_PER_CHECK) {
+			return;
+		}
+		ticks = 0;
+		if (System.nanoTime() - sampleNanos >= intervalNanos) {
+			publish();
+		}
+	}
+
+	/**
+	 * Samples the gauges now and publishes the sample. It is called by the simulation thread, for
+	 * instance when a run finishes.
+	 */
+	public static synchronized void publish() {
+		long now = System.nanoTime();
+		double clock = CloudSim.clock();
+		long events = CloudSim.getProcessedEvents();
+		Map<String, Double> kernel = new LinkedHashMap<String, Double>();
+		kernel.put("clock", clock);
+		if (previousNanos >= 0 && now > previousNanos) {
+			double seconds = (now - previousNanos) / 1e9;
+			kernel.put("speedRatio", (clock - previousClock) / seconds);
+			kernel.put("eventsPerSecond", (events - previousEvents) / seconds);
+		} else {
+			kernel.put("speedRatio", 0.0);
+			kernel.put("eventsPerSecond", 0.0);
+		}
+		kernel.put("events", (double) events);
+		kernel.put("futureQueueSize", (double) CloudSim.getFutureQueueSize());
+		Runtime runtime = Runtime.getRuntime();
+		kernel.put("heapUsed", (double) (runtime.totalMemory() - runtime.freeMemory()));
+		kernel.put("heapMax", (double) runtime.maxMemory());
+		previousNanos = now;
+		previousClock = clock;
+		previousEvents = events;
+
+		Map<String, Map<String, Double>> next = new LinkedHashMap<String, Map<String, Double>>();
+		next.put(KERNEL_OBJECT_NAME, Collections.unmodifiableMap(kernel));
+		for (Map.Entry<String, Source> entry : sources.entrySet()) {
+			Map<String, Double> gauges = new LinkedHashMap<String, Double>();
+			entry.getValue().sample(gauges);
+			next.put(entry.getKey(), Collections.unmodifiableMap(gauges));
+		}
+		sampleNanos = now;
+		sample = Collections.unmodifiableMap(next);
+	}
+
+	/**
+	 * Gets the last sample.
+	 *
+	 * @return the gauges of each source, by object name
+	 */
+	public static Map<String, Map<String, Double>> getSample() {
+		return sample;
+	}
+
+	/**
+	 * Gets the age of the last sample, which grows when the simulation thread is stalled.
+	 *
+	 * @return the age, in seconds, or -1 if nothing was sampled yet
+	 */
+	public static double getSampleAge() {
+		return sample.isEmpty() ? -1 : (System.nanoTime() - sampleNanos) / 1e9;
+	}
+
+	/**
+	 * Starts the HTTP endpoint on the loopback interface. It serves the last sample to any request.
+	 *
+	 * @param port the port, or 0 for any free port
+	 * @return the port the endpoint listens on
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static synchronized int startHttpServer(int port) throws IOException {
+		if (serverSocket != null) {
+			return serverSocket.getLocalPort();
+		}
+		final ServerSocket socket = new ServerSocket(port, 8, InetAddress.getByName(null));
+		serverSocket = socket;
+		Thread thread = new Thread("CloudSim metrics endpoint") {
+
+			@Override
+			public void run() {
+				while (!socket.isClosed()) {
+					try {
+						serve(socket.accept());
+					} catch (IOException e) {
+						// the socket was closed, or the client went away
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * Stops the HTTP endpoint.
+	 */
+	public static synchronized void stopHttpServer() {
+		if (serverSocket != null) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+			serverSocket = null;
+		}
+	}
+
+	/**
+	 * Answers a request of the HTTP endpoint with the last sample.
+	 *
+	 * @param client the client socket
+	 * @throws IOException if the client cannot be answered
+	 */
+	private static void serve(Socket client) throws IOException {
+		try {
+			client.setSoTimeout(5000);
+			InputStream in = client.getInputStream();
+			// read the request head up to its empty line; it is ignored
+			int lineLength = 0;
+			int c;
+			while ((c = in.read()) >= 0) {
+				if (c == '\n') {
+					if (lineLength == 0) {
+						break;
+					}
+					lineLength = 0;
+				} else if (c != '\r') {
+					lineLength++;
+				}
+			}
+			byte[] body = format().getBytes("UTF-8");
+			OutputStream out = client.getOutputStream();
+			out.write(("HTTP/1.0 200 OK\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: " + body.length
+					+ "\r\nConnection: close\r\n\r\n").getBytes("UTF-8"));
+			out.write(body);
+			out.flush();
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Formats the last sample as text, one gauge per line.
+	 *
+	 * @return the text
+	 */
+	private static String format() {
+		StringBuilder text = new StringBuilder();
+		text.append("sampleAge{object=\"").append(KERNEL_OBJECT_NAME).append("\"} ")
+				.append(String.format(Locale.ROOT, "%.3f", getSampleAge())).append('\n');
+		for (Map.Entry<String, Map<String, Double>> source : sample.entrySet()) {
+			for (Map.Entry<String, Double> gauge : source.getValue().entrySet()) {
+				text.append(gauge.getKey()).append("{object=\"").append(source.getKey()).append("\"} ")
+						.append(gauge.getValue()).append('\n');
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Registers the MBean of a source with the platform MBean server.
+	 *
+	 * @param name the object name of the source
+	 */
+	private static void register(String name) {
+		if (registered.containsKey(name)) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(new GaugeBean(name), objectName);
+			registered.put(name, objectName);
+		} catch (Exception e) {
+			System.err.println("Could not register the MBean " + name + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregisters the MBean of a source.
+	 *
+	 * @param name the object name of the source
+	 */
+	private static void unregister(String name) {
+		ObjectName objectName = registered.remove(name);
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (Exception e) {
+			// already unregistered
+		}
+	}
+
+	/**
+	 * A read-only MBean whose attributes are the gauges of a source in the last sample.
+	 */
+	private static class GaugeBean implements DynamicMBean {
+
+		/** The object name of the source. */
+		private final String name;
+
+		GaugeBean(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Gets the gauges of the source in the last sample, and the age of the sample.
+		 */
+		private Map<String, Double> gauges() {
+			Map<String, Double> gauges = new LinkedHashMap<String, Double>();
+			Map<String, Double> sampled = sample.get(name);
+			if (sampled != null) {
+				gauges.putAll(sampled);
+			}
+			gauges.put("sampleAge", getSampleAge());
+			return gauges;
+		}
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			Double value = gauges().get(attribute);
+			if (value == null) {
+				throw new AttributeNotFoundException(attribute);
+			}
+			return value;
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			Map<String, Double> gauges = gauges();
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				if (gauges.containsKey(attribute)) {
+					list.add(new Attribute(attribute, gauges.get(attribute)));
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (String gauge : gauges().keySet()) {
+				attributes.add(new MBeanAttributeInfo(gauge, "java.lang.Double", gauge, true, false, false));
+			}
+			return new MBeanInfo(getClass().getName(), "Gauges of " + name,
+					attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) {
+			throw new UnsupportedOperationException("The gauges are read-only");
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) {
+			throw new UnsupportedOperationException("The gauges have no operations");
+		}
+
+	}
+
+}
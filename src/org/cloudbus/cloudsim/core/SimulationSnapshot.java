@@ -0,0 +1,433 @@
+package org.cloudbus.cloudsim.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * A snapshot of a simulation at a given time, from which the simulation can be resumed or forked
+ * into several what-if variants. The snapshot holds the future and deferred event queues of
+ * {@link CloudSim}, its entities with everything they reference, and the static state of the
+ * modules given as {@link State}s when it is captured. Everything is serialized as soon as the
+ * snapshot is captured, so the simulation can go on running without changing it.
+ * <p>
+ * The snapshot is stored in a compact binary format: a header with the simulation time, followed
+ * by the compressed Java serialization of the state. Every entity, and every object an entity or an
+ * event references, must therefore be {@link Serializable}. Static state that is not given as a
+ * {@link State}, such as the one of {@link org.cloudbus.cloudsim.NetworkTopology}, is not saved.
+ * <p>
+ * A typical use runs a shared warm-up once and then each variant from its end:
+ *
+ * <pre>
+ * CloudSim.runUntil(warmUpTime);
+ * SimulationSnapshot snapshot = SimulationSnapshot.capture();
+ * List&lt;Serializable&gt; results = snapshot.fork(MyVariant.class.getName(), 8, 4);
+ * </pre>
+ *
+ * @see CloudSim#runUntil(double)
+ * @see SimulationVariant
+ */
+public final class SimulationSnapshot {
+
+	/**
+	 * The static state of a module built on CloudSim, saved in a snapshot along with the state of
+	 * CloudSim. The state is captured by the constructor of the implementation and put back by
+	 * {@link #restore()}.
+	 */
+	public interface State extends Serializable {
+
+		/**
+		 * Puts the saved state back. It is called once the state of CloudSim has been restored.
+		 */
+		void restore();
+
+	}
+
+	/**
+	 * The serialized state of a simulation.
+	 */
+	static class Image implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** The id of the cloud information service. */
+		int cisId;
+
+		/** The id of the shutdown entity. */
+		int shutdownId;
+
+		/** The cloud information service. */
+		CloudInformationService cis;
+
+		/** The trace flag. */
+		boolean traceFlag;
+
+		/** The simulation calendar. */
+		Calendar calendar;
+
+		/** The termination time. */
+		double terminateAt;
+
+		/** The minimal time between events. */
+		double minTimeBetweenEvents;
+
+		/** The entities. */
+		List<SimEntity> entities;
+
+		/** The entities by name. */
+		Map<String, SimEntity> entitiesByName;
+
+		/** The future event queue. */
+		FutureQueue future;
+
+		/** The deferred event queue. */
+		DeferredQueue deferred;
+
+		/** The wait predicates. */
+		Map<Integer, Predicate> waitPredicates;
+
+		/** The simulation clock. */
+		double clock;
+
+		/** Whether the simulation is running. */
+		boolean running;
+
+		/** The master seed of the random streams. */
+		long randomMasterSeed;
+
+		/** The number of unnamed random streams created for each prefix. */
+		Map<String, Integer> randomSequences;
+
+		/** The states of the modules. */
+		List<State> states;
+
+	}
+
+	/** The magic number at the start of a snapshot. */
+	private static final int MAGIC = 0x43534E50;
+
+	/** The version of the snapshot format. */
+	private static final int VERSION = 2;
+
+	/** The size of the header of a snapshot. */
+	private static final int HEADER_SIZE = 4 + 4 + 8;
+
+	/** The snapshot, header included. */
+	private final byte[] data;
+
+	/** The simulation time of the snapshot. */
+	private final double clock;
+
+	/**
+	 * Instantiates a snapshot from its binary form.
+	 *
+	 * @param data the snapshot, header included
+	 * @throws IOException if the data is not a snapshot
+	 */
+	private SimulationSnapshot(byte[] data) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+		if (data.length < HEADER_SIZE || input.readInt() != MAGIC || input.readInt() != VERSION) {
+			throw new IOException("Not a simulation snapshot of version " + VERSION);
+		}
+		clock = input.readDouble();
+		this.data = data;
+	}
+
+	/**
+	 * Captures the current state of the simulation. It should be called between two runs of the
+	 * simulation, such as after {@link CloudSim#runUntil(double)}, and not while an entity is
+	 * processing an event.
+	 *
+	 * @param states the static states of the modules used by the simulation
+	 * @return the snapshot
+	 * @throws IOException if an entity or an event references an object that cannot be serialized
+	 */
+	public static SimulationSnapshot capture(State... states) throws IOException {
+		Image image = new Image();
+		CloudSim.saveState(image);
+		RandomStreams.saveState(image);
+		image.states = new ArrayList<State>(Arrays.asList(states));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeDouble(image.clock);
+		header.flush();
+		writeObject(image, bytes);
+		return new SimulationSnapshot(bytes.toByteArray());
+	}
+
+	/**
+	 * Replaces the current simulation with a fresh copy of the one of the snapshot. The snapshot
+	 * can be restored any number of times; each time the simulation goes on from the time of the
+	 * snapshot.
+	 *
+	 * @throws IOException if the snapshot cannot be read
+	 * @throws ClassNotFoundException if a class of the snapshot cannot be found
+	 */
+	public void restore() throws IOException, ClassNotFoundException {
+		Image image = (Image) readObject(data, HEADER_SIZE);
+		CloudSim.loadState(image);
+		RandomStreams.loadState(image);
+		for (State state : image.states) {
+			state.restore();
+		}
+	}
+
+	/**
+	 * Runs variants of the simulation in parallel, each from a copy of the snapshot. Each variant
+	 * runs in a class loader of its own, so that the static state of CloudSim and of the modules is
+	 * not shared between variants. The class path of the forks is the one of the JVM.
+	 *
+	 * @param variantClassName the name of the {@link SimulationVariant} implementation
+	 * @param count the number of variants
+	 * @param threads the number of variants run at the same time
+	 * @return the results of the variants, by index
+	 * @throws Exception if a variant fails
+	 */
+	public List<Serializable> fork(String variantClassName, int count, int threads) throws Exception {
+		String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+		URL[] classPath = new URL[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			classPath[i] = new File(entries[i]).toURI().toURL();
+		}
+		return fork(variantClassName, count, threads, classPath);
+	}
+
+	/**
+	 * Runs variants of the simulation in parallel, each from a copy of the snapshot. Each variant
+	 * runs in a class loader of its own, so that the static state of CloudSim and of the modules is
+	 * not shared between variants.
+	 *
+	 * @param variantClassName the name of the {@link SimulationVariant} implementation
+	 * @param count the number of variants
+	 * @param threads the number of variants run at the same time
+	 * @param classPath the class path of the forks, which must hold CloudSim, the modules and the
+	 *            variant
+	 * @return the results of the variants, by index
+	 * @throws Exception if a variant fails
+	 */
+	public List<Serializable> fork(
+			final String variantClassName,
+			int count,
+			int threads,
+			final URL[] classPath) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+			for (int i = 0; i < count; i++) {
+				final int index = i;
+				futures.add(executor.submit(new Callable<byte[]>() {
+
+					@Override
+					public byte[] call() throws Exception {
+						return runFork(variantClassName, index, classPath);
+					}
+				}));
+			}
+
+			List<Serializable> results = new ArrayList<Serializable>();
+			for (Future<byte[]> future : futures) {
+				try {
+					results.add((Serializable) readObject(future.get(), 0));
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs a variant in a new class loader.
+	 *
+	 * @param variantClassName the name of the variant class
+	 * @param index the index of the variant
+	 * @param classPath the class path of the fork
+	 * @return the serialized results of the variant
+	 * @throws Exception if the variant fails
+	 */
+	private byte[] runFork(String variantClassName, int index, URL[] classPath) throws Exception {
+		// the parent of the system class loader only sees the JDK; closing the loader releases the
+		// jar files of the fork once it is over
+		try (URLClassLoader loader = new URLClassLoader(
+				classPath,
+				ClassLoader.getSystemClassLoader().getParent())) {
+			Thread thread = Thread.currentThread();
+			ClassLoader contextLoader = thread.getContextClassLoader();
+			thread.setContextClassLoader(loader);
+			try {
+				Method method = loader.loadClass(SimulationSnapshot.class.getName()).getMethod(
+						"runVariant",
+						byte[].class,
+						String.class,
+						int.class);
+				return (byte[]) method.invoke(null, data, variantClassName, index);
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			} finally {
+				thread.setContextClassLoader(contextLoader);
+			}
+		}
+	}
+
+	/**
+	 * Restores a snapshot and runs a variant on it. This is the entry point of a fork, called in the
+	 * class loader of the fork by {@link #fork(String, int, int, URL[])}; it is not meant to be
+	 * called directly.
+	 *
+	 * @param data the snapshot
+	 * @param variantClassName the name of the variant class
+	 * @param index the index of the variant
+	 * @return the serialized results of the variant
+	 * @throws Exception if the variant fails
+	 */
+	public static byte[] runVariant(byte[] data, String variantClassName, int index) throws Exception {
+		new SimulationSnapshot(data).restore();
+		SimulationVariant variant = (SimulationVariant) Class.forName(
+				variantClassName,
+				true,
+				SimulationSnapshot.class.getClassLoader()).getDeclaredConstructor().newInstance();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writeObject(variant.run(index), bytes);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Gets the simulation time of the snapshot.
+	 *
+	 * @return the simulation time
+	 */
+	public double getClock() {
+		return clock;
+	}
+
+	/**
+	 * Gets the size of the snapshot in bytes.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return data.length;
+	}
+
+	/**
+	 * Gets the binary form of the snapshot. The array is not copied and must not be changed.
+	 *
+	 * @return the snapshot
+	 */
+	public byte[] toByteArray() {
+		return data;
+	}
+
+	/**
+	 * Reads a snapshot from its binary form.
+	 *
+	 * @param data the snapshot
+	 * @return the snapshot
+	 * @throws IOException if the data is not a snapshot
+	 */
+	public static SimulationSnapshot fromByteArray(byte[] data) throws IOException {
+		return new SimulationSnapshot(data);
+	}
+
+	/**
+	 * Writes the snapshot.
+	 *
+	 * @param output the output stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write(OutputStream output) throws IOException {
+		output.write(data);
+		output.flush();
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #write(OutputStream)}, up to the end of the stream.
+	 *
+	 * @param input the input stream
+	 * @return the snapshot
+	 * @throws IOException if the stream cannot be read or does not hold a snapshot
+	 */
+	public static SimulationSnapshot read(InputStream input) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return new SimulationSnapshot(bytes.toByteArray());
+	}
+
+	/**
+	 * Serializes and compresses an object.
+	 *
+	 * @param object the object
+	 * @param output the stream to write to
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void writeObject(Object object, OutputStream output) throws IOException {
+		ObjectOutputStream objects = new ObjectOutputStream(new GZIPOutputStream(output));
+		try {
+			objects.writeObject(object);
+		} finally {
+			objects.close();
+		}
+	}
+
+	/**
+	 * Decompresses and deserializes an object.
+	 *
+	 * @param data the serialized object
+	 * @param offset the offset of the object in the data
+	 * @return the object
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException if a class of the object cannot be found
+	 */
+	private static Object readObject(byte[] data, int offset) throws IOException, ClassNotFoundException {
+		ObjectInputStream objects = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(
+				data,
+				offset,
+				data.length - offset)));
+		try {
+			return objects.readObject();
+		} finally {
+			objects.close();
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package org.cloudbus.cloudsim.core;
+
+import java.io.Serializable;
+
+/**
+ * A what-if variant of a simulation forked from a {@link SimulationSnapshot}. The variant is run
+ * after the snapshot has been restored: it changes whatever the variant is about and runs the
+ * simulation to the end, usually with {@link CloudSim#startSimulation()}.
+ * <p>
+ * Implementations must be public and have a public no-argument constructor, as they are created by
+ * name in the class loader of the fork.
+ *
+ * @see SimulationSnapshot#fork(String, int, int)
+ */
+public interface SimulationVariant {
+
+	/**
+	 * Runs the variant on the restored simulation.
+	 *
+	 * @param index the index of the variant, from 0 to the number of variants minus one
+	 * @return the results of the variant, which are copied out of the fork by serialization
+	 * @throws Exception if the variant fails
+	 */
+	Serializable run(int index) throws Exception;
+
+}
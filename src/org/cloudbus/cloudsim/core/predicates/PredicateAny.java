@@ -22,6 +22,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @see Simulation
  */
 public class PredicateAny extends Predicate {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * The match function called by <code>Simulation</code>, not used directly by the user.
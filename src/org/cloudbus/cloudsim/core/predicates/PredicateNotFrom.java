@@ -19,6 +19,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @see Predicate
  */
 public class PredicateNotFrom extends Predicate {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The ids. */
 	private final int[] ids;
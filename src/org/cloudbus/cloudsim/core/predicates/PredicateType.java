@@ -19,6 +19,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @see Predicate
  */
 public class PredicateType extends Predicate {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The tags. */
 	private final int[] tags;
@@ -11,6 +11,8 @@ package org.cloudbus.cloudsim.distributions;
 
 import java.util.Random;
 
+import org.cloudbus.cloudsim.core.RandomStreams;
+
 /**
  * The Class GammaDistr.
  * 
@@ -56,7 +58,7 @@ public class GammaDistr implements ContinuousDistribution {
 			throw new IllegalArgumentException("Alpha and beta must be greater than 0.0");
 		}
 
-		numGen = new Random(System.currentTimeMillis());
+		numGen = RandomStreams.next(getClass().getName());
 		this.alpha = alpha;
 		this.beta = beta;
 	}
@@ -10,6 +10,8 @@ package org.cloudbus.cloudsim.distributions;
 
 import java.util.Random;
 
+import org.cloudbus.cloudsim.core.RandomStreams;
+
 /**
  * A random number generator based on the Uniform distribution.
  * 
@@ -34,7 +36,7 @@ public class UniformDistr implements ContinuousDistribution {
 		if (min >= max) {
 			throw new IllegalArgumentException("Maximum must be greater than the minimum.");
 		}
-		numGen = new Random();
+		numGen = RandomStreams.next(getClass().getName());
 		mag = max - min;
 		this.min = min;
 	}
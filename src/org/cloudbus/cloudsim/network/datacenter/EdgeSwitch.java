@@ -33,6 +33,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  * @since CloudSim Toolkit 3.0
  */
 public class EdgeSwitch extends Switch {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Constructor for Edge Switch We have to specify switches that are connected to its downlink
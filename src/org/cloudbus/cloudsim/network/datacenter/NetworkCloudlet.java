@@ -28,6 +28,8 @@ import org.cloudbus.cloudsim.UtilizationModel;
  * @since CloudSim Toolkit 1.0
  */
 public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	long memory;
 
@@ -17,14 +17,12 @@ import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.CloudletScheduler;
 import org.cloudbus.cloudsim.Datacenter;
 import org.cloudbus.cloudsim.DatacenterCharacteristics;
-import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Storage;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
-import org.cloudbus.cloudsim.core.SimEvent;
 
 /**
  * NetworkDatacenter class is a Datacenter whose hostList are virtualized and networked. It contains
@@ -44,6 +42,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @since CloudSim Toolkit 3.0
  */
 public class NetworkDatacenter extends Datacenter {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Allocates a new NetworkDatacenter object.
@@ -128,22 +128,19 @@ public class NetworkDatacenter extends Datacenter {
 	}
 
 	/**
-	 * Processes a Cloudlet submission.
+	 * Submits a Cloudlet to its VM, scheduling an extra event to update the stages of the network
+	 * Cloudlets. Both single and batched submissions go through it.
 	 * 
-	 * @param ev a SimEvent object
+	 * @param cl the Cloudlet
 	 * @param ack an acknowledgement
+	 * @return $false if the Cloudlet had already finished and was sent back; $true otherwise
 	 * 
-	 * @pre ev != null
+	 * @pre cl != null
 	 * @post $none
 	 */
 	@Override
-	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
-		updateCloudletProcessing();
-
+	protected boolean submitCloudlet(Cloudlet cl, boolean ack) {
 		try {
-			// gets the Cloudlet object
-			Cloudlet cl = (Cloudlet) ev.getData();
-
 			// checks whether this Cloudlet has finished or not
 			if (cl.isFinished()) {
 				String name = CloudSim.getEntityName(cl.getUserId());
@@ -170,7 +167,7 @@ public class NetworkDatacenter extends Datacenter {
 
 				sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
 
-				return;
+				return false;
 			}
 
 			// process this Cloudlet to this CloudResource
@@ -183,8 +180,8 @@ public class NetworkDatacenter extends Datacenter {
 			// time to transfer the files
 			double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
 
-			Host host = getVmAllocationPolicy().getHost(vmId, userId);
-			Vm vm = host.getVm(vmId, userId);
+			Vm vm = getVm(vmId, userId);
+			settleHost(vm.getHost());
 			CloudletScheduler scheduler = vm.getCloudletScheduler();
 			double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime);
 
@@ -214,8 +211,7 @@ public class NetworkDatacenter extends Datacenter {
 			Log.printLine(getName() + ".processCloudletSubmit(): " + "Exception error.");
 			e.printStackTrace();
 		}
-
-		checkCloudletCompletion();
+		return true;
 	}
 
 }
@@ -19,9 +19,9 @@ import org.cloudbus.cloudsim.VmScheduler;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.lists.PeList;
-import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
 import org.cloudbus.cloudsim.provisioners.RamProvisioner;
+import org.cloudbus.cloudsim.util.LongHashMap;
 
 /**
  * NetworkHost class extends Host to support simulation of networked datacenters. It executes
@@ -39,6 +39,8 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  * @since CloudSim Toolkit 3.0
  */
 public class NetworkHost extends Host {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	public List<NetworkPacket> packetTosendLocal;
 
@@ -57,6 +59,9 @@ public class NetworkHost extends Host {
 
 	public double fintime = 0;
 
+	/** The VMs of the host by id, as packets only carry the ids of their VMs. */
+	private final LongHashMap<Vm> vmsById = new LongHashMap<Vm>();
+
 	public NetworkHost(
 			int id,
 			RamProvisioner ramProvisioner,
@@ -102,6 +107,56 @@ public class NetworkHost extends Host {
 
 	}
 
+	/**
+	 * Always returns <tt>false</tt>, as packets are exchanged with other hosts on every update.
+	 * 
+	 * @return $false
+	 */
+	@Override
+	public boolean isProcessingIdle() {
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Host#addToVmList(org.cloudbus.cloudsim.Vm)
+	 */
+	@Override
+	protected void addToVmList(Vm vm) {
+		super.addToVmList(vm);
+		if (!vmsById.containsKey(vm.getId())) {
+			vmsById.put(vm.getId(), vm);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Host#removeFromVmList(org.cloudbus.cloudsim.Vm)
+	 */
+	@Override
+	protected void removeFromVmList(Vm vm) {
+		super.removeFromVmList(vm);
+		if (vmsById.get(vm.getId()) == vm) {
+			vmsById.remove(vm.getId());
+			for (Vm other : getVmList()) {
+				if (other.getId() == vm.getId()) {
+					vmsById.put(other.getId(), other);
+					break;
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Host#vmDestroyAll()
+	 */
+	@Override
+	public void vmDestroyAll() {
+		super.vmDestroyAll();
+		vmsById.clear();
+	}
+
 	/**
 	 * Receives packet and forward it to the corresponding VM for processing host.
 	 * 
@@ -113,7 +168,7 @@ public class NetworkHost extends Host {
 			hs.pkt.recievetime = CloudSim.clock();
 
 			// insertthe packet in recievedlist of VM
-			Vm vm = VmList.getById(getVmList(), hs.pkt.reciever);
+			Vm vm = vmsById.get(hs.pkt.reciever);
 			List<HostPacket> pktlist = ((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv
 					.get(hs.pkt.sender);
 
@@ -143,7 +198,7 @@ public class NetworkHost extends Host {
 				List<HostPacket> pktlist = es.getValue();
 				for (HostPacket pkt : pktlist) {
 					NetworkPacket hpkt = new NetworkPacket(getId(), pkt, vm.getId(), pkt.sender);
-					Vm vm2 = VmList.getById(this.getVmList(), hpkt.recievervmid);
+					Vm vm2 = vmsById.get(hpkt.recievervmid);
 					if (vm2 != null) {
 						packetTosendLocal.add(hpkt);
 					} else {
@@ -163,7 +218,7 @@ public class NetworkHost extends Host {
 			hs.stime = hs.rtime;
 			hs.pkt.recievetime = CloudSim.clock();
 			// insertthe packet in recievedlist
-			Vm vm = VmList.getById(getVmList(), hs.pkt.reciever);
+			Vm vm = vmsById.get(hs.pkt.reciever);
 
 			List<HostPacket> pktlist = ((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv
 					.get(hs.pkt.sender);
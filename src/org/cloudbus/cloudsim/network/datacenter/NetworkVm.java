@@ -27,6 +27,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSim Toolkit 3.0
  */
 public class NetworkVm extends Vm implements Comparable<Object> {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	public NetworkVm(
 			int id,
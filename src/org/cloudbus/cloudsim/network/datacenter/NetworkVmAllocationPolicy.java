@@ -29,6 +29,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * @since CloudSim Toolkit 1.0
  */
 public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The vm table. */
 	private Map<String, Host> vmTable;
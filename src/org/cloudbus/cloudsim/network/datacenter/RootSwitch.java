@@ -31,6 +31,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  * @since CloudSim Toolkit 3.0
  */
 public class RootSwitch extends Switch {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Constructor for Root Switch We have to specify switches that are connected to its downlink
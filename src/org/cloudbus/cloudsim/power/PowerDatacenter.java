@@ -37,6 +37,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  * @since CloudSim Toolkit 2.0
  */
 public class PowerDatacenter extends Datacenter {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The power. */
 	private double power;
@@ -174,13 +176,18 @@ public class PowerDatacenter extends Datacenter {
 		Log.printLine("\n\n--------------------------------------------------------------\n\n");
 		Log.formatLine("New resource usage for the time frame starting at %.2f:", currentTime);
 
+		startHostUpdates();
 		for (PowerHost host : this.<PowerHost> getHostList()) {
+			if (isHostSkipped(host)) {
+				continue;
+			}
 			Log.printLine();
 
 			double time = host.updateVmsProcessing(currentTime); // inform VMs to update processing
 			if (time < minTime) {
 				minTime = time;
 			}
+			hostUpdated(host);
 
 			Log.formatLine(
 					"%.2f: [Host #%d] utilization is %.2f%%",
@@ -270,6 +277,17 @@ public class PowerDatacenter extends Datacenter {
 		setCloudletSubmitted(CloudSim.clock());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Datacenter#processCloudletSubmitBatch(org.cloudbus.cloudsim.core.SimEvent,
+	 * boolean)
+	 */
+	@Override
+	protected void processCloudletSubmitBatch(SimEvent ev, boolean ack) {
+		super.processCloudletSubmitBatch(ev, ack);
+		setCloudletSubmitted(CloudSim.clock());
+	}
+
 	/**
 	 * Gets the power.
 	 * 
@@ -28,6 +28,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @since CloudSim Toolkit 2.0
  */
 public class PowerDatacenterBroker extends DatacenterBroker {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Instantiates a new power datacenter broker.
@@ -36,6 +36,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  * @since CloudSim Toolkit 2.0
  */
 public class PowerDatacenterNonPowerAware extends PowerDatacenter {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Instantiates a new datacenter.
@@ -110,7 +112,11 @@ public class PowerDatacenterNonPowerAware extends PowerDatacenter {
 
 			Log.printLine("\n\n--------------------------------------------------------------\n\n");
 
+			startHostUpdates();
 			for (PowerHost host : this.<PowerHost> getHostList()) {
+				if (isHostSkipped(host)) {
+					continue;
+				}
 				Log.formatLine("\n%.2f: Host #%d", CloudSim.clock(), host.getId());
 
 				double time = host.updateVmsProcessing(currentTime); // inform VMs to update
@@ -118,6 +124,7 @@ public class PowerDatacenterNonPowerAware extends PowerDatacenter {
 				if (time < minTime) {
 					minTime = time;
 				}
+				hostUpdated(host);
 			}
 
 			setPower(getPower() + timeframePower);
@@ -32,6 +32,8 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  * @since CloudSim Toolkit 2.0
  */
 public class PowerHost extends HostDynamicWorkload {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The power model. */
 	private PowerModel powerModel;
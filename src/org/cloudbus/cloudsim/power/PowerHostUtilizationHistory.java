@@ -33,6 +33,17 @@ import org.cloudbus.cloudsim.util.MathUtil;
  * @since CloudSim Toolkit 2.0
  */
 public class PowerHostUtilizationHistory extends PowerHost {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The last computed utilization history. */
+	private double[] cachedUtilizationHistory;
+
+	/** The VMs the cached history was computed from, in host order. */
+	private PowerVm[] cachedVms;
+
+	/** The history versions of the VMs the cached history was computed from. */
+	private long[] cachedVmHistoryVersions;
 
 	/**
 	 * Instantiates a new power host utilization history.
@@ -57,19 +68,54 @@ public class PowerHostUtilizationHistory extends PowerHost {
 	}
 
 	/**
-	 * Gets the host utilization history.
+	 * Gets the host utilization history. The history is recomputed only when the VMs of the host or
+	 * their histories have changed since the last call; otherwise a copy of the last result is
+	 * returned.
 	 * 
 	 * @return the host utilization history
 	 */
 	protected double[] getUtilizationHistory() {
-		double[] utilizationHistory = new double[PowerVm.HISTORY_LENGTH];
-		double hostMips = getTotalMips();
-		for (PowerVm vm : this.<PowerVm> getVmList()) {
-			for (int i = 0; i < vm.getUtilizationHistory().size(); i++) {
-				utilizationHistory[i] += vm.getUtilizationHistory().get(i) * vm.getMips() / hostMips;
+		List<PowerVm> vms = this.<PowerVm> getVmList();
+		if (!isCachedUtilizationHistoryValid(vms)) {
+			double[] utilizationHistory = new double[PowerVm.HISTORY_LENGTH];
+			double hostMips = getTotalMips();
+			int size = vms.size();
+			cachedVms = new PowerVm[size];
+			cachedVmHistoryVersions = new long[size];
+			int j = 0;
+			for (PowerVm vm : vms) {
+				int i = 0;
+				for (double utilization : vm.getUtilizationHistory()) {
+					utilizationHistory[i++] += utilization * vm.getMips() / hostMips;
+				}
+				cachedVms[j] = vm;
+				cachedVmHistoryVersions[j] = vm.getUtilizationHistoryVersion();
+				j++;
+			}
+			cachedUtilizationHistory = MathUtil.trimZeroTail(utilizationHistory);
+		}
+		return cachedUtilizationHistory.clone();
+	}
+
+	/**
+	 * Checks whether the cached utilization history was computed from the same VMs, in the same
+	 * order, with the same histories.
+	 * 
+	 * @param vms the current VMs of the host
+	 * @return true, if the cached history is valid
+	 */
+	private boolean isCachedUtilizationHistoryValid(List<PowerVm> vms) {
+		if (cachedUtilizationHistory == null || cachedVms.length != vms.size()) {
+			return false;
+		}
+		int j = 0;
+		for (PowerVm vm : vms) {
+			if (cachedVms[j] != vm || cachedVmHistoryVersions[j] != vm.getUtilizationHistoryVersion()) {
+				return false;
 			}
+			j++;
 		}
-		return MathUtil.trimZeroTail(utilizationHistory);
+		return true;
 	}
 
 }
@@ -32,6 +32,8 @@ import org.cloudbus.cloudsim.util.MathUtil;
  * @since CloudSim Toolkit 2.0
  */
 public class PowerVm extends Vm {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The Constant HISTORY_LENGTH. */
 	public static final int HISTORY_LENGTH = 30;
@@ -39,6 +41,9 @@ public class PowerVm extends Vm {
 	/** The utilization history. */
 	private final List<Double> utilizationHistory = new LinkedList<Double>();
 
+	/** The number of values added to the utilization history. */
+	private long utilizationHistoryVersion;
+
 	/** The previous time. */
 	private double previousTime;
 
@@ -175,6 +180,17 @@ public class PowerVm extends Vm {
 		if (getUtilizationHistory().size() > HISTORY_LENGTH) {
 			getUtilizationHistory().remove(HISTORY_LENGTH);
 		}
+		utilizationHistoryVersion++;
+	}
+
+	/**
+	 * Gets the number of values added to the utilization history, which tells whether the history
+	 * has changed since it was last read.
+	 * 
+	 * @return the utilization history version
+	 */
+	public long getUtilizationHistoryVersion() {
+		return utilizationHistoryVersion;
 	}
 
 	/**
@@ -33,6 +33,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * @since CloudSim Toolkit 3.0
  */
 public abstract class PowerVmAllocationPolicyAbstract extends VmAllocationPolicy {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The vm table. */
 	private final Map<String, Host> vmTable = new HashMap<String, Host>();
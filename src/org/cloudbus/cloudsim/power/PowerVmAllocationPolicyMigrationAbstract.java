@@ -9,12 +9,21 @@
 package org.cloudbus.cloudsim.power;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.HostDynamicWorkload;
@@ -40,13 +49,30 @@ import org.cloudbus.cloudsim.util.ExecutionTimeMeasurer;
  * @since CloudSim Toolkit 3.0
  */
 public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAllocationPolicyAbstract {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The vm selection policy. */
 	private PowerVmSelectionPolicy vmSelectionPolicy;
 
+	/** The minimum number of hosts for which candidate hosts are scored in parallel. */
+	public static final int PARALLEL_SCORING_MIN_HOSTS = 1024;
+
+	/** The threads shared by all the policies for scoring candidate hosts in parallel. */
+	private static ExecutorService scoringExecutor;
+
 	/** The saved allocation. */
 	private final List<Map<String, Object>> savedAllocation = new ArrayList<Map<String, Object>>();
 
+	/** The hosts whose allocation has been saved since the last {@link #saveAllocation()}. */
+	private final Set<Host> savedHosts = new HashSet<Host>();
+
+	/** Whether host allocations are being saved, i.e. an optimization round is in progress. */
+	private boolean savingAllocation;
+
+	/** Whether candidate hosts are scored in parallel. */
+	private boolean parallelHostScoring;
+
 	/** The utilization history. */
 	private final Map<Integer, List<Double>> utilizationHistory = new HashMap<Integer, List<Double>>();
 
@@ -146,12 +172,18 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 
 		int numberOfHosts = getHostList().size();
 
+		// the CPU utilization of the hosts does not change while the allocation is optimized, so
+		// the hosts are sorted once and scanned in a single pass
+		Iterator<PowerHost> underUtilizedHostCandidates = getHostsSortedByUtilization().iterator();
+
 		while (true) {
 			if (numberOfHosts == excludedHostsForFindingUnderUtilizedHost.size()) {
 				break;
 			}
 
-			PowerHost underUtilizedHost = getUnderUtilizedHost(excludedHostsForFindingUnderUtilizedHost);
+			PowerHost underUtilizedHost = getUnderUtilizedHost(
+					excludedHostsForFindingUnderUtilizedHost,
+					underUtilizedHostCandidates);
 			if (underUtilizedHost == null) {
 				break;
 			}
@@ -203,39 +235,197 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	}
 
 	/**
-	 * Find host for vm.
+	 * Find host for vm. The suitable hosts are scored first by the power increase the vm would cause,
+	 * which only reads the state of the hosts and is done in parallel for large datacenters if
+	 * {@link #isParallelHostScoring()} is set. The candidates are then checked for over-utilization
+	 * in order of increasing power, so that the expensive check is only made until a host passes it.
+	 * The host found is the same as when checking every host in turn: the one with the least power
+	 * increase, the first one in the host list on a tie.
 	 * 
 	 * @param vm the vm
 	 * @param excludedHosts the excluded hosts
 	 * @return the power host
 	 */
 	public PowerHost findHostForVm(Vm vm, Set<? extends Host> excludedHosts) {
-		double minPower = Double.MAX_VALUE;
-		PowerHost allocatedHost = null;
+		List<PowerHost> hostList = this.<PowerHost> getHostList();
+		PowerHost[] hosts = hostList.toArray(new PowerHost[hostList.size()]);
+		double[] powerDiffs = new double[hosts.length];
+		double[] utilizationMips = new double[hosts.length];
+
+		if (isParallelHostScoring() && hosts.length >= PARALLEL_SCORING_MIN_HOSTS) {
+			scoreHostsInParallel(vm, excludedHosts, hosts, powerDiffs, utilizationMips);
+		} else {
+			scoreHosts(vm, excludedHosts, hosts, powerDiffs, utilizationMips, 0, hosts.length);
+		}
 
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
+		int[] candidates = new int[hosts.length];
+		int size = 0;
+		for (int i = 0; i < hosts.length; i++) {
+			if (!Double.isNaN(powerDiffs[i])) {
+				candidates[size++] = i;
+			}
+		}
+
+		// min-heap of candidates ordered by power difference, then by position in the host list
+		for (int i = size / 2 - 1; i >= 0; i--) {
+			siftDown(candidates, size, i, powerDiffs);
+		}
+		while (size > 0) {
+			int best = candidates[0];
+			candidates[0] = candidates[--size];
+			siftDown(candidates, size, 0, powerDiffs);
+
+			PowerHost host = hosts[best];
+			if (utilizationMips[best] != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
 				continue;
 			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
+			return host;
+		}
+		return null;
+	}
+
+	/**
+	 * Scores a range of hosts by the power increase a vm would cause. Hosts that are excluded,
+	 * unsuitable for the vm or whose power cannot be estimated get a NaN score.
+	 * 
+	 * @param vm the vm
+	 * @param excludedHosts the excluded hosts
+	 * @param hosts the hosts
+	 * @param powerDiffs the power difference of each host, filled by this method
+	 * @param utilizationMips the MIPS utilization of each host, filled by this method
+	 * @param from the first host to score
+	 * @param to the host after the last one to score
+	 */
+	protected void scoreHosts(
+			Vm vm,
+			Set<? extends Host> excludedHosts,
+			PowerHost[] hosts,
+			double[] powerDiffs,
+			double[] utilizationMips,
+			int from,
+			int to) {
+		for (int i = from; i < to; i++) {
+			PowerHost host = hosts[i];
+			powerDiffs[i] = Double.NaN;
+			if (excludedHosts.contains(host) || !host.isSuitableForVm(vm)) {
+				continue;
+			}
+			try {
+				double hostUtilizationMips = getUtilizationOfCpuMips(host);
+				double powerAfterAllocation = getPowerAfterAllocation(host, vm, hostUtilizationMips);
+				double powerDiff = powerAfterAllocation - host.getPower();
+				if (powerAfterAllocation != -1 && powerDiff < Double.MAX_VALUE) {
+					utilizationMips[i] = hostUtilizationMips;
+					powerDiffs[i] = powerDiff;
 				}
+			} catch (Exception e) {
+			}
+		}
+	}
 
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff < minPower) {
-							minPower = powerDiff;
-							allocatedHost = host;
-						}
-					}
-				} catch (Exception e) {
+	/**
+	 * Scores the hosts by the power increase a vm would cause, splitting the hosts among the scoring
+	 * threads.
+	 * 
+	 * @param vm the vm
+	 * @param excludedHosts the excluded hosts
+	 * @param hosts the hosts
+	 * @param powerDiffs the power difference of each host, filled by this method
+	 * @param utilizationMips the MIPS utilization of each host, filled by this method
+	 */
+	private void scoreHostsInParallel(
+			final Vm vm,
+			final Set<? extends Host> excludedHosts,
+			final PowerHost[] hosts,
+			final double[] powerDiffs,
+			final double[] utilizationMips) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunk = (hosts.length + threads - 1) / threads;
+		List<Future<Object>> results = new ArrayList<Future<Object>>(threads);
+		for (int from = 0; from < hosts.length; from += chunk) {
+			final int start = from;
+			final int end = Math.min(hosts.length, from + chunk);
+			results.add(getScoringExecutor().submit(new Callable<Object>() {
+
+				@Override
+				public Object call() {
+					scoreHosts(vm, excludedHosts, hosts, powerDiffs, utilizationMips, start, end);
+					return null;
 				}
+			}));
+		}
+		try {
+			for (Future<Object> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Host scoring interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Host scoring failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Gets the threads shared by all the policies for scoring candidate hosts in parallel.
+	 * 
+	 * @return the scoring executor
+	 */
+	private static synchronized ExecutorService getScoringExecutor() {
+		if (scoringExecutor == null) {
+			scoringExecutor = Executors.newFixedThreadPool(
+					Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "host-scoring");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return scoringExecutor;
+	}
+
+	/**
+	 * Restores the heap property of a heap of host positions, ordered by power difference and then
+	 * by position.
+	 * 
+	 * @param heap the heap
+	 * @param size the size of the heap
+	 * @param i the position to sift down from
+	 * @param keys the power difference of each host
+	 */
+	private static void siftDown(int[] heap, int size, int i, double[] keys) {
+		int item = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
 			}
+			if (child + 1 < size && precedes(heap[child + 1], heap[child], keys)) {
+				child++;
+			}
+			if (!precedes(heap[child], item, keys)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
 		}
-		return allocatedHost;
+		heap[i] = item;
+	}
+
+	/**
+	 * Checks whether a host precedes another one in the candidate order.
+	 * 
+	 * @param a the position of a host
+	 * @param b the position of another host
+	 * @param keys the power difference of each host
+	 * @return true, if a precedes b
+	 */
+	private static boolean precedes(int a, int b, double[] keys) {
+		return keys[a] < keys[b] || keys[a] == keys[b] && a < b;
 	}
 
 	/**
@@ -247,6 +437,8 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 */
 	protected boolean isHostOverUtilizedAfterAllocation(PowerHost host, Vm vm) {
 		boolean isHostOverUtilizedAfterAllocation = true;
+		saveHostAllocation(vm.getHost());
+		saveHostAllocation(host);
 		if (host.vmCreate(vm)) {
 			isHostOverUtilizedAfterAllocation = isHostOverUtilized(host);
 			host.vmDestroy(vm);
@@ -298,6 +490,8 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		for (Vm vm : vmsToMigrate) {
 			PowerHost allocatedHost = findHostForVm(vm, excludedHosts);
 			if (allocatedHost != null) {
+				saveHostAllocation(vm.getHost());
+				saveHostAllocation(allocatedHost);
 				allocatedHost.vmCreate(vm);
 				Log.printLine("VM #" + vm.getId() + " allocated to host #" + allocatedHost.getId());
 
@@ -325,6 +519,8 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		for (Vm vm : vmsToMigrate) {
 			PowerHost allocatedHost = findHostForVm(vm, excludedHosts);
 			if (allocatedHost != null) {
+				saveHostAllocation(vm.getHost());
+				saveHostAllocation(allocatedHost);
 				allocatedHost.vmCreate(vm);
 				Log.printLine("VM #" + vm.getId() + " allocated to host #" + allocatedHost.getId());
 
@@ -361,6 +557,7 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 					break;
 				}
 				vmsToMigrate.add(vm);
+				saveHostAllocation(host);
 				host.vmDestroy(vm);
 				if (!isHostOverUtilized(host)) {
 					break;
@@ -439,6 +636,51 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		return underUtilizedHost;
 	}
 
+	/**
+	 * Gets the next under utilized host from candidates sorted by increasing CPU utilization. Gives
+	 * the same host as {@link #getUnderUtilizedHost(Set)}, provided that the candidates skipped by
+	 * previous calls are still excluded or unsuitable.
+	 * 
+	 * @param excludedHosts the excluded hosts
+	 * @param candidates the remaining candidates, as given by {@link #getHostsSortedByUtilization()}
+	 * @return the under utilized host
+	 */
+	protected PowerHost getUnderUtilizedHost(Set<? extends Host> excludedHosts, Iterator<PowerHost> candidates) {
+		while (candidates.hasNext()) {
+			PowerHost host = candidates.next();
+			if (excludedHosts.contains(host)) {
+				continue;
+			}
+			double utilization = host.getUtilizationOfCpu();
+			if (utilization > 0 && utilization < 1 && !areAllVmsMigratingOutOrAnyVmMigratingIn(host)) {
+				return host;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the hosts sorted by increasing CPU utilization, in host list order on a tie.
+	 * 
+	 * @return the sorted hosts
+	 */
+	protected List<PowerHost> getHostsSortedByUtilization() {
+		List<PowerHost> hosts = new ArrayList<PowerHost>(this.<PowerHost> getHostList());
+		final Map<PowerHost, Double> utilization = new HashMap<PowerHost, Double>();
+		for (PowerHost host : hosts) {
+			utilization.put(host, host.getUtilizationOfCpu());
+		}
+		// the sort is stable, which keeps host list order on a tie
+		Collections.sort(hosts, new Comparator<PowerHost>() {
+
+			@Override
+			public int compare(PowerHost a, PowerHost b) {
+				return Double.compare(utilization.get(a), utilization.get(b));
+			}
+		});
+		return hosts;
+	}
+
 	/**
 	 * Checks whether all vms are in migration.
 	 * 
@@ -482,7 +724,9 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		if (!getMetricHistory().containsKey(hostId)) {
 			getMetricHistory().put(hostId, new LinkedList<Double>());
 		}
-		if (!getTimeHistory().get(hostId).contains(CloudSim.clock())) {
+		List<Double> times = getTimeHistory().get(hostId);
+		// times are added in clock order, so only the last one can be the current time
+		if (times.isEmpty() || times.get(times.size() - 1) != CloudSim.clock()) {
 			getTimeHistory().get(hostId).add(CloudSim.clock());
 			getUtilizationHistory().get(hostId).add(host.getUtilizationOfCpu());
 			getMetricHistory().get(hostId).add(metric);
@@ -490,28 +734,44 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	}
 
 	/**
-	 * Save allocation.
+	 * Save allocation. The allocation of a host is only saved when it is about to be modified, see
+	 * {@link #saveHostAllocation(Host)}, so that saving and restoring costs in proportion to the
+	 * hosts touched by an optimization round rather than to the size of the datacenter.
 	 */
 	protected void saveAllocation() {
 		getSavedAllocation().clear();
-		for (Host host : getHostList()) {
-			for (Vm vm : host.getVmList()) {
-				if (host.getVmsMigratingIn().contains(vm)) {
-					continue;
-				}
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("host", host);
-				map.put("vm", vm);
-				getSavedAllocation().add(map);
+		savedHosts.clear();
+		savingAllocation = true;
+	}
+
+	/**
+	 * Saves the allocation of a host, if it has not been saved since the last
+	 * {@link #saveAllocation()}. Must be called before any VM is created on or destroyed from a host
+	 * while optimizing the allocation, and for the current host of a VM before the VM is created on
+	 * another host.
+	 * 
+	 * @param host the host
+	 */
+	protected void saveHostAllocation(Host host) {
+		if (!savingAllocation || host == null || !savedHosts.add(host)) {
+			return;
+		}
+		for (Vm vm : host.getVmList()) {
+			if (host.getVmsMigratingIn().contains(vm)) {
+				continue;
 			}
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("host", host);
+			map.put("vm", vm);
+			getSavedAllocation().add(map);
 		}
 	}
 
 	/**
-	 * Restore allocation.
+	 * Restore allocation of the hosts saved since the last {@link #saveAllocation()}.
 	 */
 	protected void restoreAllocation() {
-		for (Host host : getHostList()) {
+		for (Host host : savedHosts) {
 			host.vmDestroyAll();
 			host.reallocateMigratingInVms();
 		}
@@ -524,6 +784,7 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 			}
 			getVmTable().put(vm.getUid(), host);
 		}
+		savingAllocation = false;
 	}
 
 	/**
@@ -535,9 +796,24 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @return the power after allocation
 	 */
 	protected double getPowerAfterAllocation(PowerHost host, Vm vm) {
+		return getPowerAfterAllocation(host, vm, getUtilizationOfCpuMips(host));
+	}
+
+	/**
+	 * Gets the power after allocation, given the current MIPS utilization of the host.
+	 * 
+	 * @param host the host
+	 * @param vm the vm
+	 * @param hostUtilizationMips the utilization of the host in MIPS, as returned by
+	 *            {@link #getUtilizationOfCpuMips(PowerHost)}
+	 * 
+	 * @return the power after allocation
+	 */
+	protected double getPowerAfterAllocation(PowerHost host, Vm vm, double hostUtilizationMips) {
 		double power = 0;
 		try {
-			power = host.getPowerModel().getPower(getMaxUtilizationAfterAllocation(host, vm));
+			power = host.getPowerModel().getPower(
+					getMaxUtilizationAfterAllocation(host, vm, hostUtilizationMips));
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.exit(0);
@@ -555,8 +831,20 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @return the power after allocation
 	 */
 	protected double getMaxUtilizationAfterAllocation(PowerHost host, Vm vm) {
+		return getMaxUtilizationAfterAllocation(host, vm, getUtilizationOfCpuMips(host));
+	}
+
+	/**
+	 * Gets the utilization after allocation, given the current MIPS utilization of the host.
+	 * 
+	 * @param host the host
+	 * @param vm the vm
+	 * @param hostUtilizationMips the utilization of the host in MIPS
+	 * 
+	 * @return the utilization after allocation
+	 */
+	protected double getMaxUtilizationAfterAllocation(PowerHost host, Vm vm, double hostUtilizationMips) {
 		double requestedTotalMips = vm.getCurrentRequestedTotalMips();
-		double hostUtilizationMips = getUtilizationOfCpuMips(host);
 		double hostPotentialUtilizationMips = hostUtilizationMips + requestedTotalMips;
 		double pePotentialUtilization = hostPotentialUtilizationMips / host.getTotalMips();
 		return pePotentialUtilization;
@@ -671,4 +959,24 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		return executionTimeHistoryTotal;
 	}
 
+	/**
+	 * Checks whether candidate hosts are scored in parallel.
+	 * 
+	 * @return true, if candidate hosts are scored in parallel
+	 */
+	public boolean isParallelHostScoring() {
+		return parallelHostScoring;
+	}
+
+	/**
+	 * Sets whether candidate hosts are scored in parallel, for datacenters of at least
+	 * {@link #PARALLEL_SCORING_MIN_HOSTS} hosts. The hosts found are the same either way. Subclasses
+	 * overriding the scoring methods must keep them free of side effects to enable this.
+	 * 
+	 * @param parallelHostScoring whether candidate hosts are scored in parallel
+	 */
+	public void setParallelHostScoring(boolean parallelHostScoring) {
+		this.parallelHostScoring = parallelHostScoring;
+	}
+
 }
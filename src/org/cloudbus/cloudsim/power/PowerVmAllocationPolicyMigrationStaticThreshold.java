@@ -28,6 +28,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSim Toolkit 3.0
  */
 public class PowerVmAllocationPolicyMigrationStaticThreshold extends PowerVmAllocationPolicyMigrationAbstract {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The utilization threshold. */
 	private double utilizationThreshold = 0.9;
@@ -30,6 +30,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSim Toolkit 3.0
  */
 public class PowerVmAllocationPolicySimple extends PowerVmAllocationPolicyAbstract {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Instantiates a new power vm allocation policy simple.
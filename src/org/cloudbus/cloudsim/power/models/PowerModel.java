@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim.power.models;
 
+import java.io.Serializable;
+
 /**
  * The PowerModel interface needs to be implemented in order to provide a model of power consumption
  * depending on utilization for system components.
@@ -25,7 +27,7 @@ package org.cloudbus.cloudsim.power.models;
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.0
  */
-public interface PowerModel {
+public interface PowerModel extends Serializable {
 
 	/**
 	 * Get power consumption by the utilization percentage according to the power model.
@@ -24,6 +24,8 @@ package org.cloudbus.cloudsim.power.models;
  * @since CloudSim Toolkit 3.0
  */
 public abstract class PowerModelSpecPower implements PowerModel {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/*
 	 * (non-Javadoc)
@@ -22,6 +22,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSim Toolkit 2.0
  */
 public class PeProvisionerSimple extends PeProvisioner {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The pe table. */
 	private Map<String, List<Double>> peTable;
@@ -22,6 +22,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSim Toolkit 1.0
  */
 public class RamProvisionerSimple extends RamProvisioner {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The RAM table. */
 	private Map<String, Integer> ramTable;
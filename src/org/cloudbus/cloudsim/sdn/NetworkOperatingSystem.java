@@ -28,6 +28,7 @@ import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmScheduler;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.EventProfiler;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.core.predicates.PredicateType;
@@ -51,6 +52,8 @@ import org.json.simple.JSONValue;
  * @since CloudSimSDN 1.0
  */
 public abstract class NetworkOperatingSystem extends SimEntity {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	String physicalTopologyFileName; 
 	protected PhysicalTopology topology;
@@ -93,6 +96,7 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 
 	public NetworkOperatingSystem(String fileName) {
 		super("NOS");
+		EventProfiler.registerTagNames(Constants.class);
 		
 		this.physicalTopologyFileName = fileName;
 		
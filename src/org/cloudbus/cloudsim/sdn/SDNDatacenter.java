@@ -31,6 +31,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @since CloudSimSDN 1.0
  */
 public class SDNDatacenter extends Datacenter {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	NetworkOperatingSystem nos;
 	
@@ -20,6 +20,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSimSDN 1.0
  */
 public class TimedVm extends Vm {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	private double startTime;
 	private double finishTime;
@@ -29,6 +29,8 @@ import org.cloudbus.cloudsim.sdn.SDNDatacenter;
  * @since CloudSimSDN 1.0
  */
 public class SDNBroker extends SimEntity {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	private SDNDatacenter datacenter = null;
 	private String applicationFileName = null;
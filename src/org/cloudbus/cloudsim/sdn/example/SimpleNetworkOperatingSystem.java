@@ -31,6 +31,8 @@ import org.cloudbus.cloudsim.sdn.TimedVm;
  * @since CloudSimSDN 1.0
  */
 public class SimpleNetworkOperatingSystem extends NetworkOperatingSystem {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	public SimpleNetworkOperatingSystem(String fileName) {
 		super(fileName);
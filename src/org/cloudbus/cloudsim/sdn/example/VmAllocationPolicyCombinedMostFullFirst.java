@@ -12,6 +12,8 @@ import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
 
 public class VmAllocationPolicyCombinedMostFullFirst extends VmAllocationPolicy {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	protected final double hostTotalMips;
 	protected final double hostTotalBw;
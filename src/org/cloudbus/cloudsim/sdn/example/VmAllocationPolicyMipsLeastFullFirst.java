@@ -6,6 +6,8 @@ import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Vm;
 
 public class VmAllocationPolicyMipsLeastFullFirst extends VmAllocationPolicyCombinedMostFullFirst{
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	public VmAllocationPolicyMipsLeastFullFirst(List<? extends Host> list) {
 		super(list);
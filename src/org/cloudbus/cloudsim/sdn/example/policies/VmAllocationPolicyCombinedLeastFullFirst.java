@@ -22,6 +22,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSimSDN 1.0
  */
 public class VmAllocationPolicyCombinedLeastFullFirst extends VmAllocationPolicyCombinedMostFullFirst{
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	public VmAllocationPolicyCombinedLeastFullFirst(List<? extends Host> list) {
 		super(list);
@@ -28,6 +28,8 @@ import org.cloudbus.cloudsim.sdn.power.PowerUtilizationMaxHostInterface;
  * @since CloudSimSDN 1.0
  */
 public class VmAllocationPolicyCombinedMostFullFirst extends VmAllocationPolicy implements PowerUtilizationMaxHostInterface {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	protected final double hostTotalMips;
 	protected final double hostTotalBw;
@@ -22,6 +22,8 @@ import org.cloudbus.cloudsim.Vm;
  * @since CloudSimSDN 1.0
  */
 public class VmAllocationPolicyMipsLeastFullFirst extends VmAllocationPolicyCombinedMostFullFirst{
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	public VmAllocationPolicyMipsLeastFullFirst(List<? extends Host> list) {
 		super(list);
@@ -28,6 +28,8 @@ import org.cloudbus.cloudsim.sdn.power.PowerUtilizationInterface;
  *  * @since CloudSim Toolkit 1.0
  */
 public class VmSchedulerTimeSharedEnergy extends VmSchedulerTimeShared implements PowerUtilizationInterface{
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	
 	public VmSchedulerTimeSharedEnergy(List<? extends Pe> pelist) {
@@ -23,6 +23,8 @@ import org.cloudbus.cloudsim.provisioners.BwProvisioner;
  * @since CloudSim Toolkit 1.0
  */
 public class BwProvisionerOverbooking extends BwProvisioner {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The bw table. */
 	private Map<String, Long> bwTable;
@@ -23,6 +23,8 @@ import org.cloudbus.cloudsim.provisioners.PeProvisioner;
  * @since CloudSim Toolkit 2.0
  */
 public class PeProvisionerOverbooking extends PeProvisioner {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The pe table. */
 	private Map<String, List<Double>> peTable;
@@ -27,6 +27,8 @@ import org.cloudbus.cloudsim.sdn.power.PowerUtilizationInterface;
  * @since CloudSim Toolkit 1.0
  */
 public class VmSchedulerTimeSharedOverbookingEnergy extends VmSchedulerTimeSharedOverSubscription implements PowerUtilizationInterface{
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	
 	public VmSchedulerTimeSharedOverbookingEnergy(List<? extends Pe> pelist) {
@@ -0,0 +1,205 @@
+package org.cloudbus.cloudsim.util;
+
+import java.io.Serializable;
+
+/**
+ * A binary max-heap of the elements <tt>0</tt> to <tt>size - 1</tt>, each with an <tt>int</tt>
+ * key. The top of the heap is the element with the largest key and, among equal keys, the lowest
+ * index, which is the element a linear scan for the first maximum would find. The key of an element
+ * can be changed, and an element removed and added back, in O(log n).
+ */
+public class IndexedMaxHeap implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The key of each element. */
+	private final int[] keys;
+
+	/** The elements in heap order. */
+	private final int[] heap;
+
+	/** The position of each element in the heap, or -1 if it is not in the heap. */
+	private final int[] positions;
+
+	/** The number of elements in the heap. */
+	private int size;
+
+	/**
+	 * Instantiates a new heap holding every element, with the given keys.
+	 *
+	 * @param keys the key of each element
+	 */
+	public IndexedMaxHeap(int[] keys) {
+		this.keys = keys.clone();
+		heap = new int[keys.length];
+		positions = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			heap[i] = i;
+			positions[i] = i;
+		}
+		size = keys.length;
+		for (int i = size / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Gets the element with the largest key, the lowest one among equal keys.
+	 *
+	 * @return the top element, or -1 if the heap is empty
+	 */
+	public int peek() {
+		return size > 0 ? heap[0] : -1;
+	}
+
+	/**
+	 * Gets the key of an element, whether it is in the heap or not.
+	 *
+	 * @param element the element
+	 * @return the key
+	 */
+	public int getKey(int element) {
+		return keys[element];
+	}
+
+	/**
+	 * Sets the key of an element.
+	 *
+	 * @param element the element
+	 * @param key the new key
+	 */
+	public void setKey(int element, int key) {
+		int old = keys[element];
+		keys[element] = key;
+		int position = positions[element];
+		if (position < 0) {
+			return;
+		}
+		if (key > old) {
+			siftUp(position);
+		} else if (key < old) {
+			siftDown(position);
+		}
+	}
+
+	/**
+	 * Checks whether an element is in the heap.
+	 *
+	 * @param element the element
+	 * @return true, if the element is in the heap
+	 */
+	public boolean contains(int element) {
+		return positions[element] >= 0;
+	}
+
+	/**
+	 * Removes an element from the heap. Its key is kept.
+	 *
+	 * @param element the element
+	 */
+	public void remove(int element) {
+		int position = positions[element];
+		if (position < 0) {
+			return;
+		}
+		size--;
+		positions[element] = -1;
+		if (position < size) {
+			int last = heap[size];
+			heap[position] = last;
+			positions[last] = position;
+			siftUp(position);
+			siftDown(positions[last]);
+		}
+	}
+
+	/**
+	 * Adds back an element removed from the heap, with its current key.
+	 *
+	 * @param element the element
+	 */
+	public void add(int element) {
+		if (positions[element] >= 0) {
+			return;
+		}
+		heap[size] = element;
+		positions[element] = size;
+		siftUp(size++);
+	}
+
+	/**
+	 * Gets the number of elements in the heap.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the heap is empty.
+	 *
+	 * @return true, if no element is in the heap
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Checks whether an element goes above another one.
+	 *
+	 * @param a an element
+	 * @param b another element
+	 * @return true, if <tt>a</tt> has a larger key, or the same key and a lower index
+	 */
+	private boolean above(int a, int b) {
+		return keys[a] > keys[b] || keys[a] == keys[b] && a < b;
+	}
+
+	/**
+	 * Moves the element at a position up until the heap order holds.
+	 *
+	 * @param position the position
+	 */
+	private void siftUp(int position) {
+		int element = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!above(element, heap[parent])) {
+				break;
+			}
+			heap[position] = heap[parent];
+			positions[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+	/**
+	 * Moves the element at a position down until the heap order holds.
+	 *
+	 * @param position the position
+	 */
+	private void siftDown(int position) {
+		int element = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && above(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!above(heap[child], element)) {
+				break;
+			}
+			heap[position] = heap[child];
+			positions[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+}
@@ -0,0 +1,212 @@
+package org.cloudbus.cloudsim.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive <tt>long</tt> keys to objects. Keys are stored unboxed in an open
+ * addressing table with linear probing, so that looking up, adding and removing an entry allocate
+ * no objects. Null values are not allowed; {@link #get(long)} returns <tt>null</tt> for absent
+ * keys.
+ *
+ * @param <V> the type of the values
+ */
+public class LongHashMap<V> implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The initial capacity of the table. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The keys of the entries. */
+	private long[] keys;
+
+	/** The values of the entries; <tt>null</tt> marks a free slot. */
+	private Object[] values;
+
+	/** The number of entries. */
+	private int size;
+
+	/** The mask of the slot index, the capacity minus one. */
+	private int mask;
+
+	/**
+	 * Instantiates a new empty map.
+	 */
+	public LongHashMap() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key the key
+	 * @return the value, or <tt>null</tt> if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int i = slot(key);; i = (i + 1) & mask) {
+			Object value = values[i];
+			if (value == null) {
+				return null;
+			}
+			if (keys[i] == key) {
+				return (V) value;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a key is in the map.
+	 *
+	 * @param key the key
+	 * @return true, if the key is in the map
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associates a value with a key.
+	 *
+	 * @param key the key
+	 * @param value the value, not <tt>null</tt>
+	 * @return the previous value of the key, or <tt>null</tt> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not allowed");
+		}
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > values.length) {
+			resize(values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map.
+	 *
+	 * @param key the key
+	 * @return the value of the key, or <tt>null</tt> if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				deleteSlot(i);
+				size--;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the map is empty.
+	 *
+	 * @return true, if the map has no entries
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Frees a slot, moving back the entries of the same probe sequence that follow it so that they
+	 * can still be found.
+	 *
+	 * @param free the slot to free
+	 */
+	private void deleteSlot(int free) {
+		int i = free;
+		while (true) {
+			i = (i + 1) & mask;
+			if (values[i] == null) {
+				break;
+			}
+			int home = slot(keys[i]);
+			// the entry can move to the free slot if its home slot is not between the two
+			if (((i - home) & mask) >= ((i - free) & mask)) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				free = i;
+			}
+		}
+		values[free] = null;
+	}
+
+	/**
+	 * Gets the home slot of a key.
+	 *
+	 * @param key the key
+	 * @return the slot index
+	 */
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/**
+	 * Rehashes the entries into a table of a new capacity.
+	 *
+	 * @param capacity the new capacity, a power of two
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Allocates an empty table.
+	 *
+	 * @param capacity the capacity, a power of two
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+}
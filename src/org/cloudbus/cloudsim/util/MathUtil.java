@@ -58,7 +58,12 @@ public class MathUtil {
 	 * @return the median
 	 */
 	public static double median(final List<Double> list) {
-		return getStatistics(list).getPercentile(50);
+		double[] data = new double[list.size()];
+		int i = 0;
+		for (Double value : list) {
+			data[i++] = value;
+		}
+		return median(data);
 	}
 
 	/**
@@ -69,7 +74,30 @@ public class MathUtil {
 	 * @return the median
 	 */
 	public static double median(final double[] list) {
-		return getStatistics(list).getPercentile(50);
+		int n = list.length;
+		if (n == 0) {
+			return Double.NaN;
+		}
+		double[] sorted = Arrays.copyOf(list, n);
+		Arrays.sort(sorted);
+		if (Double.isNaN(sorted[n - 1])) {
+			// NaNs are removed by the percentile estimator
+			return getStatistics(list).getPercentile(50);
+		}
+		// the same estimate as DescriptiveStatistics.getPercentile(50), without building the
+		// statistics: pos = p * (n + 1), interpolated between the neighbouring order statistics
+		double pos = 0.5 * (n + 1);
+		if (pos < 1) {
+			return sorted[0];
+		}
+		if (pos >= n) {
+			return sorted[n - 1];
+		}
+		double fpos = Math.floor(pos);
+		int intPos = (int) fpos;
+		double lower = sorted[intPos - 1];
+		double upper = sorted[intPos];
+		return lower + (pos - fpos) * (upper - lower);
 	}
 
 	/**
@@ -0,0 +1,185 @@
+package org.cloudbus.cloudsim.util;
+
+import java.util.Random;
+
+/**
+ * A SplitMix64 random number generator (Steele, Lea and Flood, "Fast splittable pseudorandom number
+ * generators", OOPSLA 2014). It is a drop-in {@link Random}, so it can be given to any code that
+ * takes one, but it is not synchronised: a generator must be used by a single thread, which is what
+ * makes it cheap on the hot path. Independent generators for other threads or entities are obtained
+ * with {@link #split()}.
+ * <p>
+ * The sequence of a generator depends only on its seed and gamma, so it is the same on every
+ * platform and in every run.
+ *
+ * @see org.cloudbus.cloudsim.core.RandomStreams
+ */
+public class SplitMixRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The golden gamma, the default increment of the state. */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/** The unit of the doubles returned by {@link #nextDouble()}. */
+	private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+	/** The state. */
+	private long seed;
+
+	/** The increment of the state, always odd. */
+	private long gamma;
+
+	/** The second Gaussian of the last pair generated, if not returned yet. */
+	private double nextGaussian;
+
+	/** Whether {@link #nextGaussian} holds a value. */
+	private boolean haveNextGaussian;
+
+	/**
+	 * Creates a generator with a seed and the golden gamma.
+	 *
+	 * @param seed the seed
+	 */
+	public SplitMixRandom(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Creates a generator with a seed and a gamma.
+	 *
+	 * @param seed the seed
+	 * @param gamma the gamma, made odd if it is not
+	 */
+	private SplitMixRandom(long seed, long gamma) {
+		super(0);
+		this.seed = seed;
+		this.gamma = gamma | 1L;
+	}
+
+	/**
+	 * Creates a new generator whose sequence is statistically independent of the one of this
+	 * generator. This generator advances by two values.
+	 *
+	 * @return the new generator
+	 */
+	public SplitMixRandom split() {
+		return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+	}
+
+	/**
+	 * Mixes the bits of a 64-bit value with the finaliser of MurmurHash3 as improved by Stafford
+	 * (variant 13). Equal inputs give equal outputs, and close inputs give unrelated outputs.
+	 *
+	 * @param z the value
+	 * @return the mixed value
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Derives a gamma from a value, avoiding gammas with too few bit transitions.
+	 *
+	 * @param z the value
+	 * @return the gamma, which is odd
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+
+	/**
+	 * Advances the state.
+	 *
+	 * @return the new state
+	 */
+	private long nextSeed() {
+		return seed += gamma;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#setSeed(long)
+	 */
+	@Override
+	public void setSeed(long seed) {
+		// also called by the constructor of Random, before gamma is set
+		this.seed = seed;
+		haveNextGaussian = false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#next(int)
+	 */
+	@Override
+	protected int next(int bits) {
+		return (int) (mix64(nextSeed()) >>> (64 - bits));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#nextInt()
+	 */
+	@Override
+	public int nextInt() {
+		return (int) (mix64(nextSeed()) >>> 32);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#nextLong()
+	 */
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#nextDouble()
+	 */
+	@Override
+	public double nextDouble() {
+		return (mix64(nextSeed()) >>> 11) * DOUBLE_UNIT;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#nextBoolean()
+	 */
+	@Override
+	public boolean nextBoolean() {
+		return mix64(nextSeed()) < 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Random#nextGaussian()
+	 */
+	@Override
+	public double nextGaussian() {
+		// the polar method of Random, without its lock
+		if (haveNextGaussian) {
+			haveNextGaussian = false;
+			return nextGaussian;
+		}
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		nextGaussian = v2 * multiplier;
+		haveNextGaussian = true;
+		return v1 * multiplier;
+	}
+
+}
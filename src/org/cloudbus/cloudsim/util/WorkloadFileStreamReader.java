@@ -0,0 +1,557 @@
+package org.cloudbus.cloudsim.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+
+/**
+ * A streaming counterpart of {@link WorkloadFileReader}. Jobs are parsed one at a time, on demand,
+ * so that the heap used by the reader does not depend on the length of the trace.
+ * <p>
+ * Plain text traces are memory-mapped in windows of {@link #MAP_WINDOW_SIZE} bytes; gzip and zip
+ * traces are decompressed through a fixed size buffer. Fields are parsed directly from the bytes,
+ * without creating intermediate <tt>String</tt> objects. Lines are accepted or skipped by the same
+ * rules as {@link WorkloadFileReader}, so both readers produce the same jobs for the same trace.
+ * <p>
+ * Unlike {@link WorkloadFileReader}, this class keeps the submit time of every job, which can be
+ * queried with {@link #peekSubmitTime()} before the job is taken with {@link #next()}. This allows
+ * a broker to release jobs as the simulation clock advances, see
+ * {@link org.cloudbus.cloudsim.StreamingDatacenterBroker}.
+ *
+ * @see WorkloadFileReader
+ */
+public class WorkloadFileStreamReader implements WorkloadModel, Iterator<Cloudlet>, Closeable {
+
+	/** The size of a memory-mapped window over a plain text trace. */
+	public static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	/** The size of the buffer used to decompress gzip and zip traces. */
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/** Longest number of digits a field may have before it is considered invalid. */
+	private static final int MAX_DIGITS = 18;
+
+	private static final int IRRELEVANT = -1; // irrelevant number
+
+	private final File file; // file name
+
+	private final int rating; // a PE rating
+
+	// using Standard Workload Format
+	private int JOB_NUM = 1 - 1; // job number
+
+	private int SUBMIT_TIME = 2 - 1; // submit time of a Gridlet
+
+	private final int RUN_TIME = 4 - 1; // running time of a Gridlet
+
+	private final int NUM_PROC = 5 - 1; // number of processors needed for a Gridlet
+
+	private int REQ_NUM_PROC = 8 - 1; // required number of processors
+
+	private int REQ_RUN_TIME = 9 - 1; // required running time
+
+	private final int USER_ID = 12 - 1; // if of user who submitted the job
+
+	private final int GROUP_ID = 13 - 1; // if of group of the user who submitted the job
+
+	private int MAX_FIELD = 18; // max number of field in the trace file
+
+	private byte[] COMMENT = { ';' }; // bytes that denote the start of a comment
+
+	/** Values of the fields of the current line. */
+	private long[] fieldValues;
+
+	/** Whether the fields of the current line are valid integer numbers. */
+	private boolean[] fieldValid;
+
+	/** The buffer bytes are currently parsed from. */
+	private ByteBuffer buffer;
+
+	/** The channel of a memory-mapped plain text trace, or null. */
+	private FileChannel channel;
+
+	/** Position of the next window to be mapped. */
+	private long mappedPosition;
+
+	/** The decompressing stream of a gzip or zip trace, or null. */
+	private InputStream stream;
+
+	/** Backing array of the buffer in streaming mode. */
+	private byte[] streamBytes;
+
+	/** Whether the end of the trace has been reached. */
+	private boolean endOfTrace;
+
+	/** The job parsed ahead by {@link #hasNext()} and not yet returned by {@link #next()}. */
+	private Cloudlet nextJob;
+
+	/** Submit time of {@link #nextJob}. */
+	private long nextSubmitTime;
+
+	/** Number of jobs returned so far. */
+	private int jobsRead;
+
+	/**
+	 * Create a new {@link WorkloadFileStreamReader} object.
+	 *
+	 * @param fileName the workload trace filename in one of the following format: <i>ASCII text,
+	 *        zip, gz.</i>
+	 * @param rating the resource's PE rating
+	 * @throws FileNotFoundException
+	 * @throws IllegalArgumentException This happens for the following conditions:
+	 *         <ul>
+	 *         <li>the workload trace file name is null or empty
+	 *         <li>the resource PE rating <= 0
+	 *         </ul>
+	 * @pre fileName != null
+	 * @pre rating > 0
+	 * @post $none
+	 */
+	public WorkloadFileStreamReader(final String fileName, final int rating)
+			throws FileNotFoundException {
+		if (fileName == null || fileName.length() == 0) {
+			throw new IllegalArgumentException("Invalid trace file name.");
+		} else if (rating <= 0) {
+			throw new IllegalArgumentException("Resource PE rating must be > 0.");
+		}
+
+		file = new File(fileName);
+		if (!file.exists()) {
+			throw new FileNotFoundException("Workload trace " + fileName + " does not exist");
+		}
+
+		this.rating = rating;
+	}
+
+	/**
+	 * Reads all the remaining jobs into a list. This defeats the purpose of the streaming reader
+	 * and is only provided to fulfil the {@link WorkloadModel} contract.
+	 *
+	 * @return the list of the remaining jobs
+	 */
+	@Override
+	public List<Cloudlet> generateWorkload() {
+		List<Cloudlet> jobs = new ArrayList<Cloudlet>();
+		while (hasNext()) {
+			jobs.add(next());
+		}
+		return jobs;
+	}
+
+	/**
+	 * Identifies the start of a comment line.
+	 *
+	 * @param cmt a character that denotes the start of a comment, e.g. ";" or "#"
+	 * @return <code>true</code> if it is successful, <code>false</code> otherwise
+	 * @pre comment != null
+	 * @post $none
+	 */
+	public boolean setComment(final String cmt) {
+		boolean success = false;
+		if (cmt != null && cmt.length() > 0) {
+			COMMENT = cmt.getBytes();
+			success = true;
+		}
+		return success;
+	}
+
+	/**
+	 * Tells this class what to look in the trace file. This method should be called before the
+	 * first job is read. The parameters have the same meaning as in
+	 * {@link WorkloadFileReader#setField(int, int, int, int, int)}.
+	 *
+	 * @param maxField max. number of field/column in one row
+	 * @param jobNum field/column number for locating the job ID
+	 * @param submitTime field/column number for locating the job submit time
+	 * @param runTime field/column number for locating the job run time
+	 * @param numProc field/column number for locating the number of PEs required to run a job
+	 * @return <code>true</code> if successful, <code>false</code> otherwise
+	 * @throws IllegalArgumentException if any of the arguments are not within the acceptable ranges
+	 */
+	public boolean setField(
+			final int maxField,
+			final int jobNum,
+			final int submitTime,
+			final int runTime,
+			final int numProc) {
+		if (jobNum > 0) {
+			JOB_NUM = jobNum - 1;
+		} else if (jobNum == 0) {
+			throw new IllegalArgumentException("Invalid job number field.");
+		} else {
+			JOB_NUM = -1;
+		}
+
+		if (maxField > 0) {
+			MAX_FIELD = maxField;
+		} else {
+			throw new IllegalArgumentException("Invalid max. number of field.");
+		}
+
+		if (submitTime > 0) {
+			SUBMIT_TIME = submitTime - 1;
+		} else {
+			throw new IllegalArgumentException("Invalid submit time field.");
+		}
+
+		if (runTime > 0) {
+			REQ_RUN_TIME = runTime - 1;
+		} else {
+			throw new IllegalArgumentException("Invalid run time field.");
+		}
+
+		if (numProc > 0) {
+			REQ_NUM_PROC = numProc - 1;
+		} else {
+			throw new IllegalArgumentException("Invalid number of processors field.");
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks whether there are more jobs in the trace. Parses ahead up to the next valid job.
+	 *
+	 * @return true, if there is at least one more job
+	 * @throws IllegalStateException if the trace cannot be read
+	 */
+	@Override
+	public boolean hasNext() {
+		if (nextJob != null) {
+			return true;
+		}
+		if (endOfTrace) {
+			return false;
+		}
+		try {
+			if (buffer == null) {
+				open();
+			}
+			while (nextJob == null && parseLine()) {
+				// keep parsing until a valid job line is found
+			}
+		} catch (IOException e) {
+			close();
+			throw new IllegalStateException("Error reading workload trace " + file.getName(), e);
+		}
+		if (nextJob == null) {
+			close();
+		}
+		return nextJob != null;
+	}
+
+	/**
+	 * Returns the next job of the trace.
+	 *
+	 * @return the next job
+	 * @throws NoSuchElementException if there are no more jobs
+	 */
+	@Override
+	public Cloudlet next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Cloudlet job = nextJob;
+		nextJob = null;
+		jobsRead++;
+		return job;
+	}
+
+	/**
+	 * Gets the submit time, as written in the trace, of the job that will be returned by the next
+	 * call to {@link #next()}.
+	 *
+	 * @return the submit time of the next job
+	 * @throws NoSuchElementException if there are no more jobs
+	 */
+	public long peekSubmitTime() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return nextSubmitTime;
+	}
+
+	/**
+	 * Removing jobs from a trace is not supported.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Workload traces are read-only");
+	}
+
+	/**
+	 * Releases the file resources held by the reader. Called automatically when the end of the
+	 * trace is reached.
+	 */
+	@Override
+	public void close() {
+		endOfTrace = true;
+		buffer = null;
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+			if (stream != null) {
+				stream.close();
+			}
+		} catch (IOException e) {
+		} finally {
+			channel = null;
+			stream = null;
+		}
+	}
+
+	/**
+	 * Gets the number of jobs returned so far.
+	 *
+	 * @return the number of jobs read
+	 */
+	public int getJobsRead() {
+		return jobsRead;
+	}
+
+	// ------------------- PRIVATE METHODS -------------------
+
+	/**
+	 * Opens the trace file, mapping it if it is plain text.
+	 *
+	 * @throws IOException if the file cannot be opened
+	 */
+	private void open() throws IOException {
+		fieldValues = new long[MAX_FIELD];
+		fieldValid = new boolean[MAX_FIELD];
+
+		if (file.getName().endsWith(".gz")) {
+			openStream(new GZIPInputStream(new FileInputStream(file), STREAM_BUFFER_SIZE));
+		} else if (file.getName().endsWith(".zip")) {
+			ZipInputStream zip = new ZipInputStream(new FileInputStream(file));
+			openStream(zip);
+			if (zip.getNextEntry() == null) {
+				buffer.limit(0);
+			}
+		} else {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			channel = raf.getChannel();
+			mappedPosition = 0;
+			buffer = ByteBuffer.allocate(0);
+		}
+	}
+
+	/**
+	 * Prepares the reader for a decompressing stream.
+	 *
+	 * @param in the stream
+	 */
+	private void openStream(InputStream in) {
+		stream = in;
+		streamBytes = new byte[STREAM_BUFFER_SIZE];
+		buffer = ByteBuffer.wrap(streamBytes);
+		buffer.limit(0);
+	}
+
+	/**
+	 * Makes more bytes available in the buffer, by mapping the next window of a plain trace or by
+	 * reading the next chunk of a compressed one.
+	 *
+	 * @return true, if there are bytes available; false at the end of the trace
+	 * @throws IOException if the trace cannot be read
+	 */
+	private boolean fill() throws IOException {
+		if (channel != null) {
+			long size = channel.size();
+			if (mappedPosition >= size) {
+				return false;
+			}
+			long length = Math.min(MAP_WINDOW_SIZE, size - mappedPosition);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, mappedPosition, length);
+			mappedPosition += length;
+			return true;
+		}
+
+		while (true) {
+			int read = stream.read(streamBytes);
+			if (read > 0) {
+				buffer.clear();
+				buffer.limit(read);
+				return true;
+			}
+			if (read < 0) {
+				// a zip archive may hold several traces, which are read one after the other
+				if (stream instanceof ZipInputStream && ((ZipInputStream) stream).getNextEntry() != null) {
+					continue;
+				}
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the next byte of the trace, or -1 at the end of the trace.
+	 *
+	 * @return the next byte
+	 * @throws IOException if the trace cannot be read
+	 */
+	private int nextByte() throws IOException {
+		if (!buffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	/**
+	 * Parses one line of the trace. If the line describes a valid job, {@link #nextJob} is set.
+	 *
+	 * @return false if the end of the trace was reached before any byte was read
+	 * @throws IOException if the trace cannot be read
+	 */
+	private boolean parseLine() throws IOException {
+		int b = nextByte();
+		if (b < 0) {
+			return false;
+		}
+
+		// skip a comment line
+		int matched = 0;
+		while (matched < COMMENT.length && b == (COMMENT[matched] & 0xFF)) {
+			matched++;
+			b = nextByte();
+		}
+		if (matched == COMMENT.length) {
+			while (b >= 0 && b != '\n') {
+				b = nextByte();
+			}
+			return true;
+		}
+
+		int index = 0; // the index of a field
+		long value = 0;
+		int digits = 0;
+		boolean negative = false;
+		boolean valid = true;
+		boolean inField = matched > 0;
+		if (inField) {
+			// a partially matched comment prefix is ordinary field content
+			valid = false;
+		}
+
+		while (true) {
+			if (b < 0 || b == '\n' || b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B) {
+				if (inField) {
+					if (index < MAX_FIELD) {
+						fieldValues[index] = negative ? -value : value;
+						fieldValid[index] = valid && digits > 0;
+					}
+					index++;
+					inField = false;
+				}
+				if (b < 0 || b == '\n') {
+					break;
+				}
+			} else {
+				if (!inField) {
+					inField = true;
+					value = 0;
+					digits = 0;
+					negative = false;
+					valid = true;
+				}
+				if (b >= '0' && b <= '9') {
+					if (++digits > MAX_DIGITS) {
+						valid = false;
+					} else {
+						value = value * 10 + (b - '0');
+					}
+				} else if ((b == '-' || b == '+') && digits == 0 && !negative) {
+					negative = b == '-';
+				} else {
+					valid = false;
+				}
+			}
+			b = nextByte();
+		}
+
+		if (index == MAX_FIELD) {
+			extractField();
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the next job from the fields of the current line, following the same rules as
+	 * {@link WorkloadFileReader}. Lines with invalid fields are ignored.
+	 */
+	private void extractField() {
+		// get the job number
+		int id = 0;
+		if (JOB_NUM == IRRELEVANT) {
+			id = jobsRead + 1;
+		} else if (isInt(JOB_NUM)) {
+			id = (int) fieldValues[JOB_NUM];
+		} else {
+			return;
+		}
+
+		if (SUBMIT_TIME >= MAX_FIELD || !fieldValid[SUBMIT_TIME] || !isInt(REQ_RUN_TIME) || !isInt(RUN_TIME)
+				|| !isInt(USER_ID) || !isInt(GROUP_ID) || !isInt(REQ_NUM_PROC)) {
+			return;
+		}
+		final long submitTime = (int) fieldValues[SUBMIT_TIME];
+
+		// according to the SWF manual, runtime of 0 is possible due
+		// to rounding down. E.g. runtime is 0.4 seconds -> runtime = 0
+		int runTime = (int) fieldValues[RUN_TIME];
+		if (runTime <= 0) {
+			runTime = 1; // change to 1 second
+		}
+
+		// if the required num of allocated processors field is ignored
+		// or zero, then use the actual field
+		int numProc = (int) fieldValues[REQ_NUM_PROC];
+		if (numProc == IRRELEVANT || numProc == 0) {
+			if (!isInt(NUM_PROC)) {
+				return;
+			}
+			numProc = (int) fieldValues[NUM_PROC];
+		}
+
+		// finally, check if the num of PEs required is valid or not
+		if (numProc <= 0) {
+			numProc = 1;
+		}
+
+		final int len = runTime * rating;
+		UtilizationModel utilizationModel = new UtilizationModelFull();
+		nextJob = new Cloudlet(id, len, numProc, 0, 0, utilizationModel, utilizationModel, utilizationModel);
+		nextSubmitTime = submitTime;
+	}
+
+	/**
+	 * Checks whether a field of the current line holds a valid <tt>int</tt>.
+	 *
+	 * @param field the index of the field
+	 * @return true, if the field is a valid int
+	 */
+	private boolean isInt(final int field) {
+		return field < MAX_FIELD && fieldValid[field] && fieldValues[field] >= Integer.MIN_VALUE
+				&& fieldValues[field] <= Integer.MAX_VALUE;
+	}
+
+}
@@ -1,5 +1,8 @@
 package org.fog.application;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -18,10 +21,11 @@ import org.fog.utils.FogUtils;
  *
  */
 public class AppModule extends PowerVm{
+	private static final long serialVersionUID = 1L;
 
 	private String name;
 	private String appId;
-	private Map<Pair<String, String>, SelectivityModel> selectivityMap;
+	private transient Map<Pair<String, String>, SelectivityModel> selectivityMap;
 	
 	/**
 	 * A map from the AppModules sending tuples UP to this module to their instance IDs.
@@ -131,4 +135,25 @@ public class AppModule extends PowerVm{
 	public void setNumInstances(int numInstances) {
 		this.numInstances = numInstances;
 	}
+
+	// Pair is not serializable, so the selectivity map is written as triples
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(selectivityMap.size());
+		for(Map.Entry<Pair<String, String>, SelectivityModel> entry : selectivityMap.entrySet()){
+			out.writeObject(entry.getKey().getFirst());
+			out.writeObject(entry.getKey().getSecond());
+			out.writeObject(entry.getValue());
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		selectivityMap = new HashMap<Pair<String, String>, SelectivityModel>();
+		for(int i=0;i<size;i++){
+			Pair<String, String> key = new Pair<String, String>((String)in.readObject(), (String)in.readObject());
+			selectivityMap.put(key, (SelectivityModel)in.readObject());
+		}
+	}
 }
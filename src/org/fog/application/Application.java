@@ -1,5 +1,6 @@
 package org.fog.application;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -7,6 +8,9 @@ import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.RandomStreams;
+import org.fog.application.selectivity.BatchSelectivityModel;
+import org.fog.application.selectivity.FractionalSelectivity;
 import org.fog.application.selectivity.SelectivityModel;
 import org.fog.entities.Tuple;
 import org.fog.scheduler.TupleScheduler;
@@ -18,7 +22,8 @@ import org.fog.utils.GeoCoverage;
  * @author Harshit Gupta
  *
  */
-public class Application {
+public class Application implements Serializable {
+	private static final long serialVersionUID = 1L;
 	
 	private String appId;
 	private int userId;
@@ -39,6 +44,11 @@ public class Application {
 	 */
 	private List<AppLoop> loops;
 	
+	/**
+	 * For every edge between modules, the id of the first loop ending with that edge, built when first needed
+	 */
+	private transient Map<String, Map<String, Integer>> endingLoopIds;
+	
 	private Map<String, AppEdge> edgeMap;
 
 	/**
@@ -112,6 +122,10 @@ public class Application {
 	 */
 	public void addTupleMapping(String moduleName, String inputTupleType, String outputTupleType, SelectivityModel selectivityModel){
 		AppModule module = getModuleByName(moduleName);
+		// the stream of a mapping depends on the module and the edges it maps, not on the order of the mappings
+		if(selectivityModel instanceof FractionalSelectivity)
+			((FractionalSelectivity) selectivityModel).setRandom(RandomStreams.stream(
+					getAppId()+"/"+moduleName+"/"+inputTupleType+"/"+outputTupleType));
 		module.getSelectivityMap().put(new Pair<String, String>(inputTupleType, outputTupleType), selectivityModel);
 	}
 	
@@ -183,58 +197,101 @@ public class Application {
 					continue;
 				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
 				if(selectivityModel.canSelect()){
-					//TODO check if the edge is ACTUATOR, then create multiple tuples
-					if(edge.getEdgeType() == AppEdge.ACTUATOR){
-						//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-							Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-									(long) (edge.getTupleCpuLength()),
-									inputTuple.getNumberOfPes(),
-									(long) (edge.getTupleNwLength()),
-									inputTuple.getCloudletOutputSize(),
-									inputTuple.getUtilizationModelCpu(),
-									inputTuple.getUtilizationModelRam(),
-									inputTuple.getUtilizationModelBw()
-									);
-							tuple.setActualTupleId(inputTuple.getActualTupleId());
-							tuple.setUserId(inputTuple.getUserId());
-							tuple.setAppId(inputTuple.getAppId());
-							tuple.setDestModuleName(edge.getDestination());
-							tuple.setSrcModuleName(edge.getSource());
-							tuple.setDirection(Tuple.ACTUATOR);
-							tuple.setTupleType(edge.getTupleType());
-							tuple.setSourceDeviceId(sourceDeviceId);
-							tuple.setSourceModuleId(sourceModuleId);
-							//tuple.setActuatorId(actuatorId);
-							
-							tuples.add(tuple);
-						//}
-					}else{
-						Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-								(long) (edge.getTupleCpuLength()),
-								inputTuple.getNumberOfPes(),
-								(long) (edge.getTupleNwLength()),
-								inputTuple.getCloudletOutputSize(),
-								inputTuple.getUtilizationModelCpu(),
-								inputTuple.getUtilizationModelRam(),
-								inputTuple.getUtilizationModelBw()
-								);
-						tuple.setActualTupleId(inputTuple.getActualTupleId());
-						tuple.setUserId(inputTuple.getUserId());
-						tuple.setAppId(inputTuple.getAppId());
-						tuple.setDestModuleName(edge.getDestination());
-						tuple.setSrcModuleName(edge.getSource());
-						tuple.setDirection(edge.getDirection());
-						tuple.setTupleType(edge.getTupleType());
-						tuple.setSourceModuleId(sourceModuleId);
-
-						tuples.add(tuple);
-					}
+					tuples.add(createResultantTuple(edge, inputTuple, sourceDeviceId, sourceModuleId));
+				}
+			}
+		}
+		return tuples;
+	}
+	
+	/**
+	 * Get the tuples generated upon execution of a batch of incoming tuples, that finished execution at the same time, by module named <i>moduleName</i>.
+	 * The selectivity of every pair of input and output tuple types is decided for all incoming tuples of that type at once.
+	 * @param moduleName name of the module performing execution of incoming tuples and emitting resultant tuples
+	 * @param inputTuples incoming tuples, whose execution creates resultant tuples
+	 * @param sourceDeviceId
+	 * @param sourceModuleId
+	 * @return the resultant tuples of every incoming tuple, in the order of the incoming tuples
+	 */
+	public List<List<Tuple>> getResultantTuples(String moduleName, List<Tuple> inputTuples, int sourceDeviceId, int sourceModuleId){
+		int count = inputTuples.size();
+		List<List<Tuple>> tuples = new ArrayList<List<Tuple>>(count);
+		AppModule module = getModuleByName(moduleName);
+		List<AppEdge> outputEdges = new ArrayList<AppEdge>();
+		for(AppEdge edge : getEdges()){
+			if(edge.getSource().equals(moduleName))
+				outputEdges.add(edge);
+		}
+		Map<String, List<Integer>> inputsByType = new HashMap<String, List<Integer>>();
+		for(int i = 0; i < count; i++){
+			String tupleType = inputTuples.get(i).getTupleType();
+			if(!inputsByType.containsKey(tupleType))
+				inputsByType.put(tupleType, new ArrayList<Integer>());
+			inputsByType.get(tupleType).add(i);
+		}
+		
+		boolean[][] selected = new boolean[outputEdges.size()][count];
+		boolean[] batch = new boolean[count];
+		for(int e = 0; e < outputEdges.size(); e++){
+			for(Map.Entry<String, List<Integer>> entry : inputsByType.entrySet()){
+				Pair<String, String> pair = new Pair<String, String>(entry.getKey(), outputEdges.get(e).getTupleType());
+				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
+				if(selectivityModel == null)
+					continue;
+				List<Integer> inputs = entry.getValue();
+				if(selectivityModel instanceof BatchSelectivityModel){
+					if(((BatchSelectivityModel) selectivityModel).select(batch, inputs.size()) == 0)
+						continue;
+					for(int i = 0; i < inputs.size(); i++)
+						selected[e][inputs.get(i)] = batch[i];
+				}else{
+					for(int i = 0; i < inputs.size(); i++)
+						selected[e][inputs.get(i)] = selectivityModel.canSelect();
 				}
 			}
 		}
+		
+		for(int i = 0; i < count; i++){
+			List<Tuple> resultantTuples = new ArrayList<Tuple>();
+			for(int e = 0; e < outputEdges.size(); e++){
+				if(selected[e][i])
+					resultantTuples.add(createResultantTuple(outputEdges.get(e), inputTuples.get(i), sourceDeviceId, sourceModuleId));
+			}
+			tuples.add(resultantTuples);
+		}
 		return tuples;
 	}
 	
+	/**
+	 * Create the tuple emitted on an application edge upon execution of incoming tuple <i>inputTuple</i>
+	 */
+	private Tuple createResultantTuple(AppEdge edge, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
+		Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+				(long) (edge.getTupleCpuLength()),
+				inputTuple.getNumberOfPes(),
+				(long) (edge.getTupleNwLength()),
+				inputTuple.getCloudletOutputSize(),
+				inputTuple.getUtilizationModelCpu(),
+				inputTuple.getUtilizationModelRam(),
+				inputTuple.getUtilizationModelBw()
+				);
+		tuple.setActualTupleId(inputTuple.getActualTupleId());
+		tuple.setUserId(inputTuple.getUserId());
+		tuple.setAppId(inputTuple.getAppId());
+		tuple.setDestModuleName(edge.getDestination());
+		tuple.setSrcModuleName(edge.getSource());
+		tuple.setTupleType(edge.getTupleType());
+		tuple.setSourceModuleId(sourceModuleId);
+		//TODO check if the edge is ACTUATOR, then create multiple tuples
+		if(edge.getEdgeType() == AppEdge.ACTUATOR){
+			tuple.setDirection(Tuple.ACTUATOR);
+			tuple.setSourceDeviceId(sourceDeviceId);
+		}else{
+			tuple.setDirection(edge.getDirection());
+		}
+		return tuple;
+	}
+	
 	/**
 	 * Create a tuple for a given application edge
 	 * @param edge
@@ -321,6 +378,36 @@ public class Application {
 
 	public void setLoops(List<AppLoop> loops) {
 		this.loops = loops;
+		this.endingLoopIds = null;
+	}
+	
+	/**
+	 * Get the id of the loop ended by a tuple sent from module <i>srcModule</i> to module <i>destModule</i>,
+	 * that is the first loop having that edge and ending with <i>destModule</i>.
+	 * @param srcModule name of the module sending the tuple
+	 * @param destModule name of the module receiving the tuple
+	 * @return the id of the loop, or -1 if the tuple ends no loop
+	 */
+	public int getEndingLoopId(String srcModule, String destModule) {
+		if(endingLoopIds == null){
+			Map<String, Map<String, Integer>> index = new HashMap<String, Map<String, Integer>>();
+			for(AppLoop loop : getLoops()){
+				List<String> modules = loop.getModules();
+				String end = loop.getEndModule();
+				for(int i = 0; i < modules.size()-1; i++){
+					if(!modules.get(i+1).equals(end))
+						continue;
+					if(!index.containsKey(modules.get(i)))
+						index.put(modules.get(i), new HashMap<String, Integer>());
+					if(!index.get(modules.get(i)).containsKey(end))
+						index.get(modules.get(i)).put(end, loop.getLoopId());
+				}
+			}
+			endingLoopIds = index;
+		}
+		Map<String, Integer> loopIds = endingLoopIds.get(srcModule);
+		Integer loopId = loopIds == null ? null : loopIds.get(destModule);
+		return loopId == null ? -1 : loopId;
 	}
 
 	public int getUserId() {
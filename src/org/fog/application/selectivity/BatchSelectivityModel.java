@@ -0,0 +1,18 @@
+package org.fog.application.selectivity;
+
+/**
+ * A selectivity model that can decide for a whole batch of input tuples arriving at the same time
+ * at once, rather than through one call of {@link #canSelect()} per tuple.
+ */
+public interface BatchSelectivityModel extends SelectivityModel {
+
+	/**
+	 * Function called to check which ones of a batch of input tuples, arriving at the current time, can generate an output tuple.
+	 * The decisions follow the same distribution as calling {@link #canSelect()} once per input tuple.
+	 * @param selected set to true for the input tuples that can be selected, from index 0 to count
+	 * @param count number of input tuples in the batch
+	 * @return number of input tuples selected
+	 */
+	public int select(boolean[] selected, int count);
+	
+}
@@ -6,10 +6,12 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * Generates an output tuple for every input tuple according to a bursty model.
  * During high burst period, all input tuples result in an output tuple.
  * During low burst period, no input tuples result in an output tuple.
+ * The boundaries of the current burst period are computed once and kept until the time leaves it.
  * @author Harshit Gupta
  *
  */
-public class BurstySelectivity implements SelectivityModel{
+public class BurstySelectivity implements BatchSelectivityModel{
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Duration of the low burst period
@@ -26,6 +28,14 @@ public class BurstySelectivity implements SelectivityModel{
 	 */
 	double firstHighTime;
 	
+	/**
+	 * Start of the burst period containing the last time checked, end of its high burst period and start of the next burst period.
+	 * The start is NaN when no burst period has been computed yet.
+	 */
+	private transient double burstStartTime = Double.NaN;
+	private transient double burstHighEndTime;
+	private transient double nextBurstStartTime;
+	
 	public BurstySelectivity(double burstLowPeriod, double burstHighPeriod, double firstHighTime){
 		setBurstLowPeriod(burstLowPeriod);
 		setBurstHighPeriod(burstHighPeriod);
@@ -38,14 +48,29 @@ public class BurstySelectivity implements SelectivityModel{
 	@Override
 	public boolean canSelect() {
 		double time = CloudSim.clock() + getFirstHighTime();
-		double burstPeriod = getBurstHighPeriod()+getBurstLowPeriod();
-		double burstStartTime = burstPeriod*((int)(time/burstPeriod));
-		if(time <= burstStartTime + getBurstHighPeriod())
+		if(!(time >= burstStartTime && time < nextBurstStartTime)){
+			double burstPeriod = getBurstHighPeriod()+getBurstLowPeriod();
+			burstStartTime = burstPeriod*((int)(time/burstPeriod));
+			burstHighEndTime = burstStartTime + getBurstHighPeriod();
+			nextBurstStartTime = burstStartTime + burstPeriod;
+		}
+		if(time <= burstHighEndTime)
 			return true;
 		else
 			return false;
 	}
 
+	/**
+	 * All input tuples of a batch arrive at the same time, so they are all selected or none is.
+	 */
+	@Override
+	public int select(boolean[] selected, int count) {
+		boolean high = canSelect();
+		for(int i = 0; i < count; i++)
+			selected[i] = high;
+		return high ? count : 0;
+	}
+
 	/**
 	 * The mean tuple generation rate is the fraction of high burst period in the total burst period.
 	 */
@@ -68,6 +93,7 @@ public class BurstySelectivity implements SelectivityModel{
 
 	public void setBurstLowPeriod(double burstLowPeriod) {
 		this.burstLowPeriod = burstLowPeriod;
+		burstStartTime = Double.NaN;
 	}
 
 	public double getBurstHighPeriod() {
@@ -76,6 +102,7 @@ public class BurstySelectivity implements SelectivityModel{
 
 	public void setBurstHighPeriod(double burstHighPeriod) {
 		this.burstHighPeriod = burstHighPeriod;
+		burstStartTime = Double.NaN;
 	}
 
 	public double getFirstHighTime() {
@@ -84,6 +111,7 @@ public class BurstySelectivity implements SelectivityModel{
 
 	public void setFirstHighTime(double firstHighTime) {
 		this.firstHighTime = firstHighTime;
+		burstStartTime = Double.NaN;
 	}
 
 }
@@ -1,19 +1,37 @@
 package org.fog.application.selectivity;
 
+import java.util.Random;
+
+import org.cloudbus.cloudsim.core.RandomStreams;
+
 /**
- * Generates an output tuple for an incoming input tuple with a fixed probability
+ * Generates an output tuple for an incoming input tuple with a fixed probability.
+ * Batches of input tuples with a small probability are sampled by skipping over the tuples that are
+ * not selected, drawing one random number per selected tuple rather than one per input tuple.
  * @author Harshit Gupta
  *
  */
-public class FractionalSelectivity implements SelectivityModel{
+public class FractionalSelectivity implements BatchSelectivityModel{
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * The fixed probability of output tuple creation per incoming input tuple
 	 */
 	double selectivity;
 	
+	/**
+	 * Probabilities below this are sampled in batches by geometric skips, larger ones tuple by tuple
+	 */
+	private static final double SKIP_SAMPLING_THRESHOLD = 0.5;
+	
+	/**
+	 * The random stream of this model, derived from the master seed of RandomStreams
+	 */
+	private Random random;
+	
 	public FractionalSelectivity(double selectivity){
 		setSelectivity(selectivity);
+		setRandom(RandomStreams.next(getClass().getName()));
 	}
 	public double getSelectivity() {
 		return selectivity;
@@ -21,14 +39,46 @@ public class FractionalSelectivity implements SelectivityModel{
 	public void setSelectivity(double selectivity) {
 		this.selectivity = selectivity;
 	}
+	public Random getRandom() {
+		return random;
+	}
+	public void setRandom(Random random) {
+		this.random = random;
+	}
 	
 	@Override
 	public boolean canSelect() {
-		if(Math.random() < getSelectivity()) // if the probability condition is satisfied
+		if(random.nextDouble() < getSelectivity()) // if the probability condition is satisfied
 			return true;
 		return false;
 	}
 	
+	@Override
+	public int select(boolean[] selected, int count) {
+		double selectivity = getSelectivity();
+		if(selectivity >= SKIP_SAMPLING_THRESHOLD || selectivity <= 0){
+			int selectedCount = 0;
+			for(int i = 0; i < count; i++){
+				selected[i] = canSelect();
+				if(selected[i])
+					selectedCount++;
+			}
+			return selectedCount;
+		}
+		// the number of input tuples skipped before the next selected one is geometrically distributed
+		double logFailure = Math.log1p(-selectivity);
+		for(int i = 0; i < count; i++)
+			selected[i] = false;
+		int selectedCount = 0;
+		double next = Math.floor(Math.log1p(-random.nextDouble())/logFailure);
+		while(next < count){
+			selected[(int) next] = true;
+			selectedCount++;
+			next += 1 + Math.floor(Math.log1p(-random.nextDouble())/logFailure);
+		}
+		return selectedCount;
+	}
+	
 	@Override
 	public double getMeanRate() {
 		return getSelectivity(); // the average rate of tuple generation is the fixed probability value
@@ -4,6 +4,7 @@ import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.power.PowerDatacenterBroker;
 
 public class FogBroker extends PowerDatacenterBroker{
+	private static final long serialVersionUID = 1L;
 
 	public FogBroker(String name) throws Exception {
 		super(name);
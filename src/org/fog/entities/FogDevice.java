@@ -1,11 +1,16 @@
 package org.fog.entities;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.Cloudlet;
@@ -31,6 +36,7 @@ import org.fog.application.Application;
 import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.StreamOperatorScheduler;
 import org.fog.utils.Config;
+import org.fog.utils.EnergyMeter;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
 import org.fog.utils.Logger;
@@ -39,8 +45,10 @@ import org.fog.utils.NetworkUsageMonitor;
 import org.fog.utils.TimeKeeper;
 
 public class FogDevice extends PowerDatacenter {
+	private static final long serialVersionUID = 1L;
+
 	protected Queue<Tuple> northTupleQueue;
-	protected Queue<Pair<Tuple, Integer>> southTupleQueue;
+	protected transient Queue<Pair<Tuple, Integer>> southTupleQueue;
 	
 	protected List<String> activeApplications;
 	
@@ -69,6 +77,21 @@ public class FogDevice extends PowerDatacenter {
 
 	protected Map<Integer, List<String>> childToOperatorsMap;
 	
+	/**
+	 * For every module, the number of its instances hosted in the subtree of each child
+	 */
+	protected Map<String, Map<Integer, Integer>> moduleToChildInstanceCounts;
+	
+	/**
+	 * For every module instance hosted below this device (the ID of its VM), the ID of the child whose subtree hosts it
+	 */
+	protected Map<Integer, Integer> moduleInstanceToChildId;
+	
+	/**
+	 * For every actuator type, the IDs of the children whose subtree has an actuator of that type
+	 */
+	protected Map<String, Set<Integer>> actuatorTypeToChildIds;
+	
 	/**
 	 * Flag denoting whether the link southwards from this FogDevice is busy
 	 */
@@ -79,18 +102,36 @@ public class FogDevice extends PowerDatacenter {
 	 */
 	protected boolean isNorthLinkBusy;
 	
+	/**
+	 * Tuples waiting for the link to each child, when every child has a downlink of its own (Config.PER_CHILD_DOWNLINKS)
+	 */
+	protected Map<Integer, Queue<Tuple>> childTupleQueues;
+	
+	/**
+	 * IDs of the children whose downlink is busy, when every child has a downlink of its own
+	 */
+	protected Set<Integer> busyChildLinks;
+	
 	protected double uplinkBandwidth;
 	protected double downlinkBandwidth;
 	protected double uplinkLatency;
-	protected List<Pair<Integer, Double>> associatedActuatorIds;
+	protected transient List<Pair<Integer, Double>> associatedActuatorIds;
 	
+	/**
+	 * The energy consumed besides the energy metered, so that the energy consumption can be set
+	 */
 	protected double energyConsumption;
-	protected double lastUtilizationUpdateTime;
-	protected double lastUtilization;
+	/**
+	 * Meters the energy consumed by the host from the changes of its CPU utilization
+	 */
+	protected EnergyMeter energyMeter;
 	private int level;
 	
 	protected double ratePerMips;
 	
+	/**
+	 * The cost charged besides the cost of the MIPS metered, so that the total cost can be set
+	 */
 	protected double totalCost;
 	
 	protected Map<String, Map<String, Integer>> moduleInstanceCount;
@@ -130,6 +171,11 @@ public class FogDevice extends PowerDatacenter {
 		appToModulesMap = new HashMap<String, List<String>>();
 		northTupleQueue = new LinkedList<Tuple>();
 		southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
+		childTupleQueues = new HashMap<Integer, Queue<Tuple>>();
+		busyChildLinks = new HashSet<Integer>();
+		moduleToChildInstanceCounts = new HashMap<String, Map<Integer, Integer>>();
+		moduleInstanceToChildId = new HashMap<Integer, Integer>();
+		actuatorTypeToChildIds = new HashMap<String, Set<Integer>>();
 		setNorthLinkBusy(false);
 		setSouthLinkBusy(false);
 		
@@ -142,7 +188,7 @@ public class FogDevice extends PowerDatacenter {
 		this.lockTime = 0;
 		
 		this.energyConsumption = 0;
-		this.lastUtilization = 0;
+		this.energyMeter = new EnergyMeter(getHost().getPowerModel());
 		setTotalCost(0);
 		setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
 		setChildToLatencyMap(new HashMap<Integer, Double>());
@@ -214,6 +260,11 @@ public class FogDevice extends PowerDatacenter {
 		appToModulesMap = new HashMap<String, List<String>>();
 		northTupleQueue = new LinkedList<Tuple>();
 		southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
+		childTupleQueues = new HashMap<Integer, Queue<Tuple>>();
+		busyChildLinks = new HashSet<Integer>();
+		moduleToChildInstanceCounts = new HashMap<String, Map<Integer, Integer>>();
+		moduleInstanceToChildId = new HashMap<Integer, Integer>();
+		actuatorTypeToChildIds = new HashMap<String, Set<Integer>>();
 		setNorthLinkBusy(false);
 		setSouthLinkBusy(false);
 		
@@ -226,7 +277,7 @@ public class FogDevice extends PowerDatacenter {
 		this.lockTime = 0;
 		
 		this.energyConsumption = 0;
-		this.lastUtilization = 0;
+		this.energyMeter = new EnergyMeter(getHost().getPowerModel());
 		setTotalCost(0);
 		setChildToLatencyMap(new HashMap<Integer, Double>());
 		setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
@@ -270,6 +321,12 @@ public class FogDevice extends PowerDatacenter {
 		case FogEvents.UPDATE_SOUTH_TUPLE_QUEUE:
 			updateSouthTupleQueue();
 			break;
+		case FogEvents.UPDATE_CHILD_TUPLE_QUEUE:
+			updateChildTupleQueue((Integer)ev.getData());
+			break;
+		case FogEvents.TUPLE_BATCH_ARRIVAL:
+			processTupleBatchArrival(ev);
+			break;
 		case FogEvents.ACTIVE_APP_UPDATE:
 			updateActiveApplications(ev);
 			break;
@@ -279,22 +336,11 @@ public class FogDevice extends PowerDatacenter {
 		case FogEvents.LAUNCH_MODULE_INSTANCE:
 			updateModuleInstanceCount(ev);
 			break;
-		case FogEvents.RESOURCE_MGMT:
-			manageResources(ev);
 		default:
 			break;
 		}
 	}
 	
-	/**
-	 * Perform miscellaneous resource management tasks
-	 * @param ev
-	 */
-	private void manageResources(SimEvent ev) {
-		updateEnergyConsumption();
-		send(getId(), Config.RESOURCE_MGMT_INTERVAL, FogEvents.RESOURCE_MGMT);
-	}
-
 	/**
 	 * Updating the number of modules of an application module on this device
 	 * @param ev instance of SimEvent containing the module and no of instances 
@@ -348,6 +394,14 @@ public class FogDevice extends PowerDatacenter {
 		int actuatorId = ev.getSource();
 		double delay = (double)ev.getData();
 		getAssociatedActuatorIds().add(new Pair<Integer, Double>(actuatorId, delay));
+		String actuatorType = ((Actuator)CloudSim.getEntity(actuatorId)).getActuatorType();
+		int childId = getId();
+		for(FogDevice parent = getParent(); parent != null; parent = parent.getParent()){
+			if(!parent.actuatorTypeToChildIds.containsKey(actuatorType))
+				parent.actuatorTypeToChildIds.put(actuatorType, new HashSet<Integer>());
+			parent.actuatorTypeToChildIds.get(actuatorType).add(childId);
+			childId = parent.getId();
+		}
 	}
 
 	
@@ -373,16 +427,19 @@ public class FogDevice extends PowerDatacenter {
 	protected double updateCloudetProcessingWithoutSchedulingFutureEventsForce() {
 		double currentTime = CloudSim.clock();
 		double minTime = Double.MAX_VALUE;
-		double timeDiff = currentTime - getLastProcessTime();
-		double timeFrameDatacenterEnergy = 0.0;
 
+		startHostUpdates();
 		for (PowerHost host : this.<PowerHost> getHostList()) {
+			if (isHostSkipped(host)) {
+				continue;
+			}
 			Log.printLine();
 
 			double time = host.updateVmsProcessing(currentTime); // inform VMs to update processing
 			if (time < minTime) {
 				minTime = time;
 			}
+			hostUpdated(host);
 
 			Log.formatLine(
 					"%.2f: [Host #%d] utilization is %.2f%%",
@@ -391,44 +448,6 @@ public class FogDevice extends PowerDatacenter {
 					host.getUtilizationOfCpu() * 100);
 		}
 
-		if (timeDiff > 0) {
-			Log.formatLine(
-					"\nEnergy consumption for the last time frame from %.2f to %.2f:",
-					getLastProcessTime(),
-					currentTime);
-
-			for (PowerHost host : this.<PowerHost> getHostList()) {
-				double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
-				double utilizationOfCpu = host.getUtilizationOfCpu();
-				double timeFrameHostEnergy = host.getEnergyLinearInterpolation(
-						previousUtilizationOfCpu,
-						utilizationOfCpu,
-						timeDiff);
-				timeFrameDatacenterEnergy += timeFrameHostEnergy;
-
-				Log.printLine();
-				Log.formatLine(
-						"%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
-						currentTime,
-						host.getId(),
-						getLastProcessTime(),
-						previousUtilizationOfCpu * 100,
-						utilizationOfCpu * 100);
-				Log.formatLine(
-						"%.2f: [Host #%d] energy is %.2f W*sec",
-						currentTime,
-						host.getId(),
-						timeFrameHostEnergy);
-			}
-
-			Log.formatLine(
-					"\n%.2f: Data center's energy is %.2f W*sec\n",
-					currentTime,
-					timeFrameDatacenterEnergy);
-		}
-
-		setPower(getPower() + timeFrameDatacenterEnergy);
-
 		checkCloudletCompletion();
 
 		/** Remove completed VMs **/
@@ -456,6 +475,8 @@ public class FogDevice extends PowerDatacenter {
 		for (int i = 0; i < list.size(); i++) {
 			Host host = list.get(i);
 			for (Vm vm : host.getVmList()) {
+				// the tuples finished by a module at the same time are turned into resultant tuples as one batch
+				List<Tuple> finishedTuples = new ArrayList<Tuple>();
 				while (vm.getCloudletScheduler().isFinishedCloudlets()) {
 					Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
 					if (cl != null) {
@@ -463,18 +484,25 @@ public class FogDevice extends PowerDatacenter {
 						cloudletCompleted = true;
 						Tuple tuple = (Tuple)cl;
 						TimeKeeper.getInstance().tupleEndedExecution(tuple);
-						Application application = getApplicationMap().get(tuple.getAppId());
 						Logger.debug(getName(), "Completed execution of tuple "+tuple.getCloudletId()+"on "+tuple.getDestModuleName());
-						List<Tuple> resultantTuples = application.getResultantTuples(tuple.getDestModuleName(), tuple, getId(), vm.getId());
-						for(Tuple resTuple : resultantTuples){
-							resTuple.setModuleCopyMap(new HashMap<String, Integer>(tuple.getModuleCopyMap()));
-							resTuple.getModuleCopyMap().put(((AppModule)vm).getName(), vm.getId());
-							updateTimingsOnSending(resTuple);
-							sendToSelf(resTuple);
-						}
-						sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+						finishedTuples.add(tuple);
 					}
 				}
+				if(finishedTuples.isEmpty())
+					continue;
+				Tuple firstTuple = finishedTuples.get(0);
+				Application application = getApplicationMap().get(firstTuple.getAppId());
+				List<List<Tuple>> resultantTuples = application.getResultantTuples(firstTuple.getDestModuleName(), finishedTuples, getId(), vm.getId());
+				for(int j = 0; j < finishedTuples.size(); j++){
+					Tuple tuple = finishedTuples.get(j);
+					for(Tuple resTuple : resultantTuples.get(j)){
+						resTuple.setModuleCopyMap(new HashMap<String, Integer>(tuple.getModuleCopyMap()));
+						resTuple.getModuleCopyMap().put(((AppModule)vm).getName(), vm.getId());
+						updateTimingsOnSending(resTuple);
+						sendToSelf(resTuple);
+					}
+					sendNow(tuple.getUserId(), CloudSimTags.CLOUDLET_RETURN, tuple);
+				}
 			}
 		}
 		if(cloudletCompleted)
@@ -533,37 +561,24 @@ public class FogDevice extends PowerDatacenter {
 			}
 		}
 		
-		updateEnergyConsumption();
+		// the modules with nothing to process are left behind until a tuple is submitted to them, unless they
+		// are already up to date and only the MIPS they are given change
+		for(final Vm vm : getHost().getVmList()){
+			if(!vm.getCloudletScheduler().isProcessingIdle() || vm.getCloudletScheduler().getPreviousTime() == CloudSim.clock())
+				vm.updateVmProcessing(CloudSim.clock(), getHost().getVmScheduler().getAllocatedMipsForVm(vm));
+		}
+		updateUtilization();
 		
 	}
 	
-	private void updateEnergyConsumption() {
+	/**
+	 * Records the utilization of the host from the MIPS allocated to the modules
+	 */
+	private void updateUtilization() {
 		double totalMipsAllocated = 0;
-		for(final Vm vm : getHost().getVmList()){
-			AppModule operator = (AppModule)vm;
-			operator.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(operator).getVmScheduler()
-					.getAllocatedMipsForVm(operator));
+		for(final Vm vm : getHost().getVmList())
 			totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
-		}
-		
-		double timeNow = CloudSim.clock();
-		double currentEnergyConsumption = getEnergyConsumption();
-		double newEnergyConsumption = currentEnergyConsumption + (timeNow-lastUtilizationUpdateTime)*getHost().getPowerModel().getPower(lastUtilization);
-		setEnergyConsumption(newEnergyConsumption);
-	
-		/*if(getName().equals("d-0")){
-			System.out.println("------------------------");
-			System.out.println("Utilization = "+lastUtilization);
-			System.out.println("Power = "+getHost().getPowerModel().getPower(lastUtilization));
-			System.out.println(timeNow-lastUtilizationUpdateTime);
-		}*/
-		
-		double currentCost = getTotalCost();
-		double newcost = currentCost + (timeNow-lastUtilizationUpdateTime)*getRatePerMips()*lastUtilization*getHost().getTotalMips();
-		setTotalCost(newcost);
-		
-		lastUtilization = Math.min(1, totalMipsAllocated/getHost().getTotalMips());
-		lastUtilizationUpdateTime = timeNow;
+		energyMeter.utilizationChanged(CloudSim.clock(), Math.min(1, totalMipsAllocated/getHost().getTotalMips()));
 	}
 
 	protected void processAppSubmit(SimEvent ev) {
@@ -608,18 +623,16 @@ public class FogDevice extends PowerDatacenter {
 				return;
 			}
 		}
+		Set<Integer> childIds = actuatorTypeToChildIds.get(tuple.getDestModuleName());
 		for(int childId : getChildrenIds()){
-			sendDown(tuple, childId);
+			if(Config.BROADCAST_DOWN_TUPLES || (childIds != null && childIds.contains(childId)))
+				sendDown(tuple, childId);
 		}
 	}
 	int numClients=0;
 	protected void processTupleArrival(SimEvent ev){
 		Tuple tuple = (Tuple)ev.getData();
 		
-		if(getName().equals("cloud")){
-			updateCloudTraffic();
-		}
-		
 		/*if(getName().equals("d-0") && tuple.getTupleType().equals("_SENSOR")){
 			System.out.println(++numClients);
 		}*/
@@ -627,6 +640,28 @@ public class FogDevice extends PowerDatacenter {
 		CloudSim.getEntityName(ev.getSource())+"|Dest : "+CloudSim.getEntityName(ev.getDestination()));
 		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
 		
+		processTupleArrival(tuple);
+	}
+	
+	/**
+	 * Processes the tuples sent together by the parent on the downlink to this device, in the order they were sent.
+	 * A single acknowledgement is sent for the batch.
+	 * @param ev the event, whose data is the list of tuples
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processTupleBatchArrival(SimEvent ev){
+		List<Tuple> tuples = (List<Tuple>)ev.getData();
+		Logger.debug(getName(), "Received a batch of "+tuples.size()+" tuples from "+CloudSim.getEntityName(ev.getSource()));
+		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+		for(Tuple tuple : tuples)
+			processTupleArrival(tuple);
+	}
+	
+	protected void processTupleArrival(Tuple tuple){
+		if(getName().equals("cloud")){
+			updateCloudTraffic();
+		}
+		
 		if(FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())){
 		}
 		
@@ -657,9 +692,16 @@ public class FogDevice extends PowerDatacenter {
 					if(((AppModule)vm).getName().equals(tuple.getDestModuleName()))
 						vmId = vm.getId();
 				}
-				if(vmId < 0
-						|| (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) && 
-								tuple.getModuleCopyMap().get(tuple.getDestModuleName())!=vmId )){
+				if(vmId < 0){
+					return;
+				}
+				if(tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
+						tuple.getModuleCopyMap().get(tuple.getDestModuleName())!=vmId){
+					// the tuple is bound to an instance of the module on another device, as when a module is scaled out below an instance
+					if(tuple.getDirection() == Tuple.UP)
+						sendUp(tuple);
+					else if(tuple.getDirection() == Tuple.DOWN)
+						sendDownToModule(tuple);
 					return;
 				}
 				tuple.setVmId(vmId);
@@ -667,60 +709,36 @@ public class FogDevice extends PowerDatacenter {
 				
 				updateTimingsOnReceipt(tuple);
 				
-				executeTuple(ev, tuple.getDestModuleName());
+				executeTuple(tuple, tuple.getDestModuleName());
 			}else if(tuple.getDestModuleName()!=null){
 				if(tuple.getDirection() == Tuple.UP)
 					sendUp(tuple);
-				else if(tuple.getDirection() == Tuple.DOWN){
-					for(int childId : getChildrenIds())
-						sendDown(tuple, childId);
-				}
+				else if(tuple.getDirection() == Tuple.DOWN)
+					sendDownToModule(tuple);
 			}else{
 				sendUp(tuple);
 			}
 		}else{
 			if(tuple.getDirection() == Tuple.UP)
 				sendUp(tuple);
-			else if(tuple.getDirection() == Tuple.DOWN){
-				for(int childId : getChildrenIds())
-					sendDown(tuple, childId);
-			}
+			else if(tuple.getDirection() == Tuple.DOWN)
+				sendDownToModule(tuple);
 		}
 	}
 
 	protected void updateTimingsOnReceipt(Tuple tuple) {
 		Application app = getApplicationMap().get(tuple.getAppId());
-		String srcModule = tuple.getSrcModuleName();
-		String destModule = tuple.getDestModuleName();
-		List<AppLoop> loops = app.getLoops();
-		for(AppLoop loop : loops){
-			if(loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)){				
-				Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				if(startTime==null)
-					break;
-				if(!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())){
-					TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-					TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-				}
-				double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-				int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-				double delay = CloudSim.clock()- TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-				double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
-				TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-				TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount+1);
-				break;
-			}
-		}
+		int loopId = app.getEndingLoopId(tuple.getSrcModuleName(), tuple.getDestModuleName());
+		if(loopId >= 0)
+			TimeKeeper.getInstance().loopEnded(loopId, tuple.getActualTupleId());
 	}
 
 	protected void processSensorJoining(SimEvent ev){
 		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
 	}
 	
-	protected void executeTuple(SimEvent ev, String moduleName){
+	protected void executeTuple(Tuple tuple, String moduleName){
 		Logger.debug(getName(), "Executing tuple on module "+moduleName);
-		Tuple tuple = (Tuple)ev.getData();
 		
 		AppModule module = getModuleByName(moduleName);
 		
@@ -740,7 +758,15 @@ public class FogDevice extends PowerDatacenter {
 		
 		TimeKeeper.getInstance().tupleStartedExecution(tuple);
 		updateAllocatedMips(moduleName);
-		processCloudletSubmit(ev, false);
+		// the instance running the tuple is brought up to date with the MIPS it is given, as the host may not be updated now
+		Vm instance = getVm(tuple.getVmId(), tuple.getUserId());
+		if(instance != null && instance.getCloudletScheduler().getPreviousTime() < CloudSim.clock())
+			instance.updateVmProcessing(CloudSim.clock(), getHost().getVmScheduler().getAllocatedMipsForVm(instance));
+		// submits the tuple as processCloudletSubmit does, without an event to carry it
+		updateCloudletProcessing();
+		if(submitCloudlet(tuple, false))
+			checkCloudletCompletion();
+		setCloudletSubmitted(CloudSim.clock());
 		updateAllocatedMips(moduleName);
 		/*for(Vm vm : getHost().getVmList()){
 			Logger.error(getName(), "MIPS allocated to "+((AppModule)vm).getName()+" = "+getHost().getTotalAllocatedMipsForVm(vm));
@@ -755,6 +781,13 @@ public class FogDevice extends PowerDatacenter {
 		}
 		appToModulesMap.get(appId).add(module.getName());
 		processVmCreate(ev, false);
+		if(!getHost().getVmList().contains(module)){
+			// a module launched at runtime may not fit on the host any more
+			Logger.error(getName(), "Module "+module.getName()+" cannot be created");
+			appToModulesMap.get(appId).remove(module.getName());
+			return;
+		}
+		moduleInstanceAdded(module);
 		if (module.isBeingInstantiated()) {
 			module.setBeingInstantiated(false);
 		}
@@ -763,6 +796,49 @@ public class FogDevice extends PowerDatacenter {
 		
 		module.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(module).getVmScheduler()
 				.getAllocatedMipsForVm(module));
+		updateUtilization();
+	}
+	
+	/**
+	 * Records in the module location index of the ancestors of this device that it hosts a module instance.
+	 */
+	protected void moduleInstanceAdded(AppModule module){
+		int childId = getId();
+		for(FogDevice parent = getParent(); parent != null; parent = parent.getParent()){
+			Map<Integer, Integer> instanceCounts = parent.moduleToChildInstanceCounts.get(module.getName());
+			if(instanceCounts == null){
+				instanceCounts = new HashMap<Integer, Integer>();
+				parent.moduleToChildInstanceCounts.put(module.getName(), instanceCounts);
+			}
+			Integer count = instanceCounts.get(childId);
+			instanceCounts.put(childId, count == null ? 1 : count+1);
+			parent.moduleInstanceToChildId.put(module.getId(), childId);
+			childId = parent.getId();
+		}
+	}
+	
+	/**
+	 * Removes a module instance hosted by this device from the module location index of its ancestors.
+	 */
+	protected void moduleInstanceRemoved(AppModule module){
+		for(FogDevice parent = getParent(); parent != null; parent = parent.getParent()){
+			Integer childId = parent.moduleInstanceToChildId.remove(module.getId());
+			Map<Integer, Integer> instanceCounts = parent.moduleToChildInstanceCounts.get(module.getName());
+			if(childId == null || instanceCounts == null || !instanceCounts.containsKey(childId))
+				continue;
+			int count = instanceCounts.get(childId);
+			if(count > 1)
+				instanceCounts.put(childId, count-1);
+			else
+				instanceCounts.remove(childId);
+		}
+	}
+	
+	/**
+	 * @return the parent fog device, or null if this device is the root
+	 */
+	protected FogDevice getParent(){
+		return parentId > 0 ? (FogDevice)CloudSim.getEntity(parentId) : null;
 	}
 	
 	private void initializePeriodicTuples(AppModule module) {
@@ -774,8 +850,24 @@ public class FogDevice extends PowerDatacenter {
 		}
 	}
 
+	/**
+	 * Removes a module instance from this device. The tuples it was executing or had queued are dropped.
+	 * @param ev the event, whose data is the module instance
+	 */
 	protected void processOperatorRelease(SimEvent ev){
-		this.processVmMigrate(ev, false);
+		AppModule module = (AppModule)ev.getData();
+		if(!getHost().getVmList().contains(module))
+			return;
+		updateCloudletProcessing();
+		Logger.debug(getName(), "Releasing module "+module.getName()+" with "+module.getCloudletScheduler().runningCloudlets()+" tuples running");
+		if(appToModulesMap.containsKey(module.getAppId()))
+			appToModulesMap.get(module.getAppId()).remove(module.getName());
+		processVmDestroy(ev, false);
+		// a placed module was allocated both when it was placed and when it was launched
+		while(getHost().getVmList().contains(module))
+			getVmAllocationPolicy().deallocateHostForVm(module);
+		moduleInstanceRemoved(module);
+		updateAllocatedMips(null);
 	}
 	
 	
@@ -828,7 +920,9 @@ public class FogDevice extends PowerDatacenter {
 	
 	protected void sendDown(Tuple tuple, int childId){
 		if(getChildrenIds().contains(childId)){
-			if(!isSouthLinkBusy()){
+			if(Config.PER_CHILD_DOWNLINKS){
+				sendDownChildLink(tuple, childId);
+			}else if(!isSouthLinkBusy()){
 				sendDownFreeLink(tuple, childId);
 			}else{
 				southTupleQueue.add(new Pair<Tuple, Integer>(tuple, childId));
@@ -837,6 +931,85 @@ public class FogDevice extends PowerDatacenter {
 	}
 	
 	
+	/**
+	 * Sends a tuple going down towards its destination module: to the child whose subtree hosts the module instance
+	 * it is bound to by its module copy map, or else to every child whose subtree hosts an instance of the module.
+	 */
+	protected void sendDownToModule(Tuple tuple){
+		if(Config.BROADCAST_DOWN_TUPLES){
+			for(int childId : getChildrenIds())
+				sendDown(tuple, childId);
+			return;
+		}
+		Integer instanceId = tuple.getModuleCopyMap().get(tuple.getDestModuleName());
+		if(instanceId != null){
+			Integer childId = moduleInstanceToChildId.get(instanceId);
+			if(childId != null)
+				sendDown(tuple, childId);
+			return;
+		}
+		Map<Integer, Integer> instanceCounts = moduleToChildInstanceCounts.get(tuple.getDestModuleName());
+		if(instanceCounts == null)
+			return;
+		for(int childId : getChildrenIds()){
+			if(instanceCounts.containsKey(childId))
+				sendDown(tuple, childId);
+		}
+	}
+	
+	/**
+	 * Sends a tuple on the downlink to a child, or queues it if the link is busy.
+	 */
+	protected void sendDownChildLink(Tuple tuple, int childId){
+		if(busyChildLinks.contains(childId)){
+			Queue<Tuple> queue = childTupleQueues.get(childId);
+			if(queue == null){
+				queue = new LinkedList<Tuple>();
+				childTupleQueues.put(childId, queue);
+			}
+			queue.add(tuple);
+		}else{
+			List<Tuple> tuples = new ArrayList<Tuple>(1);
+			tuples.add(tuple);
+			sendDownFreeChildLink(tuples, childId);
+		}
+	}
+	
+	/**
+	 * Called when the downlink to a child is done sending: the tuples queued meanwhile are sent as one batch.
+	 */
+	protected void updateChildTupleQueue(int childId){
+		Queue<Tuple> queue = childTupleQueues.get(childId);
+		if(queue != null && !queue.isEmpty()){
+			List<Tuple> tuples = new ArrayList<Tuple>(queue);
+			queue.clear();
+			sendDownFreeChildLink(tuples, childId);
+		}else{
+			busyChildLinks.remove(childId);
+		}
+	}
+	
+	/**
+	 * Sends tuples back to back on the free downlink to a child. The link is busy for the sum of their transmission
+	 * times, and they are delivered together once the last one has arrived, with one event for the link and one for
+	 * the child rather than two per tuple. The link runs at the full downlink bandwidth whatever the other child
+	 * links are doing (see Config.PER_CHILD_DOWNLINKS).
+	 */
+	protected void sendDownFreeChildLink(List<Tuple> tuples, int childId){
+		double latency = getChildToLatencyMap().get(childId);
+		double networkDelay = 0;
+		for(Tuple tuple : tuples){
+			networkDelay += tuple.getCloudletFileSize()/getDownlinkBandwidth();
+			NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
+		}
+		busyChildLinks.add(childId);
+		send(getId(), networkDelay, FogEvents.UPDATE_CHILD_TUPLE_QUEUE, childId);
+		if(tuples.size() == 1)
+			send(childId, networkDelay+latency, FogEvents.TUPLE_ARRIVAL, tuples.get(0));
+		else
+			send(childId, networkDelay+latency, FogEvents.TUPLE_BATCH_ARRIVAL, tuples);
+	}
+	
 	protected void sendToSelf(Tuple tuple){
 		send(getId(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ARRIVAL, tuple);
 	}
@@ -921,6 +1094,16 @@ public class FogDevice extends PowerDatacenter {
 	public void setSouthTupleQueue(Queue<Pair<Tuple, Integer>> southTupleQueue) {
 		this.southTupleQueue = southTupleQueue;
 	}
+	
+	/**
+	 * @return the number of tuples waiting to be sent to the children, on the shared downlink or on their own
+	 */
+	public int getSouthTupleQueueLength() {
+		int length = southTupleQueue.size();
+		for(Queue<Tuple> queue : childTupleQueues.values())
+			length += queue.size();
+		return length;
+	}
 
 	public double getDownlinkBandwidth() {
 		return downlinkBandwidth;
@@ -938,12 +1121,35 @@ public class FogDevice extends PowerDatacenter {
 		this.associatedActuatorIds = associatedActuatorIds;
 	}
 	
+	/**
+	 * @return the integral of the CPU utilization over time until the current time, so that its increase over an
+	 * interval divided by the length of the interval is the mean utilization during the interval
+	 */
+	public double getCumulativeUtilization() {
+		return energyMeter.getCumulativeUtilization(CloudSim.clock());
+	}
+	
+	/**
+	 * @return the energy consumed until the current time
+	 */
 	public double getEnergyConsumption() {
-		return energyConsumption;
+		return energyConsumption + energyMeter.getEnergy(CloudSim.clock());
 	}
 
 	public void setEnergyConsumption(double energyConsumption) {
-		this.energyConsumption = energyConsumption;
+		this.energyConsumption = energyConsumption - energyMeter.getEnergy(CloudSim.clock());
+	}
+	
+	/**
+	 * @return the energy consumed until the current time, metered instead of interpolated on every update of the host
+	 */
+	@Override
+	public double getPower() {
+		return getEnergyConsumption();
+	}
+	
+	public double getLastUtilization() {
+		return energyMeter.getUtilization();
 	}
 	public Map<Integer, Double> getChildToLatencyMap() {
 		return childToLatencyMap;
@@ -968,12 +1174,15 @@ public class FogDevice extends PowerDatacenter {
 	public void setRatePerMips(double ratePerMips) {
 		this.ratePerMips = ratePerMips;
 	}
+	/**
+	 * @return the cost of the MIPS used until the current time
+	 */
 	public double getTotalCost() {
-		return totalCost;
+		return totalCost + getRatePerMips()*getHost().getTotalMips()*getCumulativeUtilization();
 	}
 
 	public void setTotalCost(double totalCost) {
-		this.totalCost = totalCost;
+		this.totalCost = totalCost - getRatePerMips()*getHost().getTotalMips()*getCumulativeUtilization();
 	}
 
 	public Map<String, Map<String, Integer>> getModuleInstanceCount() {
@@ -984,4 +1193,31 @@ public class FogDevice extends PowerDatacenter {
 			Map<String, Map<String, Integer>> moduleInstanceCount) {
 		this.moduleInstanceCount = moduleInstanceCount;
 	}
-}
\ No newline at end of file
+
+	// Pair is not serializable, so the south queue and the actuator associations are written as pairs of objects
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(southTupleQueue.size());
+		for(Pair<Tuple, Integer> pair : southTupleQueue){
+			out.writeObject(pair.getFirst());
+			out.writeObject(pair.getSecond());
+		}
+		out.writeInt(associatedActuatorIds.size());
+		for(Pair<Integer, Double> pair : associatedActuatorIds){
+			out.writeObject(pair.getFirst());
+			out.writeObject(pair.getSecond());
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
+		for(int i=0;i<size;i++)
+			southTupleQueue.add(new Pair<Tuple, Integer>((Tuple)in.readObject(), (Integer)in.readObject()));
+		size = in.readInt();
+		associatedActuatorIds = new ArrayList<Pair<Integer, Double>>();
+		for(int i=0;i<size;i++)
+			associatedActuatorIds.add(new Pair<Integer, Double>((Integer)in.readObject(), (Double)in.readObject()));
+	}
+}
@@ -19,6 +19,7 @@ import org.cloudbus.cloudsim.lists.PeList;
 import org.fog.utils.GeoCoverage;
 
 public class FogDeviceCharacteristics extends DatacenterCharacteristics{
+	private static final long serialVersionUID = 1L;
 
 	/** The geographical coverage of the fog device */
 	private GeoCoverage geoCoverage;
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.RandomStreams;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.application.AppEdge;
@@ -17,6 +18,7 @@ import org.fog.utils.TimeKeeper;
 import org.fog.utils.distribution.Distribution;
 
 public class Sensor extends SimEntity{
+	private static final long serialVersionUID = 1L;
 	
 	private int gatewayDeviceId;
 	private GeoLocation geoLocation;
@@ -44,6 +46,7 @@ public class Sensor extends SimEntity{
 		setTupleType(tupleType);
 		setSensorName(sensorName);
 		setLatency(latency);
+		deriveTransmitStream();
 	}
 	
 	public Sensor(String name, int userId, String appId, int gatewayDeviceId, double latency, GeoLocation geoLocation, 
@@ -58,6 +61,7 @@ public class Sensor extends SimEntity{
 		setTupleType(tupleType);
 		setSensorName(sensorName);
 		setLatency(latency);
+		deriveTransmitStream();
 	}
 	
 	/**
@@ -76,6 +80,16 @@ public class Sensor extends SimEntity{
 		setTupleType(tupleType);
 		setSensorName(tupleType);
 		setUserId(userId);
+		deriveTransmitStream();
+	}
+	
+	/**
+	 * Gives the transmit distribution the random stream of this sensor and the edge it emits on,
+	 * so that its emission times do not depend on the order in which the sensors are created.
+	 */
+	private void deriveTransmitStream(){
+		if(getTransmitDistribution() != null)
+			getTransmitDistribution().setRandom(RandomStreams.stream(getName()+"/"+getTupleType()));
 	}
 	
 	public void transmit(){
@@ -17,6 +17,8 @@ public class Graph implements Serializable {
 	
 	private Map<Node, List<Edge>> adjacencyList;
 
+	/** The number of changes made to the graph, so that views know when to lay it out again */
+	private transient int modCount;
 
 	public Graph() {
 		// when creating a new graph ensure that a new adjacencyList is created
@@ -29,6 +31,7 @@ public class Graph implements Serializable {
 
 	public void setAdjacencyList(Map<Node, List<Edge>> adjacencyList) {
 		this.adjacencyList = adjacencyList;
+		modCount++;
 	}
 
 	public Map<Node, List<Edge>> getAdjacencyList() {
@@ -37,6 +40,7 @@ public class Graph implements Serializable {
 
 	/** Adds a given edge to the adjacency list. If the base node is not yet part of the adjacency list a new entry is added */
 	public void addEdge(Node key, Edge value) {
+		modCount++;
 
 		if (adjacencyList.containsKey(key)) {
 			if (adjacencyList.get(key) == null) {
@@ -89,6 +93,7 @@ public class Graph implements Serializable {
 	}
 
 	public void removeEdge(Node key, Edge value) {
+		modCount++;
 
 		if (!adjacencyList.containsKey(key)) {
 			throw new IllegalArgumentException("The adjacency list does not contain a node for the given key: " + key);
@@ -120,6 +125,7 @@ public class Graph implements Serializable {
 		}
 
 		adjacencyList.remove(key);
+		modCount++;
 
 		// clean up all edges
 		for (Entry<Node, List<Edge>> entry : adjacencyList.entrySet()) {
@@ -137,6 +143,12 @@ public class Graph implements Serializable {
 	
 	public void clearGraph(){
 		adjacencyList.clear();
+		modCount++;
+	}
+
+	/** Returns a counter that changes whenever nodes or edges are added or removed */
+	public int getModCount(){
+		return modCount;
 	}
 	
 	public String toJsonString(){
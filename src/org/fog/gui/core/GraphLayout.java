@@ -0,0 +1,276 @@
+package org.fog.gui.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The level-based layout of a graph of fog devices, sensors and actuators, computed once per change
+ * of the graph. Fog devices are placed on one row per level and sensors and actuators on a last row;
+ * children are placed next to each other, in the order of their parents. Positions are stored as
+ * rows and slots rather than pixels, so that the same layout can be drawn at any size and zoom.
+ */
+class GraphLayout {
+
+	private final Graph graph;
+	private final int modCount;
+
+	/** The placed nodes, row by row */
+	private final Node[] nodes;
+	/** For every row, the indexes of its nodes from left to right */
+	private final int[][] rows;
+	private final int[] rowOf;
+	private final int[] slotOf;
+	/** The index of the node a node was placed under, or -1 */
+	private final int[] parentOf;
+	private final int[] edgeFrom;
+	private final int[] edgeTo;
+
+	/** The collapsed subtrees, by the first hidden row */
+	private final Map<Integer, Collapsed> collapsed = new HashMap<Integer, Collapsed>();
+
+	/**
+	 * The nodes hidden when the rows from a given one on are not drawn: the number of hidden nodes
+	 * under every node, and the hidden nodes with no drawn ancestor.
+	 */
+	static class Collapsed {
+		final int[] hiddenBelow;
+		final int[] orphans;
+
+		Collapsed(int[] hiddenBelow, int[] orphans) {
+			this.hiddenBelow = hiddenBelow;
+			this.orphans = orphans;
+		}
+	}
+
+	/**
+	 * Lays out a copy of the adjacency list of a graph. The copy must not be changed, so the layout
+	 * can be computed away from the thread that edits the graph.
+	 */
+	static GraphLayout compute(Graph graph, int modCount, Map<Node, List<Edge>> adjacencyList) {
+		Map<Node, List<Node>> childrenMap = createChildrenMap(adjacencyList);
+		TreeMap<Integer, List<Node>> levelMap = new TreeMap<Integer, List<Node>>();
+		List<Node> endpoints = new ArrayList<Node>();
+		for(Node node : adjacencyList.keySet()){
+			if(node.getType().equals("FOG_DEVICE")){
+				int level = ((FogDeviceGui)node).getLevel();
+				if(!levelMap.containsKey(level))
+					levelMap.put(level, new ArrayList<Node>());
+				levelMap.get(level).add(node);
+			} else if(node.getType().equals("SENSOR") || node.getType().equals("ACTUATOR")){
+				endpoints.add(node);
+			}
+		}
+
+		List<List<Node>> rowNodes = new ArrayList<List<Node>>();
+		Map<Node, Node> parents = new HashMap<Node, Node>();
+		Map<Node, Boolean> placed = new HashMap<Node, Boolean>();
+		List<Node> upperRow = null;
+		for(List<Node> levelNodes : levelMap.values()){
+			List<Node> row = new ArrayList<Node>(levelNodes.size());
+			if(upperRow != null){
+				int level = ((FogDeviceGui)levelNodes.get(0)).getLevel();
+				for(Node parent : upperRow){
+					List<Node> children = childrenMap.get(parent);
+					if(children == null)
+						continue;
+					for(Node child : children){
+						if(child.getType().equals("FOG_DEVICE") && ((FogDeviceGui)child).getLevel() == level && !placed.containsKey(child)){
+							row.add(child);
+							parents.put(child, parent);
+							placed.put(child, true);
+						}
+					}
+				}
+			}
+			for(Node node : levelNodes){
+				if(!placed.containsKey(node)){
+					row.add(node);
+					placed.put(node, true);
+				}
+			}
+			rowNodes.add(row);
+			upperRow = row;
+		}
+		List<Node> endpointRow = new ArrayList<Node>(endpoints.size());
+		for(List<Node> row : rowNodes){
+			for(Node parent : row){
+				List<Node> children = childrenMap.get(parent);
+				if(children == null)
+					continue;
+				for(Node child : children){
+					if(!child.getType().equals("FOG_DEVICE") && !placed.containsKey(child)){
+						endpointRow.add(child);
+						parents.put(child, parent);
+						placed.put(child, true);
+					}
+				}
+			}
+		}
+		for(Node node : endpoints){
+			if(!placed.containsKey(node)){
+				endpointRow.add(node);
+				placed.put(node, true);
+			}
+		}
+		rowNodes.add(endpointRow);
+
+		return new GraphLayout(graph, modCount, rowNodes, parents, adjacencyList);
+	}
+
+	private static Map<Node, List<Node>> createChildrenMap(Map<Node, List<Edge>> adjacencyList){
+		Map<Node, List<Node>> childrenMap = new HashMap<Node, List<Node>>();
+		for(Entry<Node, List<Edge>> entry : adjacencyList.entrySet()){
+			Node node = entry.getKey();
+			for(Edge edge : entry.getValue()){
+				Node neighbour = edge.getNode();
+				Node parent, child;
+				if(node.getType().equals("SENSOR") || node.getType().equals("ACTUATOR")){
+					parent = neighbour;
+					child = node;
+				} else if(neighbour.getType().equals("SENSOR") || neighbour.getType().equals("ACTUATOR")){
+					parent = node;
+					child = neighbour;
+				} else if(node.getType().equals("FOG_DEVICE") && neighbour.getType().equals("FOG_DEVICE")){
+					boolean nodeIsChild = ((FogDeviceGui)node).getLevel() > ((FogDeviceGui)neighbour).getLevel();
+					parent = nodeIsChild ? neighbour : node;
+					child = nodeIsChild ? node : neighbour;
+				} else {
+					continue;
+				}
+				if(!childrenMap.containsKey(parent))
+					childrenMap.put(parent, new ArrayList<Node>());
+				childrenMap.get(parent).add(child);
+			}
+		}
+		return childrenMap;
+	}
+
+	private GraphLayout(Graph graph, int modCount, List<List<Node>> rowNodes, Map<Node, Node> parents, Map<Node, List<Edge>> adjacencyList) {
+		this.graph = graph;
+		this.modCount = modCount;
+		int count = 0;
+		for(List<Node> row : rowNodes)
+			count += row.size();
+		nodes = new Node[count];
+		rows = new int[rowNodes.size()][];
+		rowOf = new int[count];
+		slotOf = new int[count];
+		parentOf = new int[count];
+		Map<Node, Integer> indexes = new HashMap<Node, Integer>(count * 2);
+		int index = 0;
+		for(int r = 0; r < rows.length; r++){
+			List<Node> row = rowNodes.get(r);
+			rows[r] = new int[row.size()];
+			for(int s = 0; s < row.size(); s++){
+				nodes[index] = row.get(s);
+				rows[r][s] = index;
+				rowOf[index] = r;
+				slotOf[index] = s;
+				indexes.put(row.get(s), index);
+				index++;
+			}
+		}
+		for(int i = 0; i < count; i++){
+			Node parent = parents.get(nodes[i]);
+			parentOf[i] = parent == null ? -1 : indexes.get(parent);
+		}
+		int edgeCount = 0;
+		for(List<Edge> edges : adjacencyList.values())
+			edgeCount += edges.size();
+		int[] from = new int[edgeCount];
+		int[] to = new int[edgeCount];
+		int e = 0;
+		for(Entry<Node, List<Edge>> entry : adjacencyList.entrySet()){
+			Integer source = indexes.get(entry.getKey());
+			if(source == null)
+				continue;
+			for(Edge edge : entry.getValue()){
+				Integer target = indexes.get(edge.getNode());
+				if(target == null)
+					continue;
+				from[e] = source;
+				to[e] = target;
+				e++;
+			}
+		}
+		edgeFrom = new int[e];
+		edgeTo = new int[e];
+		System.arraycopy(from, 0, edgeFrom, 0, e);
+		System.arraycopy(to, 0, edgeTo, 0, e);
+	}
+
+	boolean isLayoutOf(Graph graph) {
+		return this.graph == graph && modCount == graph.getModCount();
+	}
+
+	int getNodeCount() {
+		return nodes.length;
+	}
+
+	Node getNode(int index) {
+		return nodes[index];
+	}
+
+	int getRowCount() {
+		return rows.length;
+	}
+
+	int[] getRow(int row) {
+		return rows[row];
+	}
+
+	int getRowOf(int index) {
+		return rowOf[index];
+	}
+
+	int getSlotOf(int index) {
+		return slotOf[index];
+	}
+
+	int getEdgeCount() {
+		return edgeFrom.length;
+	}
+
+	int getEdgeFrom(int edge) {
+		return edgeFrom[edge];
+	}
+
+	int getEdgeTo(int edge) {
+		return edgeTo[edge];
+	}
+
+	/**
+	 * Returns the nodes hidden when the rows from the given one on are not drawn. Hidden nodes are
+	 * counted under their closest drawn ancestor. It is computed once per row and kept.
+	 */
+	Collapsed getCollapsed(int firstHiddenRow) {
+		Collapsed result = collapsed.get(firstHiddenRow);
+		if(result != null)
+			return result;
+		int[] hiddenBelow = new int[nodes.length];
+		int[] representative = new int[nodes.length];
+		int orphanCount = 0;
+		int[] orphans = new int[nodes.length];
+		// nodes are stored row by row and a parent is always on an upper row
+		for(int i = 0; i < nodes.length; i++){
+			if(rowOf[i] < firstHiddenRow){
+				representative[i] = i;
+				continue;
+			}
+			representative[i] = parentOf[i] < 0 ? -1 : representative[parentOf[i]];
+			if(representative[i] < 0)
+				orphans[orphanCount++] = i;
+			else
+				hiddenBelow[representative[i]]++;
+		}
+		int[] trimmed = new int[orphanCount];
+		System.arraycopy(orphans, 0, trimmed, 0, orphanCount);
+		result = new Collapsed(hiddenBelow, trimmed);
+		collapsed.put(firstHiddenRow, result);
+		return result;
+	}
+}
@@ -0,0 +1,165 @@
+package org.fog.gui.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PhysicalTopology;
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementEdgewards;
+import org.fog.utils.FogSnapshot;
+import org.fog.utils.JsonToTopology;
+import org.fog.utils.TimeKeeper;
+
+/**
+ * A fog simulation of the topology drawn in the GUI. The topology has no application of its own, so
+ * a default one is made from its sensors and actuators: every sensor type is processed by a module
+ * of its own, which sends its results to the actuators attached to the same gateways as the
+ * sensors. The modules are placed edge-wards.
+ * <p>
+ * The simulation is meant to be run away from the event dispatch thread: the graph is converted when
+ * the simulation is created, {@link #run()} builds and runs it and returns its results, and
+ * {@link #cancel()} may be called from any thread. The Controller does not exit the JVM when the
+ * simulation stops.
+ */
+public class GraphSimulation {
+
+	private static final String APP_ID = "gui_app";
+	private static final double TUPLE_CPU_LENGTH = 1000;
+	private static final double TUPLE_NW_LENGTH = 500;
+
+	private final String topology;
+	private volatile boolean cancelled;
+	private volatile boolean running;
+
+	/**
+	 * @param graph the topology, converted at once so that it can be edited during the simulation
+	 */
+	public GraphSimulation(Graph graph) {
+		this.topology = Bridge.graphToJson(graph);
+	}
+
+	/**
+	 * Builds and runs the simulation. The results the Controller prints when it stops go to the
+	 * standard output as well as to the returned text; the standard output itself is left alone.
+	 * @return the results of the simulation
+	 */
+	public String run() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final PrintStream console = System.out;
+		final OutputStream captured = output;
+		PrintStream report = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				console.write(b);
+				captured.write(b);
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				console.write(b, off, len);
+				captured.write(b, off, len);
+			}
+		}, true);
+		File file = File.createTempFile("topology", ".json");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				out.write(topology.getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+			FogSnapshot.reset();
+			CloudSim.init(1, Calendar.getInstance(), false);
+			FogBroker broker = new FogBroker("broker");
+			PhysicalTopology physicalTopology = JsonToTopology.getPhysicalTopology(broker.getId(), APP_ID, file.getPath());
+			List<FogDevice> fogDevices = physicalTopology.getFogDevices();
+			List<Sensor> sensors = physicalTopology.getSensors();
+			List<Actuator> actuators = physicalTopology.getActuators();
+			Application application = createApplication(broker.getId(), sensors, actuators);
+
+			Controller controller = new Controller("master-controller", fogDevices, sensors, actuators);
+			controller.setExitOnStop(false);
+			controller.setReportStream(report);
+			controller.submitApplication(application, 0,
+					new ModulePlacementEdgewards(fogDevices, sensors, actuators, application, ModuleMapping.createModuleMapping()));
+
+			TimeKeeper.getInstance().setSimulationStartTime(Calendar.getInstance().getTimeInMillis());
+			// set before checking, so that a concurrent cancel either is seen here or terminates the run
+			running = true;
+			double clock = cancelled ? 0 : CloudSim.startSimulation();
+			if(cancelled)
+				report.println("Simulation cancelled at time " + clock);
+		} finally {
+			running = false;
+			file.delete();
+			report.flush();
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Stops the simulation at the next event, or before it starts.
+	 */
+	public void cancel() {
+		cancelled = true;
+		if(running)
+			CloudSim.abruptallyTerminate();
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private static Application createApplication(int userId, List<Sensor> sensors, List<Actuator> actuators) {
+		Application application = Application.createApplication(APP_ID, userId);
+		Map<String, Set<String>> actuatorTypesBySensorType = new HashMap<String, Set<String>>();
+		for(Sensor sensor : sensors){
+			Set<String> actuatorTypes = actuatorTypesBySensorType.get(sensor.getTupleType());
+			if(actuatorTypes == null){
+				actuatorTypes = new LinkedHashSet<String>();
+				actuatorTypesBySensorType.put(sensor.getTupleType(), actuatorTypes);
+			}
+			for(Actuator actuator : actuators){
+				if(actuator.getGatewayDeviceId() == sensor.getGatewayDeviceId())
+					actuatorTypes.add(actuator.getActuatorType());
+			}
+		}
+		List<AppLoop> loops = new ArrayList<AppLoop>();
+		for(Map.Entry<String, Set<String>> entry : actuatorTypesBySensorType.entrySet()){
+			String sensorType = entry.getKey();
+			String module = sensorType + "_processor";
+			application.addAppModule(module, 10);
+			application.addAppEdge(sensorType, module, TUPLE_CPU_LENGTH, TUPLE_NW_LENGTH, sensorType, Tuple.UP, AppEdge.SENSOR);
+			for(String actuatorType : entry.getValue()){
+				String tupleType = sensorType + "_" + actuatorType;
+				application.addAppEdge(module, actuatorType, TUPLE_CPU_LENGTH, TUPLE_NW_LENGTH, tupleType, Tuple.DOWN, AppEdge.ACTUATOR);
+				application.addTupleMapping(module, sensorType, tupleType, new FractionalSelectivity(1.0));
+				loops.add(new AppLoop(new ArrayList<String>(Arrays.asList(sensorType, module, actuatorType))));
+			}
+		}
+		application.setLoops(loops);
+		return application;
+	}
+}
@@ -1,10 +1,15 @@
 package org.fog.gui.core;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -14,18 +19,40 @@ import java.util.Map.Entry;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
-import org.fog.utils.FogUtils;
 
-
-/** Panel that displays a graph */
+/**
+ * Panel that displays a graph. The layout is computed by a background worker whenever the graph
+ * changes, and painting only draws the cached layout: nodes outside the visible area are skipped,
+ * and rows too dense to be told apart are collapsed into a count under their closest drawn
+ * ancestor. Ctrl and the mouse wheel zoom in and out. During a simulation, fog devices can be
+ * coloured by their CPU utilisation.
+ */
 public class GraphView extends JPanel {
 
 	private static final long serialVersionUID = 1L;
 
-	private JPanel canvas;
+	/** The smallest distance, in pixels, between the nodes of a row for the row to be drawn */
+	private static final int MIN_NODE_SPACING = 6;
+	/** The smallest size, in pixels, at which node icons are drawn rather than dots */
+	private static final int MIN_ICON_SIZE = 12;
+	private static final double ZOOM_STEP = 1.25;
+
+	private Canvas canvas;
+	private JScrollPane scrollPane;
 	private Graph graph;
 
+	private GraphLayout layout;
+	private LayoutWorker worker;
+
+	/** The CPU utilisation of fog devices in a running simulation, by device name */
+	private Map<String, Double> utilizations = new HashMap<String, Double>();
+
 	private Image imgHost;
 	private Image imgSensor;
 	private Image imgSwitch;
@@ -33,7 +60,7 @@ public class GraphView extends JPanel {
 	private Image imgActuator;
 	private Image imgSensorModule;
 	private Image imgActuatorModule;
-	
+
 	public GraphView(final Graph graph) {
 
 		this.graph = graph;
@@ -44,335 +71,324 @@ public class GraphView extends JPanel {
 		imgActuator = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("/images/actuator.png"));
 		imgSensorModule = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("/images/sensorModule.png"));
 		imgActuatorModule = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("/images/actuatorModule.png"));
-		
+
 		initComponents();
 	}
 
-	private Map<Node, List<Node>> createChildrenMap(){
-		Map<Node, List<Node>> childrenMap = new HashMap<Node, List<Node>>();
-		for(Node node : graph.getAdjacencyList().keySet()){
-			if(node.getType().equals("FOG_DEVICE") && !childrenMap.containsKey(node))
-				childrenMap.put(node, new ArrayList<Node>());
-			List<Edge> edgeList = graph.getAdjacencyList().get(node);
-			
-			for(Edge edge : edgeList){
-				Node neighbour = edge.getNode();
-				if(node.getType().equals("SENSOR") || node.getType().equals("ACTUATOR")){
-					if(!childrenMap.containsKey(neighbour)){
-						childrenMap.put(neighbour, new ArrayList<Node>());
-					}
-					childrenMap.get(neighbour).add(node);
-				} else if(neighbour.getType().equals("SENSOR") || neighbour.getType().equals("ACTUATOR")){
-					if(!childrenMap.containsKey(node)){
-						childrenMap.put(node, new ArrayList<Node>());
-					}
-					childrenMap.get(node).add(neighbour);
-				}else {
-					Node child = (((FogDeviceGui)node).getLevel() > ((FogDeviceGui)neighbour).getLevel())?node:neighbour;
-					Node parent = (((FogDeviceGui)node).getLevel() < ((FogDeviceGui)neighbour).getLevel())?node:neighbour;
-					if(!childrenMap.containsKey(parent)){
-						childrenMap.put(parent, new ArrayList<Node>());
-					}
-					childrenMap.get(parent).add(child);
-				}
+	private void initComponents() {
+		canvas = new Canvas();
+		scrollPane = new JScrollPane(canvas);
+		setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
+		add(scrollPane);
+	}
+
+	/**
+	 * Starts laying out the graph in the background, unless the layout of its current version is
+	 * already being computed. The graph is copied first, so that it can be edited meanwhile.
+	 */
+	private void requestLayout() {
+		if(graph.getAdjacencyList() == null)
+			return;
+		if(worker != null && worker.graph == graph && worker.modCount == graph.getModCount())
+			return;
+		if(worker != null)
+			worker.cancel(false);
+		worker = new LayoutWorker(graph);
+		worker.execute();
+	}
+
+	private class LayoutWorker extends SwingWorker<GraphLayout, Void> {
+		private final Graph graph;
+		private final int modCount;
+		private final Map<Node, List<Edge>> adjacencyList;
+
+		LayoutWorker(Graph graph) {
+			this.graph = graph;
+			this.modCount = graph.getModCount();
+			this.adjacencyList = new HashMap<Node, List<Edge>>(graph.getAdjacencyList().size() * 2);
+			for(Entry<Node, List<Edge>> entry : graph.getAdjacencyList().entrySet())
+				adjacencyList.put(entry.getKey(), entry.getValue() == null ? new ArrayList<Edge>() : new ArrayList<Edge>(entry.getValue()));
+		}
+
+		@Override
+		protected GraphLayout doInBackground() {
+			return GraphLayout.compute(graph, modCount, adjacencyList);
+		}
+
+		@Override
+		protected void done() {
+			if(isCancelled() || worker != this)
+				return;
+			try {
+				layout = get();
+			} catch (Exception e) {
+				e.printStackTrace();
+				return;
 			}
+			canvas.revalidate();
+			canvas.repaint();
 		}
-		return childrenMap;
 	}
-	
+
 	@SuppressWarnings("serial")
-	private void initComponents() {
+	private class Canvas extends JPanel implements Scrollable {
 
-		canvas = new JPanel() {
-			@Override
-			public void paint(Graphics g) {
+		private double zoom = 1;
 
-				if (graph.getAdjacencyList() == null) {
-					return;
+		Canvas() {
+			addMouseWheelListener(new MouseWheelListener() {
+				@Override
+				public void mouseWheelMoved(MouseWheelEvent e) {
+					if(e.isControlDown())
+						zoom(e.getWheelRotation() < 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX());
+					else
+						scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(Canvas.this, e, scrollPane));
 				}
+			});
+		}
 
-				Map<Node, Coordinates> coordForNodes = new HashMap<Node, Coordinates>();
-
-				/*int offsetX = canvas.getWidth() / 2;
-				int offsetY = canvas.getHeight() / 2;*/
-				System.out.println("sys:"+canvas.getWidth() + ":" + canvas.getHeight());
-
-				int height = 40;
-				/*double angle = 2 * Math.PI / graph.getAdjacencyList().keySet().size();
-				int radius = offsetY / 2 - 20;*/
-				FontMetrics f = g.getFontMetrics();
-				int nodeHeight = Math.max(height, f.getHeight());
-				int nodeWidth = nodeHeight;
-
-				int maxLevel=-1, minLevel=FogUtils.MAX;
-				Map<Integer, List<Node>> levelMap = new HashMap<Integer, List<Node>>();
-				List<Node> endpoints = new ArrayList<Node>(); 
-				for (Node node : graph.getAdjacencyList().keySet()) {
-					if(node.getType().equals("FOG_DEVICE")){
-						int level = ((FogDeviceGui)node).getLevel();
-						if(!levelMap.containsKey(level))
-							levelMap.put(level, new ArrayList<Node>());
-						levelMap.get(level).add(node);
-						
-						if(level > maxLevel)
-							maxLevel = level;
-						if(level < minLevel)
-							minLevel = level;
-					} else if(node.getType().equals("SENSOR") || node.getType().equals("ACTUATOR")){
-						endpoints.add(node);
-					}
-				}
-				
-				double yDist = canvas.getHeight()/(maxLevel-minLevel+3);
-				System.out.println("===================\n================\n=============");
-				
-				Map<Integer, List<PlaceHolder>> levelToPlaceHolderMap = new HashMap<Integer, List<PlaceHolder>>();
-				
-				int k=1;
-				for(int i=minLevel;i<=maxLevel;i++, k++){
-					double xDist = canvas.getWidth()/(levelMap.get(i).size()+1);
-					
-					for(int j=1;j<=levelMap.get(i).size();j++){
-						int x = (int)xDist*j;
-						int y = (int)yDist*k;
-						if(!levelToPlaceHolderMap.containsKey(i))
-							levelToPlaceHolderMap.put(i, new ArrayList<PlaceHolder>());
-						levelToPlaceHolderMap.get(i).add(new PlaceHolder(x, y));
-						
-						//coordForNodes.put(node, new Coordinates(x, y));
-						//node.setCoordinate(new Coordinates(x, y));
-					}
-				}
-				
-				List<PlaceHolder> endpointPlaceHolders = new ArrayList<PlaceHolder>();
-				
-				double xDist = canvas.getWidth()/(endpoints.size()+1);
-				for(int i=0;i<endpoints.size();i++){
-					Node node = endpoints.get(i);
-					int x = (int)xDist*(i+1);
-					int y = (int)yDist*k;
-					endpointPlaceHolders.add(new PlaceHolder(x, y));
-					
-					coordForNodes.put(node, new Coordinates(x, y));
-					node.setCoordinate(new Coordinates(x, y));
-				}
-				
-				for (Node node : graph.getAdjacencyList().keySet()) {
-					if(node.getType().equals("FOG_DEVICE")||node.getType().equals("SENSOR")||node.getType().equals("ACTUATOR"))
-						continue;
-					// calculate coordinates
-					/*int x = Double.valueOf(offsetX + Math.cos(i * angle) * radius).intValue();
-					int y = Double.valueOf(offsetY + Math.sin(i * angle) * radius).intValue();*/
-
-					//coordForNodes.put(node, new Coordinates(x, y));
-					//node.setCoordinate(new Coordinates(x, y));
-				}
+		/**
+		 * Zooms horizontally, keeping the point under the mouse in place.
+		 */
+		private void zoom(double factor, int mouseX) {
+			double maxZoom = 1;
+			if(layout != null){
+				int widest = 0;
+				for(int r = 0; r < layout.getRowCount(); r++)
+					widest = Math.max(widest, layout.getRow(r).length);
+				maxZoom = Math.max(1, (widest + 1) * 2.0 * nodeSize(getFontMetrics(getFont())) / Math.max(1, scrollPane.getViewport().getWidth()));
+			}
+			double newZoom = Math.max(1, Math.min(maxZoom, zoom * factor));
+			if(newZoom == zoom)
+				return;
+			JViewport viewport = scrollPane.getViewport();
+			Point view = viewport.getViewPosition();
+			double fraction = mouseX / (double) Math.max(1, getWidth());
+			zoom = newZoom;
+			revalidate();
+			scrollPane.validate();
+			int x = (int) (fraction * getWidth()) - (mouseX - view.x);
+			viewport.setViewPosition(new Point(Math.max(0, Math.min(x, getWidth() - viewport.getWidth())), view.y));
+			repaint();
+		}
 
-				
-				coordForNodes = getCoordForNodes(levelToPlaceHolderMap, endpointPlaceHolders, levelMap, endpoints, minLevel, maxLevel);
-				System.out.println("COORD MAP"+coordForNodes);
-				
-				Map<Node, List<Node>> drawnList = new HashMap<Node, List<Node>>();
-				
-				
-				
-				for (Entry<Node, Coordinates> entry : coordForNodes.entrySet()) {
-					// first paint a single node for testing.
-					g.setColor(Color.black);
-					// int nodeWidth = Math.max(width, f.stringWidth(entry.getKey().getNodeText()) + width / 2);
-
-					Coordinates wrapper = entry.getValue();
-					String nodeName = entry.getKey().getName();
-					switch(entry.getKey().getType()){
-						case "host":
-							g.drawImage(imgHost, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							break;
-						case "APP_MODULE":
-							g.drawImage(imgAppModule, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							g.drawString(nodeName, wrapper.getX() - f.stringWidth(nodeName) / 2, wrapper.getY() + nodeHeight);
-							break;
-						case "core":
-						case "edge":
-							g.drawImage(imgSwitch, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							break;
-						case "FOG_DEVICE":
-							g.drawImage(imgHost, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							g.drawString(nodeName, wrapper.getX() - f.stringWidth(nodeName) / 2, wrapper.getY() + nodeHeight);
-							break;
-						case "SENSOR":
-							g.drawImage(imgSensor, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							g.drawString(nodeName, wrapper.getX() - f.stringWidth(nodeName) / 2, wrapper.getY() + nodeHeight);
-							break;
-						case "ACTUATOR":
-							g.drawImage(imgActuator, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							g.drawString(nodeName, wrapper.getX() - f.stringWidth(nodeName) / 2, wrapper.getY() + nodeHeight);
-							break;
-						case "SENSOR_MODULE":
-							g.drawImage(imgSensorModule, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							g.drawString(nodeName, wrapper.getX() - f.stringWidth(nodeName) / 2, wrapper.getY() + nodeHeight);
-							break;
-						case "ACTUATOR_MODULE":
-							g.drawImage(imgActuatorModule, wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight, this);
-							g.drawString(nodeName, wrapper.getX() - f.stringWidth(nodeName) / 2, wrapper.getY() + nodeHeight);
-							break;
-					}
-					//g.setColor(Color.white);
-					//g.fillOval(wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight);
-					//g.setColor(Color.black);
-					//g.drawOval(wrapper.getX() - nodeWidth / 2, wrapper.getY() - nodeHeight / 2, nodeWidth, nodeHeight);
-					//System.out.println((wrapper.getX())+" "+(wrapper.getY()));
-
-					//g.drawString(entry.getKey().getName(), wrapper.getX() - f.stringWidth(entry.getKey().getName()) / 2, wrapper.getY() + f.getHeight() / 2);
+		@Override
+		public Dimension getPreferredSize() {
+			if(getParent() instanceof JViewport){
+				JViewport viewport = (JViewport) getParent();
+				return new Dimension((int) (viewport.getWidth() * zoom), viewport.getHeight());
+			}
+			return super.getPreferredSize();
+		}
 
-				}
+		@Override
+		public Dimension getPreferredScrollableViewportSize() {
+			return getPreferredSize();
+		}
+
+		@Override
+		public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+			return 16;
+		}
+
+		@Override
+		public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+			return orientation == SwingConstants.HORIZONTAL ? visibleRect.width : visibleRect.height;
+		}
 
-				
-				
-				// draw edges first
-				// TODO: we draw one edge two times at the moment because we have an undirected graph. But this
-				// shouldn`t matter because we have the same edge costs and no one will see in. Perhaps refactor later.
-				for (Entry<Node, List<Edge>> entry : graph.getAdjacencyList().entrySet()) {
-
-					Coordinates startNode = coordForNodes.get(entry.getKey());
-					System.out.println("Start Node : "+entry.getKey().getName());
-
-					for (Edge edge : entry.getValue()) {
-/*
-						// if other direction was drawn already continue
-						if (drawnList.containsKey(edge.getNode()) && drawnList.get(edge.getNode()).contains(entry.getKey())) {
-							continue;
-						}
-*/
-						Coordinates targetNode = coordForNodes.get(edge.getNode());
-						System.out.println("Target Node : "+edge.getNode().getName());
-						g.setColor(Color.RED);
-						g.drawLine(startNode.getX(), startNode.getY(), targetNode.getX(), targetNode.getY());
-						//drawArrow(g, startNode.getX(), startNode.getY(), targetNode.getX(), targetNode.getY());
-						// add drawn edges to the drawnList
-						if (drawnList.containsKey(entry.getKey())) {
-							drawnList.get(entry.getKey()).add(edge.getNode());
-						} else {
-							List<Node> nodes = new ArrayList<Node>();
-							nodes.add(edge.getNode());
-							drawnList.put(entry.getKey(), nodes);
-						}
-
-						/*int labelX = (startNode.getX() - targetNode.getX()) / 2;
-						int labelY = (startNode.getY() - targetNode.getY()) / 2;
-
-						labelX *= -1;
-						labelY *= -1;
-
-						labelX += startNode.getX();
-						labelY += startNode.getY();
-*/
-						//g.setColor(Color.BLACK);
-						//g.drawString(String.valueOf(edge.getInfo()), labelX - f.stringWidth(String.valueOf(edge.getInfo())) / 2, labelY + f.getHeight() / 2);
-					}
+		@Override
+		public boolean getScrollableTracksViewportWidth() {
+			return zoom <= 1;
+		}
+
+		@Override
+		public boolean getScrollableTracksViewportHeight() {
+			return true;
+		}
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			super.paintComponent(g);
+
+			if (graph.getAdjacencyList() == null) {
+				return;
+			}
+			if(layout == null || !layout.isLayoutOf(graph))
+				requestLayout();
+			GraphLayout layout = GraphView.this.layout;
+			FontMetrics f = g.getFontMetrics();
+			if(layout == null){
+				if(!graph.getAdjacencyList().isEmpty())
+					g.drawString("Laying out the topology...", 10, f.getHeight());
+				return;
+			}
+
+			Rectangle clip = g.getClipBounds();
+			if(clip == null)
+				clip = new Rectangle(0, 0, getWidth(), getHeight());
+			int nodeHeight = nodeSize(f);
+			int rowCount = layout.getRowCount();
+
+			// rows from the first one too dense to draw are collapsed
+			int firstHiddenRow = rowCount;
+			for(int r = 0; r < rowCount; r++){
+				int[] row = layout.getRow(r);
+				if(row.length > 0 && spacing(row.length) < MIN_NODE_SPACING){
+					firstHiddenRow = r;
+					break;
 				}
 			}
-		};
-		JScrollPane scrollPane = new JScrollPane(canvas);
-		setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
-		add(scrollPane);
-	}
 
-	protected Map<Node, Coordinates> getCoordForNodes(
-			Map<Integer, List<PlaceHolder>> levelToPlaceHolderMap,
-			List<PlaceHolder> endpointPlaceHolders,
-			Map<Integer, List<Node>> levelMap, List<Node> endpoints, int minLevel, int maxLevel) {
-		// TODO Auto-generated method stub
-		Map<Node, Coordinates> coordForNodesMap = new HashMap<Node, Coordinates>();
-		Map<Node, List<Node>> childrenMap = createChildrenMap();
-		
-		for(Node node : graph.getAdjacencyList().keySet())node.setPlaced(false);
-		for(Node node : endpoints)node.setPlaced(false);
-		
-		if(maxLevel < 0)
-			return new HashMap<Node, Coordinates>();
-		
-		int j=0;
-		for(PlaceHolder placeHolder : levelToPlaceHolderMap.get(minLevel)){
-			Node node = levelMap.get(minLevel).get(j);
-			placeHolder.setNode(node);
-			node.setCoordinate(placeHolder.getCoordinates());
-			coordForNodesMap.put(node, node.getCoordinate());
-			node.setPlaced(true);
-			j++;
+			g.setColor(Color.RED);
+			for(int e = 0; e < layout.getEdgeCount(); e++){
+				int from = layout.getEdgeFrom(e);
+				int to = layout.getEdgeTo(e);
+				if(layout.getRowOf(from) >= firstHiddenRow || layout.getRowOf(to) >= firstHiddenRow)
+					continue;
+				int x1 = x(layout, from), y1 = y(layout.getRowOf(from), rowCount);
+				int x2 = x(layout, to), y2 = y(layout.getRowOf(to), rowCount);
+				if(Math.max(x1, x2) < clip.x || Math.min(x1, x2) > clip.x + clip.width
+						|| Math.max(y1, y2) < clip.y || Math.min(y1, y2) > clip.y + clip.height)
+					continue;
+				g.drawLine(x1, y1, x2, y2);
+			}
+
+			for(int r = 0; r < firstHiddenRow; r++){
+				int[] row = layout.getRow(r);
+				int y = y(r, rowCount);
+				if(y + 2 * nodeHeight < clip.y || y - nodeHeight > clip.y + clip.height)
+					continue;
+				double spacing = spacing(row.length);
+				int first = Math.max(0, (int) Math.floor((clip.x - nodeHeight) / spacing) - 1);
+				int last = Math.min(row.length - 1, (int) Math.ceil((clip.x + clip.width + nodeHeight) / spacing));
+				for(int s = first; s <= last; s++)
+					drawNode(g, f, layout.getNode(row[s]), x(layout, row[s]), y, nodeHeight, spacing);
+			}
+
+			if(firstHiddenRow < rowCount)
+				drawCollapsed(g, f, layout, layout.getCollapsed(firstHiddenRow), firstHiddenRow, clip, nodeHeight);
 		}
-		
-		for(int level = minLevel+1;level <= maxLevel; level++){
-			List<PlaceHolder> upperLevelNodes = levelToPlaceHolderMap.get(level-1);
-			List<Node> nodes = levelMap.get(level);
-			int i=0;
-			for(PlaceHolder parentPH : upperLevelNodes){
-				List<Node> children = childrenMap.get(parentPH.getNode());
-				for(Node child : children){
-					PlaceHolder childPlaceHolder = levelToPlaceHolderMap.get(level).get(i);
-					childPlaceHolder.setOccupied(true);
-					childPlaceHolder.setNode(child);
-					child.setCoordinate(childPlaceHolder.getCoordinates());
-					coordForNodesMap.put(child, child.getCoordinate());
-					child.setPlaced(true);
-					i++;
+
+		/**
+		 * Draws the number of hidden nodes under every drawn node of the last drawn row, and the hidden
+		 * nodes with no drawn ancestor grouped by position on their own row.
+		 */
+		private void drawCollapsed(Graphics g, FontMetrics f, GraphLayout layout, GraphLayout.Collapsed collapsed,
+				int firstHiddenRow, Rectangle clip, int nodeHeight) {
+			int rowCount = layout.getRowCount();
+			g.setColor(Color.GRAY);
+			for(int r = 0; r < firstHiddenRow; r++){
+				int[] row = layout.getRow(r);
+				double spacing = spacing(row.length);
+				int y = y(r, rowCount) + nodeHeight + f.getHeight();
+				int first = Math.max(0, (int) Math.floor((clip.x - nodeHeight) / spacing) - 1);
+				int last = Math.min(row.length - 1, (int) Math.ceil((clip.x + clip.width + nodeHeight) / spacing));
+				for(int s = first; s <= last; s++){
+					int hidden = collapsed.hiddenBelow[row[s]];
+					if(hidden > 0)
+						drawSummary(g, f, x(layout, row[s]), y, hidden, spacing);
 				}
 			}
-			for(Node node : nodes){
-				if(!node.isPlaced()){
-					PlaceHolder placeHolder = levelToPlaceHolderMap.get(level).get(i);
-					placeHolder.setOccupied(true);
-					placeHolder.setNode(node);
-					node.setCoordinate(placeHolder.getCoordinates());
-					coordForNodesMap.put(node, node.getCoordinate());
-					node.setPlaced(true);
+			int[] orphans = collapsed.orphans;
+			int i = 0;
+			while(i < orphans.length){
+				int r = layout.getRowOf(orphans[i]);
+				int start = x(layout, orphans[i]);
+				int count = 0;
+				// orphans are stored row by row and from left to right
+				while(i < orphans.length && layout.getRowOf(orphans[i]) == r && x(layout, orphans[i]) < start + nodeHeight){
+					count++;
 					i++;
 				}
+				if(start + nodeHeight >= clip.x && start <= clip.x + clip.width)
+					drawSummary(g, f, start + nodeHeight / 2, y(r, rowCount), count, nodeHeight);
 			}
 		}
-		int i=0;
-		for(PlaceHolder parentPH : levelToPlaceHolderMap.get(maxLevel)){
-			List<Node>children = childrenMap.get(parentPH.getNode());
-			for(Node child : children){
-				PlaceHolder placeHolder = endpointPlaceHolders.get(i);
-				placeHolder.setOccupied(true);
-				placeHolder.setNode(child);
-				child.setCoordinate(placeHolder.getCoordinates());
-				coordForNodesMap.put(child, child.getCoordinate());
-				child.setPlaced(true);
-				i++;
-			}
+
+		private void drawSummary(Graphics g, FontMetrics f, int x, int y, int count, double spacing) {
+			int size = (int) Math.max(4, Math.min(MIN_ICON_SIZE, spacing - 2));
+			g.fillRect(x - size / 2, y - size / 2, size, size);
+			String text = "+" + count;
+			if(f.stringWidth(text) < spacing)
+				g.drawString(text, x - f.stringWidth(text) / 2, y + size / 2 + f.getAscent());
 		}
-		for(Node node : endpoints){
-			if(!node.isPlaced()){
-				PlaceHolder placeHolder = endpointPlaceHolders.get(i);
-				placeHolder.setOccupied(true);
-				placeHolder.setNode(node);
-				node.setCoordinate(placeHolder.getCoordinates());
-				coordForNodesMap.put(node, node.getCoordinate());
-				node.setPlaced(true);
-				i++;
+
+		private void drawNode(Graphics g, FontMetrics f, Node node, int x, int y, int nodeHeight, double spacing) {
+			int size = (int) Math.min(nodeHeight, spacing - 2);
+			Image image = getImage(node.getType());
+			Double utilization = utilizations.get(node.getName());
+			if(size < MIN_ICON_SIZE || image == null){
+				g.setColor(utilization == null ? Color.BLACK : heatColor(utilization));
+				g.fillRect(x - 2, y - 2, 4, 4);
+				return;
 			}
+			if(utilization != null){
+				int halo = size + size / 3;
+				g.setColor(heatColor(utilization));
+				g.fillOval(x - halo / 2, y - halo / 2, halo, halo);
+			}
+			g.setColor(Color.black);
+			g.drawImage(image, x - size / 2, y - size / 2, size, size, this);
+			String nodeName = node.getName();
+			if(size == nodeHeight && f.stringWidth(nodeName) < spacing)
+				g.drawString(nodeName, x - f.stringWidth(nodeName) / 2, y + nodeHeight);
+		}
+
+		private double spacing(int rowLength) {
+			return getWidth() / (double) (rowLength + 1);
+		}
+
+		private int x(GraphLayout layout, int node) {
+			return (int) ((layout.getSlotOf(node) + 1) * spacing(layout.getRow(layout.getRowOf(node)).length));
+		}
+
+		private int y(int row, int rowCount) {
+			return (int) ((row + 1) * (double) getHeight() / (rowCount + 1));
 		}
-		return coordForNodesMap;
 	}
 
-	/*private void drawArrow(Graphics g1, int x1, int y1, int x2, int y2) {
-		Graphics2D g = (Graphics2D) g1.create();
-		System.out.println("Drawing arrow");
-		double dx = x2 - x1, dy = y2 - y1;
-		double angle = Math.atan2(dy, dx);
-		int len = (int) Math.sqrt(dx * dx + dy * dy);
-		AffineTransform at = AffineTransform.getTranslateInstance(x1, y1);
-		at.concatenate(AffineTransform.getRotateInstance(angle));
-		g.transform(at);
-
-		// Draw horizontal arrow starting in (0, 0)
-		QuadCurve2D.Double curve = new QuadCurve2D.Double(0,0,50+0.5*len,50,len,0);
-		g.draw(curve);
-		g.fillPolygon(new int[] { len, len - ARR_SIZE, len - ARR_SIZE, len }, new int[] { 0, -ARR_SIZE, ARR_SIZE, 0 }, 4);
-	}*/
-	
+	/**
+	 * Returns a colour from green, for an idle device, to red, for a fully used one.
+	 */
+	private static Color heatColor(double utilization) {
+		float u = (float) Math.max(0, Math.min(1, utilization));
+		return Color.getHSBColor((1 - u) / 3, 0.8f, 0.95f);
+	}
+
+	private int nodeSize(FontMetrics f) {
+		return Math.max(40, f.getHeight());
+	}
+
+	private Image getImage(String type) {
+		if(type.equals("host") || type.equals("FOG_DEVICE"))
+			return imgHost;
+		if(type.equals("core") || type.equals("edge"))
+			return imgSwitch;
+		if(type.equals("APP_MODULE"))
+			return imgAppModule;
+		if(type.equals("SENSOR"))
+			return imgSensor;
+		if(type.equals("ACTUATOR"))
+			return imgActuator;
+		if(type.equals("SENSOR_MODULE"))
+			return imgSensorModule;
+		if(type.equals("ACTUATOR_MODULE"))
+			return imgActuatorModule;
+		return null;
+	}
+
+	/**
+	 * Colours fog devices by their CPU utilisation, between 0 and 1, or removes the colours.
+	 * @param utilizations the utilisation of devices by name, or an empty map
+	 */
+	public void setUtilizations(Map<String, Double> utilizations){
+		this.utilizations = utilizations;
+		canvas.repaint();
+	}
+
 	public void setGraph(Graph newGraph){
 		this.graph = newGraph;
+		requestLayout();
+		canvas.repaint();
 	}
 }
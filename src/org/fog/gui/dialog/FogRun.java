@@ -0,0 +1,207 @@
+package org.fog.gui.dialog;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.cloudbus.cloudsim.core.SimulationMonitor;
+import org.fog.gui.core.Graph;
+import org.fog.gui.core.GraphSimulation;
+import org.fog.gui.core.GraphView;
+import org.fog.gui.core.Node;
+import org.fog.utils.Config;
+import org.fog.utils.FogDeviceMetrics;
+
+/**
+ * Runs a fog simulation of the drawn topology on a background thread. While it runs, the dialog
+ * shows the simulation clock and the events processed per second, and the graph view colours the
+ * fog devices by CPU utilisation; both are refreshed a few times per second from the samples of the
+ * {@link SimulationMonitor}, so the simulation never waits for the GUI. The simulation can be
+ * cancelled, and its results are shown in the dialog when it finishes.
+ */
+public class FogRun extends JDialog {
+	private static final long serialVersionUID = 4721083125539260157L;
+
+	/** The interval between two progress updates, in milliseconds */
+	private static final int UPDATE_INTERVAL = 250;
+
+	/** Simulations share the static state of CloudSim, so they run one at a time */
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "fog-simulation");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final GraphView graphView;
+	private final GraphSimulation simulation;
+	/** The runs in progress, which need the monitor, and whether they turned it on */
+	private static int activeRuns;
+	private static boolean startedMonitor;
+
+	private final Map<String, String> deviceNames = new HashMap<String, String>();
+	private Future<String> result;
+	private Timer timer;
+
+	private JLabel clockLabel;
+	private JLabel eventsLabel;
+	private JProgressBar progressBar;
+	private JButton cancelButton;
+	private JScrollPane pane;
+	private JTextArea outputArea;
+
+	public FogRun(Graph graph, GraphView graphView, JFrame frame){
+		this.graphView = graphView;
+		this.simulation = new GraphSimulation(graph);
+		for(Node node : graph.getAdjacencyList().keySet()){
+			if(node.getType().equals("FOG_DEVICE"))
+				deviceNames.put(FogDeviceMetrics.getObjectName(node.getName()), node.getName());
+		}
+
+		setLayout(new BorderLayout());
+		initUI();
+
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				simulation.cancel();
+				FogRun.this.graphView.setUtilizations(new HashMap<String, Double>());
+			}
+		});
+		setTitle("Run Simulation");
+		setModal(false);
+		setPreferredSize(new Dimension(900, 600));
+		pack();
+		setLocationRelativeTo(frame); // must be called between pack and setVisible to work properly
+		run();
+		setVisible(true);
+	}
+
+	private void initUI(){
+		JPanel progressPanel = new JPanel(new GridLayout(0, 1, 0, 5));
+		progressPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+		clockLabel = new JLabel("Simulation is starting");
+		eventsLabel = new JLabel(" ");
+		progressBar = new JProgressBar(0, 1000);
+		cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				cancelButton.setEnabled(false);
+				clockLabel.setText("Cancelling...");
+				simulation.cancel();
+			}
+		});
+		progressPanel.add(clockLabel);
+		progressPanel.add(eventsLabel);
+		progressPanel.add(progressBar);
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.add(cancelButton);
+		progressPanel.add(buttonPanel);
+		add(progressPanel, BorderLayout.NORTH);
+
+		outputArea = new JTextArea();
+		outputArea.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+		outputArea.setEditable(false);
+		pane = new JScrollPane(outputArea);
+		pane.setVisible(false);
+		add(pane, BorderLayout.CENTER);
+	}
+
+	private void run(){
+		if(activeRuns++ == 0 && !SimulationMonitor.isEnabled()){
+			SimulationMonitor.start(UPDATE_INTERVAL);
+			startedMonitor = true;
+		}
+		result = executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				try {
+					return simulation.run();
+				} finally {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							finished();
+						}
+					});
+				}
+			}
+		});
+		timer = new Timer(UPDATE_INTERVAL, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				update();
+			}
+		});
+		timer.start();
+	}
+
+	/**
+	 * Shows the last sample of the simulation.
+	 */
+	private void update(){
+		Map<String, Map<String, Double>> sample = SimulationMonitor.getSample();
+		Map<String, Double> kernel = sample.get(SimulationMonitor.KERNEL_OBJECT_NAME);
+		if(kernel == null || simulation.isCancelled())
+			return;
+		double clock = kernel.get("clock");
+		clockLabel.setText(String.format("Simulation time: %.1f of %d", clock, Config.MAX_SIMULATION_TIME));
+		eventsLabel.setText(String.format("Events per second: %.0f", kernel.get("eventsPerSecond")));
+		progressBar.setValue((int) (1000 * Math.min(1, clock / Config.MAX_SIMULATION_TIME)));
+		Map<String, Double> utilizations = new HashMap<String, Double>();
+		for(Map.Entry<String, String> device : deviceNames.entrySet()){
+			Map<String, Double> gauges = sample.get(device.getKey());
+			if(gauges != null && gauges.containsKey("cpuUtilization"))
+				utilizations.put(device.getValue(), gauges.get("cpuUtilization"));
+		}
+		graphView.setUtilizations(utilizations);
+	}
+
+	private void finished(){
+		timer.stop();
+		update();
+		if(--activeRuns == 0 && startedMonitor){
+			SimulationMonitor.stop();
+			startedMonitor = false;
+		}
+		cancelButton.setEnabled(false);
+		progressBar.setValue(simulation.isCancelled() ? progressBar.getValue() : progressBar.getMaximum());
+		try {
+			outputArea.setText(result.get());
+			clockLabel.setText(simulation.isCancelled() ? "Simulation cancelled" : "Simulation completed");
+		} catch (InterruptedException e) {
+			clockLabel.setText("Simulation interrupted");
+		} catch (ExecutionException e) {
+			clockLabel.setText("Running error: " + e.getCause());
+			e.getCause().printStackTrace();
+		}
+		pane.setVisible(true);
+		getContentPane().validate();
+		repaint();
+	}
+}
@@ -39,6 +39,7 @@ import org.fog.gui.dialog.AddLink;
 import org.fog.gui.dialog.AddPhysicalEdge;
 import org.fog.gui.dialog.AddPhysicalNode;
 import org.fog.gui.dialog.AddSensor;
+import org.fog.gui.dialog.FogRun;
 import org.fog.gui.dialog.SDNRun;
 
 
@@ -271,7 +272,12 @@ public class FogGui extends JFrame {
 
             		
 		        }else if("m"==mode){
-		        	
+		        	if(physicalGraph.getAdjacencyList().isEmpty()){
+		        		JOptionPane.showMessageDialog(panel, "Please create a topology first", "Error", JOptionPane.ERROR_MESSAGE);
+		        		return;
+		        	}
+		        	// run simulation of the drawn topology in the background
+		        	new FogRun(physicalGraph, physicalCanvas, FogGui.this);
 		        }
             	
             }
@@ -375,8 +381,8 @@ public class FogGui extends JFrame {
 		    	    	MuPhy.setVisible(true);
 		    	    	//MuVir.setVisible(true);
 		    	    	
-		    	    	btnRun.setVisible(false);
-		    	    	btnRun.setEnabled(false);
+		    	    	btnRun.setVisible(true);
+		    	    	btnRun.setEnabled(true);
 		    	    	
 		    	    	mode = "m";
 		    	    	
@@ -464,8 +470,8 @@ public class FogGui extends JFrame {
     	MuPhy.setVisible(true);
     	//MuVir.setVisible(true);
     	
-    	btnRun.setVisible(false);
-    	btnRun.setEnabled(false);
+    	btnRun.setVisible(true);
+    	btnRun.setEnabled(true);
         //----- End Initialize menu and tool bar -----
 
     }
@@ -0,0 +1,544 @@
+package org.fog.placement;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppModule;
+import org.fog.entities.FogDevice;
+import org.fog.utils.Logger;
+import org.fog.utils.LoopDelayMonitor;
+import org.fog.utils.NetworkUsageMonitor;
+import org.fog.utils.TimeKeeper;
+
+/**
+ * Rebalances the module instances of the applications while the simulation runs. Every
+ * Config.RESOURCE_MANAGE_INTERVAL the Controller has it sample the load of every fog device, that is
+ * its mean CPU utilisation over the interval and the tuples waiting on its links and modules, and its
+ * {@link AutoscalingPolicy} then decides to scale a module out to another device, to scale an
+ * instance in or to migrate an instance between devices.
+ *
+ * Moving a module costs the transfer of its state, taken to be the size of its image, over the path
+ * between the two devices: at every hop its size over the bandwidth of the link plus the latency of
+ * the link. A new instance is launched once its state has arrived. A migrated instance is released at
+ * once and launched again on its new device after the transfer, so the tuples reaching it in between
+ * are lost (stop-and-copy).
+ *
+ * To tell the effect of every action, the mean delay of every loop and the power drawn by all the fog
+ * devices are measured over each interval, and the interval before the action is compared with the
+ * first whole interval after the moved instance is running.
+ *
+ * Set it with Controller.setAutoscaler before the simulation starts.
+ */
+public class Autoscaler implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final AutoscalingPolicy policy;
+	private Controller controller;
+
+	/** The loads of the fog devices over the last interval, by device id */
+	private Map<Integer, DeviceLoad> loads = new LinkedHashMap<Integer, DeviceLoad>();
+	private Interval lastInterval;
+
+	/** The state of the simulation at the last sample, from which the next interval is measured */
+	private double lastSampleTime;
+	private double lastEnergy;
+	private final Map<Integer, Double> lastCumulativeUtilizations = new HashMap<Integer, Double>();
+	private final Map<Integer, Long> lastLoopCounts = new HashMap<Integer, Long>();
+	private final Map<Integer, Double> lastLoopMeans = new HashMap<Integer, Double>();
+
+	private final List<Action> actions = new ArrayList<Action>();
+	/** The actions still waiting for their new instance to be checked, or for their interval after */
+	private final List<Action> pendingActions = new ArrayList<Action>();
+	private double transferredData;
+
+	/**
+	 * The load of a fog device over the last interval.
+	 */
+	public static class DeviceLoad implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final FogDevice device;
+		private final double utilization;
+		private final int queuedTuples;
+		private final List<AppModule> modules;
+
+		DeviceLoad(FogDevice device, double utilization, int queuedTuples, List<AppModule> modules) {
+			this.device = device;
+			this.utilization = utilization;
+			this.queuedTuples = queuedTuples;
+			this.modules = modules;
+		}
+
+		public FogDevice getDevice() {
+			return device;
+		}
+
+		/** The mean CPU utilisation of the device over the interval, from 0 to 1. */
+		public double getUtilization() {
+			return utilization;
+		}
+
+		/** The tuples waiting to be sent on the links of the device or being executed by its modules at the sample. */
+		public int getQueuedTuples() {
+			return queuedTuples;
+		}
+
+		/** The module instances running on the device at the sample. */
+		public List<AppModule> getModules() {
+			return modules;
+		}
+	}
+
+	/**
+	 * The mean delay of every loop and the power drawn by all the fog devices over an interval between two samples.
+	 */
+	public static class Interval implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final double startTime;
+		private final double endTime;
+		private final double power;
+		private final Map<Integer, Double> loopDelays;
+
+		Interval(double startTime, double endTime, double power, Map<Integer, Double> loopDelays) {
+			this.startTime = startTime;
+			this.endTime = endTime;
+			this.power = power;
+			this.loopDelays = loopDelays;
+		}
+
+		public double getStartTime() {
+			return startTime;
+		}
+
+		public double getEndTime() {
+			return endTime;
+		}
+
+		/** The energy consumed by all the fog devices during the interval over its length. */
+		public double getPower() {
+			return power;
+		}
+
+		/** The mean delay of a loop over the loops ended during the interval, or NaN if none ended. */
+		public double getLoopDelay(int loopId) {
+			Double delay = loopDelays.get(loopId);
+			return delay == null ? Double.NaN : delay;
+		}
+	}
+
+	/**
+	 * A change of the placement of a module, decided by a policy and carried out by the autoscaler.
+	 */
+	public static class Action implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		public enum Type {
+			/** Launches a new instance of a module on a device, copied from an instance on another device */
+			SCALE_OUT,
+			/**
+			 * Releases an instance. The tuples it is executing or has queued are dropped, and only the tuples
+			 * arriving after the release go to the other instances
+			 */
+			SCALE_IN,
+			/** Moves an instance to another device */
+			MIGRATE
+		}
+
+		private final Type type;
+		private final AppModule instance;
+		private final FogDevice source;
+		private final FogDevice target;
+
+		private double time = Double.NaN;
+		private double transferDelay;
+		private AppModule launchedInstance;
+		private boolean failed;
+		private Interval before;
+		private Interval after;
+
+		private Action(Type type, AppModule instance, FogDevice source, FogDevice target) {
+			this.type = type;
+			this.instance = instance;
+			this.source = source;
+			this.target = target;
+		}
+
+		/**
+		 * @param instance the instance copied, whose state is sent to the target device
+		 * @param source the device of the instance
+		 * @param target the device of the new instance
+		 */
+		public static Action scaleOut(AppModule instance, FogDevice source, FogDevice target) {
+			return new Action(Type.SCALE_OUT, instance, source, target);
+		}
+
+		/**
+		 * @param instance the instance released
+		 * @param device the device of the instance
+		 */
+		public static Action scaleIn(AppModule instance, FogDevice device) {
+			return new Action(Type.SCALE_IN, instance, device, null);
+		}
+
+		/**
+		 * @param instance the instance moved
+		 * @param source the device of the instance
+		 * @param target the device the instance is moved to
+		 */
+		public static Action migrate(AppModule instance, FogDevice source, FogDevice target) {
+			return new Action(Type.MIGRATE, instance, source, target);
+		}
+
+		public Type getType() {
+			return type;
+		}
+
+		public AppModule getInstance() {
+			return instance;
+		}
+
+		public FogDevice getSource() {
+			return source;
+		}
+
+		/** The device of the new instance, or null when scaling in. */
+		public FogDevice getTarget() {
+			return target;
+		}
+
+		/** The time the action was taken, or NaN if it was not. */
+		public double getTime() {
+			return time;
+		}
+
+		/** The time taken to send the state of the instance to the target device. */
+		public double getTransferDelay() {
+			return transferDelay;
+		}
+
+		/** The time the new instance is launched, or the instance is released when scaling in. */
+		public double getReadyTime() {
+			return time + transferDelay;
+		}
+
+		/** The instance launched on the target device, or null when scaling in. */
+		public AppModule getLaunchedInstance() {
+			return launchedInstance;
+		}
+
+		/** Whether the new instance could not be created on the target device. */
+		public boolean isFailed() {
+			return failed;
+		}
+
+		/** The interval ended when the action was taken. */
+		public Interval getBefore() {
+			return before;
+		}
+
+		/** The first whole interval after the action was completed, or null if the simulation stopped before. */
+		public Interval getAfter() {
+			return after;
+		}
+
+		@Override
+		public String toString() {
+			String module = instance.getName()+" ("+instance.getAppId()+")";
+			switch(type){
+			case SCALE_OUT:
+				return "Scaling out "+module+" from "+source.getName()+" to "+target.getName();
+			case SCALE_IN:
+				return "Scaling in "+module+" on "+source.getName();
+			default:
+				return "Migrating "+module+" from "+source.getName()+" to "+target.getName();
+			}
+		}
+	}
+
+	public Autoscaler(AutoscalingPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Samples the load of the fog devices of the controller over the interval since the last call, and
+	 * takes the actions decided by the policy.
+	 */
+	public void manageResources(Controller controller) {
+		this.controller = controller;
+		double now = CloudSim.clock();
+		checkLaunchedInstances(now);
+		sampleLoads(now);
+		lastInterval = measureInterval(now);
+		lastSampleTime = now;
+		for(Iterator<Action> iterator = pendingActions.iterator(); iterator.hasNext();){
+			Action action = iterator.next();
+			if(action.getReadyTime() <= lastInterval.getStartTime()){
+				action.after = lastInterval;
+				iterator.remove();
+			}
+		}
+		for(Action action : policy.decide(this)){
+			if(perform(action, now)){
+				actions.add(action);
+				pendingActions.add(action);
+			}
+		}
+	}
+
+	/**
+	 * Releases the placement of the new instances that could not be created on their device.
+	 */
+	private void checkLaunchedInstances(double now) {
+		for(Action action : pendingActions){
+			AppModule instance = action.getLaunchedInstance();
+			// the launch may be an event of the current time not processed yet
+			if(instance == null || action.isFailed() || action.getReadyTime() >= now)
+				continue;
+			if(!action.getTarget().getHost().getVmList().contains(instance) && isPlaced(action.getTarget(), instance)){
+				action.failed = true;
+				removeFromPlacement(action.getTarget(), instance);
+				Logger.debug(controller.getName(), "Autoscaling: "+instance.getName()+" could not be created on "+action.getTarget().getName());
+			}
+		}
+	}
+
+	private void sampleLoads(double now) {
+		Map<Integer, DeviceLoad> loads = new LinkedHashMap<Integer, DeviceLoad>();
+		for(FogDevice device : controller.getFogDevices()){
+			double cumulativeUtilization = device.getCumulativeUtilization();
+			Double lastCumulativeUtilization = lastCumulativeUtilizations.get(device.getId());
+			double utilization = now > lastSampleTime
+					? (cumulativeUtilization - (lastCumulativeUtilization == null ? 0 : lastCumulativeUtilization))/(now - lastSampleTime)
+					: device.getLastUtilization();
+			lastCumulativeUtilizations.put(device.getId(), cumulativeUtilization);
+			int queuedTuples = device.getNorthTupleQueue().size() + device.getSouthTupleQueueLength();
+			// placed modules are in the list of the host twice
+			Set<AppModule> modules = new LinkedHashSet<AppModule>();
+			for(Vm vm : device.getHost().getVmList()){
+				if(modules.add((AppModule)vm))
+					queuedTuples += vm.getCloudletScheduler().runningCloudlets();
+			}
+			loads.put(device.getId(), new DeviceLoad(device, utilization, queuedTuples, new ArrayList<AppModule>(modules)));
+		}
+		this.loads = loads;
+	}
+
+	private Interval measureInterval(double now) {
+		double energy = 0;
+		for(FogDevice device : controller.getFogDevices())
+			energy += device.getEnergyConsumption();
+		double power = now > lastSampleTime ? (energy - lastEnergy)/(now - lastSampleTime) : Double.NaN;
+		lastEnergy = energy;
+		Map<Integer, Double> loopDelays = new HashMap<Integer, Double>();
+		LoopDelayMonitor monitor = TimeKeeper.getInstance().getLoopDelayMonitor();
+		for(int loopId : monitor.getObservedLoopIds()){
+			long count = monitor.getCount(loopId);
+			double mean = monitor.getMean(loopId);
+			Long lastCount = lastLoopCounts.get(loopId);
+			if(lastCount == null)
+				loopDelays.put(loopId, mean);
+			else if(count > lastCount)
+				loopDelays.put(loopId, (mean*count - lastLoopMeans.get(loopId)*lastCount)/(count - lastCount));
+			lastLoopCounts.put(loopId, count);
+			lastLoopMeans.put(loopId, mean);
+		}
+		return new Interval(lastSampleTime, now, power, loopDelays);
+	}
+
+	/**
+	 * Carries out an action if it is still valid: its instance is placed on its source device, a new instance
+	 * is not placed on a device already hosting the module or unable to host it, and scaling in leaves another
+	 * instance of the module.
+	 * @return true if the action was taken
+	 */
+	protected boolean perform(Action action, double now) {
+		AppModule instance = action.getInstance();
+		FogDevice source = action.getSource();
+		FogDevice target = action.getTarget();
+		if(!isPlaced(source, instance))
+			return false;
+		if(action.getType() == Action.Type.SCALE_IN){
+			if(getPlacement(instance).getModuleToDeviceMap().get(instance.getName()).size() < 2)
+				return false;
+		}else if(target == null || target == source || hostsModule(target, instance.getAppId(), instance.getName())
+				|| !canHost(target, instance)){
+			return false;
+		}
+		action.time = now;
+		action.before = lastInterval;
+		Logger.debug(controller.getName(), "Autoscaling: "+action);
+		if(action.getType() != Action.Type.SCALE_OUT){
+			controller.releaseModule(source, instance);
+			removeFromPlacement(source, instance);
+		}
+		if(action.getType() != Action.Type.SCALE_IN){
+			action.transferDelay = transfer(instance, source, target, true);
+			action.launchedInstance = new AppModule(instance);
+			controller.launchModule(target, action.launchedInstance, action.transferDelay);
+			addToPlacement(target, action.launchedInstance);
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the time taken to send the state of a module instance between two devices, along the path through their
+	 * lowest common ancestor, and optionally accounts for it in the network usage.
+	 */
+	private double transfer(AppModule module, FogDevice from, FogDevice to, boolean account) {
+		Set<Integer> ancestorsOfTo = new HashSet<Integer>();
+		for(FogDevice device = to; device != null; device = getParent(device))
+			ancestorsOfTo.add(device.getId());
+		double delay = 0;
+		FogDevice commonAncestor = from;
+		for(; commonAncestor != null && !ancestorsOfTo.contains(commonAncestor.getId()); commonAncestor = getParent(commonAncestor)){
+			delay += module.getSize()/commonAncestor.getUplinkBandwidth() + commonAncestor.getUplinkLatency();
+			if(account)
+				NetworkUsageMonitor.sendingTuple(commonAncestor.getUplinkLatency(), module.getSize());
+		}
+		for(FogDevice device = to; device != null && device != commonAncestor; device = getParent(device)){
+			delay += module.getSize()/getParent(device).getDownlinkBandwidth() + device.getUplinkLatency();
+			if(account)
+				NetworkUsageMonitor.sendingTuple(device.getUplinkLatency(), module.getSize());
+		}
+		if(account)
+			transferredData += module.getSize();
+		return delay;
+	}
+
+	/**
+	 * @return the time taken to send the state of a module instance between two devices
+	 */
+	public double getTransferDelay(AppModule module, FogDevice from, FogDevice to) {
+		return transfer(module, from, to, false);
+	}
+
+	/**
+	 * @return whether the host of a device has the resources left to create a module instance
+	 */
+	public boolean canHost(FogDevice device, AppModule module) {
+		Host host = device.getHost();
+		return module.getMips() <= host.getTotalMips()
+				&& module.getRam() <= host.getRamProvisioner().getAvailableRam()
+				&& module.getBw() <= host.getBwProvisioner().getAvailableBw()
+				&& module.getSize() <= host.getStorage();
+	}
+
+	/**
+	 * @return whether an instance of a module is placed on a device, including the instances being launched
+	 */
+	public boolean hostsModule(FogDevice device, String appId, String moduleName) {
+		ModulePlacement placement = controller.getAppModulePlacementPolicy().get(appId);
+		List<AppModule> modules = placement == null ? null : placement.getDeviceToModuleMap().get(device.getId());
+		if(modules == null)
+			return false;
+		for(AppModule module : modules){
+			if(module.getName().equals(moduleName))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean isPlaced(FogDevice device, AppModule instance) {
+		ModulePlacement placement = getPlacement(instance);
+		List<AppModule> modules = placement == null ? null : placement.getDeviceToModuleMap().get(device.getId());
+		return modules != null && modules.contains(instance);
+	}
+
+	private ModulePlacement getPlacement(AppModule instance) {
+		return controller.getAppModulePlacementPolicy().get(instance.getAppId());
+	}
+
+	private void addToPlacement(FogDevice device, AppModule instance) {
+		ModulePlacement placement = getPlacement(instance);
+		if(!placement.getDeviceToModuleMap().containsKey(device.getId()))
+			placement.getDeviceToModuleMap().put(device.getId(), new ArrayList<AppModule>());
+		placement.getDeviceToModuleMap().get(device.getId()).add(instance);
+		if(!placement.getModuleToDeviceMap().containsKey(instance.getName()))
+			placement.getModuleToDeviceMap().put(instance.getName(), new ArrayList<Integer>());
+		placement.getModuleToDeviceMap().get(instance.getName()).add(device.getId());
+	}
+
+	private void removeFromPlacement(FogDevice device, AppModule instance) {
+		ModulePlacement placement = getPlacement(instance);
+		placement.getDeviceToModuleMap().get(device.getId()).remove(instance);
+		placement.getModuleToDeviceMap().get(instance.getName()).remove(Integer.valueOf(device.getId()));
+	}
+
+	/**
+	 * @return the parent of a fog device, or null if it is the root
+	 */
+	public FogDevice getParent(FogDevice device) {
+		return device.getParentId() > 0 ? (FogDevice)CloudSim.getEntity(device.getParentId()) : null;
+	}
+
+	/**
+	 * @return the fog devices connected below a fog device
+	 */
+	public List<FogDevice> getChildren(FogDevice device) {
+		List<FogDevice> children = new ArrayList<FogDevice>();
+		for(int childId : device.getChildrenIds()){
+			if(CloudSim.getEntity(childId) instanceof FogDevice)
+				children.add((FogDevice)CloudSim.getEntity(childId));
+		}
+		return children;
+	}
+
+	/**
+	 * @return the time of the last action on a module, or negative infinity if there was none
+	 */
+	public double getLastActionTime(String appId, String moduleName) {
+		for(int i = actions.size()-1; i >= 0; i--){
+			AppModule instance = actions.get(i).getInstance();
+			if(instance.getAppId().equals(appId) && instance.getName().equals(moduleName))
+				return actions.get(i).getTime();
+		}
+		return Double.NEGATIVE_INFINITY;
+	}
+
+	/** The loads of the fog devices over the last interval. */
+	public Collection<DeviceLoad> getLoads() {
+		return Collections.unmodifiableCollection(loads.values());
+	}
+
+	/** The load of a fog device over the last interval, or null if it was not sampled. */
+	public DeviceLoad getLoad(FogDevice device) {
+		return loads.get(device.getId());
+	}
+
+	/** The interval ended at the last sample. */
+	public Interval getLastInterval() {
+		return lastInterval;
+	}
+
+	/** The actions taken, in order. */
+	public List<Action> getActions() {
+		return Collections.unmodifiableList(actions);
+	}
+
+	/** The total size of the module states sent between devices. */
+	public double getTransferredData() {
+		return transferredData;
+	}
+
+	public AutoscalingPolicy getPolicy() {
+		return policy;
+	}
+
+	public Controller getController() {
+		return controller;
+	}
+}
@@ -0,0 +1,20 @@
+package org.fog.placement;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Decides how the module instances of the applications are rebalanced at runtime, from the loads of
+ * the fog devices sampled by an {@link Autoscaler}.
+ */
+public interface AutoscalingPolicy extends Serializable {
+
+	/**
+	 * Function called by the autoscaler every Config.RESOURCE_MANAGE_INTERVAL, once the load of every
+	 * fog device over the interval just ended has been sampled.
+	 * @param autoscaler the autoscaler, giving the loads, the current placement and the cost of moving a module
+	 * @return the actions to take now, in order; actions that are not valid any more are skipped by the autoscaler
+	 */
+	public List<Autoscaler.Action> decide(Autoscaler autoscaler);
+
+}
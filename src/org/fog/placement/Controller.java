@@ -1,13 +1,16 @@
 package org.fog.placement;
 
+import java.io.PrintStream;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.EventProfiler;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationMonitor;
 import org.fog.application.AppEdge;
 import org.fog.application.AppLoop;
 import org.fog.application.AppModule;
@@ -16,12 +19,15 @@ import org.fog.entities.Actuator;
 import org.fog.entities.FogDevice;
 import org.fog.entities.Sensor;
 import org.fog.utils.Config;
+import org.fog.utils.FogDeviceMetrics;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
 import org.fog.utils.NetworkUsageMonitor;
+import org.fog.utils.SteadyStateMonitor;
 import org.fog.utils.TimeKeeper;
 
 public class Controller extends SimEntity{
+	private static final long serialVersionUID = 1L;
 	
 	public static boolean ONLY_CLOUD = false;
 		
@@ -34,13 +40,23 @@ public class Controller extends SimEntity{
 
 	private Map<String, ModulePlacement> appModulePlacementPolicy;
 	
+	// otherwise the simulation is terminated and CloudSim.startSimulation() returns
+	private boolean exitOnStop = true;
+	
+	// the stream the results are printed to when the simulation stops, System.out if not set
+	private transient PrintStream reportStream;
+	
+	private Autoscaler autoscaler;
+	
 	public Controller(String name, List<FogDevice> fogDevices, List<Sensor> sensors, List<Actuator> actuators) {
 		super(name);
+		EventProfiler.registerTagNames(FogEvents.class);
 		this.applications = new HashMap<String, Application>();
 		setAppLaunchDelays(new HashMap<String, Integer>());
 		setAppModulePlacementPolicy(new HashMap<String, ModulePlacement>());
 		for(FogDevice fogDevice : fogDevices){
 			fogDevice.setControllerId(getId());
+			SimulationMonitor.addSource(new FogDeviceMetrics(fogDevice));
 		}
 		setFogDevices(fogDevices);
 		setActuators(actuators);
@@ -79,9 +95,6 @@ public class Controller extends SimEntity{
 		send(getId(), Config.RESOURCE_MANAGE_INTERVAL, FogEvents.CONTROLLER_RESOURCE_MANAGE);
 		
 		send(getId(), Config.MAX_SIMULATION_TIME, FogEvents.STOP_SIMULATION);
-		
-		for(FogDevice dev : getFogDevices())
-			sendNow(dev.getId(), FogEvents.RESOURCE_MGMT);
 
 	}
 
@@ -103,14 +116,40 @@ public class Controller extends SimEntity{
 			printPowerDetails();
 			printCostDetails();
 			printNetworkUsageDetails();
-			System.exit(0);
+			printAutoscalingDetails();
+			if(isExitOnStop()){
+				EventProfiler.runFinished();
+				System.exit(0);
+			}
+			CloudSim.abruptallyTerminate();
 			break;
 			
 		}
 	}
 	
 	private void printNetworkUsageDetails() {
-		System.out.println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/Config.MAX_SIMULATION_TIME);		
+		getReportStream().println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/CloudSim.clock());		
+	}
+
+	private void printAutoscalingDetails() {
+		if(getAutoscaler() == null)
+			return;
+		getReportStream().println("=========================================");
+		getReportStream().println("AUTOSCALING ACTIONS");
+		getReportStream().println("=========================================");
+		for(Autoscaler.Action action : getAutoscaler().getActions()){
+			getReportStream().println(action.getTime()+" : "+action+(action.isFailed() ? " (failed)" : "")
+					+" ---> ready at "+action.getReadyTime());
+			Autoscaler.Interval before = action.getBefore();
+			Autoscaler.Interval after = action.getAfter();
+			for(Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()){
+				getReportStream().println("\t"+getStringForLoopId(loopId)+" ---> "+before.getLoopDelay(loopId)
+						+" before, "+(after == null ? "-" : after.getLoopDelay(loopId))+" after");
+			}
+			getReportStream().println("\tPower ---> "+before.getPower()+" before, "+(after == null ? "-" : after.getPower())+" after");
+		}
+		getReportStream().println("Module state transferred = "+getAutoscaler().getTransferredData());
+		getReportStream().println("=========================================");
 	}
 
 	private FogDevice getCloud(){
@@ -121,12 +160,12 @@ public class Controller extends SimEntity{
 	}
 	
 	private void printCostDetails(){
-		System.out.println("Cost of execution in cloud = "+getCloud().getTotalCost());
+		getReportStream().println("Cost of execution in cloud = "+getCloud().getTotalCost());
 	}
 	
 	private void printPowerDetails() {
 		for(FogDevice fogDevice : getFogDevices()){
-			System.out.println(fogDevice.getName() + " : Energy Consumed = "+fogDevice.getEnergyConsumption());
+			getReportStream().println(fogDevice.getName() + " : Energy Consumed = "+fogDevice.getEnergyConsumption());
 		}
 	}
 
@@ -141,13 +180,13 @@ public class Controller extends SimEntity{
 		return null;
 	}
 	private void printTimeDetails() {
-		System.out.println("=========================================");
-		System.out.println("============== RESULTS ==================");
-		System.out.println("=========================================");
-		System.out.println("EXECUTION TIME : "+ (Calendar.getInstance().getTimeInMillis() - TimeKeeper.getInstance().getSimulationStartTime()));
-		System.out.println("=========================================");
-		System.out.println("APPLICATION LOOP DELAYS");
-		System.out.println("=========================================");
+		getReportStream().println("=========================================");
+		getReportStream().println("============== RESULTS ==================");
+		getReportStream().println("=========================================");
+		getReportStream().println("EXECUTION TIME : "+ (Calendar.getInstance().getTimeInMillis() - TimeKeeper.getInstance().getSimulationStartTime()));
+		getReportStream().println("=========================================");
+		getReportStream().println("APPLICATION LOOP DELAYS");
+		getReportStream().println("=========================================");
 		for(Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()){
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
@@ -158,24 +197,73 @@ public class Controller extends SimEntity{
 				average += endTime-startTime;
 				count += 1;
 			}
-			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
-			System.out.println(getStringForLoopId(loopId) + " ---> "+TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+			getReportStream().println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
+			getReportStream().println(getStringForLoopId(loopId) + " ---> "+TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
 		}
-		System.out.println("=========================================");
-		System.out.println("TUPLE CPU EXECUTION DELAY");
-		System.out.println("=========================================");
+		getReportStream().println("=========================================");
+		getReportStream().println("TUPLE CPU EXECUTION DELAY");
+		getReportStream().println("=========================================");
 		
 		for(String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()){
-			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+			getReportStream().println(tupleType + " ---> "+TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
 		}
 		
-		System.out.println("=========================================");
+		getReportStream().println("=========================================");
+		
+		SteadyStateMonitor monitor = TimeKeeper.getInstance().getSteadyStateMonitor();
+		if(monitor != null){
+			getReportStream().println("STEADY-STATE LOOP DELAYS ("+(monitor.getConfidenceLevel()*100)+"% CONFIDENCE)");
+			getReportStream().println("=========================================");
+			getReportStream().println("SIMULATION STOPPED AT : "+CloudSim.clock());
+			for(Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()){
+				getReportStream().println(getStringForLoopId(loopId) + " ---> "+monitor.getEstimate(loopId));
+			}
+			getReportStream().println("=========================================");
+		}
 	}
 
 	protected void manageResources(){
+		if(isSteadyStateReached()){
+			sendNow(getId(), FogEvents.STOP_SIMULATION);
+			return;
+		}
+		if(getAutoscaler() != null)
+			getAutoscaler().manageResources(this);
 		send(getId(), Config.RESOURCE_MANAGE_INTERVAL, FogEvents.CONTROLLER_RESOURCE_MANAGE);
 	}
 	
+	/**
+	 * Checks whether the steady-state delay of every loop of the submitted applications is known to
+	 * the precision requested by the SteadyStateMonitor of the TimeKeeper, if any.
+	 */
+	protected boolean isSteadyStateReached(){
+		SteadyStateMonitor monitor = TimeKeeper.getInstance().getSteadyStateMonitor();
+		if(monitor == null || getApplications().isEmpty())
+			return false;
+		for(Application app : getApplications().values()){
+			for(AppLoop loop : app.getLoops()){
+				if(!monitor.isConverged(loop.getLoopId()))
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Launches a module instance on a fog device after a delay, submitting its application to the device as well.
+	 */
+	void launchModule(FogDevice fogDevice, AppModule module, double delay){
+		send(fogDevice.getId(), delay, FogEvents.APP_SUBMIT, getApplications().get(module.getAppId()));
+		send(fogDevice.getId(), delay, FogEvents.LAUNCH_MODULE, module);
+	}
+	
+	/**
+	 * Releases a module instance from a fog device at once.
+	 */
+	void releaseModule(FogDevice fogDevice, AppModule module){
+		sendNow(fogDevice.getId(), FogEvents.RELEASE_OPERATOR, module);
+	}
+	
 	private void processTupleFinished(SimEvent ev) {
 	}
 	
@@ -285,4 +373,34 @@ public class Controller extends SimEntity{
 	public void setAppModulePlacementPolicy(Map<String, ModulePlacement> appModulePlacementPolicy) {
 		this.appModulePlacementPolicy = appModulePlacementPolicy;
 	}
+
+	public boolean isExitOnStop() {
+		return exitOnStop;
+	}
+
+	public void setExitOnStop(boolean exitOnStop) {
+		this.exitOnStop = exitOnStop;
+	}
+
+	public PrintStream getReportStream() {
+		return reportStream != null ? reportStream : System.out;
+	}
+
+	/**
+	 * Sets the stream the results are printed to when the simulation stops, instead of System.out.
+	 */
+	public void setReportStream(PrintStream reportStream) {
+		this.reportStream = reportStream;
+	}
+
+	public Autoscaler getAutoscaler() {
+		return autoscaler;
+	}
+
+	/**
+	 * Rebalances the module instances with an autoscaler every Config.RESOURCE_MANAGE_INTERVAL, or never if it is null.
+	 */
+	public void setAutoscaler(Autoscaler autoscaler) {
+		this.autoscaler = autoscaler;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package org.fog.placement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppModule;
+import org.fog.entities.FogDevice;
+import org.fog.placement.Autoscaler.Action;
+import org.fog.placement.Autoscaler.DeviceLoad;
+import org.fog.utils.Config;
+
+/**
+ * An autoscaling policy acting on utilisation thresholds. A device is saturated when its
+ * utilisation reaches the high threshold while tuples are waiting on it, and idle when its
+ * utilisation is at most the low threshold and no tuple is waiting on it.
+ *
+ * The modules of a saturated device, most loaded devices first, are scaled out to its least loaded
+ * idle child able to host them, which then processes the tuples coming from below it. If no child
+ * can take them, a module is migrated to the closest idle ancestor able to host it, or scaled in if
+ * the closest ancestor hosting the module is idle. An instance on an idle device is also scaled in
+ * when an idle ancestor hosts the module. A module is left alone for a cooldown period after every
+ * action on it, so that the effect of an action is measured before the next one.
+ *
+ * Utilisation is the fraction of the time a device is busy, whatever its MIPS, so a device only
+ * takes over processing it has the spare MIPS for: to relieve a saturated device it must stay below
+ * the high threshold, and to scale an idle instance in below the low threshold, so that the same
+ * instance is not scaled in and out again. The MIPS used by a device are assumed to be shared
+ * evenly by its modules, and the tuples of a module to come evenly from its children.
+ */
+public class ThresholdAutoscalingPolicy implements AutoscalingPolicy {
+	private static final long serialVersionUID = 1L;
+
+	private final double highUtilization;
+	private final double lowUtilization;
+	private final double cooldown;
+
+	/**
+	 * Creates a policy saturating at 80% utilisation, idle at 30% and with a cooldown of 5 resource
+	 * management intervals.
+	 */
+	public ThresholdAutoscalingPolicy() {
+		this(0.8, 0.3, 5*Config.RESOURCE_MANAGE_INTERVAL);
+	}
+
+	/**
+	 * @param highUtilization the utilisation from which a device is saturated
+	 * @param lowUtilization the utilisation up to which a device is idle
+	 * @param cooldown the time after an action on a module before the next one
+	 */
+	public ThresholdAutoscalingPolicy(double highUtilization, double lowUtilization, double cooldown) {
+		if(lowUtilization < 0 || lowUtilization >= highUtilization || highUtilization > 1)
+			throw new IllegalArgumentException("The utilisation thresholds must verify 0 <= low < high <= 1");
+		this.highUtilization = highUtilization;
+		this.lowUtilization = lowUtilization;
+		this.cooldown = cooldown;
+	}
+
+	@Override
+	public List<Action> decide(Autoscaler autoscaler) {
+		List<Action> actions = new ArrayList<Action>();
+		// the modules acted on in this sample are cooling down as well
+		Set<String> actedModules = new HashSet<String>();
+		List<DeviceLoad> loads = new ArrayList<DeviceLoad>(autoscaler.getLoads());
+		Collections.sort(loads, new Comparator<DeviceLoad>() {
+			@Override
+			public int compare(DeviceLoad load1, DeviceLoad load2) {
+				return Double.compare(load2.getUtilization(), load1.getUtilization());
+			}
+		});
+		for(DeviceLoad load : loads){
+			if(isSaturated(load)){
+				for(AppModule module : load.getModules()){
+					if(isCoolingDown(autoscaler, module, actedModules))
+						continue;
+					Action action = relieve(autoscaler, load, module);
+					if(action != null){
+						actions.add(action);
+						actedModules.add(module.getAppId()+"/"+module.getName());
+						break;
+					}
+				}
+			}else if(isIdle(load)){
+				for(AppModule module : load.getModules()){
+					if(isCoolingDown(autoscaler, module, actedModules))
+						continue;
+					FogDevice ancestor = getAncestorHosting(autoscaler, load.getDevice(), module);
+					DeviceLoad ancestorLoad = ancestor == null ? null : autoscaler.getLoad(ancestor);
+					if(isIdle(ancestorLoad) && canAbsorb(ancestorLoad, load, 1.0/load.getModules().size(), lowUtilization)){
+						actions.add(Action.scaleIn(module, load.getDevice()));
+						actedModules.add(module.getAppId()+"/"+module.getName());
+					}
+				}
+			}
+		}
+		return actions;
+	}
+
+	/**
+	 * Finds an action taking a module off a saturated device, or null if there is none.
+	 */
+	protected Action relieve(Autoscaler autoscaler, DeviceLoad saturated, AppModule module) {
+		FogDevice device = saturated.getDevice();
+		double moduleShare = 1.0/saturated.getModules().size();
+		List<FogDevice> children = autoscaler.getChildren(device);
+		DeviceLoad target = null;
+		for(FogDevice child : children){
+			DeviceLoad load = autoscaler.getLoad(child);
+			if(!isIdle(load) || !canAbsorb(load, saturated, moduleShare/children.size(), highUtilization)
+					|| autoscaler.hostsModule(child, module.getAppId(), module.getName()) || !autoscaler.canHost(child, module))
+				continue;
+			if(target == null || load.getUtilization() < target.getUtilization())
+				target = load;
+		}
+		if(target != null)
+			return Action.scaleOut(module, device, target.getDevice());
+		// the tuples going up stop at the closest ancestor hosting the module, so the module is not moved beyond it
+		for(FogDevice ancestor = autoscaler.getParent(device); ancestor != null; ancestor = autoscaler.getParent(ancestor)){
+			DeviceLoad load = autoscaler.getLoad(ancestor);
+			boolean canTakeOver = isIdle(load) && canAbsorb(load, saturated, moduleShare, highUtilization);
+			if(autoscaler.hostsModule(ancestor, module.getAppId(), module.getName()))
+				return canTakeOver ? Action.scaleIn(module, device) : null;
+			if(canTakeOver && autoscaler.canHost(ancestor, module))
+				return Action.migrate(module, device, ancestor);
+		}
+		return null;
+	}
+
+	private FogDevice getAncestorHosting(Autoscaler autoscaler, FogDevice device, AppModule module) {
+		for(FogDevice ancestor = autoscaler.getParent(device); ancestor != null; ancestor = autoscaler.getParent(ancestor)){
+			if(autoscaler.hostsModule(ancestor, module.getAppId(), module.getName()))
+				return ancestor;
+		}
+		return null;
+	}
+
+	private boolean isCoolingDown(Autoscaler autoscaler, AppModule module, Set<String> actedModules) {
+		return actedModules.contains(module.getAppId()+"/"+module.getName())
+				|| CloudSim.clock() - autoscaler.getLastActionTime(module.getAppId(), module.getName()) < cooldown;
+	}
+
+	/**
+	 * @return whether a device can take over a share of the MIPS used by another device and stay below a utilisation
+	 */
+	protected boolean canAbsorb(DeviceLoad load, DeviceLoad from, double share, double maxUtilization) {
+		double spareMips = (maxUtilization - load.getUtilization())*load.getDevice().getHost().getTotalMips();
+		return spareMips >= share*from.getUtilization()*from.getDevice().getHost().getTotalMips();
+	}
+
+	protected boolean isSaturated(DeviceLoad load) {
+		return load.getUtilization() >= highUtilization && load.getQueuedTuples() > 0;
+	}
+
+	protected boolean isIdle(DeviceLoad load) {
+		return load != null && load.getUtilization() <= lowUtilization && load.getQueuedTuples() == 0;
+	}
+
+	public double getHighUtilization() {
+		return highUtilization;
+	}
+
+	public double getLowUtilization() {
+		return lowUtilization;
+	}
+
+	public double getCooldown() {
+		return cooldown;
+	}
+}
@@ -10,6 +10,7 @@ import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.fog.application.AppModule;
 
 public class AppModuleAllocationPolicy extends VmAllocationPolicy{
+	private static final long serialVersionUID = 1L;
 
 	private Host fogHost;
 	
@@ -9,6 +9,7 @@ import org.cloudbus.cloudsim.VmSchedulerTimeSharedOverSubscription;
 import org.cloudbus.cloudsim.sdn.overbooking.VmSchedulerTimeSharedOverbookingEnergy;
 
 public class StreamOperatorScheduler extends VmSchedulerTimeSharedOverbookingEnergy{
+	private static final long serialVersionUID = 1L;
 
 	public StreamOperatorScheduler(List<? extends Pe> pelist) {
 		super(pelist);
@@ -2,7 +2,6 @@ package org.fog.utils;
 
 public class Config {
 
-	public static final double RESOURCE_MGMT_INTERVAL = 100;
 	public static int MAX_SIMULATION_TIME = 10000;
 	public static int RESOURCE_MANAGE_INTERVAL = 100;
 	public static String FOG_DEVICE_ARCH = "x86";
@@ -13,4 +12,16 @@ public class Config {
 	public static double FOG_DEVICE_COST_PER_MEMORY = 0.05;
 	public static double FOG_DEVICE_COST_PER_STORAGE = 0.001;
 	public static double FOG_DEVICE_COST_PER_BW = 0.0;
+	/**
+	 * Whether fog devices have a downlink of their own to each child, whose queued tuples are sent in batches,
+	 * rather than one downlink shared by all children. Each of these links is dedicated and runs at the full
+	 * downlink bandwidth of the device, as with a switch port per child, so the children together can receive
+	 * more than that bandwidth; the bandwidth is not split across the busy links.
+	 */
+	public static boolean PER_CHILD_DOWNLINKS = false;
+	/**
+	 * Whether tuples going down are sent to every child, rather than only to the children whose subtree hosts their
+	 * destination module or actuator
+	 */
+	public static boolean BROADCAST_DOWN_TUPLES = false;
 }
@@ -0,0 +1,143 @@
+package org.fog.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.power.models.PowerModel;
+
+/**
+ * Meters the energy consumed by a host from the times at which its CPU utilisation changes. The power
+ * is constant between two changes, so the energy is the sum, over the utilisation levels the host has
+ * been at, of the power at the level times the time spent at it.
+ *
+ * A change only adds the time since the previous change to its level, and the power model is only
+ * evaluated when the energy is read, once per level. The levels are the few allocations the modules
+ * of a device take turns at, so they are kept in primitive arrays; the levels beyond MAX_LEVELS are
+ * integrated as they are left instead.
+ */
+public class EnergyMeter implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 4;
+	private static final int MAX_LEVELS = 64;
+
+	private final PowerModel powerModel;
+
+	private double utilization;
+	private double changeTime;
+
+	private double[] levels = new double[INITIAL_CAPACITY];
+	private double[] durations = new double[INITIAL_CAPACITY];
+	/** The power at every level, NaN until the energy is read */
+	private double[] powers = new double[INITIAL_CAPACITY];
+	private int levelCount;
+	private int lastLevel = -1;
+
+	/** The energy and integral of the utilisation over the time spent at levels not kept */
+	private double overflowEnergy;
+	private double overflowUtilization;
+
+	/**
+	 * Creates a meter at utilisation 0 from time 0.
+	 * @param powerModel the power model of the host
+	 */
+	public EnergyMeter(PowerModel powerModel) {
+		this.powerModel = powerModel;
+	}
+
+	/**
+	 * Records the utilisation of the host from a time on.
+	 * @param time the current time, not before the last change
+	 * @param utilization the utilisation from the current time, between 0 and 1
+	 */
+	public void utilizationChanged(double time, double utilization) {
+		if(utilization == this.utilization)
+			return;
+		double duration = time - changeTime;
+		if(duration > 0){
+			int level = indexOf(this.utilization);
+			if(level >= 0){
+				durations[level] += duration;
+			}else{
+				overflowEnergy += duration*powerModel.getPower(this.utilization);
+				overflowUtilization += duration*this.utilization;
+			}
+		}
+		this.utilization = utilization;
+		changeTime = time;
+	}
+
+	/**
+	 * The index of a level, added if there is room for it, or -1 if there is not.
+	 */
+	private int indexOf(double utilization) {
+		if(lastLevel >= 0 && levels[lastLevel] == utilization)
+			return lastLevel;
+		for(int level = 0; level < levelCount; level++){
+			if(levels[level] == utilization)
+				return lastLevel = level;
+		}
+		if(levelCount == MAX_LEVELS)
+			return -1;
+		if(levelCount == levels.length){
+			int capacity = Math.min(MAX_LEVELS, levels.length*2);
+			levels = Arrays.copyOf(levels, capacity);
+			durations = Arrays.copyOf(durations, capacity);
+			powers = Arrays.copyOf(powers, capacity);
+		}
+		levels[levelCount] = utilization;
+		durations[levelCount] = 0;
+		powers[levelCount] = Double.NaN;
+		return lastLevel = levelCount++;
+	}
+
+	private double getPower(int level) {
+		if(Double.isNaN(powers[level]))
+			powers[level] = powerModel.getPower(levels[level]);
+		return powers[level];
+	}
+
+	/**
+	 * @param time the current time, not before the last change
+	 * @return the energy consumed from time 0 until the current time
+	 */
+	public double getEnergy(double time) {
+		double energy = overflowEnergy;
+		for(int level = 0; level < levelCount; level++){
+			if(durations[level] > 0)
+				energy += getPower(level)*durations[level];
+		}
+		if(time > changeTime){
+			int level = indexOf(utilization);
+			energy += (time - changeTime)*(level >= 0 ? getPower(level) : powerModel.getPower(utilization));
+		}
+		return energy;
+	}
+
+	/**
+	 * @param time the current time, not before the last change
+	 * @return the integral of the utilisation from time 0 until the current time
+	 */
+	public double getCumulativeUtilization(double time) {
+		double cumulativeUtilization = overflowUtilization;
+		for(int level = 0; level < levelCount; level++)
+			cumulativeUtilization += levels[level]*durations[level];
+		if(time > changeTime)
+			cumulativeUtilization += (time - changeTime)*utilization;
+		return cumulativeUtilization;
+	}
+
+	/** The current utilisation of the host. */
+	public double getUtilization() {
+		return utilization;
+	}
+
+	/** The time from which the host has been at its current utilisation. */
+	public double getChangeTime() {
+		return changeTime;
+	}
+
+	public PowerModel getPowerModel() {
+		return powerModel;
+	}
+}
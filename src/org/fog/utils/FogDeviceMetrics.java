@@ -0,0 +1,44 @@
+package org.fog.utils;
+
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.SimulationMonitor;
+import org.fog.entities.FogDevice;
+
+/**
+ * Live gauges of a fog device for the SimulationMonitor: energy consumed, lengths of the north and
+ * south tuple queues and CPU utilisation. The Controller adds one for each of its devices.
+ */
+public class FogDeviceMetrics implements SimulationMonitor.Source {
+
+	private final FogDevice fogDevice;
+	
+	public FogDeviceMetrics(FogDevice fogDevice) {
+		this.fogDevice = fogDevice;
+	}
+	
+	@Override
+	public String getObjectName() {
+		return getObjectName(fogDevice.getName());
+	}
+
+	/**
+	 * Returns the object name of the gauges of the fog device with the given name.
+	 */
+	public static String getObjectName(String fogDeviceName) {
+		return "org.fog:type=FogDevice,name=" + fogDeviceName.replaceAll("[,=:*?\"\\n]", "_");
+	}
+
+	@Override
+	public void sample(Map<String, Double> gauges) {
+		gauges.put("energyConsumption", fogDevice.getEnergyConsumption());
+		gauges.put("northTupleQueueLength", (double) fogDevice.getNorthTupleQueue().size());
+		gauges.put("southTupleQueueLength", (double) fogDevice.getSouthTupleQueueLength());
+		gauges.put("cpuUtilization", fogDevice.getLastUtilization());
+		gauges.put("totalCost", fogDevice.getTotalCost());
+	}
+
+	public FogDevice getFogDevice() {
+		return fogDevice;
+	}
+}
@@ -0,0 +1,91 @@
+package org.fog.utils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimulationSnapshot;
+import org.fog.placement.Controller;
+
+/**
+ * The static state of iFogSim saved in a {@link SimulationSnapshot}: the id counters of
+ * {@link FogUtils}, the {@link TimeKeeper}, the {@link NetworkUsageMonitor} and the {@link Config}
+ * values. Controllers of a restored simulation do not exit the JVM when the simulation stops, so
+ * that a resumed run or a forked variant can go on once it is over.
+ */
+public class FogSnapshot implements SimulationSnapshot.State {
+	private static final long serialVersionUID = 1L;
+
+	private final int tupleId;
+	private final int entityId;
+	private final int actualTupleId;
+	private final int userId;
+	private final Map<String, GeoCoverage> appIdToGeoCoverageMap;
+	private final TimeKeeper timeKeeper;
+	private final double networkUsage;
+	private final boolean onlyCloud;
+	private final int maxSimulationTime;
+	private final int resourceManageInterval;
+	private final boolean perChildDownlinks;
+	private final boolean broadcastDownTuples;
+
+	/**
+	 * Captures the state of the current iFogSim simulation.
+	 * @return the snapshot
+	 * @throws IOException if the simulation cannot be serialized
+	 */
+	public static SimulationSnapshot capture() throws IOException {
+		return SimulationSnapshot.capture(new FogSnapshot());
+	}
+
+	/**
+	 * Resets the static state of iFogSim, so that another simulation can be built in the same JVM
+	 * without the loop delays, tuple counts and network usage of the previous one.
+	 */
+	public static void reset() {
+		FogUtils.TUPLE_ID = 1;
+		FogUtils.ENTITY_ID = 1;
+		FogUtils.ACTUAL_TUPLE_ID = 1;
+		FogUtils.USER_ID = 1;
+		FogUtils.appIdToGeoCoverageMap = new HashMap<String, GeoCoverage>();
+		TimeKeeper.setInstance(null);
+		NetworkUsageMonitor.setNetworkUsage(0);
+	}
+
+	private FogSnapshot() {
+		tupleId = FogUtils.TUPLE_ID;
+		entityId = FogUtils.ENTITY_ID;
+		actualTupleId = FogUtils.ACTUAL_TUPLE_ID;
+		userId = FogUtils.USER_ID;
+		appIdToGeoCoverageMap = new HashMap<String, GeoCoverage>(FogUtils.appIdToGeoCoverageMap);
+		timeKeeper = TimeKeeper.getInstance();
+		networkUsage = NetworkUsageMonitor.getNetworkUsage();
+		onlyCloud = Controller.ONLY_CLOUD;
+		maxSimulationTime = Config.MAX_SIMULATION_TIME;
+		resourceManageInterval = Config.RESOURCE_MANAGE_INTERVAL;
+		perChildDownlinks = Config.PER_CHILD_DOWNLINKS;
+		broadcastDownTuples = Config.BROADCAST_DOWN_TUPLES;
+	}
+
+	@Override
+	public void restore() {
+		FogUtils.TUPLE_ID = tupleId;
+		FogUtils.ENTITY_ID = entityId;
+		FogUtils.ACTUAL_TUPLE_ID = actualTupleId;
+		FogUtils.USER_ID = userId;
+		FogUtils.appIdToGeoCoverageMap = new HashMap<String, GeoCoverage>(appIdToGeoCoverageMap);
+		TimeKeeper.setInstance(timeKeeper);
+		NetworkUsageMonitor.setNetworkUsage(networkUsage);
+		Controller.ONLY_CLOUD = onlyCloud;
+		Config.MAX_SIMULATION_TIME = maxSimulationTime;
+		Config.RESOURCE_MANAGE_INTERVAL = resourceManageInterval;
+		Config.PER_CHILD_DOWNLINKS = perChildDownlinks;
+		Config.BROADCAST_DOWN_TUPLES = broadcastDownTuples;
+		for(SimEntity entity : CloudSim.getEntityList()){
+			if(entity instanceof Controller)
+				((Controller)entity).setExitOnStop(false);
+		}
+	}
+}
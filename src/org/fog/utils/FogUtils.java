@@ -4,9 +4,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class FogUtils {
-	private static int TUPLE_ID = 1;
-	private static int ENTITY_ID = 1;
-	private static int ACTUAL_TUPLE_ID = 1;
+	static int TUPLE_ID = 1;
+	static int ENTITY_ID = 1;
+	static int ACTUAL_TUPLE_ID = 1;
 	
 	public static int generateTupleId(){
 		return TUPLE_ID++;
@@ -0,0 +1,343 @@
+package org.fog.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming JSON parser that returns one token at a time, so that a large document can be
+ * processed without building it in memory. It tracks the line of every token, and reports syntax
+ * errors, and the errors of callers through {@link #error(String)}, with it.
+ */
+public class JsonPullParser {
+
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	/**
+	 * A syntax or schema error of a JSON document, with the line where it was found.
+	 */
+	public static class JsonFormatException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private final int line;
+
+		public JsonFormatException(String source, int line, String message) {
+			super(source + ":" + line + ": " + message);
+			this.line = line;
+		}
+
+		public int getLine() {
+			return line;
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Reader reader;
+	private final String source;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private int line = 1;
+	private int tokenLine = 1;
+
+	/** The open containers, true for an object, as a stack of bits. */
+	private long[] containers = new long[4];
+	private int depth;
+	/** Whether a value, or a name in an object, was read in the innermost container. */
+	private boolean hasElement;
+	/** Whether a name was read and its value is expected next. */
+	private boolean expectValue;
+
+	private final StringBuilder text = new StringBuilder();
+	private Token token;
+	private boolean booleanValue;
+	private boolean integral;
+
+	/**
+	 * @param reader the document
+	 * @param source the name of the document, such as its file name, used in error messages
+	 */
+	public JsonPullParser(Reader reader, String source) {
+		this.reader = reader;
+		this.source = source;
+	}
+
+	/**
+	 * Reads the next token.
+	 */
+	public Token next() throws IOException {
+		int c = skipWhitespace();
+		tokenLine = line;
+		if(expectValue){
+			expectValue = false;
+			return token = readValue(c);
+		}
+		if(depth > 0 && isObject()){
+			if(c == '}'){
+				position++;
+				pop();
+				return token = Token.END_OBJECT;
+			}
+			if(hasElement){
+				if(c != ',')
+					throw error("Expected ',' or '}'");
+				position++;
+				c = skipWhitespace();
+				tokenLine = line;
+			}
+			if(c != '"')
+				throw error("Expected a field name");
+			position++;
+			readString();
+			if(skipWhitespace() != ':')
+				throw error("Expected ':' after field name \"" + text + "\"");
+			position++;
+			hasElement = true;
+			expectValue = true;
+			return token = Token.NAME;
+		}
+		if(depth > 0){
+			if(c == ']'){
+				position++;
+				pop();
+				return token = Token.END_ARRAY;
+			}
+			if(hasElement){
+				if(c != ',')
+					throw error("Expected ',' or ']'");
+				position++;
+				c = skipWhitespace();
+				tokenLine = line;
+			}
+			hasElement = true;
+			return token = readValue(c);
+		}
+		if(hasElement){
+			if(c != -1)
+				throw error("Unexpected content after the end of the document");
+			return token = Token.END_DOCUMENT;
+		}
+		hasElement = true;
+		return token = readValue(c);
+	}
+
+	/**
+	 * Skips the value that starts with the last token read, including its nested values.
+	 */
+	public void skipValue() throws IOException {
+		if(token == Token.NAME)
+			next();
+		if(token != Token.BEGIN_OBJECT && token != Token.BEGIN_ARRAY)
+			return;
+		int target = depth - 1;
+		while(depth > target)
+			next();
+	}
+
+	/**
+	 * The text of the last NAME, STRING or NUMBER token.
+	 */
+	public String getString() {
+		return text.toString();
+	}
+
+	public boolean getBoolean() {
+		return booleanValue;
+	}
+
+	/**
+	 * The value of the last NUMBER token.
+	 */
+	public double getDouble() throws JsonFormatException {
+		try {
+			return Double.parseDouble(text.toString());
+		} catch (NumberFormatException e) {
+			throw error("Invalid number " + text);
+		}
+	}
+
+	/**
+	 * The value of the last NUMBER token, which must be an integer.
+	 */
+	public long getLong() throws JsonFormatException {
+		if(!integral)
+			throw error("Expected an integer but found " + text);
+		try {
+			return Long.parseLong(text.toString());
+		} catch (NumberFormatException e) {
+			throw error("Integer out of range: " + text);
+		}
+	}
+
+	public Token getToken() {
+		return token;
+	}
+
+	/**
+	 * The line of the last token.
+	 */
+	public int getLine() {
+		return tokenLine;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Creates an error at the line of the last token.
+	 */
+	public JsonFormatException error(String message) {
+		return new JsonFormatException(source, tokenLine, message);
+	}
+
+	private Token readValue(int c) throws IOException {
+		switch(c){
+		case '{':
+			position++;
+			push(true);
+			return Token.BEGIN_OBJECT;
+		case '[':
+			position++;
+			push(false);
+			return Token.BEGIN_ARRAY;
+		case '"':
+			position++;
+			readString();
+			return Token.STRING;
+		case 't':
+			readLiteral("true");
+			booleanValue = true;
+			return Token.BOOLEAN;
+		case 'f':
+			readLiteral("false");
+			booleanValue = false;
+			return Token.BOOLEAN;
+		case 'n':
+			readLiteral("null");
+			return Token.NULL;
+		case -1:
+			throw error("Unexpected end of the document");
+		default:
+			if(c == '-' || (c >= '0' && c <= '9')){
+				readNumber();
+				return Token.NUMBER;
+			}
+			throw error("Unexpected character '" + (char) c + "'");
+		}
+	}
+
+	private void readString() throws IOException {
+		text.setLength(0);
+		while(true){
+			if(position == limit && !fill())
+				throw error("Unterminated string");
+			char c = buffer[position++];
+			if(c == '"')
+				return;
+			if(c == '\\'){
+				if(position == limit && !fill())
+					throw error("Unterminated string");
+				char e = buffer[position++];
+				switch(e){
+				case '"': case '\\': case '/': text.append(e); break;
+				case 'b': text.append('\b'); break;
+				case 'f': text.append('\f'); break;
+				case 'n': text.append('\n'); break;
+				case 'r': text.append('\r'); break;
+				case 't': text.append('\t'); break;
+				case 'u':
+					int code = 0;
+					for(int i = 0; i < 4; i++){
+						if(position == limit && !fill())
+							throw error("Unterminated string");
+						int digit = Character.digit(buffer[position++], 16);
+						if(digit < 0)
+							throw error("Invalid unicode escape");
+						code = code * 16 + digit;
+					}
+					text.append((char) code);
+					break;
+				default:
+					throw error("Invalid escape '\\" + e + "'");
+				}
+			} else if(c == '\n'){
+				throw error("Unterminated string");
+			} else {
+				text.append(c);
+			}
+		}
+	}
+
+	private void readNumber() throws IOException {
+		text.setLength(0);
+		integral = true;
+		while(position < limit || fill()){
+			char c = buffer[position];
+			if((c >= '0' && c <= '9') || c == '-'){
+				text.append(c);
+			} else if(c == '.' || c == 'e' || c == 'E' || c == '+'){
+				integral = false;
+				text.append(c);
+			} else {
+				break;
+			}
+			position++;
+		}
+	}
+
+	private void readLiteral(String literal) throws IOException {
+		for(int i = 0; i < literal.length(); i++){
+			if((position == limit && !fill()) || buffer[position] != literal.charAt(i))
+				throw error("Unexpected token, expected " + literal);
+			position++;
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		while(position < limit || fill()){
+			char c = buffer[position];
+			if(c == '\n'){
+				line++;
+			} else if(c != ' ' && c != '\t' && c != '\r'){
+				return c;
+			}
+			position++;
+		}
+		return -1;
+	}
+
+	private boolean fill() throws IOException {
+		int read = reader.read(buffer, 0, buffer.length);
+		if(read <= 0)
+			return false;
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+	private boolean isObject() {
+		return (containers[(depth - 1) >> 6] & (1L << ((depth - 1) & 63))) != 0;
+	}
+
+	private void push(boolean object) {
+		if(depth >> 6 == containers.length){
+			long[] grown = new long[containers.length * 2];
+			System.arraycopy(containers, 0, grown, 0, containers.length);
+			containers = grown;
+		}
+		if(object)
+			containers[depth >> 6] |= 1L << (depth & 63);
+		else
+			containers[depth >> 6] &= ~(1L << (depth & 63));
+		depth++;
+		hasElement = false;
+	}
+
+	private void pop() {
+		depth--;
+		hasElement = true;
+	}
+}
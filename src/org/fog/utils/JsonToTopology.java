@@ -1,12 +1,16 @@
 package org.fog.utils;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Pe;
@@ -27,137 +31,291 @@ import org.fog.utils.distribution.DeterministicDistribution;
 import org.fog.utils.distribution.Distribution;
 import org.fog.utils.distribution.NormalDistribution;
 import org.fog.utils.distribution.UniformDistribution;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
 
+/**
+ * Loads a physical topology from the JSON format written by the GUI. The file is read as a stream,
+ * one node and one link at a time, and the links are resolved through an index of the nodes by
+ * name, so loading is linear in the size of the file. Schema errors are reported with their line.
+ */
 public class JsonToTopology {
 
-	private static List<FogDevice> fogDevices = new ArrayList<FogDevice>();
-	private static List<Sensor> sensors = new ArrayList<Sensor>();
-	private static List<Actuator> actuators = new ArrayList<Actuator>();
- 
-	private static boolean isFogDevice(String name){
-		for(FogDevice fogDevice : fogDevices){
-			if(fogDevice.getName().equalsIgnoreCase(name))
-				return true;
+	/**
+	 * Receives the nodes and links of a topology as they are read. The nodes are numbered from 0 in
+	 * the order they are read, and the links refer to them by number.
+	 */
+	interface TopologyHandler {
+		void fogDevice(String name, long mips, int ram, long upBw, long downBw, int level, double ratePerMips);
+		/**
+		 * @param distribution the Distribution type
+		 * @param p1 the value, mean or minimum of the distribution
+		 * @param p2 the standard deviation or maximum of the distribution, or 0
+		 */
+		void sensor(String name, String sensorType, int distribution, double p1, double p2);
+		void actuator(String name, String actuatorType);
+		void link(int src, int dst, double latency);
+	}
+	
+	/**
+	 * Builds the entities of a topology.
+	 */
+	static class EntityBuilder implements TopologyHandler {
+		private final int userId;
+		private final String appId;
+		private final List<Object> nodes = new ArrayList<Object>();
+		private final List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+		private final List<Sensor> sensors = new ArrayList<Sensor>();
+		private final List<Actuator> actuators = new ArrayList<Actuator>();
+		
+		EntityBuilder(int userId, String appId) {
+			this.userId = userId;
+			this.appId = appId;
+		}
+		
+		@Override
+		public void fogDevice(String name, long mips, int ram, long upBw, long downBw, int level, double ratePerMips) {
+			FogDevice fogDevice = createFogDevice(name, mips, ram, upBw, downBw, level, ratePerMips);
+			fogDevice.setParentId(-1);
+			fogDevices.add(fogDevice);
+			nodes.add(fogDevice);
+		}
+		
+		@Override
+		public void sensor(String name, String sensorType, int distribution, double p1, double p2) {
+			Logger.debug(name, "Sensor type : "+sensorType);
+			Sensor sensor = new Sensor(name, sensorType, userId, appId, createDistribution(distribution, p1, p2));
+			sensors.add(sensor);
+			nodes.add(sensor);
 		}
-		return false;
 		
+		@Override
+		public void actuator(String name, String actuatorType) {
+			Actuator actuator = new Actuator(name, userId, appId, actuatorType);
+			actuators.add(actuator);
+			nodes.add(actuator);
+		}
+		
+		@Override
+		public void link(int src, int dst, double latency) {
+			connectEntities(nodes.get(src), nodes.get(dst), latency);
+		}
+		
+		PhysicalTopology getPhysicalTopology() {
+			PhysicalTopology physicalTopology = new PhysicalTopology();
+			physicalTopology.setFogDevices(fogDevices);
+			physicalTopology.setActuators(actuators);
+			physicalTopology.setSensors(sensors);
+			return physicalTopology;
+		}
 	}
 	
-	private static FogDevice getFogDevice(String name){
-		for(FogDevice fogDevice : fogDevices){
-			if(fogDevice.getName().equalsIgnoreCase(name))
-				return fogDevice;
+	/**
+	 * The fields of a node or a link, as read from the file.
+	 */
+	private static class Fields {
+		private final JsonPullParser parser;
+		private final int line;
+		private final Map<String, String> values = new HashMap<String, String>();
+		private final Map<String, JsonPullParser.Token> tokens = new HashMap<String, JsonPullParser.Token>();
+		private final Map<String, Integer> lines = new HashMap<String, Integer>();
+		
+		/**
+		 * Reads the fields of the object that starts with the current token. Nested values are skipped.
+		 */
+		Fields(JsonPullParser parser, String what) throws IOException {
+			this.parser = parser;
+			this.line = parser.getLine();
+			if(parser.getToken() != JsonPullParser.Token.BEGIN_OBJECT)
+				throw parser.error("Expected " + what + " object");
+			while(parser.next() == JsonPullParser.Token.NAME){
+				String name = parser.getString();
+				JsonPullParser.Token token = parser.next();
+				lines.put(name, parser.getLine());
+				tokens.put(name, token);
+				if(token == JsonPullParser.Token.BEGIN_OBJECT || token == JsonPullParser.Token.BEGIN_ARRAY)
+					parser.skipValue();
+				else
+					values.put(name, token == JsonPullParser.Token.BOOLEAN ? String.valueOf(parser.getBoolean()) : parser.getString());
+			}
+		}
+		
+		private JsonPullParser.JsonFormatException error(String name, String message){
+			Integer fieldLine = lines.get(name);
+			return new JsonPullParser.JsonFormatException(parser.getSource(), fieldLine != null ? fieldLine : line, message);
+		}
+		
+		private void require(String name, JsonPullParser.Token expected, String type) throws IOException {
+			JsonPullParser.Token token = tokens.get(name);
+			if(token == null)
+				throw error(name, "Missing field \"" + name + "\"");
+			if(token != expected)
+				throw error(name, "Field \"" + name + "\" must be " + type);
+		}
+		
+		String getString(String name) throws IOException {
+			require(name, JsonPullParser.Token.STRING, "a string");
+			return values.get(name);
+		}
+		
+		double getDouble(String name) throws IOException {
+			require(name, JsonPullParser.Token.NUMBER, "a number");
+			try {
+				return Double.parseDouble(values.get(name));
+			} catch (NumberFormatException e) {
+				throw error(name, "Field \"" + name + "\" must be a number");
+			}
+		}
+		
+		long getLong(String name) throws IOException {
+			require(name, JsonPullParser.Token.NUMBER, "an integer");
+			try {
+				return Long.parseLong(values.get(name));
+			} catch (NumberFormatException e) {
+				throw error(name, "Field \"" + name + "\" must be an integer");
+			}
+		}
+		
+		int getInt(String name) throws IOException {
+			long value = getLong(name);
+			if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+				throw error(name, "Field \"" + name + "\" is out of range");
+			return (int) value;
+		}
+		
+		int getLine() {
+			return line;
 		}
-		return null;
 	}
 	
-	private static boolean isActuator(String name){
-		for(Actuator actuator : actuators){
-			if(actuator.getName().equalsIgnoreCase(name))
-				return true;
+	/**
+	 * A link whose ends were not all read yet.
+	 */
+	private static class PendingLink {
+		final String src;
+		final String dst;
+		final double latency;
+		final int line;
+		
+		PendingLink(String src, String dst, double latency, int line) {
+			this.src = src;
+			this.dst = dst;
+			this.latency = latency;
+			this.line = line;
 		}
-		return false;
 	}
 	
-	private static Actuator getActuator(String name){
-		for(Actuator actuator : actuators){
-			if(actuator.getName().equalsIgnoreCase(name))
-				return actuator;
+	public static PhysicalTopology getPhysicalTopology(int userId, String appId, String physicalTopologyFile) throws Exception{
+		EntityBuilder builder = new EntityBuilder(userId, appId);
+		try {
+			parse(physicalTopologyFile, builder);
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
 		}
-		return null;
+		return builder.getPhysicalTopology();
 	}
 	
-	private static boolean isSensor(String name){
-		for(Sensor sensor : sensors){
-			if(sensor.getName().equalsIgnoreCase(name))
-				return true;
+	/**
+	 * Reads a topology file, giving its nodes and links to a handler. Node names are matched
+	 * ignoring case.
+	 */
+	static void parse(String physicalTopologyFile, TopologyHandler handler) throws IOException {
+		Reader reader = new BufferedReader(new FileReader(physicalTopologyFile));
+		try {
+			JsonPullParser parser = new JsonPullParser(reader, physicalTopologyFile);
+			Map<String, Integer> nodeIndexes = new HashMap<String, Integer>();
+			List<PendingLink> pendingLinks = new ArrayList<PendingLink>();
+			if(parser.next() != JsonPullParser.Token.BEGIN_OBJECT)
+				throw parser.error("Expected the topology object");
+			while(parser.next() == JsonPullParser.Token.NAME){
+				String section = parser.getString();
+				if(section.equals("nodes")){
+					if(parser.next() != JsonPullParser.Token.BEGIN_ARRAY)
+						throw parser.error("\"nodes\" must be an array");
+					while(parser.next() != JsonPullParser.Token.END_ARRAY)
+						readNode(new Fields(parser, "a node"), handler, nodeIndexes);
+				} else if(section.equals("links")){
+					if(parser.next() != JsonPullParser.Token.BEGIN_ARRAY)
+						throw parser.error("\"links\" must be an array");
+					while(parser.next() != JsonPullParser.Token.END_ARRAY){
+						Fields link = new Fields(parser, "a link");
+						String src = link.getString("source");
+						String dst = link.getString("destination");
+						double lat = link.getDouble("latency");
+						Integer srcIndex = nodeIndexes.get(key(src));
+						Integer dstIndex = nodeIndexes.get(key(dst));
+						if(srcIndex != null && dstIndex != null)
+							handler.link(srcIndex, dstIndex, lat);
+						else
+							pendingLinks.add(new PendingLink(src, dst, lat, link.getLine()));
+					}
+				} else {
+					parser.next();
+					parser.skipValue();
+				}
+			}
+			parser.next();
+			// links read before the nodes they connect
+			for(PendingLink link : pendingLinks){
+				for(String name : new String[]{link.src, link.dst}){
+					if(!nodeIndexes.containsKey(key(name)))
+						throw new JsonPullParser.JsonFormatException(physicalTopologyFile, link.line, "Link to unknown node \"" + name + "\"");
+				}
+				handler.link(nodeIndexes.get(key(link.src)), nodeIndexes.get(key(link.dst)), link.latency);
+			}
+		} finally {
+			reader.close();
 		}
-		return false;
 	}
 	
-	private static Sensor getSensor(String name){
-		for(Sensor sensor : sensors){
-			if(sensor.getName().equalsIgnoreCase(name))
-				return sensor;
-		}
-		return null;
+	private static String key(String name){
+		return name.toLowerCase(Locale.ROOT);
 	}
 	
-	public static PhysicalTopology getPhysicalTopology(int userId, String appId, String physicalTopologyFile) throws Exception{
-				
-		fogDevices = new ArrayList<FogDevice>();
-		sensors = new ArrayList<Sensor>();
-		actuators = new ArrayList<Actuator>();
-		
+	private static void readNode(Fields node, TopologyHandler handler, Map<String, Integer> nodeIndexes) throws IOException {
+		String nodeType = node.getString("type");
+		String nodeName = node.getString("name");
+		if(nodeIndexes.containsKey(key(nodeName)))
+			throw node.error("name", "Duplicate node name \"" + nodeName + "\"");
 		
 		try {
-			JSONObject doc = (JSONObject) JSONValue.parse(new FileReader(physicalTopologyFile));
-    		JSONArray nodes = (JSONArray) doc.get("nodes");
-    		@SuppressWarnings("unchecked")
-			Iterator<JSONObject> iter =nodes.iterator(); 
-			while(iter.hasNext()){
-				JSONObject node = iter.next();
-				String nodeType = (String) node.get("type");
-				String nodeName = (String) node.get("name");
-				
-				if(nodeType.equalsIgnoreCase("FOG_DEVICE")){
-					long mips = (Long) node.get("mips");
-					int ram = new BigDecimal((Long)node.get("ram")).intValueExact();
-					long upBw = new BigDecimal((Long)node.get("upBw")).intValueExact();
-					long downBw = new BigDecimal((Long)node.get("downBw")).intValueExact();
-					int level = new BigDecimal((Long)node.get("level")).intValue();
-					double ratePerMips = new BigDecimal((Double)node.get("ratePerMips")).doubleValue();
-					
-					FogDevice fogDevice = createFogDevice(nodeName, mips, ram, upBw, downBw, level, ratePerMips);
-					fogDevice.setParentId(-1);
-					
-					fogDevices.add(fogDevice);
-
-				} else if(nodeType.equals("SENSOR")){
-					String sensorType = node.get("sensorType").toString();
-					int distType = new BigDecimal((Long)node.get("distribution")).intValue();
-					Distribution distribution = null;
-					if(distType == Distribution.DETERMINISTIC)
-						distribution = new DeterministicDistribution(new BigDecimal((Double)node.get("value")).doubleValue());
-					else if(distType == Distribution.NORMAL){
-						distribution = new NormalDistribution(new BigDecimal((Double)node.get("mean")).doubleValue(), 
-								new BigDecimal((Double)node.get("stdDev")).doubleValue());
-					} else if(distType == Distribution.UNIFORM){
-						distribution = new UniformDistribution(new BigDecimal((Double)node.get("min")).doubleValue(), 
-								new BigDecimal((Double)node.get("max")).doubleValue());
-					}
-					System.out.println("Sensor type : "+sensorType);
-					sensors.add(new Sensor(nodeName, sensorType, userId, appId, distribution));
-				} else if(nodeType.equals("ACTUATOR")){
-					String actuatorType = node.get("actuatorType").toString();
-					actuators.add(new Actuator(nodeName, userId, appId, actuatorType));
-				}
-			}
-				
-			JSONArray links = (JSONArray) doc.get("links");
-			@SuppressWarnings("unchecked")
-			Iterator<JSONObject> linksIter =links.iterator(); 
-			while(linksIter.hasNext()){
-				JSONObject link = linksIter.next();
-				String src = (String) link.get("source");  
-				String dst = (String) link.get("destination");
-				double lat = (Double) link.get("latency");
-				
-				connectEntities(src, dst, lat);
+			if(nodeType.equalsIgnoreCase("FOG_DEVICE")){
+				handler.fogDevice(nodeName, node.getLong("mips"), node.getInt("ram"), node.getInt("upBw"), node.getInt("downBw"), 
+						node.getInt("level"), node.getDouble("ratePerMips"));
+			} else if(nodeType.equals("SENSOR")){
+				String sensorType = node.getString("sensorType");
+				int distType = node.getInt("distribution");
+				if(distType == Distribution.DETERMINISTIC)
+					handler.sensor(nodeName, sensorType, distType, node.getDouble("value"), 0);
+				else if(distType == Distribution.NORMAL)
+					handler.sensor(nodeName, sensorType, distType, node.getDouble("mean"), node.getDouble("stdDev"));
+				else if(distType == Distribution.UNIFORM)
+					handler.sensor(nodeName, sensorType, distType, node.getDouble("min"), node.getDouble("max"));
+				else
+					throw node.error("distribution", "Unknown distribution " + distType);
+			} else if(nodeType.equals("ACTUATOR")){
+				handler.actuator(nodeName, node.getString("actuatorType"));
+			} else {
+				throw node.error("type", "Unknown node type \"" + nodeType + "\"");
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+		} catch (IllegalArgumentException e) {
+			throw node.error("name", "Cannot create node \"" + nodeName + "\": " + e.getMessage());
 		}
-		PhysicalTopology physicalTopology = new PhysicalTopology();
-		physicalTopology.setFogDevices(fogDevices);
-		physicalTopology.setActuators(actuators);
-		physicalTopology.setSensors(sensors);
-		return physicalTopology;
+		nodeIndexes.put(key(nodeName), nodeIndexes.size());
+	}
+	
+	/**
+	 * Creates a sensor distribution from its type and parameters.
+	 */
+	static Distribution createDistribution(int distribution, double p1, double p2) {
+		if(distribution == Distribution.DETERMINISTIC)
+			return new DeterministicDistribution(p1);
+		else if(distribution == Distribution.NORMAL)
+			return new NormalDistribution(p1, p2);
+		else if(distribution == Distribution.UNIFORM)
+			return new UniformDistribution(p1, p2);
+		throw new IllegalArgumentException("Unknown distribution " + distribution);
 	}
-	private static FogDevice createFogDevice(String nodeName, long mips,
+	
+	static FogDevice createFogDevice(String nodeName, long mips,
 			int ram, long upBw, long downBw, int level, double ratePerMips) {
 		
 		List<Pe> peList = new ArrayList<Pe>();
@@ -202,42 +360,40 @@ public class JsonToTopology {
 		try {
 			fogdevice = new FogDevice(nodeName, characteristics, 
 					new AppModuleAllocationPolicy(hostList), storageList, 10, upBw, downBw, 0, ratePerMips);
+		} catch (IllegalArgumentException e) {
+			throw e;
 		} catch (Exception e) {
-			e.printStackTrace();
+			throw new IllegalArgumentException(e.getMessage(), e);
 		}
 		
 		fogdevice.setLevel(level);
 		return fogdevice;
 	}
 
-	private static void connectEntities(String src, String dst, double lat) {
-		if(isFogDevice(src) && isFogDevice(dst)){
-			FogDevice srcDev = getFogDevice(src);
-			FogDevice destDev = getFogDevice(dst);
+	private static void connectEntities(Object src, Object dst, double lat) {
+		if(src instanceof FogDevice && dst instanceof FogDevice){
+			FogDevice srcDev = (FogDevice) src;
+			FogDevice destDev = (FogDevice) dst;
 			FogDevice southernDev = (srcDev.getLevel() > destDev.getLevel())?srcDev:destDev;
 			FogDevice northernDev = (srcDev.getLevel() > destDev.getLevel())?destDev:srcDev;
 			southernDev.setUplinkLatency(lat);
 			southernDev.setParentId(northernDev.getId());
-		} else if(isFogDevice(src) && isSensor(dst)){
-			FogDevice srcDev = getFogDevice(src);
-			Sensor sensor = getSensor(dst);
+		} else if(src instanceof FogDevice && dst instanceof Sensor){
+			Sensor sensor = (Sensor) dst;
 			sensor.setLatency(lat);
-			sensor.setGatewayDeviceId(srcDev.getId());
-		} else if(isSensor(src) && isFogDevice(dst)){
-			FogDevice fogDevice = getFogDevice(dst);
-			Sensor sensor = getSensor(src);
+			sensor.setGatewayDeviceId(((FogDevice) src).getId());
+		} else if(src instanceof Sensor && dst instanceof FogDevice){
+			Sensor sensor = (Sensor) src;
 			sensor.setLatency(lat);
-			sensor.setGatewayDeviceId(fogDevice.getId());
-		} else if(isFogDevice(src) && isActuator(dst)){
-			FogDevice fogDevice = getFogDevice(src);
-			Actuator actuator = getActuator(dst);
+			sensor.setGatewayDeviceId(((FogDevice) dst).getId());
+		} else if(src instanceof FogDevice && dst instanceof Actuator){
+			Actuator actuator = (Actuator) dst;
 			actuator.setLatency(lat);
-			actuator.setGatewayDeviceId(fogDevice.getId());
-		} else if(isActuator(src) && isFogDevice(dst)){
-			FogDevice fogDevice = getFogDevice(dst);
-			Actuator actuator = getActuator(src);
+			actuator.setGatewayDeviceId(((FogDevice) src).getId());
+		} else if(src instanceof Actuator && dst instanceof FogDevice){
+			Actuator actuator = (Actuator) src;
 			actuator.setLatency(lat);
-			actuator.setGatewayDeviceId(fogDevice.getId());
+			actuator.setGatewayDeviceId(((FogDevice) dst).getId());
 		}
 		
 	}	
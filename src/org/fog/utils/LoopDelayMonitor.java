@@ -0,0 +1,154 @@
+package org.fog.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates the delays of the application loops: per loop the number of delays, their mean and
+ * variance (updated with Welford's method), their minimum and maximum and, when enabled, a histogram.
+ *
+ * The accumulators are primitive arrays indexed by loop id, which is small since loops are created
+ * with the application, so recording a delay takes constant time and allocates nothing once the
+ * arrays cover the loop.
+ */
+public class LoopDelayMonitor implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] counts = new long[INITIAL_CAPACITY];
+	private double[] means = new double[INITIAL_CAPACITY];
+	/** The sums of squared differences from the mean, from which the variance is derived */
+	private double[] squaredDeviations = new double[INITIAL_CAPACITY];
+	private double[] minimums = new double[INITIAL_CAPACITY];
+	private double[] maximums = new double[INITIAL_CAPACITY];
+
+	private double histogramBinWidth;
+	private int histogramBinCount;
+	private long[][] histograms;
+
+	/**
+	 * Records a delay of a loop.
+	 * @param loopId the id of the loop
+	 * @param delay the time between the emission of a tuple at the start of the loop and its arrival at the end
+	 */
+	public void delayObserved(int loopId, double delay) {
+		if(loopId >= counts.length)
+			grow(loopId);
+		long count = ++counts[loopId];
+		double deviation = delay - means[loopId];
+		means[loopId] += deviation / count;
+		squaredDeviations[loopId] += deviation * (delay - means[loopId]);
+		if(count == 1 || delay < minimums[loopId])
+			minimums[loopId] = delay;
+		if(count == 1 || delay > maximums[loopId])
+			maximums[loopId] = delay;
+		if(histograms != null){
+			if(histograms[loopId] == null)
+				histograms[loopId] = new long[histogramBinCount + 1];
+			int bin = (int) (delay / histogramBinWidth);
+			histograms[loopId][bin < 0 ? 0 : Math.min(bin, histogramBinCount)]++;
+		}
+	}
+
+	/**
+	 * Replaces the delays of a loop by a number of delays all equal to a mean, so that the variance is
+	 * 0 and the minimum and maximum are the mean. The histogram of the loop, if any, is dropped.
+	 * @param loopId the id of the loop
+	 * @param count the number of delays, 0 to forget the loop
+	 * @param mean the mean delay
+	 */
+	public void setDelays(int loopId, long count, double mean) {
+		if(count < 0)
+			throw new IllegalArgumentException("The number of delays cannot be negative");
+		if(loopId >= counts.length)
+			grow(loopId);
+		counts[loopId] = count;
+		means[loopId] = count > 0 ? mean : 0;
+		squaredDeviations[loopId] = 0;
+		minimums[loopId] = means[loopId];
+		maximums[loopId] = means[loopId];
+		if(histograms != null)
+			histograms[loopId] = null;
+	}
+
+	private void grow(int loopId) {
+		int capacity = Math.max(loopId + 1, counts.length * 2);
+		counts = Arrays.copyOf(counts, capacity);
+		means = Arrays.copyOf(means, capacity);
+		squaredDeviations = Arrays.copyOf(squaredDeviations, capacity);
+		minimums = Arrays.copyOf(minimums, capacity);
+		maximums = Arrays.copyOf(maximums, capacity);
+		if(histograms != null)
+			histograms = Arrays.copyOf(histograms, capacity);
+	}
+
+	/**
+	 * Keeps a histogram of the delays of every loop from now on. Delays from 0 are counted in bins of
+	 * the given width, and the delays beyond the last bin in an overflow bin.
+	 * @param binWidth the width of a bin
+	 * @param binCount the number of bins, not counting the overflow bin
+	 */
+	public void enableHistograms(double binWidth, int binCount) {
+		if(binWidth <= 0 || binCount <= 0)
+			throw new IllegalArgumentException("The histogram needs a positive bin width and bin count");
+		histogramBinWidth = binWidth;
+		histogramBinCount = binCount;
+		histograms = new long[counts.length][];
+	}
+
+	/** The ids of the loops with an observed delay. */
+	public List<Integer> getObservedLoopIds() {
+		List<Integer> loopIds = new ArrayList<Integer>();
+		for(int loopId = 0; loopId < counts.length; loopId++){
+			if(counts[loopId] > 0)
+				loopIds.add(loopId);
+		}
+		return loopIds;
+	}
+
+	/** The number of delays observed for a loop. */
+	public long getCount(int loopId) {
+		return loopId < counts.length ? counts[loopId] : 0;
+	}
+
+	/** The mean delay of a loop, or NaN if none was observed. */
+	public double getMean(int loopId) {
+		return getCount(loopId) > 0 ? means[loopId] : Double.NaN;
+	}
+
+	/** The sample variance of the delays of a loop, or NaN if less than two were observed. */
+	public double getVariance(int loopId) {
+		return getCount(loopId) > 1 ? squaredDeviations[loopId] / (counts[loopId] - 1) : Double.NaN;
+	}
+
+	/** The smallest delay of a loop, or NaN if none was observed. */
+	public double getMin(int loopId) {
+		return getCount(loopId) > 0 ? minimums[loopId] : Double.NaN;
+	}
+
+	/** The largest delay of a loop, or NaN if none was observed. */
+	public double getMax(int loopId) {
+		return getCount(loopId) > 0 ? maximums[loopId] : Double.NaN;
+	}
+
+	/**
+	 * The histogram of the delays of a loop: the counts of the bins followed by the count of the
+	 * overflow bin. It is null if histograms are not enabled or no delay of the loop was observed since.
+	 */
+	public long[] getHistogram(int loopId) {
+		if(histograms == null || loopId >= histograms.length || histograms[loopId] == null)
+			return null;
+		return histograms[loopId].clone();
+	}
+
+	public double getHistogramBinWidth() {
+		return histogramBinWidth;
+	}
+
+	public int getHistogramBinCount() {
+		return histogramBinCount;
+	}
+}
@@ -11,4 +11,8 @@ public class NetworkUsageMonitor {
 	public static double getNetworkUsage(){
 		return networkUsage;
 	}
+	
+	static void setNetworkUsage(double networkUsage){
+		NetworkUsageMonitor.networkUsage = networkUsage;
+	}
 }
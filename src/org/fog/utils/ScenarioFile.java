@@ -0,0 +1,657 @@
+package org.fog.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.util.Pair;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.application.selectivity.BurstySelectivity;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.application.selectivity.SelectivityModel;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PhysicalTopology;
+import org.fog.entities.Sensor;
+import org.fog.placement.ModuleMapping;
+import org.fog.utils.distribution.DeterministicDistribution;
+import org.fog.utils.distribution.Distribution;
+import org.fog.utils.distribution.NormalDistribution;
+import org.fog.utils.distribution.UniformDistribution;
+
+/**
+ * A compact binary scenario: a physical topology and, optionally, an application and its module
+ * mapping. It is written once, from the JSON topology format or from the entities of a scenario,
+ * and loaded by memory-mapping the file, so large scenarios start up without parsing any text.
+ *
+ * The file starts with a header of counts, followed by sections of fixed-width big-endian records:
+ * a string table (offsets, then UTF-8 bytes), the fog devices, sensors and actuators, the order in
+ * which the nodes were defined, the links between nodes (by definition order), the application
+ * modules, edges, tuple mappings and loops, and the module mapping. Every section starts on an
+ * 8-byte boundary. Strings are stored once and referred to by index.
+ */
+public class ScenarioFile {
+
+	public static final int MAGIC = 0x49465343; // "IFSC"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int DEVICE_SIZE = 48;
+	private static final int SENSOR_SIZE = 32;
+	private static final int ACTUATOR_SIZE = 8;
+	private static final int LINK_SIZE = 16;
+	private static final int MODULE_SIZE = 8;
+	private static final int EDGE_SIZE = 48;
+	private static final int TUPLE_MAPPING_SIZE = 40;
+	private static final int PLACEMENT_SIZE = 8;
+
+	private static final int KIND_DEVICE = 0;
+	private static final int KIND_SENSOR = 1;
+	private static final int KIND_ACTUATOR = 2;
+
+	private static final int SELECTIVITY_FRACTIONAL = 1;
+	private static final int SELECTIVITY_BURSTY = 2;
+
+	/**
+	 * A loaded scenario.
+	 */
+	public static class Scenario {
+		private final PhysicalTopology physicalTopology;
+		private final Application application;
+		private final ModuleMapping moduleMapping;
+
+		Scenario(PhysicalTopology physicalTopology, Application application, ModuleMapping moduleMapping) {
+			this.physicalTopology = physicalTopology;
+			this.application = application;
+			this.moduleMapping = moduleMapping;
+		}
+
+		public PhysicalTopology getPhysicalTopology() {
+			return physicalTopology;
+		}
+
+		/**
+		 * @return the application, or null if the scenario has none
+		 */
+		public Application getApplication() {
+			return application;
+		}
+
+		/**
+		 * @return the module mapping, or null if the scenario has no application
+		 */
+		public ModuleMapping getModuleMapping() {
+			return moduleMapping;
+		}
+	}
+
+	/**
+	 * Converts a topology from the JSON format to the binary format.
+	 */
+	public static void convertJsonToBinary(String jsonFile, String binaryFile) throws IOException {
+		write(jsonFile, null, null, binaryFile);
+	}
+
+	/**
+	 * Writes a scenario made of a topology in the JSON format and, optionally, an application and
+	 * its module mapping.
+	 * @param jsonFile the topology
+	 * @param application the application, or null
+	 * @param moduleMapping the module mapping, or null
+	 * @param binaryFile the scenario file to write
+	 */
+	public static void write(String jsonFile, Application application, ModuleMapping moduleMapping, String binaryFile) throws IOException {
+		Builder builder = new Builder();
+		JsonToTopology.parse(jsonFile, builder);
+		builder.addApplication(application, moduleMapping);
+		builder.write(binaryFile);
+	}
+
+	/**
+	 * Writes a scenario made of the entities of a topology and, optionally, an application and its
+	 * module mapping. Fog devices are linked to their parent, and sensors and actuators to their
+	 * gateway.
+	 */
+	public static void write(PhysicalTopology physicalTopology, Application application, ModuleMapping moduleMapping, String binaryFile) throws IOException {
+		Builder builder = new Builder();
+		builder.addTopology(physicalTopology);
+		builder.addApplication(application, moduleMapping);
+		builder.write(binaryFile);
+	}
+
+	/**
+	 * Converts the topology of a scenario to the JSON format.
+	 */
+	public static void convertBinaryToJson(String binaryFile, String jsonFile) throws IOException {
+		Reader reader = new Reader(binaryFile);
+		Writer out = new BufferedWriter(new FileWriter(jsonFile));
+		try {
+			reader.writeJson(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads a scenario. Its sensors and actuators belong to its application, if any.
+	 * @param binaryFile the scenario file
+	 * @param userId the id of the user owning the application
+	 */
+	public static Scenario load(String binaryFile, int userId) throws IOException {
+		Reader reader = new Reader(binaryFile);
+		String appId = reader.appId < 0 ? "" : reader.string(reader.appId);
+		JsonToTopology.EntityBuilder builder = new JsonToTopology.EntityBuilder(userId, appId);
+		reader.readTopology(builder);
+		Application application = null;
+		ModuleMapping moduleMapping = null;
+		if(reader.appId >= 0){
+			application = reader.readApplication(appId, userId);
+			moduleMapping = reader.readModuleMapping();
+		}
+		return new Scenario(builder.getPhysicalTopology(), application, moduleMapping);
+	}
+
+	/**
+	 * Accumulates the records of a scenario and writes them.
+	 */
+	private static class Builder implements JsonToTopology.TopologyHandler {
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+		private final Section stringOffsets = new Section();
+		private final Section devices = new Section();
+		private final Section sensors = new Section();
+		private final Section actuators = new Section();
+		private final Section order = new Section();
+		private final Section links = new Section();
+		private final Section modules = new Section();
+		private final Section edges = new Section();
+		private final Section tupleMappings = new Section();
+		private final Section loopOffsets = new Section();
+		private final Section loopModules = new Section();
+		private final Section placements = new Section();
+		private int deviceCount, sensorCount, actuatorCount, linkCount;
+		private int appId = -1, moduleCount, edgeCount, tupleMappingCount, loopCount, loopModuleCount, placementCount;
+
+		/**
+		 * The records of one section, in memory until the file is written.
+		 */
+		private static class Section extends DataOutputStream {
+			Section() {
+				super(new ByteArrayOutputStream());
+			}
+
+			void writeTo(DataOutputStream file) throws IOException {
+				flush();
+				((ByteArrayOutputStream) out).writeTo(file);
+				pad(file);
+			}
+		}
+
+		private int string(String s) throws IOException {
+			Integer index = strings.get(s);
+			if(index != null)
+				return index;
+			index = strings.size();
+			strings.put(s, index);
+			stringOffsets.writeInt(stringBytes.size());
+			stringBytes.write(s.getBytes("UTF-8"));
+			return index;
+		}
+
+		private int nodeCount() {
+			return deviceCount + sensorCount + actuatorCount;
+		}
+
+		@Override
+		public void fogDevice(String name, long mips, int ram, long upBw, long downBw, int level, double ratePerMips) {
+			try {
+				devices.writeInt(string(name));
+				devices.writeInt(level);
+				devices.writeInt(ram);
+				devices.writeInt(0);
+				devices.writeLong(mips);
+				devices.writeLong(upBw);
+				devices.writeLong(downBw);
+				devices.writeDouble(ratePerMips);
+				order.writeInt(KIND_DEVICE << 30 | deviceCount++);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void sensor(String name, String sensorType, int distribution, double p1, double p2) {
+			try {
+				sensors.writeInt(string(name));
+				sensors.writeInt(string(sensorType));
+				sensors.writeInt(distribution);
+				sensors.writeInt(0);
+				sensors.writeDouble(p1);
+				sensors.writeDouble(p2);
+				order.writeInt(KIND_SENSOR << 30 | sensorCount++);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void actuator(String name, String actuatorType) {
+			try {
+				actuators.writeInt(string(name));
+				actuators.writeInt(string(actuatorType));
+				order.writeInt(KIND_ACTUATOR << 30 | actuatorCount++);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void link(int src, int dst, double latency) {
+			try {
+				links.writeInt(src);
+				links.writeInt(dst);
+				links.writeDouble(latency);
+				linkCount++;
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void addTopology(PhysicalTopology physicalTopology) throws IOException {
+			Map<Integer, Integer> nodeIndexes = new HashMap<Integer, Integer>();
+			for(FogDevice device : physicalTopology.getFogDevices()){
+				nodeIndexes.put(device.getId(), nodeCount());
+				fogDevice(device.getName(), device.getHost().getTotalMips(), device.getHost().getRam(), (long) device.getUplinkBandwidth(),
+						(long) device.getDownlinkBandwidth(), device.getLevel(), device.getRatePerMips());
+			}
+			for(Sensor sensor : physicalTopology.getSensors()){
+				nodeIndexes.put(sensor.getId(), nodeCount());
+				Distribution distribution = sensor.getTransmitDistribution();
+				if(distribution instanceof DeterministicDistribution)
+					sensor(sensor.getName(), sensor.getTupleType(), Distribution.DETERMINISTIC, ((DeterministicDistribution) distribution).getValue(), 0);
+				else if(distribution instanceof NormalDistribution)
+					sensor(sensor.getName(), sensor.getTupleType(), Distribution.NORMAL, ((NormalDistribution) distribution).getMean(),
+							((NormalDistribution) distribution).getStdDev());
+				else if(distribution instanceof UniformDistribution)
+					sensor(sensor.getName(), sensor.getTupleType(), Distribution.UNIFORM, ((UniformDistribution) distribution).getMin(),
+							((UniformDistribution) distribution).getMax());
+				else
+					throw new IOException("Cannot write the distribution of sensor " + sensor.getName());
+			}
+			for(Actuator actuator : physicalTopology.getActuators()){
+				nodeIndexes.put(actuator.getId(), nodeCount());
+				actuator(actuator.getName(), actuator.getActuatorType());
+			}
+			for(FogDevice device : physicalTopology.getFogDevices()){
+				if(nodeIndexes.containsKey(device.getParentId()))
+					link(nodeIndexes.get(device.getId()), nodeIndexes.get(device.getParentId()), device.getUplinkLatency());
+			}
+			for(Sensor sensor : physicalTopology.getSensors()){
+				if(nodeIndexes.containsKey(sensor.getGatewayDeviceId()))
+					link(nodeIndexes.get(sensor.getId()), nodeIndexes.get(sensor.getGatewayDeviceId()), sensor.getLatency());
+			}
+			for(Actuator actuator : physicalTopology.getActuators()){
+				if(nodeIndexes.containsKey(actuator.getGatewayDeviceId()))
+					link(nodeIndexes.get(actuator.getId()), nodeIndexes.get(actuator.getGatewayDeviceId()), actuator.getLatency());
+			}
+		}
+
+		void addApplication(Application application, ModuleMapping moduleMapping) throws IOException {
+			if(application == null)
+				return;
+			appId = string(application.getAppId());
+			for(AppModule module : application.getModules()){
+				modules.writeInt(string(module.getName()));
+				modules.writeInt(module.getRam());
+				moduleCount++;
+			}
+			for(AppEdge edge : application.getEdges()){
+				edges.writeInt(string(edge.getSource()));
+				edges.writeInt(string(edge.getDestination()));
+				edges.writeInt(string(edge.getTupleType()));
+				edges.writeInt(edge.getDirection());
+				edges.writeInt(edge.getEdgeType());
+				edges.writeInt(edge.isPeriodic() ? 1 : 0);
+				edges.writeDouble(edge.getPeriodicity());
+				edges.writeDouble(edge.getTupleCpuLength());
+				edges.writeDouble(edge.getTupleNwLength());
+				edgeCount++;
+			}
+			for(AppModule module : application.getModules()){
+				for(Map.Entry<Pair<String, String>, SelectivityModel> entry : module.getSelectivityMap().entrySet()){
+					SelectivityModel model = entry.getValue();
+					tupleMappings.writeInt(string(module.getName()));
+					tupleMappings.writeInt(string(entry.getKey().getFirst()));
+					tupleMappings.writeInt(string(entry.getKey().getSecond()));
+					if(model instanceof FractionalSelectivity){
+						tupleMappings.writeInt(SELECTIVITY_FRACTIONAL);
+						tupleMappings.writeDouble(((FractionalSelectivity) model).getSelectivity());
+						tupleMappings.writeDouble(0);
+						tupleMappings.writeDouble(0);
+					} else if(model instanceof BurstySelectivity){
+						BurstySelectivity bursty = (BurstySelectivity) model;
+						tupleMappings.writeInt(SELECTIVITY_BURSTY);
+						tupleMappings.writeDouble(bursty.getBurstLowPeriod());
+						tupleMappings.writeDouble(bursty.getBurstHighPeriod());
+						tupleMappings.writeDouble(bursty.getFirstHighTime());
+					} else {
+						throw new IOException("Cannot write the selectivity model of module " + module.getName());
+					}
+					tupleMappingCount++;
+				}
+			}
+			for(AppLoop loop : application.getLoops()){
+				loopOffsets.writeInt(loopModuleCount);
+				for(String module : loop.getModules()){
+					loopModules.writeInt(string(module));
+					loopModuleCount++;
+				}
+				loopCount++;
+			}
+			if(moduleMapping != null){
+				for(Map.Entry<String, List<String>> entry : moduleMapping.getModuleMapping().entrySet()){
+					for(String module : entry.getValue()){
+						placements.writeInt(string(entry.getKey()));
+						placements.writeInt(string(module));
+						placementCount++;
+					}
+				}
+			}
+		}
+
+		void write(String binaryFile) throws IOException {
+			stringOffsets.writeInt(stringBytes.size());
+			loopOffsets.writeInt(loopModuleCount);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile), 1 << 16));
+			try {
+				int[] header = {MAGIC, VERSION, strings.size(), stringBytes.size(), deviceCount, sensorCount, actuatorCount, linkCount,
+						appId, moduleCount, edgeCount, tupleMappingCount, loopCount, loopModuleCount, placementCount};
+				for(int value : header)
+					out.writeInt(value);
+				pad(out);
+				stringOffsets.writeTo(out);
+				stringBytes.writeTo(out);
+				pad(out);
+				for(Section section : new Section[]{devices, sensors, actuators, order, links, modules, edges,
+						tupleMappings, loopOffsets, loopModules, placements})
+					section.writeTo(out);
+			} finally {
+				out.close();
+			}
+		}
+
+		private static void pad(DataOutputStream out) throws IOException {
+			while(out.size() % 8 != 0)
+				out.writeByte(0);
+		}
+	}
+
+	/**
+	 * Reads the records of a memory-mapped scenario file.
+	 */
+	private static class Reader {
+		private final ByteBuffer buffer;
+		private final String file;
+		private final int stringCount, deviceCount, sensorCount, actuatorCount, linkCount;
+		private final int appId, moduleCount, edgeCount, tupleMappingCount, loopCount, loopModuleCount, placementCount;
+		private final int stringOffsets, stringBytes, devices, sensors, actuators, order, links, modules, edges,
+				tupleMappings, loopOffsets, loopModules, placements;
+		private final String[] stringCache;
+
+		Reader(String file) throws IOException {
+			this.file = file;
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				if(channel.size() > Integer.MAX_VALUE)
+					throw new IOException(file + ": scenario files are limited to 2 GB");
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				buffer = mapped;
+			} finally {
+				raf.close();
+			}
+			if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+				throw new IOException(file + ": not a scenario file");
+			if(buffer.getInt(4) != VERSION)
+				throw new IOException(file + ": unsupported scenario file version " + buffer.getInt(4));
+			stringCount = buffer.getInt(8);
+			int stringByteCount = buffer.getInt(12);
+			deviceCount = buffer.getInt(16);
+			sensorCount = buffer.getInt(20);
+			actuatorCount = buffer.getInt(24);
+			linkCount = buffer.getInt(28);
+			appId = buffer.getInt(32);
+			moduleCount = buffer.getInt(36);
+			edgeCount = buffer.getInt(40);
+			tupleMappingCount = buffer.getInt(44);
+			loopCount = buffer.getInt(48);
+			loopModuleCount = buffer.getInt(52);
+			placementCount = buffer.getInt(56);
+			int position = HEADER_SIZE;
+			stringOffsets = position;
+			position = align(position + 4 * (stringCount + 1));
+			stringBytes = position;
+			position = align(position + stringByteCount);
+			devices = position;
+			position = align(position + DEVICE_SIZE * deviceCount);
+			sensors = position;
+			position = align(position + SENSOR_SIZE * sensorCount);
+			actuators = position;
+			position = align(position + ACTUATOR_SIZE * actuatorCount);
+			order = position;
+			position = align(position + 4 * (deviceCount + sensorCount + actuatorCount));
+			links = position;
+			position = align(position + LINK_SIZE * linkCount);
+			modules = position;
+			position = align(position + MODULE_SIZE * moduleCount);
+			edges = position;
+			position = align(position + EDGE_SIZE * edgeCount);
+			tupleMappings = position;
+			position = align(position + TUPLE_MAPPING_SIZE * tupleMappingCount);
+			loopOffsets = position;
+			position = align(position + 4 * (loopCount + 1));
+			loopModules = position;
+			position = align(position + 4 * loopModuleCount);
+			placements = position;
+			position = align(position + PLACEMENT_SIZE * placementCount);
+			if(position > buffer.limit())
+				throw new IOException(file + ": truncated scenario file");
+			stringCache = new String[stringCount];
+		}
+
+		private static int align(int position) {
+			return (position + 7) & ~7;
+		}
+
+		String string(int index) throws IOException {
+			if(index < 0 || index >= stringCount)
+				throw new IOException(file + ": invalid string index " + index);
+			String s = stringCache[index];
+			if(s == null){
+				int start = buffer.getInt(stringOffsets + 4 * index);
+				int end = buffer.getInt(stringOffsets + 4 * (index + 1));
+				byte[] bytes = new byte[end - start];
+				for(int i = 0; i < bytes.length; i++)
+					bytes[i] = buffer.get(stringBytes + start + i);
+				s = new String(bytes, "UTF-8");
+				stringCache[index] = s;
+			}
+			return s;
+		}
+
+		void readTopology(JsonToTopology.TopologyHandler handler) throws IOException {
+			int nodeCount = deviceCount + sensorCount + actuatorCount;
+			for(int i = 0; i < nodeCount; i++){
+				int ref = buffer.getInt(order + 4 * i);
+				int kind = ref >>> 30;
+				int index = ref & 0x3fffffff;
+				try {
+					if(kind == KIND_DEVICE){
+						int record = devices + DEVICE_SIZE * index;
+						handler.fogDevice(string(buffer.getInt(record)), buffer.getLong(record + 16), buffer.getInt(record + 8),
+								buffer.getLong(record + 24), buffer.getLong(record + 32), buffer.getInt(record + 4), buffer.getDouble(record + 40));
+					} else if(kind == KIND_SENSOR){
+						int record = sensors + SENSOR_SIZE * index;
+						handler.sensor(string(buffer.getInt(record)), string(buffer.getInt(record + 4)), buffer.getInt(record + 8),
+								buffer.getDouble(record + 16), buffer.getDouble(record + 24));
+					} else {
+						int record = actuators + ACTUATOR_SIZE * index;
+						handler.actuator(string(buffer.getInt(record)), string(buffer.getInt(record + 4)));
+					}
+				} catch (IllegalArgumentException e) {
+					throw new IOException(file + ": cannot create node " + i + ": " + e.getMessage());
+				}
+			}
+			for(int i = 0; i < linkCount; i++){
+				int record = links + LINK_SIZE * i;
+				int src = buffer.getInt(record);
+				int dst = buffer.getInt(record + 4);
+				if(src < 0 || src >= nodeCount || dst < 0 || dst >= nodeCount)
+					throw new IOException(file + ": link " + i + " refers to an unknown node");
+				handler.link(src, dst, buffer.getDouble(record + 8));
+			}
+		}
+
+		Application readApplication(String appId, int userId) throws IOException {
+			Application application = Application.createApplication(appId, userId);
+			for(int i = 0; i < moduleCount; i++){
+				int record = modules + MODULE_SIZE * i;
+				application.addAppModule(string(buffer.getInt(record)), buffer.getInt(record + 4));
+			}
+			for(int i = 0; i < edgeCount; i++){
+				int record = edges + EDGE_SIZE * i;
+				String source = string(buffer.getInt(record));
+				String destination = string(buffer.getInt(record + 4));
+				String tupleType = string(buffer.getInt(record + 8));
+				int direction = buffer.getInt(record + 12);
+				int edgeType = buffer.getInt(record + 16);
+				if(buffer.getInt(record + 20) != 0)
+					application.addAppEdge(source, destination, buffer.getDouble(record + 24), buffer.getDouble(record + 32),
+							buffer.getDouble(record + 40), tupleType, direction, edgeType);
+				else
+					application.addAppEdge(source, destination, buffer.getDouble(record + 32), buffer.getDouble(record + 40),
+							tupleType, direction, edgeType);
+			}
+			for(int i = 0; i < tupleMappingCount; i++){
+				int record = tupleMappings + TUPLE_MAPPING_SIZE * i;
+				String module = string(buffer.getInt(record));
+				if(application.getModuleByName(module) == null)
+					throw new IOException(file + ": tuple mapping of unknown module " + module);
+				int kind = buffer.getInt(record + 12);
+				SelectivityModel model;
+				if(kind == SELECTIVITY_FRACTIONAL)
+					model = new FractionalSelectivity(buffer.getDouble(record + 16));
+				else if(kind == SELECTIVITY_BURSTY)
+					model = new BurstySelectivity(buffer.getDouble(record + 16), buffer.getDouble(record + 24), buffer.getDouble(record + 32));
+				else
+					throw new IOException(file + ": unknown selectivity model " + kind);
+				application.addTupleMapping(module, string(buffer.getInt(record + 4)), string(buffer.getInt(record + 8)), model);
+			}
+			List<AppLoop> loops = new ArrayList<AppLoop>();
+			for(int i = 0; i < loopCount; i++){
+				int start = buffer.getInt(loopOffsets + 4 * i);
+				int end = buffer.getInt(loopOffsets + 4 * (i + 1));
+				List<String> loopModuleNames = new ArrayList<String>();
+				for(int j = start; j < end; j++)
+					loopModuleNames.add(string(buffer.getInt(loopModules + 4 * j)));
+				loops.add(new AppLoop(loopModuleNames));
+			}
+			application.setLoops(loops);
+			return application;
+		}
+
+		ModuleMapping readModuleMapping() throws IOException {
+			ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+			for(int i = 0; i < placementCount; i++){
+				int record = placements + PLACEMENT_SIZE * i;
+				moduleMapping.addModuleToDevice(string(buffer.getInt(record + 4)), string(buffer.getInt(record)));
+			}
+			return moduleMapping;
+		}
+
+		/**
+		 * Writes the topology in the JSON format, with the fields the GUI writes.
+		 */
+		void writeJson(final Writer out) throws IOException {
+			final List<String> names = new ArrayList<String>();
+			out.write("{\"nodes\":[");
+			readTopology(new JsonToTopology.TopologyHandler() {
+				@Override
+				public void fogDevice(String name, long mips, int ram, long upBw, long downBw, int level, double ratePerMips) {
+					node(name, "FOG_DEVICE", "\"mips\":" + mips + ",\"ram\":" + ram + ",\"upBw\":" + upBw + ",\"downBw\":" + downBw
+							+ ",\"level\":" + level + ",\"ratePerMips\":" + ratePerMips);
+				}
+				@Override
+				public void sensor(String name, String sensorType, int distribution, double p1, double p2) {
+					String parameters;
+					if(distribution == Distribution.DETERMINISTIC)
+						parameters = "\"value\":" + p1;
+					else if(distribution == Distribution.NORMAL)
+						parameters = "\"mean\":" + p1 + ",\"stdDev\":" + p2;
+					else
+						parameters = "\"min\":" + p1 + ",\"max\":" + p2;
+					node(name, "SENSOR", "\"sensorType\":" + quote(sensorType) + ",\"distribution\":" + distribution + "," + parameters);
+				}
+				@Override
+				public void actuator(String name, String actuatorType) {
+					node(name, "ACTUATOR", "\"actuatorType\":" + quote(actuatorType));
+				}
+				private boolean linksStarted;
+				@Override
+				public void link(int src, int dst, double latency) {
+					try {
+						out.write(linksStarted ? "," : "],\"links\":[");
+						linksStarted = true;
+						out.write("{\"source\":" + quote(names.get(src)) + ",\"destination\":" + quote(names.get(dst))
+								+ ",\"latency\":" + latency + "}");
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				private void node(String name, String type, String fields) {
+					try {
+						if(!names.isEmpty())
+							out.write(",");
+						out.write("{\"name\":" + quote(name) + ",\"type\":\"" + type + "\"," + fields + "}");
+						names.add(name);
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			if(linkCount == 0)
+				out.write("],\"links\":[");
+			out.write("]}");
+		}
+
+		private static String quote(String s) {
+			StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+			for(int i = 0; i < s.length(); i++){
+				char c = s.charAt(i);
+				if(c == '"' || c == '\\')
+					quoted.append('\\').append(c);
+				else if(c < 0x20)
+					quoted.append(String.format("\\u%04x", (int) c));
+				else
+					quoted.append(c);
+			}
+			return quoted.append('"').toString();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package org.fog.utils;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * Tracks the delay of each application loop and tells when its steady-state mean is known to a
+ * requested relative precision, so that a run can stop before Config.MAX_SIMULATION_TIME.
+ *
+ * The end of the warm-up is found with MSER-5: the delays are averaged in batches of 5 and the
+ * truncation point is the one that minimises the standard error of the mean of the batches left,
+ * searched over the first half of the run. The confidence interval of the steady-state mean is then
+ * computed with the method of batch means over the truncated series.
+ *
+ * Set it with TimeKeeper.setSteadyStateMonitor before the simulation starts; the Controller then
+ * stops the simulation once every loop of its applications has converged.
+ */
+public class SteadyStateMonitor implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** The number of delays averaged into each MSER-5 batch. */
+	public static final int MSER_BATCH_SIZE = 5;
+
+	private final double relativePrecision;
+	private final double confidenceLevel;
+	private final int batchCount;
+	private final double tQuantile;
+	private final Map<Integer, Double> loopIdToRelativePrecision;
+	private final Map<Integer, LoopSeries> loopIdToSeries;
+
+	/**
+	 * The estimate of the steady-state delay of a loop.
+	 */
+	public static class Estimate implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final double mean;
+		private final double halfWidth;
+		private final long warmUpDelays;
+		private final long delays;
+		private final boolean steady;
+
+		Estimate(double mean, double halfWidth, long warmUpDelays, long delays, boolean steady) {
+			this.mean = mean;
+			this.halfWidth = halfWidth;
+			this.warmUpDelays = warmUpDelays;
+			this.delays = delays;
+			this.steady = steady;
+		}
+
+		/** The mean delay after the warm-up. */
+		public double getMean() {
+			return mean;
+		}
+
+		/** The half-width of the confidence interval of the mean. */
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+
+		/** The half-width relative to the mean. */
+		public double getRelativeHalfWidth() {
+			return mean == 0 ? Double.POSITIVE_INFINITY : halfWidth / Math.abs(mean);
+		}
+
+		/** The number of delays truncated as warm-up. */
+		public long getWarmUpDelays() {
+			return warmUpDelays;
+		}
+
+		/** The number of delays observed. */
+		public long getDelays() {
+			return delays;
+		}
+
+		/** Whether the warm-up is over, that is whether MSER-5 truncates less than half the run. */
+		public boolean isSteady() {
+			return steady;
+		}
+
+		@Override
+		public String toString() {
+			return mean + " +/- " + halfWidth + " (" + (delays - warmUpDelays) + " of " + delays + " delays"
+					+ (steady ? "" : ", warm-up not over") + ")";
+		}
+	}
+
+	/**
+	 * The delays of a loop, averaged in MSER-5 batches.
+	 */
+	private static class LoopSeries implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private double[] batchMeans = new double[64];
+		private int batches;
+		private double partialSum;
+		private int partialCount;
+		private long delays;
+		private Estimate estimate;
+
+		void add(double delay) {
+			delays++;
+			partialSum += delay;
+			if (++partialCount == MSER_BATCH_SIZE) {
+				if (batches == batchMeans.length) {
+					double[] grown = new double[batches * 2];
+					System.arraycopy(batchMeans, 0, grown, 0, batches);
+					batchMeans = grown;
+				}
+				batchMeans[batches++] = partialSum / MSER_BATCH_SIZE;
+				partialSum = 0;
+				partialCount = 0;
+				estimate = null;
+			}
+		}
+	}
+
+	/**
+	 * Creates a monitor with 20 batch means.
+	 * @param relativePrecision the half-width of the confidence interval relative to the mean at which a loop has converged, such as 0.05
+	 * @param confidenceLevel the confidence level of the interval, such as 0.95
+	 */
+	public SteadyStateMonitor(double relativePrecision, double confidenceLevel) {
+		this(relativePrecision, confidenceLevel, 20);
+	}
+
+	/**
+	 * Creates a monitor.
+	 * @param relativePrecision the half-width of the confidence interval relative to the mean at which a loop has converged, such as 0.05
+	 * @param confidenceLevel the confidence level of the interval, such as 0.95
+	 * @param batchCount the number of batch means the interval is computed from
+	 */
+	public SteadyStateMonitor(double relativePrecision, double confidenceLevel, int batchCount) {
+		if (relativePrecision <= 0 || confidenceLevel <= 0 || confidenceLevel >= 1 || batchCount < 2) {
+			throw new IllegalArgumentException("Invalid precision, confidence level or batch count");
+		}
+		this.relativePrecision = relativePrecision;
+		this.confidenceLevel = confidenceLevel;
+		this.batchCount = batchCount;
+		tQuantile = new TDistribution(batchCount - 1).inverseCumulativeProbability(1 - (1 - confidenceLevel) / 2);
+		loopIdToRelativePrecision = new HashMap<Integer, Double>();
+		loopIdToSeries = new HashMap<Integer, LoopSeries>();
+	}
+
+	/**
+	 * Records the delay of a loop.
+	 * @param loopId the loop id
+	 * @param delay the delay
+	 */
+	public void loopDelayObserved(int loopId, double delay) {
+		LoopSeries series = loopIdToSeries.get(loopId);
+		if (series == null) {
+			series = new LoopSeries();
+			loopIdToSeries.put(loopId, series);
+		}
+		series.add(delay);
+	}
+
+	/**
+	 * Gets the estimate of the steady-state delay of a loop.
+	 * @param loopId the loop id
+	 * @return the estimate, or null if the loop has too few delays for an interval
+	 */
+	public Estimate getEstimate(int loopId) {
+		LoopSeries series = loopIdToSeries.get(loopId);
+		if (series == null)
+			return null;
+		if (series.estimate == null)
+			series.estimate = estimate(series);
+		return series.estimate;
+	}
+
+	/**
+	 * Checks whether the steady-state delay of a loop is known to the requested precision.
+	 * @param loopId the loop id
+	 * @return true, if the warm-up is over and the interval is narrow enough
+	 */
+	public boolean isConverged(int loopId) {
+		Estimate estimate = getEstimate(loopId);
+		return estimate != null && estimate.isSteady()
+				&& estimate.getRelativeHalfWidth() <= getRelativePrecision(loopId);
+	}
+
+	/**
+	 * Checks whether every loop of a collection has converged.
+	 * @param loopIds the loop ids
+	 * @return true, if every loop has converged
+	 */
+	public boolean isConverged(Collection<Integer> loopIds) {
+		for (int loopId : loopIds) {
+			if (!isConverged(loopId))
+				return false;
+		}
+		return true;
+	}
+
+	private Estimate estimate(LoopSeries series) {
+		int k = series.batches;
+		double[] z = series.batchMeans;
+		if (k < 2 * batchCount)
+			return null;
+
+		// MSER-5 over the truncation points that leave at least one batch mean per batch
+		double[] suffixSum = new double[k + 1];
+		double[] suffixSquares = new double[k + 1];
+		for (int i = k - 1; i >= 0; i--) {
+			suffixSum[i] = suffixSum[i + 1] + z[i];
+			suffixSquares[i] = suffixSquares[i + 1] + z[i] * z[i];
+		}
+		int truncation = 0;
+		double minMser = Double.POSITIVE_INFINITY;
+		for (int d = 0; d <= k - batchCount; d++) {
+			int n = k - d;
+			double sse = suffixSquares[d] - suffixSum[d] * suffixSum[d] / n;
+			double mser = Math.max(sse, 0) / ((double) n * n);
+			if (mser < minMser) {
+				minMser = mser;
+				truncation = d;
+			}
+		}
+		boolean steady = truncation <= k / 2;
+
+		// batch means over what is left, dropping the remainder at the start
+		int perBatch = (k - truncation) / batchCount;
+		int first = k - perBatch * batchCount;
+		double sum = 0, sumSquares = 0;
+		for (int b = 0; b < batchCount; b++) {
+			double batchSum = 0;
+			for (int i = first + b * perBatch; i < first + (b + 1) * perBatch; i++)
+				batchSum += z[i];
+			double batchMean = batchSum / perBatch;
+			sum += batchMean;
+			sumSquares += batchMean * batchMean;
+		}
+		double mean = sum / batchCount;
+		double variance = Math.max(sumSquares - sum * mean, 0) / (batchCount - 1);
+		double halfWidth = tQuantile * Math.sqrt(variance / batchCount);
+		return new Estimate(mean, halfWidth, (long) first * MSER_BATCH_SIZE, series.delays, steady);
+	}
+
+	public double getRelativePrecision() {
+		return relativePrecision;
+	}
+
+	public double getRelativePrecision(int loopId) {
+		Double precision = loopIdToRelativePrecision.get(loopId);
+		return precision != null ? precision : relativePrecision;
+	}
+
+	/**
+	 * Sets the precision of one loop, instead of the one of the monitor.
+	 */
+	public void setRelativePrecision(int loopId, double relativePrecision) {
+		loopIdToRelativePrecision.put(loopId, relativePrecision);
+	}
+
+	public double getConfidenceLevel() {
+		return confidenceLevel;
+	}
+
+	public int getBatchCount() {
+		return batchCount;
+	}
+}
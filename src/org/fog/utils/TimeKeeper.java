@@ -1,13 +1,17 @@
 package org.fog.utils;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.fog.entities.Tuple;
 
-public class TimeKeeper {
+public class TimeKeeper implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	private static TimeKeeper instance;
 	
@@ -20,8 +24,9 @@ public class TimeKeeper {
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
 	
-	private Map<Integer, Double> loopIdToCurrentAverage;
-	private Map<Integer, Integer> loopIdToCurrentNum;
+	private LoopDelayMonitor loopDelayMonitor;
+	
+	private SteadyStateMonitor steadyStateMonitor;
 	
 	public static TimeKeeper getInstance(){
 		if(instance == null)
@@ -29,6 +34,10 @@ public class TimeKeeper {
 		return instance;
 	}
 	
+	static void setInstance(TimeKeeper instance){
+		TimeKeeper.instance = instance;
+	}
+	
 	public int getUniqueId(){
 		return count++;
 	}
@@ -51,6 +60,25 @@ public class TimeKeeper {
 		}
 	}
 	
+	/**
+	 * Records the end of a loop by the arrival of a tuple at its end module. The delay is measured from
+	 * the emission time of the tuple, which is then forgotten; a tuple with no emission time is ignored.
+	 * @param loopId the id of the loop, resolved with Application.getEndingLoopId
+	 * @param actualTupleId the actual tuple id of the arriving tuple
+	 */
+	public void loopEnded(int loopId, int actualTupleId){
+		Double emitTime = emitTimes.remove(actualTupleId);
+		if(emitTime == null)
+			return;
+		loopDelayObserved(loopId, CloudSim.clock() - emitTime);
+	}
+	
+	public void loopDelayObserved(int loopId, double delay){
+		loopDelayMonitor.delayObserved(loopId, delay);
+		if(steadyStateMonitor != null)
+			steadyStateMonitor.loopDelayObserved(loopId, delay);
+	}
+	
 	public Map<Integer, List<Integer>> loopIdToTupleIds(){
 		return getInstance().getLoopIdToTupleIds();
 	}
@@ -63,8 +91,7 @@ public class TimeKeeper {
 		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
 		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
 		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
-		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
-		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
+		setLoopDelayMonitor(new LoopDelayMonitor());
 	}
 	
 	public int getCount() {
@@ -133,20 +160,80 @@ public class TimeKeeper {
 		this.simulationStartTime = simulationStartTime;
 	}
 
+	/**
+	 * The mean delay of every loop with an observed delay, read from the LoopDelayMonitor. The map is
+	 * an unmodifiable copy; use {@link #setLoopIdToCurrentAverage(Map)} or the monitor to change it.
+	 */
 	public Map<Integer, Double> getLoopIdToCurrentAverage() {
-		return loopIdToCurrentAverage;
-	}
-
+		Map<Integer, Double> loopIdToCurrentAverage = new HashMap<Integer, Double>();
+		for(Integer loopId : loopDelayMonitor.getObservedLoopIds())
+			loopIdToCurrentAverage.put(loopId, loopDelayMonitor.getMean(loopId));
+		return Collections.unmodifiableMap(loopIdToCurrentAverage);
+	}
+
+	/**
+	 * Sets the mean delay of the loops in the LoopDelayMonitor, keeping their number of delays (1 for
+	 * a loop with none). The loops not in the map are forgotten.
+	 * @deprecated use {@link LoopDelayMonitor#setDelays(int, long, double)}
+	 */
+	@Deprecated
 	public void setLoopIdToCurrentAverage(Map<Integer, Double> loopIdToCurrentAverage) {
-		this.loopIdToCurrentAverage = loopIdToCurrentAverage;
+		Map<Integer, Integer> loopIdToCurrentNum = getLoopIdToCurrentNum();
+		forgetLoops(loopIdToCurrentAverage.keySet());
+		for(Map.Entry<Integer, Double> entry : loopIdToCurrentAverage.entrySet()){
+			Integer currentNum = loopIdToCurrentNum.get(entry.getKey());
+			loopDelayMonitor.setDelays(entry.getKey(), currentNum != null ? currentNum : 1, entry.getValue());
+		}
 	}
 
+	/**
+	 * The number of observed delays of every loop with an observed delay, read from the
+	 * LoopDelayMonitor. The map is an unmodifiable copy; use {@link #setLoopIdToCurrentNum(Map)} or
+	 * the monitor to change it.
+	 */
 	public Map<Integer, Integer> getLoopIdToCurrentNum() {
-		return loopIdToCurrentNum;
+		Map<Integer, Integer> loopIdToCurrentNum = new HashMap<Integer, Integer>();
+		for(Integer loopId : loopDelayMonitor.getObservedLoopIds())
+			loopIdToCurrentNum.put(loopId, (int) loopDelayMonitor.getCount(loopId));
+		return Collections.unmodifiableMap(loopIdToCurrentNum);
+	}
+
+	/**
+	 * Sets the number of delays of the loops in the LoopDelayMonitor, keeping their mean delay (0 for
+	 * a loop with none). The loops not in the map are forgotten.
+	 * @deprecated use {@link LoopDelayMonitor#setDelays(int, long, double)}
+	 */
+	@Deprecated
+	public void setLoopIdToCurrentNum(Map<Integer, Integer> loopIdToCurrentNum) {
+		Map<Integer, Double> loopIdToCurrentAverage = getLoopIdToCurrentAverage();
+		forgetLoops(loopIdToCurrentNum.keySet());
+		for(Map.Entry<Integer, Integer> entry : loopIdToCurrentNum.entrySet()){
+			Double currentAverage = loopIdToCurrentAverage.get(entry.getKey());
+			loopDelayMonitor.setDelays(entry.getKey(), entry.getValue(), currentAverage != null ? currentAverage : 0);
+		}
 	}
 
-	public void setLoopIdToCurrentNum(Map<Integer, Integer> loopIdToCurrentNum) {
-		this.loopIdToCurrentNum = loopIdToCurrentNum;
+	private void forgetLoops(Set<Integer> keptLoopIds) {
+		for(Integer loopId : loopDelayMonitor.getObservedLoopIds()){
+			if(!keptLoopIds.contains(loopId))
+				loopDelayMonitor.setDelays(loopId, 0, 0);
+		}
+	}
+
+	public LoopDelayMonitor getLoopDelayMonitor() {
+		return loopDelayMonitor;
+	}
+
+	public void setLoopDelayMonitor(LoopDelayMonitor loopDelayMonitor) {
+		this.loopDelayMonitor = loopDelayMonitor;
+	}
+
+	public SteadyStateMonitor getSteadyStateMonitor() {
+		return steadyStateMonitor;
+	}
+
+	public void setSteadyStateMonitor(SteadyStateMonitor steadyStateMonitor) {
+		this.steadyStateMonitor = steadyStateMonitor;
 	}
 	
 	
@@ -1,6 +1,7 @@
 package org.fog.utils.distribution;
 
 public class DeterministicDistribution extends Distribution{
+	private static final long serialVersionUID = 1L;
 
 	private double value;
 
@@ -1,14 +1,23 @@
 package org.fog.utils.distribution;
 
+import java.io.Serializable;
 import java.util.Random;
 
-public abstract class Distribution {
+import org.cloudbus.cloudsim.core.RandomStreams;
+
+public abstract class Distribution implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	public static int NORMAL = 1;
 	public static int DETERMINISTIC = 2;
 	public static int UNIFORM = 3;
 	
 	protected Random random;
+	
+	public Distribution(){
+		setRandom(RandomStreams.next(getClass().getName()));
+	}
+	
 	public abstract double getNextValue();
 	
 	public Random getRandom() {
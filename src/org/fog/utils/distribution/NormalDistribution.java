@@ -1,8 +1,7 @@
 package org.fog.utils.distribution;
 
-import java.util.Random;
-
 public class NormalDistribution extends Distribution{
+	private static final long serialVersionUID = 1L;
 
 	private double mean;
 	private double stdDev;
@@ -10,7 +9,6 @@ public class NormalDistribution extends Distribution{
 	public NormalDistribution(double mean, double stdDev) {
 		setMean(mean);
 		setStdDev(stdDev);
-		setRandom(new Random());
 	}
 	
 	@Override
@@ -0,0 +1,117 @@
+package org.cloudbus.cloudsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the batched reads and writes of {@link HarddriveStorage}. With a capacity of 1000 MB and a
+ * maximum transfer rate of 100, seeking over s MB takes s/1000 seconds and transferring s MB takes
+ * s/10 seconds.
+ */
+public class HarddriveStorageTest {
+
+	private static final double DELTA = 1e-12;
+
+	private HarddriveStorage storage;
+
+	@Before
+	public void setUp() throws ParameterException {
+		// files are stamped with the simulation time when created
+		Log.disable();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		storage = new HarddriveStorage("disk", 1000);
+		storage.setMaxTransferRate(100);
+	}
+
+	private static double time(int seekSize, int transferSize) {
+		return seekSize / 1000.0 + transferSize / 10.0;
+	}
+
+	@Test
+	public void testAddFilesWritesBatchWithOneSeek() throws ParameterException {
+		File a = new File("a", 10);
+		File b = new File("b", 20);
+		double time = storage.addFiles(Arrays.asList(a, b));
+
+		assertEquals(time(30, 30), time, DELTA);
+		assertEquals(time, a.getTransactionTime(), DELTA);
+		assertEquals(time, b.getTransactionTime(), DELTA);
+		assertEquals(30, storage.getCurrentSize(), DELTA);
+		assertEquals(Arrays.asList("a", "b"), storage.getFileNameList());
+	}
+
+	@Test
+	public void testAddFilesSkipsDuplicateAndOversizedFiles() throws ParameterException {
+		storage.addFile(new File("a", 10));
+		File duplicate = new File("a", 10);
+		File oversized = new File("big", 2000);
+		File c = new File("c", 40);
+		double time = storage.addFiles(Arrays.asList(duplicate, null, oversized, c));
+
+		assertEquals(time(40, 40), time, DELTA);
+		assertEquals(0, duplicate.getTransactionTime(), DELTA);
+		assertEquals(0, oversized.getTransactionTime(), DELTA);
+		assertEquals(time, c.getTransactionTime(), DELTA);
+		assertEquals(50, storage.getCurrentSize(), DELTA);
+		assertFalse(storage.contains("big"));
+	}
+
+	@Test
+	public void testAddFilesReturnsZeroWhenNothingIsAdded() throws ParameterException {
+		storage.addFile(new File("a", 10));
+		assertEquals(0, storage.addFiles(Arrays.asList(new File("a", 10))), DELTA);
+		assertEquals(0, storage.addFiles(new ArrayList<File>()), DELTA);
+		assertEquals(0, storage.addFiles(null), DELTA);
+	}
+
+	@Test
+	public void testGetFilesSweepsToFarthestFile() throws ParameterException {
+		storage.addFiles(Arrays.asList(new File("a", 10), new File("b", 20), new File("c", 30)));
+		List<File> files = new ArrayList<File>();
+		double time = storage.getFiles(Arrays.asList("c", "missing", "a", "a"), files);
+
+		assertEquals(2, files.size());
+		assertEquals("a", files.get(0).getName());
+		assertEquals("c", files.get(1).getName());
+		assertEquals(time(60, 40), time, DELTA);
+		assertEquals(time, files.get(0).getTransactionTime(), DELTA);
+		assertEquals(time, files.get(1).getTransactionTime(), DELTA);
+	}
+
+	@Test
+	public void testGetFilesOfOneFileTakesAsLongAsGetFile() throws ParameterException {
+		storage.addFiles(Arrays.asList(new File("a", 10), new File("b", 20)));
+		double single = storage.getFile("b").getTransactionTime();
+		double batch = storage.getFiles(Arrays.asList("b"), new ArrayList<File>());
+		assertEquals(single, batch, DELTA);
+	}
+
+	@Test
+	public void testGetFilesFindingNothingReturnsZero() {
+		List<File> files = new ArrayList<File>();
+		assertEquals(0, storage.getFiles(Arrays.asList("missing"), files), DELTA);
+		assertTrue(files.isEmpty());
+	}
+
+	@Test
+	public void testDeletedFileIsNotFoundAndFreesSpace() throws ParameterException {
+		storage.addFiles(Arrays.asList(new File("a", 10), new File("b", 20), new File("c", 30)));
+		storage.deleteFile("b");
+
+		assertNull(storage.getFile("b"));
+		assertEquals(40, storage.getCurrentSize(), DELTA);
+		// the seek distance to c no longer covers b
+		assertEquals(time(40, 30), storage.getFile("c").getTransactionTime(), DELTA);
+	}
+}
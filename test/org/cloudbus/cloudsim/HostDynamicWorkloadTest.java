@@ -0,0 +1,103 @@
+package org.cloudbus.cloudsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link HostDynamicWorkload} skipped while idle has the same state history as a
+ * host updated at every time.
+ */
+public class HostDynamicWorkloadTest {
+
+	private static final double DELTA = 1e-12;
+
+	private HostDynamicWorkload host;
+
+	private HostDynamicWorkload updatedHost;
+
+	@Before
+	public void setUp() {
+		Log.disable();
+		host = createHost();
+		updatedHost = createHost();
+	}
+
+	private static HostDynamicWorkload createHost() {
+		List<Pe> peList = new ArrayList<Pe>();
+		peList.add(new Pe(0, new PeProvisionerSimple(1000)));
+		return new HostDynamicWorkload(
+				0,
+				new RamProvisionerSimple(1024),
+				new BwProvisionerSimple(1000),
+				10000,
+				peList,
+				new VmSchedulerTimeShared(peList));
+	}
+
+	private static void assertSameHistory(HostDynamicWorkload expected, HostDynamicWorkload actual) {
+		List<HostStateHistoryEntry> expectedHistory = expected.getStateHistory();
+		List<HostStateHistoryEntry> actualHistory = actual.getStateHistory();
+		assertEquals(expectedHistory.size(), actualHistory.size());
+		for (int i = 0; i < expectedHistory.size(); i++) {
+			assertEquals(expectedHistory.get(i).getTime(), actualHistory.get(i).getTime(), DELTA);
+			assertEquals(
+					expectedHistory.get(i).getAllocatedMips(),
+					actualHistory.get(i).getAllocatedMips(),
+					DELTA);
+			assertEquals(expectedHistory.get(i).isActive(), actualHistory.get(i).isActive());
+		}
+	}
+
+	@Test
+	public void testHostWithoutVmsIsIdle() {
+		host.updateVmsProcessing(1);
+		assertTrue(host.isProcessingIdle());
+	}
+
+	@Test
+	public void testSkippedUpdatesAreRecordedWhenTheHistoryIsRead() {
+		List<Double> skippedUpdateTimes = new ArrayList<Double>();
+		host.updateVmsProcessing(1);
+		host.suspendVmsProcessing(skippedUpdateTimes);
+		skippedUpdateTimes.addAll(Arrays.asList(2.0, 3.0));
+
+		for (double time = 1; time <= 3; time++) {
+			updatedHost.updateVmsProcessing(time);
+		}
+		assertSameHistory(updatedHost, host);
+
+		skippedUpdateTimes.add(4.0);
+		updatedHost.updateVmsProcessing(4);
+		assertSameHistory(updatedHost, host);
+	}
+
+	@Test
+	public void testResumedHostRecordsSkippedUpdatesFirst() {
+		List<Double> skippedUpdateTimes = new ArrayList<Double>();
+		skippedUpdateTimes.add(0.5);
+		host.updateVmsProcessing(1);
+		host.suspendVmsProcessing(skippedUpdateTimes);
+		skippedUpdateTimes.add(2.0);
+		host.resumeVmsProcessing();
+		skippedUpdateTimes.add(3.0);
+		host.updateVmsProcessing(4);
+
+		updatedHost.updateVmsProcessing(1);
+		updatedHost.updateVmsProcessing(2);
+		updatedHost.updateVmsProcessing(4);
+		assertSameHistory(updatedHost, host);
+		assertFalse(host.getStateHistory().get(1).isActive());
+	}
+
+}
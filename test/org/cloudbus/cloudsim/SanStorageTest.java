@@ -0,0 +1,69 @@
+package org.cloudbus.cloudsim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the batched writes of {@link SanStorage}, which add the network time of the files stored
+ * to the time of the drive.
+ */
+public class SanStorageTest {
+
+	private static final double DELTA = 1e-12;
+
+	private static final double BANDWIDTH = 0.5;
+	private static final double NETWORK_LATENCY = 2;
+
+	private SanStorage storage;
+
+	@Before
+	public void setUp() throws ParameterException {
+		// files are stamped with the simulation time when created
+		Log.disable();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		storage = new SanStorage("san", 1000, BANDWIDTH, NETWORK_LATENCY);
+		storage.setMaxTransferRate(100);
+	}
+
+	/** The drive time of a batch of the given size plus its network time */
+	private static double time(int size) {
+		return size / 1000.0 + size / 10.0 + NETWORK_LATENCY + size * BANDWIDTH;
+	}
+
+	@Test
+	public void testAddFilesChargesNetworkOnceForTheBatch() throws ParameterException {
+		File a = new File("a", 10);
+		File b = new File("b", 20);
+		double time = storage.addFiles(Arrays.asList(a, b));
+
+		assertEquals(time(30), time, DELTA);
+		assertEquals(time, a.getTransactionTime(), DELTA);
+		assertEquals(time, b.getTransactionTime(), DELTA);
+	}
+
+	@Test
+	public void testAddFilesChargesOnlyTheFilesStored() throws ParameterException {
+		storage.addFile(new File("a", 10));
+		File duplicate = new File("a", 10);
+		File oversized = new File("big", 2000);
+		File c = new File("c", 40);
+		double time = storage.addFiles(Arrays.asList(duplicate, oversized, null, c));
+
+		assertEquals(time(40), time, DELTA);
+		assertEquals(time, c.getTransactionTime(), DELTA);
+		assertEquals(0, duplicate.getTransactionTime(), DELTA);
+		assertEquals(0, oversized.getTransactionTime(), DELTA);
+	}
+
+	@Test
+	public void testAddFilesStoringNothingTakesNoTime() throws ParameterException {
+		storage.addFile(new File("a", 10));
+		assertEquals(0, storage.addFiles(Arrays.asList(new File("a", 10), new File("big", 2000))), DELTA);
+	}
+}
@@ -0,0 +1,64 @@
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Calendar;
+
+import org.cloudbus.cloudsim.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the streams of {@link RandomStreams} depend only on the master seed and their name.
+ */
+public class RandomStreamsTest {
+
+	private long masterSeed;
+
+	@Before
+	public void setUp() {
+		masterSeed = RandomStreams.getMasterSeed();
+		RandomStreams.setMasterSeed(5);
+	}
+
+	@After
+	public void tearDown() {
+		RandomStreams.setMasterSeed(masterSeed);
+	}
+
+	@Test
+	public void testNamedStreamsAreReproducible() {
+		long a = RandomStreams.stream("sensor/CAMERA").nextLong();
+		RandomStreams.stream("other").nextLong();
+		assertEquals(a, RandomStreams.stream("sensor/CAMERA").nextLong());
+		assertFalse(a == RandomStreams.stream("sensor/EEG").nextLong());
+	}
+
+	@Test
+	public void testMasterSeedChangesTheStreams() {
+		long a = RandomStreams.stream("sensor").nextLong();
+		RandomStreams.setMasterSeed(6);
+		assertFalse(a == RandomStreams.stream("sensor").nextLong());
+	}
+
+	@Test
+	public void testUnnamedStreamsAreNumberedPerPrefix() {
+		long first = RandomStreams.next("prefix").nextLong();
+		long second = RandomStreams.next("prefix").nextLong();
+		assertEquals(RandomStreams.stream("prefix#0").nextLong(), first);
+		assertEquals(RandomStreams.stream("prefix#1").nextLong(), second);
+		assertEquals(RandomStreams.stream("other#0").nextLong(), RandomStreams.next("other").nextLong());
+	}
+
+	@Test
+	public void testInitRestartsTheUnnamedStreams() {
+		long first = RandomStreams.next("prefix").nextLong();
+		RandomStreams.next("prefix");
+		Log.disable();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		assertEquals(first, RandomStreams.next("prefix").nextLong());
+	}
+
+}
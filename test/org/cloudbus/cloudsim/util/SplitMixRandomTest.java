@@ -0,0 +1,63 @@
+package org.cloudbus.cloudsim.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link SplitMixRandom} produces the SplitMix64 sequence, the same for the same seed.
+ */
+public class SplitMixRandomTest {
+
+	@Test
+	public void testSplitMix64ReferenceSequence() {
+		SplitMixRandom random = new SplitMixRandom(0);
+		assertEquals(0xe220a8397b1dcdafL, random.nextLong());
+		assertEquals(0x6e789e6aa1b965f4L, random.nextLong());
+		assertEquals(0x06c45d188009454fL, random.nextLong());
+	}
+
+	@Test
+	public void testSameSeedSameSequence() {
+		SplitMixRandom a = new SplitMixRandom(42);
+		SplitMixRandom b = new SplitMixRandom(42);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(a.nextLong(), b.nextLong());
+			assertEquals(a.nextDouble(), b.nextDouble(), 0);
+			assertEquals(a.nextInt(1000), b.nextInt(1000));
+			assertEquals(a.nextGaussian(), b.nextGaussian(), 0);
+		}
+	}
+
+	@Test
+	public void testSetSeedRestartsTheSequence() {
+		SplitMixRandom random = new SplitMixRandom(7);
+		long first = random.nextLong();
+		random.nextGaussian();
+		random.setSeed(7);
+		assertEquals(first, random.nextLong());
+	}
+
+	@Test
+	public void testSplitIsDeterministicAndDiffers() {
+		SplitMixRandom a = new SplitMixRandom(1).split();
+		SplitMixRandom b = new SplitMixRandom(1).split();
+		SplitMixRandom parent = new SplitMixRandom(1);
+		parent.split();
+		long splitValue = a.nextLong();
+		assertEquals(splitValue, b.nextLong());
+		assertFalse(splitValue == parent.nextLong());
+	}
+
+	@Test
+	public void testDoublesInUnitInterval() {
+		SplitMixRandom random = new SplitMixRandom(3);
+		for (int i = 0; i < 10000; i++) {
+			double value = random.nextDouble();
+			assertTrue(value >= 0 && value < 1);
+		}
+	}
+
+}
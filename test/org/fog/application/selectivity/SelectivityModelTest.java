@@ -0,0 +1,227 @@
+package org.fog.application.selectivity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the batch decisions of {@link FractionalSelectivity} and {@link BurstySelectivity}
+ * follow the same model as their per-tuple decisions.
+ */
+public class SelectivityModelTest {
+
+	/** The number of decisions compared for a fractional selectivity */
+	private static final int DECISIONS = 200000;
+
+	/** The longest run length whose frequency is compared */
+	private static final int MAX_RUN_LENGTH = 10;
+
+	/** The number of standard deviations a frequency may be off by */
+	private static final double SIGMAS = 5;
+
+	/**
+	 * An entity asking a bursty selectivity for its per-tuple and batch decisions at given times.
+	 */
+	private static class BurstProbe extends SimEntity {
+		private static final long serialVersionUID = 1L;
+
+		private final BurstySelectivity selectivity;
+		private final double[] times;
+		private final List<String> mismatches = new ArrayList<String>();
+		private int checks;
+
+		BurstProbe(BurstySelectivity selectivity, double[] times) {
+			super("burst-probe");
+			this.selectivity = selectivity;
+			this.times = times;
+		}
+
+		@Override
+		public void startEntity() {
+			for (double time : times)
+				schedule(getId(), time, 0);
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			double time = CloudSim.clock() + selectivity.getFirstHighTime();
+			double burstPeriod = selectivity.getBurstHighPeriod() + selectivity.getBurstLowPeriod();
+			boolean expected = time <= burstPeriod*((int) (time/burstPeriod)) + selectivity.getBurstHighPeriod();
+			boolean[] selected = new boolean[3];
+			int selectedCount = selectivity.select(selected, 3);
+			boolean single = selectivity.canSelect();
+			checks++;
+			if (single != expected || selectedCount != (expected ? 3 : 0) || selected[2] != expected)
+				mismatches.add(CloudSim.clock() + ": expected " + expected + ", got " + single + " and "
+						+ selectedCount + " of 3");
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+
+	@Before
+	public void setUp() {
+		Log.disable();
+	}
+
+	/**
+	 * Decides for DECISIONS input tuples, in batches of 1 to 64 tuples or tuple by tuple.
+	 */
+	private static boolean[] decide(FractionalSelectivity selectivity, boolean batches) {
+		boolean[] decisions = new boolean[DECISIONS];
+		boolean[] batch = new boolean[64];
+		int decided = 0;
+		for (int batchSize = 1; decided < DECISIONS; batchSize = batchSize % 64 + 1) {
+			int count = Math.min(batchSize, DECISIONS - decided);
+			if (batches) {
+				int selectedCount = selectivity.select(batch, count);
+				int trueCount = 0;
+				for (int i = 0; i < count; i++) {
+					decisions[decided + i] = batch[i];
+					if (batch[i])
+						trueCount++;
+				}
+				assertEquals(trueCount, selectedCount);
+			} else {
+				for (int i = 0; i < count; i++)
+					decisions[decided + i] = selectivity.canSelect();
+			}
+			decided += count;
+		}
+		return decisions;
+	}
+
+	/**
+	 * The frequencies of the lengths 1 to MAX_RUN_LENGTH among the maximal runs of a decision, at
+	 * index length - 1, followed by the number of runs.
+	 */
+	private static double[] runLengths(boolean[] decisions, boolean value) {
+		double[] frequencies = new double[MAX_RUN_LENGTH + 1];
+		int runs = 0;
+		int length = 0;
+		for (int i = 0; i <= decisions.length; i++) {
+			if (i < decisions.length && decisions[i] == value) {
+				length++;
+			} else if (length > 0) {
+				runs++;
+				if (length <= MAX_RUN_LENGTH)
+					frequencies[length - 1]++;
+				length = 0;
+			}
+		}
+		for (int i = 0; i < MAX_RUN_LENGTH; i++)
+			frequencies[i] /= runs;
+		frequencies[MAX_RUN_LENGTH] = runs;
+		return frequencies;
+	}
+
+	private static double rate(boolean[] decisions) {
+		int selected = 0;
+		for (boolean decision : decisions) {
+			if (decision)
+				selected++;
+		}
+		return (double) selected/decisions.length;
+	}
+
+	/**
+	 * Checks that batches and single tuples select at the probability of the model, and that the runs
+	 * of selected and unselected tuples of both have the geometric lengths of independent decisions.
+	 */
+	private static void assertBatchesMatchSingleTuples(double probability) {
+		FractionalSelectivity selectivity = new FractionalSelectivity(probability);
+		selectivity.setRandom(new Random(7));
+		boolean[] batchDecisions = decide(selectivity, true);
+		selectivity.setRandom(new Random(11));
+		boolean[] singleDecisions = decide(selectivity, false);
+
+		double rateTolerance = SIGMAS*Math.sqrt(probability*(1 - probability)/DECISIONS);
+		assertEquals(probability, rate(batchDecisions), rateTolerance);
+		assertEquals(probability, rate(singleDecisions), rateTolerance);
+
+		for (boolean value : new boolean[] {true, false}) {
+			double valueProbability = value ? probability : 1 - probability;
+			double[] batchRuns = runLengths(batchDecisions, value);
+			double[] singleRuns = runLengths(singleDecisions, value);
+			double runs = Math.min(batchRuns[MAX_RUN_LENGTH], singleRuns[MAX_RUN_LENGTH]);
+			for (int length = 1; length <= MAX_RUN_LENGTH; length++) {
+				double expected = Math.pow(valueProbability, length - 1)*(1 - valueProbability);
+				double tolerance = SIGMAS*Math.sqrt(expected*(1 - expected)/runs) + 1e-4;
+				String message = (value ? "selected" : "unselected") + " runs of length " + length;
+				assertEquals(message, expected, batchRuns[length - 1], tolerance);
+				assertEquals(message, expected, singleRuns[length - 1], tolerance);
+				assertEquals(message, singleRuns[length - 1], batchRuns[length - 1], Math.sqrt(2)*tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void testSmallFractionSkipsLikeSingleTuples() {
+		assertBatchesMatchSingleTuples(0.05);
+	}
+
+	@Test
+	public void testLargeFractionSelectsLikeSingleTuples() {
+		assertBatchesMatchSingleTuples(0.8);
+	}
+
+	@Test
+	public void testFractionsAtTheEdges() {
+		boolean[] selected = new boolean[10];
+		assertEquals(0, new FractionalSelectivity(0).select(selected, 10));
+		assertEquals(10, new FractionalSelectivity(1).select(selected, 10));
+		assertEquals(0, new FractionalSelectivity(0.01).select(selected, 0));
+	}
+
+	@Test
+	public void testBurstWindowsAtBoundaries() {
+		BurstySelectivity selectivity = new BurstySelectivity(3, 2, 1.5);
+		// the burst period is 5, high from 0 to 2 after its start, and the clock is 1.5 behind the bursts
+		List<Double> times = new ArrayList<Double>();
+		for (int period = 1; period <= 4; period++) {
+			double start = 5*period - 1.5;
+			for (double offset : new double[] {0, 1e-9, 1, 2 - 1e-9, 2, 2 + 1e-9, 4, 5 - 1e-9})
+				times.add(start + offset);
+		}
+		// the same time twice, and a time far ahead skipping several burst periods
+		times.add(20.0);
+		times.add(20.0);
+		times.add(5*40 - 1.5 + 1);
+		double[] probeTimes = new double[times.size()];
+		for (int i = 0; i < probeTimes.length; i++)
+			probeTimes[i] = times.get(i);
+
+		CloudSim.init(1, Calendar.getInstance(), false);
+		BurstProbe probe = new BurstProbe(selectivity, probeTimes);
+		CloudSim.startSimulation();
+
+		assertEquals(probeTimes.length, probe.checks);
+		assertTrue(probe.mismatches.toString(), probe.mismatches.isEmpty());
+	}
+
+	@Test
+	public void testBurstWindowIsRecomputedWhenPeriodsChange() {
+		CloudSim.init(1, Calendar.getInstance(), false);
+		BurstySelectivity selectivity = new BurstySelectivity(3, 2, 0);
+		assertTrue(selectivity.canSelect());
+
+		selectivity.setFirstHighTime(2.5);
+		assertTrue(!selectivity.canSelect());
+		selectivity.setBurstHighPeriod(3);
+		assertTrue(selectivity.canSelect());
+	}
+
+}
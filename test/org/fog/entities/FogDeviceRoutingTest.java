@@ -0,0 +1,211 @@
+package org.fog.entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.power.models.PowerModelLinear;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.cloudbus.cloudsim.sdn.overbooking.BwProvisionerOverbooking;
+import org.cloudbus.cloudsim.sdn.overbooking.PeProvisionerOverbooking;
+import org.fog.application.AppModule;
+import org.fog.application.selectivity.SelectivityModel;
+import org.fog.policy.AppModuleAllocationPolicy;
+import org.fog.scheduler.StreamOperatorScheduler;
+import org.fog.scheduler.TupleScheduler;
+import org.fog.utils.Config;
+import org.fog.utils.FogUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the module location index of {@link FogDevice} sends tuples going down only towards the
+ * subtrees hosting their destination, as module instances are launched and released.
+ */
+public class FogDeviceRoutingTest {
+
+	private static final String MODULE = "module";
+
+	/**
+	 * A fog device recording the children it sends tuples to instead of sending them.
+	 */
+	private static class RecordingFogDevice extends FogDevice {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Integer> sentToChildIds = new ArrayList<Integer>();
+
+		RecordingFogDevice(String name, FogDevice parent) throws Exception {
+			super(name, createCharacteristics(), new AppModuleAllocationPolicy(new ArrayList<Host>()),
+					new LinkedList<Storage>(), 10, 1000, 1000, 2, 0);
+			if(parent == null){
+				setParentId(-1);
+			}else{
+				setParentId(parent.getId());
+				parent.getChildrenIds().add(getId());
+			}
+		}
+
+		private static FogDeviceCharacteristics createCharacteristics() {
+			List<Pe> peList = new ArrayList<Pe>();
+			peList.add(new Pe(0, new PeProvisionerOverbooking(1000)));
+			PowerHost host = new PowerHost(FogUtils.generateEntityId(), new RamProvisionerSimple(1024),
+					new BwProvisionerOverbooking(10000), 1000000, peList, new StreamOperatorScheduler(peList),
+					new PowerModelLinear(100, 40));
+			return new FogDeviceCharacteristics("x86", "Linux", "Xen", host, 10, 3, 0.05, 0.001, 0);
+		}
+
+		@Override
+		protected void sendDown(Tuple tuple, int childId) {
+			if(getChildrenIds().contains(childId))
+				sentToChildIds.add(childId);
+		}
+
+		/** The children a tuple going down is sent to, forgetting the ones of the previous tuples. */
+		List<Integer> route(Tuple tuple) {
+			sentToChildIds.clear();
+			sendDownToModule(tuple);
+			List<Integer> childIds = new ArrayList<Integer>(sentToChildIds);
+			Collections.sort(childIds);
+			return childIds;
+		}
+	}
+
+	private boolean broadcastDownTuples;
+
+	private RecordingFogDevice cloud;
+
+	private RecordingFogDevice router;
+
+	private RecordingFogDevice camera0;
+
+	private RecordingFogDevice camera1;
+
+	@Before
+	public void setUp() throws Exception {
+		Log.disable();
+		broadcastDownTuples = Config.BROADCAST_DOWN_TUPLES;
+		Config.BROADCAST_DOWN_TUPLES = false;
+		CloudSim.init(1, Calendar.getInstance(), false);
+		cloud = new RecordingFogDevice("cloud", null);
+		router = new RecordingFogDevice("router", cloud);
+		camera0 = new RecordingFogDevice("m-0", router);
+		camera1 = new RecordingFogDevice("m-1", router);
+	}
+
+	@After
+	public void tearDown() {
+		Config.BROADCAST_DOWN_TUPLES = broadcastDownTuples;
+	}
+
+	private static AppModule createInstance() {
+		return new AppModule(FogUtils.generateEntityId(), MODULE, "app", 1, 100, 10, 10, 100, "Xen",
+				new TupleScheduler(100, 1), new HashMap<Pair<String, String>, SelectivityModel>());
+	}
+
+	private static Tuple createTuple(AppModule boundInstance) {
+		Tuple tuple = new Tuple("app", FogUtils.generateTupleId(), Tuple.DOWN, 100, 1, 100, 100,
+				new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+		tuple.setDestModuleName(MODULE);
+		if(boundInstance != null)
+			tuple.getModuleCopyMap().put(MODULE, boundInstance.getId());
+		return tuple;
+	}
+
+	private static List<Integer> ids(FogDevice... devices) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for(FogDevice device : devices)
+			ids.add(device.getId());
+		Collections.sort(ids);
+		return ids;
+	}
+
+	@Test
+	public void testTupleGoesOnlyToSubtreesHostingModule() {
+		assertTrue(router.route(createTuple(null)).isEmpty());
+
+		camera0.moduleInstanceAdded(createInstance());
+		assertEquals(ids(router), cloud.route(createTuple(null)));
+		assertEquals(ids(camera0), router.route(createTuple(null)));
+
+		camera1.moduleInstanceAdded(createInstance());
+		assertEquals(ids(router), cloud.route(createTuple(null)));
+		assertEquals(ids(camera0, camera1), router.route(createTuple(null)));
+	}
+
+	@Test
+	public void testBoundTupleGoesToSubtreeOfItsInstance() {
+		AppModule instance0 = createInstance();
+		AppModule instance1 = createInstance();
+		camera0.moduleInstanceAdded(instance0);
+		camera1.moduleInstanceAdded(instance1);
+
+		assertEquals(ids(router), cloud.route(createTuple(instance1)));
+		assertEquals(ids(camera1), router.route(createTuple(instance1)));
+		assertEquals(ids(camera0), router.route(createTuple(instance0)));
+	}
+
+	@Test
+	public void testReleaseThenRelaunch() {
+		AppModule instance = createInstance();
+		camera0.moduleInstanceAdded(instance);
+		camera0.moduleInstanceRemoved(instance);
+		assertTrue(cloud.route(createTuple(null)).isEmpty());
+		assertTrue(router.route(createTuple(null)).isEmpty());
+
+		// launched again on the other camera, as after a migration
+		camera1.moduleInstanceAdded(instance);
+		assertEquals(ids(router), cloud.route(createTuple(instance)));
+		assertEquals(ids(camera1), router.route(createTuple(instance)));
+		assertEquals(ids(camera1), router.route(createTuple(null)));
+	}
+
+	@Test
+	public void testInstancesSharingSubtreeAreCounted() {
+		AppModule instance0 = createInstance();
+		AppModule instance1 = createInstance();
+		camera0.moduleInstanceAdded(instance0);
+		camera0.moduleInstanceAdded(instance1);
+		camera0.moduleInstanceRemoved(instance0);
+
+		assertEquals(ids(camera0), router.route(createTuple(null)));
+		assertEquals(Integer.valueOf(1), router.moduleToChildInstanceCounts.get(MODULE).get(camera0.getId()));
+		assertEquals(Integer.valueOf(1), cloud.moduleToChildInstanceCounts.get(MODULE).get(router.getId()));
+	}
+
+	@Test
+	public void testTupleBoundToReleasedInstanceIsDropped() {
+		AppModule released = createInstance();
+		camera0.moduleInstanceAdded(released);
+		camera1.moduleInstanceAdded(createInstance());
+		camera0.moduleInstanceRemoved(released);
+
+		// the tuple is not sent to the other instance of the module either
+		assertTrue(cloud.route(createTuple(released)).isEmpty());
+		assertTrue(router.route(createTuple(released)).isEmpty());
+		assertEquals(ids(camera1), router.route(createTuple(null)));
+	}
+
+	@Test
+	public void testBroadcastSendsToEveryChild() {
+		Config.BROADCAST_DOWN_TUPLES = true;
+		assertEquals(ids(camera0, camera1), router.route(createTuple(null)));
+		assertEquals(Arrays.asList(router.getId()), cloud.route(createTuple(null)));
+	}
+
+}
@@ -0,0 +1,223 @@
+package org.fog.placement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppModule;
+import org.fog.application.selectivity.SelectivityModel;
+import org.fog.entities.FogDevice;
+import org.fog.placement.Autoscaler.Action;
+import org.fog.placement.Autoscaler.DeviceLoad;
+import org.fog.scheduler.TupleScheduler;
+import org.fog.utils.FogEntityFactory;
+import org.fog.utils.FogUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the actions decided by {@link ThresholdAutoscalingPolicy} on a cloud, a gateway and two mobiles.
+ */
+public class ThresholdAutoscalingPolicyTest {
+
+	private static final double COOLDOWN = 10;
+
+	/**
+	 * An autoscaler with given loads, placement and last action times instead of sampled ones.
+	 */
+	private static class FixedAutoscaler extends Autoscaler {
+		private static final long serialVersionUID = 1L;
+
+		private final Map<Integer, DeviceLoad> loads = new LinkedHashMap<Integer, DeviceLoad>();
+		private final Set<Integer> hostingDeviceIds = new HashSet<Integer>();
+		private double lastActionTime = Double.NEGATIVE_INFINITY;
+
+		FixedAutoscaler(AutoscalingPolicy policy) {
+			super(policy);
+		}
+
+		void setLoad(FogDevice device, double utilization, int queuedTuples, AppModule... modules) {
+			loads.put(device.getId(), new DeviceLoad(device, utilization, queuedTuples, Arrays.asList(modules)));
+			if(modules.length > 0)
+				hostingDeviceIds.add(device.getId());
+		}
+
+		void setHostsModule(FogDevice device) {
+			hostingDeviceIds.add(device.getId());
+		}
+
+		@Override
+		public Collection<DeviceLoad> getLoads() {
+			return loads.values();
+		}
+
+		@Override
+		public DeviceLoad getLoad(FogDevice device) {
+			return loads.get(device.getId());
+		}
+
+		@Override
+		public boolean hostsModule(FogDevice device, String appId, String moduleName) {
+			return hostingDeviceIds.contains(device.getId());
+		}
+
+		@Override
+		public double getLastActionTime(String appId, String moduleName) {
+			return lastActionTime;
+		}
+	}
+
+	private ThresholdAutoscalingPolicy policy;
+
+	private FixedAutoscaler autoscaler;
+
+	private FogDevice cloud;
+
+	private FogDevice gateway;
+
+	private FogDevice mobile1;
+
+	private FogDevice mobile2;
+
+	private AppModule module;
+
+	@Before
+	public void setUp() {
+		Log.disable();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		cloud = createFogDevice("cloud", 44800, null);
+		gateway = createFogDevice("gateway", 2800, cloud);
+		mobile1 = createFogDevice("mobile-1", 2800, gateway);
+		mobile2 = createFogDevice("mobile-2", 2800, gateway);
+		module = new AppModule(FogUtils.generateEntityId(), "module", "app", 1, 100, 10, 10, 100, "Xen",
+				new TupleScheduler(100, 1), new HashMap<Pair<String, String>, SelectivityModel>());
+		policy = new ThresholdAutoscalingPolicy(0.8, 0.3, COOLDOWN);
+		autoscaler = new FixedAutoscaler(policy);
+	}
+
+	private static FogDevice createFogDevice(String name, int mips, FogDevice parent) {
+		FogDevice device = FogEntityFactory.createFogDevice(name, mips, 1000, 1000, 0, 0);
+		if(parent == null){
+			device.setParentId(-1);
+		}else{
+			device.setParentId(parent.getId());
+			parent.getChildrenIds().add(device.getId());
+		}
+		return device;
+	}
+
+	private static void assertAction(Action.Type type, AppModule instance, FogDevice source, FogDevice target,
+			Action action) {
+		assertEquals(type, action.getType());
+		assertTrue(instance == action.getInstance());
+		assertTrue(source == action.getSource());
+		assertTrue(target == action.getTarget());
+	}
+
+	@Test
+	public void testSaturatedDeviceScalesOutToLeastLoadedChild() {
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setLoad(gateway, 0.9, 5, module);
+		autoscaler.setLoad(mobile1, 0.2, 0);
+		autoscaler.setLoad(mobile2, 0.1, 0);
+
+		List<Action> actions = policy.decide(autoscaler);
+		assertEquals(1, actions.size());
+		assertAction(Action.Type.SCALE_OUT, module, gateway, mobile2, actions.get(0));
+	}
+
+	@Test
+	public void testSaturatedDeviceMigratesToIdleAncestor() {
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setLoad(gateway, 0.9, 5, module);
+		autoscaler.setLoad(mobile1, 0.5, 0);
+		autoscaler.setLoad(mobile2, 0.1, 3);
+
+		List<Action> actions = policy.decide(autoscaler);
+		assertEquals(1, actions.size());
+		assertAction(Action.Type.MIGRATE, module, gateway, cloud, actions.get(0));
+	}
+
+	@Test
+	public void testSaturatedDeviceScalesInWhenIdleAncestorHostsModule() {
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setHostsModule(cloud);
+		autoscaler.setLoad(gateway, 0.9, 5, module);
+
+		List<Action> actions = policy.decide(autoscaler);
+		assertEquals(1, actions.size());
+		assertAction(Action.Type.SCALE_IN, module, gateway, null, actions.get(0));
+	}
+
+	@Test
+	public void testNoActionWhenAncestorHostingModuleIsBusy() {
+		autoscaler.setLoad(cloud, 0.5, 0);
+		autoscaler.setHostsModule(cloud);
+		autoscaler.setLoad(gateway, 0.9, 5, module);
+
+		assertTrue(policy.decide(autoscaler).isEmpty());
+	}
+
+	@Test
+	public void testIdleInstanceScalesInWhenIdleAncestorHostsModule() {
+		AppModule parentInstance = new AppModule(module);
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setLoad(gateway, 0.1, 0, parentInstance);
+		autoscaler.setLoad(mobile1, 0.1, 0, module);
+
+		List<Action> actions = policy.decide(autoscaler);
+		assertEquals(1, actions.size());
+		assertAction(Action.Type.SCALE_IN, module, mobile1, null, actions.get(0));
+	}
+
+	@Test
+	public void testFullyUsedDeviceWithoutQueuedTuplesIsNotSaturated() {
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setLoad(gateway, 1, 0, module);
+		autoscaler.setLoad(mobile1, 0.1, 0);
+
+		assertTrue(policy.decide(autoscaler).isEmpty());
+	}
+
+	@Test
+	public void testModuleCoolingDownIsLeftAlone() {
+		autoscaler.lastActionTime = CloudSim.clock() - COOLDOWN/2;
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setLoad(gateway, 0.9, 5, module);
+		autoscaler.setLoad(mobile1, 0.1, 0);
+
+		assertTrue(policy.decide(autoscaler).isEmpty());
+
+		autoscaler.lastActionTime = CloudSim.clock() - COOLDOWN;
+		assertEquals(1, policy.decide(autoscaler).size());
+	}
+
+	@Test
+	public void testNoActionWhenNoDeviceCanHostModule() {
+		AppModule largeModule = new AppModule(FogUtils.generateEntityId(), "large", "app", 1, 100, 4096, 10, 100,
+				"Xen", new TupleScheduler(100, 1), new HashMap<Pair<String, String>, SelectivityModel>());
+		autoscaler.setLoad(cloud, 0.1, 0);
+		autoscaler.setLoad(gateway, 0.9, 5, largeModule);
+		autoscaler.setLoad(mobile1, 0.1, 0);
+
+		assertTrue(policy.decide(autoscaler).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThresholds() {
+		new ThresholdAutoscalingPolicy(0.3, 0.8, COOLDOWN);
+	}
+
+}
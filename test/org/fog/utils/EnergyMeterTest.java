@@ -0,0 +1,97 @@
+package org.fog.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.cloudbus.cloudsim.power.models.PowerModel;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link EnergyMeter} integrates the power over the utilisation levels of a host.
+ */
+public class EnergyMeterTest {
+
+	private static final double DELTA = 1e-6;
+
+	/**
+	 * A linear power model from 100 at utilisation 0 to 200 at utilisation 1, counting its evaluations.
+	 */
+	private static class CountingPowerModel implements PowerModel {
+		private static final long serialVersionUID = 1L;
+
+		private int evaluations;
+
+		@Override
+		public double getPower(double utilization) {
+			evaluations++;
+			return 100 + 100*utilization;
+		}
+	}
+
+	private CountingPowerModel powerModel;
+
+	private EnergyMeter meter;
+
+	@Before
+	public void setUp() {
+		powerModel = new CountingPowerModel();
+		meter = new EnergyMeter(powerModel);
+	}
+
+	@Test
+	public void testIdleHost() {
+		assertEquals(1000, meter.getEnergy(10), DELTA);
+		assertEquals(0, meter.getCumulativeUtilization(10), DELTA);
+		assertEquals(0, meter.getUtilization(), DELTA);
+	}
+
+	@Test
+	public void testEnergyOverLevels() {
+		meter.utilizationChanged(0, 0.5);
+		meter.utilizationChanged(10, 1);
+		meter.utilizationChanged(15, 0.5);
+
+		assertEquals(150*15 + 200*5, meter.getEnergy(20), DELTA);
+		assertEquals(0.5*15 + 1*5, meter.getCumulativeUtilization(20), DELTA);
+		assertEquals(0.5, meter.getUtilization(), DELTA);
+		assertEquals(15, meter.getChangeTime(), DELTA);
+	}
+
+	@Test
+	public void testUnchangedUtilizationIsIgnored() {
+		meter.utilizationChanged(5, 0.5);
+		meter.utilizationChanged(8, 0.5);
+
+		assertEquals(5, meter.getChangeTime(), DELTA);
+		assertEquals(100*5 + 150*5, meter.getEnergy(10), DELTA);
+	}
+
+	@Test
+	public void testPowerIsEvaluatedOncePerLevel() {
+		for (int time = 0; time < 100; time++)
+			meter.utilizationChanged(time, time % 2 == 0 ? 0.25 : 0.75);
+		assertEquals(0, powerModel.evaluations);
+
+		double energy = 125*50 + 175*49;
+		assertEquals(energy, meter.getEnergy(99), DELTA);
+		assertEquals(2, powerModel.evaluations);
+		assertEquals(energy + 175, meter.getEnergy(100), DELTA);
+		assertEquals(2, powerModel.evaluations);
+	}
+
+	@Test
+	public void testLevelsBeyondTheKeptOnes() {
+		double energy = 0;
+		double cumulativeUtilization = 0;
+		for (int time = 0; time < 200; time++) {
+			double utilization = (time + 1)/200.0;
+			meter.utilizationChanged(time, utilization);
+			energy += 100 + 100*utilization;
+			cumulativeUtilization += utilization;
+		}
+
+		assertEquals(energy, meter.getEnergy(200), DELTA);
+		assertEquals(cumulativeUtilization, meter.getCumulativeUtilization(200), DELTA);
+	}
+
+}
@@ -0,0 +1,202 @@
+package org.fog.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimulationSnapshot;
+import org.cloudbus.cloudsim.core.SimulationVariant;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementEdgewards;
+import org.fog.utils.distribution.UniformDistribution;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a fog simulation resumed or forked from a {@link FogSnapshot} reports the same results
+ * as a straight run.
+ */
+public class FogSnapshotTest {
+
+	private static final int SIMULATION_TIME = 2000;
+
+	private static final double SNAPSHOT_TIME = 1000;
+
+	private int maxSimulationTime;
+
+	/**
+	 * Runs a restored simulation to its end and returns its report.
+	 */
+	public static class ReportVariant implements SimulationVariant {
+
+		@Override
+		public Serializable run(int index) throws Exception {
+			Log.disable();
+			return runToEnd();
+		}
+	}
+
+	@Before
+	public void setUp() {
+		Log.disable();
+		maxSimulationTime = Config.MAX_SIMULATION_TIME;
+		Config.MAX_SIMULATION_TIME = SIMULATION_TIME;
+	}
+
+	@After
+	public void tearDown() {
+		Config.MAX_SIMULATION_TIME = maxSimulationTime;
+		FogSnapshot.reset();
+	}
+
+	/**
+	 * Builds a surveillance application on a cloud, a router and two cameras, with random sensing
+	 * intervals and a random selectivity so that the random streams are saved as well.
+	 */
+	private static void createSimulation() {
+		FogSnapshot.reset();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		FogBroker broker;
+		try {
+			broker = new FogBroker("broker");
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		String appId = "dcns";
+		Application application = Application.createApplication(appId, broker.getId());
+		application.setUserId(broker.getId());
+		application.addAppModule("motion_detector", 10);
+		application.addAppModule("object_detector", 10);
+		application.addAppModule("object_tracker", 10);
+		application.addAppEdge("CAMERA", "motion_detector", 1000, 20000, "CAMERA", Tuple.UP, AppEdge.SENSOR);
+		application.addAppEdge("motion_detector", "object_detector", 2000, 2000, "MOTION_VIDEO_STREAM", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("object_detector", "object_tracker", 1000, 100, "OBJECT_LOCATION", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("object_tracker", "PTZ_CONTROL", 100, 28, 100, "PTZ_PARAMS", Tuple.DOWN, AppEdge.ACTUATOR);
+		application.addTupleMapping("motion_detector", "CAMERA", "MOTION_VIDEO_STREAM", new FractionalSelectivity(1.0));
+		application.addTupleMapping("object_detector", "MOTION_VIDEO_STREAM", "OBJECT_LOCATION", new FractionalSelectivity(0.5));
+		List<AppLoop> loops = new ArrayList<AppLoop>();
+		loops.add(new AppLoop(Arrays.asList("motion_detector", "object_detector", "object_tracker")));
+		loops.add(new AppLoop(Arrays.asList("object_tracker", "PTZ_CONTROL")));
+		application.setLoops(loops);
+
+		List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+		List<Sensor> sensors = new ArrayList<Sensor>();
+		List<Actuator> actuators = new ArrayList<Actuator>();
+		FogDevice cloud = FogEntityFactory.createFogDevice("cloud", 44800, 100, 10000, 0, 0.01);
+		cloud.setParentId(-1);
+		fogDevices.add(cloud);
+		FogDevice router = FogEntityFactory.createFogDevice("router", 2800, 10000, 10000, 100, 0);
+		router.setParentId(cloud.getId());
+		fogDevices.add(router);
+		ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+		for(int i = 0; i < 2; i++){
+			FogDevice camera = FogEntityFactory.createFogDevice("m-"+i, 500, 10000, 10000, 2, 0);
+			camera.setParentId(router.getId());
+			fogDevices.add(camera);
+			moduleMapping.addModuleToDevice("motion_detector", camera.getName());
+			Sensor sensor = new Sensor("s-"+i, "CAMERA", broker.getId(), appId, new UniformDistribution(4, 6));
+			sensor.setGatewayDeviceId(camera.getId());
+			sensor.setLatency(1.0);
+			sensors.add(sensor);
+			Actuator ptz = new Actuator("ptz-"+i, broker.getId(), appId, "PTZ_CONTROL");
+			ptz.setGatewayDeviceId(camera.getId());
+			ptz.setLatency(1.0);
+			actuators.add(ptz);
+		}
+
+		Controller controller = new Controller("master-controller", fogDevices, sensors, actuators);
+		controller.setExitOnStop(false);
+		controller.submitApplication(application,
+				new ModulePlacementEdgewards(fogDevices, sensors, actuators, application, moduleMapping));
+	}
+
+	/**
+	 * Runs the current simulation to its end.
+	 * @return the results printed by the controller, without the execution time
+	 */
+	private static String runToEnd() {
+		Controller controller = null;
+		for(SimEntity entity : CloudSim.getEntityList()){
+			if(entity instanceof Controller)
+				controller = (Controller) entity;
+		}
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		controller.setReportStream(new PrintStream(report, true));
+		CloudSim.startSimulation();
+		StringBuilder results = new StringBuilder();
+		for(String line : report.toString().split("\n")){
+			if(!line.startsWith("EXECUTION TIME"))
+				results.append(line).append('\n');
+		}
+		return results.toString();
+	}
+
+	private static String runStraight() {
+		createSimulation();
+		return runToEnd();
+	}
+
+	@Test
+	public void testResumedRunMatchesStraightRun() throws Exception {
+		String straight = runStraight();
+		assertTrue(straight.contains("APPLICATION LOOP DELAYS"));
+
+		createSimulation();
+		assertTrue(CloudSim.runUntil(SNAPSHOT_TIME));
+		SimulationSnapshot snapshot = FogSnapshot.capture();
+		assertEquals(SNAPSHOT_TIME, snapshot.getClock(), 1);
+		assertEquals(straight, runToEnd());
+
+		// the snapshot outlives the simulation it was taken from, and can be restored again
+		SimulationSnapshot.fromByteArray(snapshot.toByteArray()).restore();
+		assertEquals(straight, runToEnd());
+		snapshot.restore();
+		assertEquals(straight, runToEnd());
+	}
+
+	@Test
+	public void testForkedRunsMatchStraightRun() throws Exception {
+		String straight = runStraight();
+
+		createSimulation();
+		CloudSim.runUntil(SNAPSHOT_TIME);
+		SimulationSnapshot snapshot = FogSnapshot.capture();
+		List<Serializable> results = snapshot.fork(ReportVariant.class.getName(), 2, 2);
+
+		assertEquals(Arrays.asList(straight, straight), results);
+	}
+
+	@Test
+	public void testResetStartsFromCleanState() {
+		createSimulation();
+		CloudSim.runUntil(SNAPSHOT_TIME);
+		FogSnapshot.reset();
+
+		assertEquals(1, FogUtils.USER_ID);
+		assertEquals(0, NetworkUsageMonitor.getNetworkUsage(), 0);
+		assertTrue(TimeKeeper.getInstance().getLoopDelayMonitor().getObservedLoopIds().isEmpty());
+		assertEquals(runStraight(), runStraight());
+	}
+
+}
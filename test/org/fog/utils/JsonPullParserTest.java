@@ -0,0 +1,149 @@
+package org.fog.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.fog.utils.JsonPullParser.JsonFormatException;
+import org.fog.utils.JsonPullParser.Token;
+import org.junit.Test;
+
+/**
+ * Tests the tokens, the values and the error lines of {@link JsonPullParser}.
+ */
+public class JsonPullParserTest {
+
+	private static final double DELTA = 1e-12;
+
+	/** A reader that returns one character per read, so that every token spans refills */
+	private static class TrickleReader extends Reader {
+		private final String text;
+		private int position;
+
+		TrickleReader(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			if(position == text.length())
+				return -1;
+			buffer[offset] = text.charAt(position++);
+			return 1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static JsonPullParser parser(String json) {
+		return new JsonPullParser(new StringReader(json), "test.json");
+	}
+
+	private static void assertTokens(JsonPullParser parser, Token... tokens) throws IOException {
+		for(Token token : tokens)
+			assertEquals(token, parser.next());
+	}
+
+	@Test
+	public void testTokensAndValues() throws IOException {
+		JsonPullParser parser = parser("{\"name\": \"a\\\"b\\u0041\", \"n\": -12, \"x\": 1.5e2,\n"
+				+ " \"list\": [true, false, null], \"empty\": {}}");
+		assertTokens(parser, Token.BEGIN_OBJECT, Token.NAME);
+		assertEquals("name", parser.getString());
+		assertEquals(Token.STRING, parser.next());
+		assertEquals("a\"bA", parser.getString());
+
+		assertTokens(parser, Token.NAME, Token.NUMBER);
+		assertEquals(-12, parser.getLong());
+		assertTokens(parser, Token.NAME, Token.NUMBER);
+		assertEquals(150, parser.getDouble(), DELTA);
+
+		assertTokens(parser, Token.NAME, Token.BEGIN_ARRAY, Token.BOOLEAN);
+		assertEquals(2, parser.getLine());
+		assertTrue(parser.getBoolean());
+		assertEquals(Token.BOOLEAN, parser.next());
+		assertFalse(parser.getBoolean());
+		assertTokens(parser, Token.NULL, Token.END_ARRAY, Token.NAME, Token.BEGIN_OBJECT, Token.END_OBJECT,
+				Token.END_OBJECT, Token.END_DOCUMENT);
+	}
+
+	@Test
+	public void testTokensAcrossRefills() throws IOException {
+		JsonPullParser parser = new JsonPullParser(new TrickleReader("[\"long string\", 123456, true]"), "t");
+		assertTokens(parser, Token.BEGIN_ARRAY, Token.STRING);
+		assertEquals("long string", parser.getString());
+		assertEquals(Token.NUMBER, parser.next());
+		assertEquals(123456, parser.getLong());
+		assertTokens(parser, Token.BOOLEAN, Token.END_ARRAY, Token.END_DOCUMENT);
+	}
+
+	@Test
+	public void testSkipValueSkipsNestedValues() throws IOException {
+		JsonPullParser parser = parser("{\"skipped\": {\"a\": [1, {\"b\": 2}]}, \"kept\": 3}");
+		assertTokens(parser, Token.BEGIN_OBJECT, Token.NAME);
+		parser.skipValue();
+		assertEquals(Token.NAME, parser.next());
+		assertEquals("kept", parser.getString());
+		assertEquals(Token.NUMBER, parser.next());
+		assertEquals(3, parser.getLong());
+	}
+
+	@Test
+	public void testDeepNesting() throws IOException {
+		StringBuilder json = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			json.append(i % 2 == 0 ? "[" : "{\"k\":");
+		json.append("0");
+		for(int i = 99; i >= 0; i--)
+			json.append(i % 2 == 0 ? "]" : "}");
+		JsonPullParser parser = parser(json.toString());
+		int tokens = 0;
+		while(parser.next() != Token.END_DOCUMENT)
+			tokens++;
+		// 50 arrays of 2 tokens, 50 objects of 3 and the innermost value
+		assertEquals(251, tokens);
+	}
+
+	@Test
+	public void testNonIntegerIsRejectedAsLong() throws IOException {
+		JsonPullParser parser = parser("2.5");
+		parser.next();
+		try {
+			parser.getLong();
+			fail();
+		} catch (JsonFormatException e) {
+			assertEquals(1, e.getLine());
+		}
+	}
+
+	private static void assertErrorAtLine(String json, int line) throws IOException {
+		JsonPullParser parser = parser(json);
+		try {
+			while(parser.next() != Token.END_DOCUMENT)
+				;
+			fail();
+		} catch (JsonFormatException e) {
+			assertEquals(line, e.getLine());
+			assertTrue(e.getMessage().startsWith("test.json:" + line + ": "));
+		}
+	}
+
+	@Test
+	public void testSyntaxErrorsReportTheirLine() throws IOException {
+		assertErrorAtLine("{\"a\": 1,\n\"b\": 2\n\"c\": 3}", 3);
+		assertErrorAtLine("[1,\n2,\n3", 3);
+		assertErrorAtLine("{\"a\": \"open\n\"}", 1);
+		assertErrorAtLine("{\"a\"\n 1}", 1);
+		assertErrorAtLine("[1] 2", 1);
+		assertErrorAtLine("[\n  nul]", 2);
+		assertErrorAtLine("[\"\\x\"]", 1);
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.fog.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the loop delay statistics of {@link LoopDelayMonitor} and the TimeKeeper maps read from it.
+ */
+public class LoopDelayMonitorTest {
+
+	private static final double DELTA = 1e-9;
+
+	private LoopDelayMonitor monitor;
+
+	@Before
+	public void setUp() {
+		monitor = new LoopDelayMonitor();
+	}
+
+	@Test
+	public void testLoopWithoutDelays() {
+		assertEquals(0, monitor.getCount(3));
+		assertTrue(Double.isNaN(monitor.getMean(3)));
+		assertTrue(Double.isNaN(monitor.getMin(3)));
+		assertTrue(Double.isNaN(monitor.getMax(3)));
+		assertTrue(monitor.getObservedLoopIds().isEmpty());
+	}
+
+	@Test
+	public void testStatistics() {
+		double[] delays = {4, 8, 6, 2};
+		for (double delay : delays)
+			monitor.delayObserved(1, delay);
+
+		assertEquals(4, monitor.getCount(1));
+		assertEquals(5, monitor.getMean(1), DELTA);
+		assertEquals(20.0 / 3, monitor.getVariance(1), DELTA);
+		assertEquals(2, monitor.getMin(1), DELTA);
+		assertEquals(8, monitor.getMax(1), DELTA);
+		assertEquals(Arrays.asList(1), monitor.getObservedLoopIds());
+	}
+
+	@Test
+	public void testVarianceNeedsTwoDelays() {
+		monitor.delayObserved(1, 4);
+		assertTrue(Double.isNaN(monitor.getVariance(1)));
+	}
+
+	@Test
+	public void testLoopIdsBeyondInitialCapacity() {
+		monitor.delayObserved(100, 7);
+		monitor.delayObserved(2, 3);
+
+		assertEquals(Arrays.asList(2, 100), monitor.getObservedLoopIds());
+		assertEquals(7, monitor.getMean(100), DELTA);
+	}
+
+	@Test
+	public void testHistogram() {
+		assertNull(monitor.getHistogram(1));
+		monitor.enableHistograms(10, 3);
+		for (double delay : new double[] {-1, 5, 15, 29.9, 30, 1000})
+			monitor.delayObserved(1, delay);
+
+		assertArrayEquals(new long[] {2, 1, 1, 2}, monitor.getHistogram(1));
+		assertNull(monitor.getHistogram(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidHistogram() {
+		monitor.enableHistograms(0, 3);
+	}
+
+	@Test
+	public void testSetDelays() {
+		monitor.delayObserved(1, 4);
+		monitor.delayObserved(1, 8);
+		monitor.setDelays(1, 10, 3);
+
+		assertEquals(10, monitor.getCount(1));
+		assertEquals(3, monitor.getMean(1), DELTA);
+		assertEquals(0, monitor.getVariance(1), DELTA);
+
+		monitor.delayObserved(1, 14);
+		assertEquals(4, monitor.getMean(1), DELTA);
+		assertEquals(14, monitor.getMax(1), DELTA);
+
+		monitor.setDelays(1, 0, 0);
+		assertTrue(monitor.getObservedLoopIds().isEmpty());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testTimeKeeperMapsFeedTheMonitor() {
+		TimeKeeper.setInstance(null);
+		TimeKeeper timeKeeper = TimeKeeper.getInstance();
+		timeKeeper.loopDelayObserved(1, 4);
+		timeKeeper.loopDelayObserved(1, 8);
+		timeKeeper.loopDelayObserved(2, 5);
+
+		Map<Integer, Double> loopIdToCurrentAverage = new HashMap<Integer, Double>();
+		loopIdToCurrentAverage.put(1, 10.0);
+		loopIdToCurrentAverage.put(3, 20.0);
+		timeKeeper.setLoopIdToCurrentAverage(loopIdToCurrentAverage);
+		assertEquals(loopIdToCurrentAverage, timeKeeper.getLoopIdToCurrentAverage());
+		assertEquals(2, timeKeeper.getLoopDelayMonitor().getCount(1));
+		assertEquals(1, timeKeeper.getLoopDelayMonitor().getCount(3));
+
+		timeKeeper.setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
+		assertTrue(timeKeeper.getLoopIdToCurrentAverage().isEmpty());
+		TimeKeeper.setInstance(null);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testTimeKeeperMapsAreUnmodifiable() {
+		TimeKeeper.setInstance(null);
+		try {
+			TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(1, 1.0);
+		} finally {
+			TimeKeeper.setInstance(null);
+		}
+	}
+
+}
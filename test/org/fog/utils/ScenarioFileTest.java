@@ -0,0 +1,168 @@
+package org.fog.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PhysicalTopology;
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+import org.fog.placement.ModuleMapping;
+import org.fog.utils.distribution.NormalDistribution;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a scenario survives the conversions between the JSON topology format and
+ * {@link ScenarioFile}, and that loading it rebuilds the topology and the application.
+ */
+public class ScenarioFileTest {
+
+	private static final double DELTA = 1e-12;
+
+	private static final String TOPOLOGY = "{\"nodes\":["
+			+ "{\"name\":\"cloud\",\"type\":\"FOG_DEVICE\",\"mips\":40000,\"ram\":40000,\"upBw\":100,\"downBw\":10000,\"level\":0,\"ratePerMips\":0.01},"
+			+ "{\"name\":\"gateway\",\"type\":\"FOG_DEVICE\",\"mips\":2800,\"ram\":4000,\"upBw\":10000,\"downBw\":10000,\"level\":1,\"ratePerMips\":0.0},"
+			+ "{\"name\":\"s-0\",\"type\":\"SENSOR\",\"sensorType\":\"EEG\",\"distribution\":1,\"mean\":5.1,\"stdDev\":0.5},"
+			+ "{\"name\":\"a-0\",\"type\":\"ACTUATOR\",\"actuatorType\":\"DISPLAY\"}],"
+			+ "\"links\":["
+			+ "{\"source\":\"gateway\",\"destination\":\"cloud\",\"latency\":100.0},"
+			+ "{\"source\":\"s-0\",\"destination\":\"gateway\",\"latency\":6.0},"
+			+ "{\"source\":\"a-0\",\"destination\":\"gateway\",\"latency\":1.0}]}";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String topologyFile;
+
+	@Before
+	public void setUp() throws IOException {
+		// the entities of a loaded scenario need a simulation
+		Log.disable();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		topologyFile = write("topology.json", TOPOLOGY);
+	}
+
+	private String write(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		Writer out = new FileWriter(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file.getPath();
+	}
+
+	private static byte[] read(String file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) in.length()];
+			in.readFully(bytes);
+			return bytes;
+		} finally {
+			in.close();
+		}
+	}
+
+	private String path(String name) {
+		return new File(folder.getRoot(), name).getPath();
+	}
+
+	@Test
+	public void testJsonBinaryRoundTrip() throws IOException {
+		ScenarioFile.convertJsonToBinary(topologyFile, path("a.bin"));
+		ScenarioFile.convertBinaryToJson(path("a.bin"), path("a.json"));
+		ScenarioFile.convertJsonToBinary(path("a.json"), path("b.bin"));
+		ScenarioFile.convertBinaryToJson(path("b.bin"), path("b.json"));
+
+		assertArrayEquals(read(path("a.bin")), read(path("b.bin")));
+		assertArrayEquals(read(path("a.json")), read(path("b.json")));
+	}
+
+	@Test
+	public void testLoadTopology() throws IOException {
+		ScenarioFile.convertJsonToBinary(topologyFile, path("a.bin"));
+		ScenarioFile.Scenario scenario = ScenarioFile.load(path("a.bin"), 1);
+		PhysicalTopology topology = scenario.getPhysicalTopology();
+		assertNull(scenario.getApplication());
+		assertNull(scenario.getModuleMapping());
+
+		assertEquals(2, topology.getFogDevices().size());
+		FogDevice cloud = topology.getFogDevices().get(0);
+		FogDevice gateway = topology.getFogDevices().get(1);
+		assertEquals("cloud", cloud.getName());
+		assertEquals(40000, cloud.getHost().getTotalMips(), DELTA);
+		assertEquals(0.01, cloud.getRatePerMips(), DELTA);
+		assertEquals(-1, cloud.getParentId());
+		assertEquals(cloud.getId(), gateway.getParentId());
+		assertEquals(100, gateway.getUplinkLatency(), DELTA);
+		assertEquals(1, gateway.getLevel());
+
+		Sensor sensor = topology.getSensors().get(0);
+		assertEquals("EEG", sensor.getTupleType());
+		assertEquals(gateway.getId(), sensor.getGatewayDeviceId());
+		assertEquals(6, sensor.getLatency(), DELTA);
+		NormalDistribution distribution = (NormalDistribution) sensor.getTransmitDistribution();
+		assertEquals(5.1, distribution.getMean(), DELTA);
+		assertEquals(0.5, distribution.getStdDev(), DELTA);
+
+		Actuator actuator = topology.getActuators().get(0);
+		assertEquals("DISPLAY", actuator.getActuatorType());
+		assertEquals(gateway.getId(), actuator.getGatewayDeviceId());
+	}
+
+	@Test
+	public void testLoadApplicationAndModuleMapping() throws IOException {
+		Application application = Application.createApplication("app", 1);
+		application.addAppModule("client", 10);
+		application.addAppModule("processor", 20);
+		application.addAppEdge("EEG", "client", 3000, 500, "EEG", Tuple.UP, AppEdge.SENSOR);
+		application.addAppEdge("client", "processor", 3500, 500, "_SENSOR", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("processor", "client", 10, 14, 28, "STATE", Tuple.DOWN, AppEdge.MODULE);
+		application.addTupleMapping("client", "EEG", "_SENSOR", new FractionalSelectivity(0.9));
+		application.setLoops(Arrays.asList(new AppLoop(Arrays.asList("EEG", "client", "processor"))));
+		ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+		moduleMapping.addModuleToDevice("processor", "cloud");
+
+		ScenarioFile.write(topologyFile, application, moduleMapping, path("app.bin"));
+		ScenarioFile.Scenario scenario = ScenarioFile.load(path("app.bin"), 1);
+		Application loaded = scenario.getApplication();
+
+		assertEquals("app", loaded.getAppId());
+		assertEquals(2, loaded.getModules().size());
+		assertEquals(20, loaded.getModuleByName("processor").getRam());
+		assertEquals(3, loaded.getEdges().size());
+		AppEdge state = loaded.getEdgeMap().get("STATE");
+		assertTrue(state.isPeriodic());
+		assertEquals(10, state.getPeriodicity(), DELTA);
+		assertEquals(14, state.getTupleCpuLength(), DELTA);
+		assertEquals(Tuple.DOWN, state.getDirection());
+		FractionalSelectivity selectivity = (FractionalSelectivity) loaded.getModuleByName("client").getSelectivityMap()
+				.values().iterator().next();
+		assertEquals(0.9, selectivity.getSelectivity(), DELTA);
+		assertEquals(Arrays.asList("EEG", "client", "processor"), loaded.getLoops().get(0).getModules());
+		assertEquals(Arrays.asList("processor"), scenario.getModuleMapping().getModuleMapping().get("cloud"));
+		assertEquals("app", scenario.getPhysicalTopology().getSensors().get(0).getAppId());
+	}
+
+}
@@ -0,0 +1,122 @@
+package org.fog.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the MSER-5 warm-up truncation and the batch-means interval of {@link SteadyStateMonitor}.
+ */
+public class SteadyStateMonitorTest {
+
+	private static final double DELTA = 1e-9;
+
+	/** 4 batches, so that 8 MSER-5 batches (40 delays) give an estimate */
+	private static final int BATCH_COUNT = 4;
+
+	private SteadyStateMonitor monitor;
+
+	@Before
+	public void setUp() {
+		monitor = new SteadyStateMonitor(0.05, 0.95, BATCH_COUNT);
+	}
+
+	private void observe(int loopId, int delays, double delay) {
+		for (int i = 0; i < delays; i++)
+			monitor.loopDelayObserved(loopId, delay);
+	}
+
+	@Test
+	public void testNoEstimateWithTooFewDelays() {
+		assertNull(monitor.getEstimate(1));
+		observe(1, 2 * BATCH_COUNT * SteadyStateMonitor.MSER_BATCH_SIZE - 1, 10);
+		assertNull(monitor.getEstimate(1));
+		assertFalse(monitor.isConverged(1));
+
+		monitor.loopDelayObserved(1, 10);
+		assertTrue(monitor.getEstimate(1) != null);
+	}
+
+	@Test
+	public void testConstantDelaysConverge() {
+		observe(1, 100, 10);
+		SteadyStateMonitor.Estimate estimate = monitor.getEstimate(1);
+
+		assertEquals(10, estimate.getMean(), DELTA);
+		assertEquals(0, estimate.getHalfWidth(), DELTA);
+		assertEquals(0, estimate.getWarmUpDelays());
+		assertEquals(100, estimate.getDelays());
+		assertTrue(estimate.isSteady());
+		assertTrue(monitor.isConverged(1));
+	}
+
+	@Test
+	public void testWarmUpIsTruncated() {
+		observe(1, 50, 100);
+		for (int i = 0; i < 200; i++)
+			monitor.loopDelayObserved(1, i % 2 == 0 ? 10 : 12);
+		SteadyStateMonitor.Estimate estimate = monitor.getEstimate(1);
+
+		assertEquals(50, estimate.getWarmUpDelays());
+		assertEquals(11, estimate.getMean(), DELTA);
+		assertTrue(estimate.isSteady());
+		assertTrue(monitor.isConverged(1));
+	}
+
+	@Test
+	public void testRunStillWarmingUpIsNotSteady() {
+		// a delay that keeps decreasing is truncated past half the run
+		for (int i = 0; i < 200; i++)
+			monitor.loopDelayObserved(1, 1000 - i);
+
+		assertFalse(monitor.getEstimate(1).isSteady());
+		assertFalse(monitor.isConverged(1));
+	}
+
+	@Test
+	public void testPrecisionOfOneLoop() {
+		Random random = new Random(42);
+		for (int i = 0; i < 400; i++) {
+			double delay = 10 + random.nextDouble();
+			monitor.loopDelayObserved(1, delay);
+			monitor.loopDelayObserved(2, delay);
+		}
+		monitor.setRelativePrecision(2, 1e-6);
+
+		SteadyStateMonitor.Estimate estimate = monitor.getEstimate(1);
+		assertTrue(estimate.getHalfWidth() > 0);
+		assertTrue(estimate.getRelativeHalfWidth() < 0.05);
+		assertTrue(monitor.isConverged(1));
+		assertFalse(monitor.isConverged(2));
+		assertFalse(monitor.isConverged(Arrays.asList(1, 2)));
+		assertTrue(monitor.isConverged(Arrays.asList(1)));
+	}
+
+	@Test
+	public void testEstimateIsUpdatedByNewBatches() {
+		observe(1, 100, 10);
+		SteadyStateMonitor.Estimate estimate = monitor.getEstimate(1);
+		assertTrue(estimate == monitor.getEstimate(1));
+
+		observe(1, SteadyStateMonitor.MSER_BATCH_SIZE, 10);
+		assertEquals(105, monitor.getEstimate(1).getDelays());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConfidenceLevel() {
+		new SteadyStateMonitor(0.05, 1, BATCH_COUNT);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooFewBatches() {
+		new SteadyStateMonitor(0.05, 0.95, 1);
+	}
+
+}